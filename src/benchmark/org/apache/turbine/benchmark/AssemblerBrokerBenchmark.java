@@ -0,0 +1,84 @@
+package org.apache.turbine.benchmark;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.turbine.modules.Screen;
+import org.apache.turbine.services.TurbineServices;
+import org.apache.turbine.services.assemblerbroker.AssemblerBrokerService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Looks up existing and missing screens in the assembler broker.
+ *
+ * @version $Id$
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AssemblerBrokerBenchmark
+{
+    /**
+     * The assembler broker
+     */
+    @State(Scope.Benchmark)
+    public static class BrokerState extends TurbineState
+    {
+        /** The name of the screen */
+        @Param({ "VelocityScreen", "DoesNotExistScreen" })
+        public String name;
+
+        AssemblerBrokerService broker;
+
+        @Override
+        protected void prepare()
+        {
+            broker = (AssemblerBrokerService) TurbineServices.getInstance()
+                    .getService(AssemblerBrokerService.SERVICE_NAME);
+        }
+    }
+
+    /**
+     * Look up a screen
+     *
+     * @param state the broker
+     * @return the screen or null
+     * @throws Exception if the lookup fails
+     */
+    @Benchmark
+    public Screen getAssembler(BrokerState state) throws Exception
+    {
+        return state.broker.getAssembler(Screen.class, state.name);
+    }
+}
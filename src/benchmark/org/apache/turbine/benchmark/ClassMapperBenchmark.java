@@ -0,0 +1,108 @@
+package org.apache.turbine.benchmark;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.turbine.modules.ScreenLoader;
+import org.apache.turbine.services.TurbineServices;
+import org.apache.turbine.services.template.TemplateEngineService;
+import org.apache.turbine.services.template.TemplateService;
+import org.apache.turbine.services.template.mapper.ClassMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Maps templates to screen classes, once without any cache and once
+ * through the cached mappers of the template service.
+ *
+ * @version $Id$
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ClassMapperBenchmark
+{
+    /**
+     * An uncached screen class mapper
+     */
+    @State(Scope.Benchmark)
+    public static class MapperState extends TurbineState
+    {
+        /** The template to map */
+        @Param({ "ExistPage.vm", "this,template,DoesNotExistPage.vm" })
+        public String template;
+
+        ClassMapper mapper;
+
+        TemplateService templateService;
+
+        @Override
+        protected void prepare()
+        {
+            mapper = new ClassMapper();
+            mapper.setUseCache(false);
+            mapper.setDefaultProperty(TemplateEngineService.DEFAULT_SCREEN);
+            mapper.setSeparator('.');
+            mapper.setLoader(ScreenLoader.getInstance());
+            mapper.init();
+
+            templateService = (TemplateService) TurbineServices.getInstance()
+                    .getService(TemplateService.SERVICE_NAME);
+        }
+    }
+
+    /**
+     * Map a template without cache
+     *
+     * @param state the mapper
+     * @return the class name
+     */
+    @Benchmark
+    public String doMapping(MapperState state)
+    {
+        return state.mapper.doMapping(state.template);
+    }
+
+    /**
+     * Map a template through the template service
+     *
+     * @param state the mapper
+     * @return the class name
+     * @throws Exception if the mapping fails
+     */
+    @Benchmark
+    public String getScreenName(MapperState state) throws Exception
+    {
+        return state.templateService.getScreenName(state.template);
+    }
+}
@@ -0,0 +1,89 @@
+package org.apache.turbine.benchmark;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.turbine.util.uri.URIConstants;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Runs complete requests through the Turbine servlet and its
+ * pipeline.
+ *
+ * @version $Id$
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PipelineBenchmark
+{
+    /**
+     * A request for a template
+     */
+    @State(Scope.Benchmark)
+    public static class RequestState extends TurbineState
+    {
+        /** The requested template */
+        @Param({ "Index.vm", "ExistPageWithLayout.vm" })
+        public String template;
+
+        HttpServletRequest request;
+
+        HttpServletResponse response;
+
+        @Override
+        protected void prepare() throws Exception
+        {
+            request = createRequest(Collections.singletonMap(
+                    URIConstants.CGI_TEMPLATE_PARAM, template));
+            response = createResponse();
+        }
+    }
+
+    /**
+     * Serve a request
+     *
+     * @param state the request
+     * @throws Exception if the request fails
+     */
+    @Benchmark
+    public void doGet(RequestState state) throws Exception
+    {
+        state.getTurbine().doGet(state.request, state.response);
+    }
+}
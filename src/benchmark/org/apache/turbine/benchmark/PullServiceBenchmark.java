@@ -0,0 +1,100 @@
+package org.apache.turbine.benchmark;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.fulcrum.security.model.turbine.entity.impl.TurbineUserImpl;
+import org.apache.turbine.om.security.DefaultUserImpl;
+import org.apache.turbine.om.security.User;
+import org.apache.turbine.services.TurbineServices;
+import org.apache.turbine.services.pull.PullService;
+import org.apache.turbine.services.velocity.VelocityService;
+import org.apache.turbine.util.RunData;
+import org.apache.velocity.context.Context;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Populates a new context with the pull tools of a logged in user, as
+ * it happens for every rendered template.
+ *
+ * @version $Id$
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PullServiceBenchmark
+{
+    /**
+     * The pull service and a request of a logged in user
+     */
+    @State(Scope.Benchmark)
+    public static class PullState extends TurbineState
+    {
+        PullService pullService;
+
+        VelocityService velocityService;
+
+        RunData runData;
+
+        @Override
+        protected void prepare() throws Exception
+        {
+            pullService = (PullService) TurbineServices.getInstance()
+                    .getService(PullService.SERVICE_NAME);
+            velocityService = (VelocityService) TurbineServices.getInstance()
+                    .getService(VelocityService.SERVICE_NAME);
+
+            runData = createRunData(createRequest(Collections.emptyMap()), createResponse());
+            User user = new DefaultUserImpl(new TurbineUserImpl());
+            user.setName("username");
+            user.setHasLoggedIn(Boolean.TRUE);
+            runData.setUser(user);
+        }
+    }
+
+    /**
+     * Populate and release a context
+     *
+     * @param state the pull service
+     * @return the populated context
+     */
+    @Benchmark
+    public Context populateContext(PullState state)
+    {
+        Context context = state.velocityService.getContext();
+        state.pullService.populateContext(context, state.runData);
+        state.pullService.releaseTools(context);
+        return context;
+    }
+}
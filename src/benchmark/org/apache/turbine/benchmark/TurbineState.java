@@ -0,0 +1,236 @@
+package org.apache.turbine.benchmark;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+
+import org.apache.turbine.Turbine;
+import org.apache.turbine.test.BaseTestCase;
+import org.apache.turbine.util.RunData;
+import org.apache.turbine.util.TurbineConfig;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Starts Turbine with a test configuration for the benchmarks and
+ * provides stub-only mock requests.  Subclasses may use another configuration
+ * by overriding {@link #getConfiguration()} and prepare their own state
+ * in {@link #prepare()}.
+ *
+ * @version $Id$
+ */
+@State(Scope.Benchmark)
+public class TurbineState extends BaseTestCase
+{
+    /** Discards all output */
+    private static final Writer NULL_WRITER = new Writer()
+    {
+        @Override
+        public void write(char[] cbuf, int off, int len)
+        {
+            // discard
+        }
+
+        @Override
+        public void flush()
+        {
+            // nothing to flush
+        }
+
+        @Override
+        public void close()
+        {
+            // nothing to close
+        }
+    };
+
+    /** The Turbine configuration */
+    private TurbineConfig tc;
+
+    /**
+     * Start Turbine
+     *
+     * @throws Exception if the state cannot be prepared
+     */
+    @Setup
+    public void startTurbine() throws Exception
+    {
+        tc = new TurbineConfig(".", getConfiguration());
+        tc.initialize();
+        prepare();
+    }
+
+    /**
+     * Prepare the state of a benchmark after Turbine has been started
+     *
+     * @throws Exception if the state cannot be prepared
+     */
+    protected void prepare() throws Exception
+    {
+        // nothing to prepare
+    }
+
+    /**
+     * Stop Turbine
+     */
+    @TearDown
+    public void stopTurbine()
+    {
+        if (tc != null)
+        {
+            tc.dispose();
+            tc = null;
+        }
+    }
+
+    /**
+     * Get the path of the properties file to start Turbine with
+     *
+     * @return the path relative to the base directory
+     */
+    protected String getConfiguration()
+    {
+        return "/conf/test/CompleteTurbineResources.properties";
+    }
+
+    /**
+     * Get the Turbine servlet
+     *
+     * @return the servlet
+     */
+    public Turbine getTurbine()
+    {
+        return tc.getTurbine();
+    }
+
+    /**
+     * Create a stub-only mock.  Unlike regular mocks, stub-only mocks do
+     * not record their invocations for verification, so neither memory
+     * nor the measured allocations grow with the number of invocations.
+     *
+     * @param <T> the mocked type
+     * @param type the class to mock
+     * @return the mock
+     */
+    private static <T> T stub(Class<T> type)
+    {
+        return mock(type, withSettings().stubOnly());
+    }
+
+    /**
+     * Create a mock request with the given parameters.  The request
+     * can be used for any number of invocations.  It has the same
+     * properties as {@link BaseTestCase#getMockRequest()}.
+     *
+     * @param parameters the request parameters
+     * @return the request
+     */
+    public HttpServletRequest createRequest(Map<String, String> parameters)
+    {
+        HttpServletRequest request = stub(HttpServletRequest.class);
+        HttpSession session = stub(HttpSession.class);
+        Map<String, Object> sessionAttributes = new ConcurrentHashMap<>();
+
+        doAnswer(invocation -> sessionAttributes.get(invocation.getArguments()[0]))
+            .when(session).getAttribute(anyString());
+        doAnswer(invocation -> sessionAttributes.put((String) invocation.getArguments()[0],
+                invocation.getArguments()[1]))
+            .when(session).setAttribute(anyString(), any());
+        when(session.isNew()).thenReturn(true);
+
+        when(request.getSession()).thenReturn(session);
+        when(request.getServerName()).thenReturn("bob");
+        when(request.getProtocol()).thenReturn("http");
+        when(request.getScheme()).thenReturn("scheme");
+        when(request.getPathInfo()).thenReturn("damn");
+        when(request.getServletPath()).thenReturn("damn2");
+        when(request.getContextPath()).thenReturn("wow");
+        when(request.getContentType()).thenReturn("html/text");
+        when(request.getCharacterEncoding()).thenReturn("US-ASCII");
+        when(request.getServerPort()).thenReturn(8080);
+        when(request.getLocale()).thenReturn(Locale.US);
+        when(request.getHeader("Content-type")).thenReturn("html/text");
+        when(request.getHeader("Accept-Language")).thenReturn("en-US");
+
+        Vector<String> names = new Vector<>(parameters.keySet());
+
+        doAnswer(invocation -> names.elements()).when(request).getParameterNames();
+        doAnswer(invocation -> {
+            String value = parameters.get(invocation.getArguments()[0]);
+            return value == null ? null : new String[] { value };
+        }).when(request).getParameterValues(anyString());
+
+        return request;
+    }
+
+    /**
+     * Create a mock response which discards its output
+     *
+     * @return the response
+     * @throws IOException never
+     */
+    public HttpServletResponse createResponse() throws IOException
+    {
+        HttpServletResponse response = stub(HttpServletResponse.class);
+        ServletOutputStream out = stub(ServletOutputStream.class);
+
+        when(response.getOutputStream()).thenReturn(out);
+        when(response.getWriter()).thenReturn(new PrintWriter(NULL_WRITER));
+        doAnswer(invocation -> invocation.getArguments()[0]).when(response).encodeURL(anyString());
+
+        return response;
+    }
+
+    /**
+     * Create a RunData object for a request
+     *
+     * @param request the request
+     * @param response the response
+     * @return the RunData object
+     * @throws Exception if the RunData cannot be created
+     */
+    public RunData createRunData(HttpServletRequest request, HttpServletResponse response)
+        throws Exception
+    {
+        return getRunData(request, response, getTurbine().getServletConfig());
+    }
+}
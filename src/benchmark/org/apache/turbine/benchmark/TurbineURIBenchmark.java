@@ -0,0 +1,103 @@
+package org.apache.turbine.benchmark;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.turbine.util.ServerData;
+import org.apache.turbine.util.uri.TemplateURI;
+import org.apache.turbine.util.uri.TurbineURI;
+import org.apache.turbine.util.uri.URIConstants;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Builds relative links, the most frequent operation of the link
+ * tools in templates.
+ *
+ * @version $Id$
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TurbineURIBenchmark
+{
+    /**
+     * The server data and a prepared URI
+     */
+    @State(Scope.Benchmark)
+    public static class URIState extends TurbineState
+    {
+        ServerData serverData;
+
+        TurbineURI uri;
+
+        @Override
+        protected void prepare()
+        {
+            serverData = new ServerData("www.testserver.com",
+                    URIConstants.HTTP_PORT, URIConstants.HTTP, "/servlet/turbine",
+                    "/context");
+
+            uri = new TurbineURI(serverData, "Index.vm", "LoginUser");
+            uri.addPathInfo("id", 42);
+            uri.addQueryData("name", "Turbine & Co");
+        }
+    }
+
+    /**
+     * Render a prepared URI
+     *
+     * @param state the URI
+     * @return the link
+     */
+    @Benchmark
+    public String getRelativeLink(URIState state)
+    {
+        return state.uri.getRelativeLink();
+    }
+
+    /**
+     * Create and render a template link as the link tools do
+     *
+     * @param state the server data
+     * @return the link
+     */
+    @Benchmark
+    public String buildTemplateLink(URIState state)
+    {
+        TemplateURI uri = new TemplateURI(state.serverData);
+        uri.setTemplate("admin,Users.vm");
+        uri.addPathInfo("page", 3);
+        uri.addQueryData("sort", "name");
+        return uri.getRelativeLink();
+    }
+}
@@ -0,0 +1,117 @@
+package org.apache.turbine.benchmark;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.fulcrum.parser.ParameterParser;
+import org.apache.turbine.Turbine;
+import org.apache.turbine.services.TurbineServices;
+import org.apache.turbine.services.urlmapper.URLMapperService;
+import org.apache.turbine.util.RunData;
+import org.apache.turbine.util.uri.TemplateURI;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Maps URIs to and from the configured URL patterns.
+ *
+ * @version $Id$
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class URLMapperBenchmark
+{
+    /**
+     * The URL mapper with the mappings of the URL mapper tests
+     */
+    @State(Scope.Benchmark)
+    public static class MapperState extends TurbineState
+    {
+        URLMapperService urlMapper;
+
+        RunData runData;
+
+        ParameterParser pp;
+
+        @Override
+        protected String getConfiguration()
+        {
+            return "/conf/test/TurbineURLMapperServiceTest.properties";
+        }
+
+        @Override
+        protected void prepare() throws Exception
+        {
+            urlMapper = (URLMapperService) TurbineServices.getInstance()
+                    .getService(URLMapperService.SERVICE_NAME);
+            runData = createRunData(createRequest(Collections.emptyMap()), createResponse());
+            pp = runData.get(Turbine.class, ParameterParser.class);
+        }
+    }
+
+    /**
+     * Map a template URI with path info and query data to a URL.  This
+     * includes the creation of the URI.
+     *
+     * @param state the mapper
+     * @return the mapped link
+     */
+    @Benchmark
+    public String mapToURL(MapperState state)
+    {
+        TemplateURI uri = new TemplateURI(state.runData);
+        uri.clearResponse();
+        uri.addPathInfo("bookId", 123);
+        uri.setTemplate("Book.vm");
+        uri.addQueryData("detail", 1);
+        uri.addQueryData("view", "collapsed");
+
+        state.urlMapper.mapToURL(uri);
+        return uri.getRelativeLink();
+    }
+
+    /**
+     * Map a URL to request parameters
+     *
+     * @param state the mapper
+     * @return the parameters
+     */
+    @Benchmark
+    public ParameterParser mapFromURL(MapperState state)
+    {
+        state.pp.clear();
+        state.urlMapper.mapFromURL("/app/book/123/4", state.pp);
+        return state.pp;
+    }
+}
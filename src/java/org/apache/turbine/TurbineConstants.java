@@ -82,6 +82,15 @@ public interface TurbineConstants
     /** Default value of the Turbine Module Cache Size */
     int MODULE_CACHE_SIZE_DEFAULT = 128;
 
+    /**
+     * Property that limits the number of cached modules of each type.
+     * The least recently used modules are evicted beyond that size.
+     */
+    String MODULE_CACHE_MAX_SIZE_KEY = "module.cache.maxsize";
+
+    /** Default value of the Turbine Module Cache limit, no limit */
+    int MODULE_CACHE_MAX_SIZE_DEFAULT = 0;
+
 	/** The packages where Turbine will look for modules. */
 	String MODULE_PACKAGES = "module.packages";
 
@@ -184,6 +193,24 @@ public interface TurbineConstants
 	/** Session Timeout Default Value */
 	int SESSION_TIMEOUT_DEFAULT = -1;
 
+	/** Regular expressions of screens which are served without a session */
+	String SESSION_STATELESS_SCREENS_KEY = "session.stateless.screens";
+
+	/** Regular expressions of request paths which are served without a session */
+	String SESSION_STATELESS_PATHS_KEY = "session.stateless.paths";
+
+	/** Compute an ETag from the buffered page if the screen declares no validator */
+	String CONDITIONAL_ETAG_BUFFER_KEY = "conditional.etag.buffer";
+
+	/** Default: no buffering */
+	boolean CONDITIONAL_ETAG_BUFFER_DEFAULT = false;
+
+	/** The maximum size of a buffered page in bytes, larger pages are streamed without ETag */
+	String CONDITIONAL_ETAG_MAXSIZE_KEY = "conditional.etag.maxsize";
+
+	/** Default: 1 MB */
+	int CONDITIONAL_ETAG_MAXSIZE_DEFAULT = 1024 * 1024;
+
 	/** Indicate whether this Turbine application is using SSL. */
 	String USE_SSL_KEY = "use.ssl";
 
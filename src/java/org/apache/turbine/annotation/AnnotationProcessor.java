@@ -22,22 +22,12 @@ package org.apache.turbine.annotation;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.AccessibleObject;
 import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
-import org.apache.commons.configuration2.Configuration;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.fulcrum.security.model.turbine.TurbineAccessControlList;
-import org.apache.logging.log4j.LogManager;
-import org.apache.logging.log4j.Logger;
-import org.apache.turbine.Turbine;
-import org.apache.turbine.modules.Loader;
-import org.apache.turbine.services.ServiceManager;
-import org.apache.turbine.services.TurbineServices;
-import org.apache.turbine.services.assemblerbroker.AssemblerBrokerService;
 import org.apache.turbine.util.TurbineException;
 
 /**
@@ -49,11 +39,8 @@ import org.apache.turbine.util.TurbineException;
  */
 public class AnnotationProcessor
 {
-    /** Logging */
-    private static Logger log = LogManager.getLogger(AnnotationProcessor.class);
-
     /** Annotation cache */
-    private static ConcurrentMap<String, Annotation[]> annotationCache = new ConcurrentHashMap<>();
+    private static ConcurrentMap<AccessibleObject, Annotation[]> annotationCache = new ConcurrentHashMap<>();
 
     /**
      * Get cached annotations for field, class or method
@@ -64,12 +51,11 @@ public class AnnotationProcessor
      */
     public static Annotation[] getAnnotations(AccessibleObject object)
     {
-        String key = object.getClass() + object.toString();
-        Annotation[] annotations = annotationCache.get(key);
+        Annotation[] annotations = annotationCache.get(object);
         if (annotations == null)
         {
             Annotation[] newAnnotations = object.getDeclaredAnnotations();
-            annotations = annotationCache.putIfAbsent(key, newAnnotations);
+            annotations = annotationCache.putIfAbsent(object, newAnnotations);
             if (annotations == null)
             {
                 annotations = newAnnotations;
@@ -235,334 +221,33 @@ public class AnnotationProcessor
     /**
      * Search for annotated fields and optionally of method fields of the object and inject the appropriate
      * objects
+     * <p>
+     * The annotated fields and methods of a class are determined once and kept as
+     * an injection plan, see {@link InjectionPlan}.
      *
      * @param object the object
+     * @param hasTurbineServicesInMethodFields true if annotated methods should be processed, too
      * @throws TurbineException if the objects could not be injected
      */
     public static void process(Object object, Boolean hasTurbineServicesInMethodFields) throws TurbineException
     {
-        ServiceManager manager = null;
-        Configuration config = null;
-        AssemblerBrokerService assembler = null;
-        Class<?> clazz = object.getClass();
-
-        while (clazz != null)
-        {
-            Field[] fields = clazz.getDeclaredFields();
-
-            for (Field field : fields)
-            {
-                Annotation[] annotations = getAnnotations(field);
-
-                for (Annotation a : annotations)
-                {
-                    if (a instanceof TurbineService)
-                    {
-                        if (manager == null)
-                        {
-                            manager = TurbineServices.getInstance();
-                        }
-                        injectTurbineService(object, manager, field, (TurbineService) a);
-                    }
-                    else if (a instanceof TurbineConfiguration)
-                    {
-                        if (config == null)
-                        {
-                            config = Turbine.getConfiguration();
-                        }
-                        injectTurbineConfiguration(object, config, field, (TurbineConfiguration) a);
-                    }
-                    else if (a instanceof TurbineLoader)
-                    {
-                        if (assembler == null)
-                        {
-                            assembler = (AssemblerBrokerService) TurbineServices.getInstance().
-                                getService(AssemblerBrokerService.SERVICE_NAME);
-                        }
-                        injectTurbineLoader(object, assembler, field, (TurbineLoader) a);
-                    }
-                }
-            }
-
-            if (hasTurbineServicesInMethodFields) {
-                manager = processMethods(object, manager, clazz);
-            }
-
-            clazz = clazz.getSuperclass();
-        }
-    }
-
-    private static ServiceManager processMethods(Object object, ServiceManager manager, Class<?> clazz) throws TurbineException {
-        Method[] methods = clazz.getMethods();
-
-        for (Method method : methods)
-        {
-            Annotation[] annotations = getAnnotations(method);
-            for (Annotation a : annotations)
-            {
-                if (a instanceof TurbineService)
-                {
-
-                    if (manager == null)
-                    {
-                        manager = TurbineServices.getInstance();
-                    }
-                    injectTurbineService(object, manager, method, (TurbineService) a);
-                }
-            }
-        }
-        return manager;
-    }
-
-    /**
-     * Inject Turbine configuration into field of object
-     *
-     * @param object the object to process
-     * @param assembler AssemblerBrokerService, provides the loader
-     * @param field the field
-     * @param annotation the value of the annotation
-     *
-     * @throws TurbineException if loader cannot be set
-     */
-    private static void injectTurbineLoader(Object object, AssemblerBrokerService assembler, Field field, TurbineLoader annotation) throws TurbineException
-    {
-        Loader<?> loader = assembler.getLoader(annotation.value());
-        field.setAccessible(true);
-
-        try
-        {
-            log.debug("Injection of {} into object {}", loader, object);
-
-            field.set(object, loader);
-        }
-        catch (IllegalArgumentException | IllegalAccessException e)
-        {
-            throw new TurbineException("Could not inject loader "
-                    + loader + " into object " + object, e);
-        }
+        InjectionPlan.of(object.getClass(), Boolean.TRUE.equals(hasTurbineServicesInMethodFields))
+            .inject(object);
     }
 
     /**
-     * Inject Turbine configuration into field of object
+     * Get the names of all services which are injected into instances of
+     * the given class through annotated fields or methods.
      *
-     * @param object the object to process
-     * @param conf the configuration to use
-     * @param field the field
-     * @param annotation the value of the annotation
-     *
-     * @throws TurbineException if configuration cannot be set
+     * @param clazz the class
+     * @return an unmodifiable set of service names, in declaration order
      */
-    @SuppressWarnings("boxing")
-    private static void injectTurbineConfiguration(Object object, Configuration conf, Field field, TurbineConfiguration annotation) throws TurbineException
+    public static Set<String> getServiceNames(Class<?> clazz)
     {
-        Class<?> type = field.getType();
-        String key = annotation.value();
-
-        try
-        {
-            if (Configuration.class.isAssignableFrom(type))
-            {
-                final Configuration injectConfiguration;
-                // Check for annotation value
-                if (StringUtils.isNotEmpty(key))
-                {
-                    injectConfiguration = conf.subset(key);
-                }
-                else
-                {
-                    injectConfiguration = conf;
-                }
-
-                log.debug("Injection of {} into object {}", injectConfiguration, object);
-
-                field.setAccessible(true);
-                field.set(object, injectConfiguration);
-            }
-            else if (conf.containsKey(key))
-            {
-                if ( String.class.isAssignableFrom( type ) )
-                {
-                    String value = conf.getString(key);
-                    log.debug("Injection of {} into object {}", value, object);
-
-                    field.setAccessible(true);
-                    field.set(object, value);
-                }
-                else if ( Boolean.TYPE.isAssignableFrom( type ) )
-                {
-                    boolean value = conf.getBoolean(key);
-                    log.debug("Injection of {} into object {}", value, object);
-
-                    field.setAccessible(true);
-                    field.setBoolean(object, value);
-                }
-                else if ( Integer.TYPE.isAssignableFrom( type ) )
-                {
-                    int value = conf.getInt(key);
-                    log.debug("Injection of {} into object {}", value, object);
-
-                    field.setAccessible(true);
-                    field.setInt(object, value);
-                }
-                else if ( Long.TYPE.isAssignableFrom( type ) )
-                {
-                    long value = conf.getLong(key);
-                    log.debug("Injection of {} into object {}", value, object);
-
-                    field.setAccessible(true);
-                    field.setLong(object, value);
-                }
-                else if ( Short.TYPE.isAssignableFrom( type ) )
-                {
-                    short value = conf.getShort(key);
-                    log.debug("Injection of {} into object {}", value, object);
-
-                    field.setAccessible(true);
-                    field.setShort(object, value);
-                }
-                else if ( Long.TYPE.isAssignableFrom( type ) )
-                {
-                    long value = conf.getLong(key);
-                    log.debug("Injection of {} into object {}", value, object);
-
-                    field.setAccessible(true);
-                    field.setLong(object, value);
-                }
-                else if ( Float.TYPE.isAssignableFrom( type ) )
-                {
-                    float value = conf.getFloat(key);
-                    log.debug("Injection of {} into object {}", value, object);
-
-                    field.setAccessible(true);
-                    field.setFloat(object, value);
-                }
-                else if ( Double.TYPE.isAssignableFrom( type ) )
-                {
-                    double value = conf.getDouble(key);
-                    log.debug("Injection of {} into object {}", value, object);
-
-                    field.setAccessible(true);
-                    field.setDouble(object, value);
-                }
-                else if ( Byte.TYPE.isAssignableFrom( type ) )
-                {
-                    byte value = conf.getByte(key);
-                    log.debug("Injection of {} into object {}", value, object);
-
-                    field.setAccessible(true);
-                    field.setByte(object, value);
-                }
-                else if ( List.class.isAssignableFrom( type ) )
-                {
-                    List<Object> values = conf.getList(key);
-                    log.debug("Injection of {} into object {}", values, object);
-
-                    field.setAccessible(true);
-                    field.set(object, values);
-                }
-            }
-        }
-        catch (IllegalArgumentException | IllegalAccessException e)
-        {
-            throw new TurbineException("Could not inject configuration "
-                    + conf + " into object " + object, e);
-        }
-    }
-
-    /**
-     * Inject Turbine service into field of object
-     *
-     * @param object the object to process
-     * @param manager the service manager
-     * @param field the field
-     * @param annotation the value of the annotation
-     *
-     * @throws TurbineException if service is not available
-     */
-    private static void injectTurbineService(Object object, ServiceManager manager, Field field, TurbineService annotation) throws TurbineException
-    {
-        String serviceName = null;
-        // Check for annotation value
-        if (StringUtils.isNotEmpty(annotation.value()))
-        {
-            serviceName = annotation.value();
-        }
-        // Check for fields SERVICE_NAME and ROLE
-        else
-        {
-            Field[] typeFields = field.getType().getFields();
-            serviceName = checkServiceOrRoleInField(serviceName, typeFields);
-        }
-
-        if (StringUtils.isEmpty(serviceName))
-        {
-            // Try interface class name
-            serviceName = field.getType().getName();
-        }
-
-        log.debug("Looking up service for injection: {} for object {}", serviceName, object);
-
-        Object service = manager.getService(serviceName); // throws Exception on unknown service
-        field.setAccessible(true);
-
-        try
-        {
-            log.debug("Injection of {} into object {}", serviceName, object);
-
-            field.set(object, service);
-        }
-        catch (IllegalArgumentException | IllegalAccessException e)
-        {
-            throw new TurbineException("Could not inject service "
-                    + serviceName + " into object " + object, e);
-        }
-    }
-
-    private static void injectTurbineService(Object object, ServiceManager manager, Method method, TurbineService annotation) throws TurbineException
-    {
-        String serviceName = null;
-        // Check for annotation value
-        if (StringUtils.isNotEmpty(annotation.value()))
-        {
-            serviceName = annotation.value();
-        }
-        else
-        {
-            Class<?>[] classes = method.getParameterTypes();
-            for (Class c : classes)
-            {
-                Field[] fields = c.getFields();
-                // Check for fields SERVICE_NAME and ROLE
-                serviceName = checkServiceOrRoleInField(serviceName, fields);
-            }
-        }
-
-        log.debug("Looking up service for injection: {} for object {}", serviceName, object);
-        if (StringUtils.isEmpty(serviceName))
-        {
-            // Try interface class name
-            serviceName = method.getName();
-        }
-
-        Object service = manager.getService(serviceName); // throws Exception on unknown service
-        method.setAccessible(true);
-
-        try
-        {
-            log.debug("Injection of {} into object {}", serviceName, object);
-
-            Object[] paramValues = new Object[1];
-            paramValues[0] = service;
-            method.invoke(object, paramValues);
-        }
-        catch (IllegalArgumentException | IllegalAccessException | InvocationTargetException e)
-        {
-            throw new TurbineException("Could not inject service "
-                    + serviceName + " into object " + object, e);
-        }
+        return InjectionPlan.of(clazz, true).getServiceNames();
     }
 
-    private static String checkServiceOrRoleInField(String serviceName, Field[] fields) {
+    static String checkServiceOrRoleInField(String serviceName, Field[] fields) {
         for (Field f : fields)
             if (TurbineService.SERVICE_NAME.equals(f.getName()))
             {
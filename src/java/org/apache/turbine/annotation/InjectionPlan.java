@@ -0,0 +1,579 @@
+package org.apache.turbine.annotation;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.configuration2.Configuration;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.turbine.Turbine;
+import org.apache.turbine.modules.Loader;
+import org.apache.turbine.services.ServiceManager;
+import org.apache.turbine.services.TurbineServices;
+import org.apache.turbine.services.assemblerbroker.AssemblerBrokerService;
+import org.apache.turbine.util.TurbineException;
+
+/**
+ * The injection plan of a class. It is computed once per class and holds
+ * pre-bound setters for all fields (and optionally methods) annotated with
+ * {@link TurbineService}, {@link TurbineConfiguration} or
+ * {@link TurbineLoader}, with the service names, configuration keys and
+ * value types already resolved. Injecting into an object is a loop over
+ * these setters without any reflection scanning.
+ */
+final class InjectionPlan
+{
+    /** Logging */
+    private static Logger log = LogManager.getLogger(AnnotationProcessor.class);
+
+    /** Type of all setters: (Object target, Object value) void */
+    private static final MethodType SETTER_TYPE =
+            MethodType.methodType(void.class, Object.class, Object.class);
+
+    /** Plans for annotated fields */
+    private static final ClassValue<InjectionPlan> FIELD_PLANS = new ClassValue<InjectionPlan>()
+    {
+        @Override
+        protected InjectionPlan computeValue(Class<?> type)
+        {
+            return new InjectionPlan(type, false);
+        }
+    };
+
+    /** Plans for annotated fields and methods */
+    private static final ClassValue<InjectionPlan> FIELD_AND_METHOD_PLANS = new ClassValue<InjectionPlan>()
+    {
+        @Override
+        protected InjectionPlan computeValue(Class<?> type)
+        {
+            return new InjectionPlan(type, true);
+        }
+    };
+
+    /** The injections in order */
+    private final Injection[] injections;
+
+    /** The names of the injected services */
+    private final Set<String> serviceNames;
+
+    /**
+     * Get the injection plan of a class
+     *
+     * @param type the class
+     * @param withMethods true if annotated methods should be considered
+     * @return the plan
+     */
+    static InjectionPlan of(Class<?> type, boolean withMethods)
+    {
+        return withMethods ? FIELD_AND_METHOD_PLANS.get(type) : FIELD_PLANS.get(type);
+    }
+
+    /**
+     * Compute the plan of a class
+     *
+     * @param type the class
+     * @param withMethods true if annotated methods should be considered
+     */
+    private InjectionPlan(Class<?> type, boolean withMethods)
+    {
+        List<Injection> list = new ArrayList<>();
+        Set<Method> methods = new LinkedHashSet<>();
+        Set<String> names = new LinkedHashSet<>();
+
+        for (Class<?> clazz = type; clazz != null; clazz = clazz.getSuperclass())
+        {
+            for (Field field : clazz.getDeclaredFields())
+            {
+                for (Annotation a : AnnotationProcessor.getAnnotations(field))
+                {
+                    if (a instanceof TurbineService)
+                    {
+                        String name = serviceName(field, (TurbineService) a);
+                        names.add(name);
+                        list.add(serviceInjection(field, name));
+                    }
+                    else if (a instanceof TurbineConfiguration)
+                    {
+                        list.add(configurationInjection(field, (TurbineConfiguration) a));
+                    }
+                    else if (a instanceof TurbineLoader)
+                    {
+                        list.add(loaderInjection(field, (TurbineLoader) a));
+                    }
+                }
+            }
+
+            if (withMethods)
+            {
+                for (Method method : clazz.getMethods())
+                {
+                    if (methods.add(method))
+                    {
+                        for (Annotation a : AnnotationProcessor.getAnnotations(method))
+                        {
+                            if (a instanceof TurbineService)
+                            {
+                                String name = serviceName(method, (TurbineService) a);
+                                names.add(name);
+                                list.add(serviceInjection(method, name));
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        this.injections = list.toArray(new Injection[0]);
+        this.serviceNames = Collections.unmodifiableSet(names);
+    }
+
+    /**
+     * Get the names of the services injected by this plan
+     *
+     * @return an unmodifiable set of service names
+     */
+    Set<String> getServiceNames()
+    {
+        return serviceNames;
+    }
+
+    /**
+     * Inject the planned objects into the given object
+     *
+     * @param object the object, an instance of the planned class
+     * @throws TurbineException if the objects could not be injected
+     */
+    void inject(Object object) throws TurbineException
+    {
+        if (injections.length == 0)
+        {
+            return;
+        }
+
+        Context context = new Context();
+        for (Injection injection : injections)
+        {
+            injection.inject(object, context);
+        }
+    }
+
+    /**
+     * Determine the name of the service injected into a field
+     *
+     * @param field the field
+     * @param annotation the value of the annotation
+     * @return the service name
+     */
+    private static String serviceName(Field field, TurbineService annotation)
+    {
+        String serviceName = null;
+        // Check for annotation value
+        if (StringUtils.isNotEmpty(annotation.value()))
+        {
+            serviceName = annotation.value();
+        }
+        // Check for fields SERVICE_NAME and ROLE
+        else
+        {
+            serviceName = AnnotationProcessor.checkServiceOrRoleInField(null, field.getType().getFields());
+        }
+
+        if (StringUtils.isEmpty(serviceName))
+        {
+            // Try interface class name
+            serviceName = field.getType().getName();
+        }
+
+        return serviceName;
+    }
+
+    /**
+     * Plan the injection of a Turbine service into a field
+     *
+     * @param field the field
+     * @param name the name of the service
+     * @return the injection
+     */
+    private static Injection serviceInjection(Field field, String name)
+    {
+        final MethodHandle setter = setter(field);
+
+        return (object, context) -> {
+            log.debug("Looking up service for injection: {} for object {}", name, object);
+
+            Object service = context.getManager().getService(name); // throws Exception on unknown service
+            log.debug("Injection of {} into object {}", name, object);
+            set(setter, object, service, "service " + name);
+        };
+    }
+
+    /**
+     * Determine the name of the service injected into a method
+     *
+     * @param method the method
+     * @param annotation the value of the annotation
+     * @return the service name
+     */
+    private static String serviceName(Method method, TurbineService annotation)
+    {
+        String serviceName = null;
+        // Check for annotation value
+        if (StringUtils.isNotEmpty(annotation.value()))
+        {
+            serviceName = annotation.value();
+        }
+        else
+        {
+            for (Class<?> c : method.getParameterTypes())
+            {
+                // Check for fields SERVICE_NAME and ROLE
+                serviceName = AnnotationProcessor.checkServiceOrRoleInField(serviceName, c.getFields());
+            }
+        }
+
+        if (StringUtils.isEmpty(serviceName))
+        {
+            // Try interface class name
+            serviceName = method.getName();
+        }
+
+        return serviceName;
+    }
+
+    /**
+     * Plan the injection of a Turbine service into a method
+     *
+     * @param method the method
+     * @param name the name of the service
+     * @return the injection
+     */
+    private static Injection serviceInjection(Method method, String name)
+    {
+        final MethodHandle setter = method.getParameterCount() == 1 ? setter(method) : null;
+
+        return (object, context) -> {
+            log.debug("Looking up service for injection: {} for object {}", name, object);
+
+            Object service = context.getManager().getService(name); // throws Exception on unknown service
+            log.debug("Injection of {} into object {}", name, object);
+            set(setter, object, service, "service " + name);
+        };
+    }
+
+    /**
+     * Plan the injection of a Turbine loader into a field
+     *
+     * @param field the field
+     * @param annotation the value of the annotation
+     * @return the injection
+     */
+    private static Injection loaderInjection(Field field, TurbineLoader annotation)
+    {
+        final Class<?> type = annotation.value();
+        final MethodHandle setter = setter(field);
+
+        return (object, context) -> {
+            Loader<?> loader = context.getAssembler().getLoader(type);
+            log.debug("Injection of {} into object {}", loader, object);
+            set(setter, object, loader, "loader " + loader);
+        };
+    }
+
+    /**
+     * Plan the injection of Turbine configuration into a field
+     *
+     * @param field the field
+     * @param annotation the value of the annotation
+     * @return the injection
+     */
+    private static Injection configurationInjection(Field field, TurbineConfiguration annotation)
+    {
+        final String key = annotation.value();
+        final ValueType valueType = ValueType.of(field.getType());
+        final MethodHandle setter = setter(field);
+
+        return (object, context) -> {
+            Configuration conf = context.getConfiguration();
+            Object value;
+
+            if (valueType == ValueType.CONFIGURATION)
+            {
+                // Check for annotation value
+                value = StringUtils.isNotEmpty(key) ? conf.subset(key) : conf;
+            }
+            else if (valueType != ValueType.UNSUPPORTED && conf.containsKey(key))
+            {
+                value = valueType.get(conf, key);
+            }
+            else
+            {
+                return;
+            }
+
+            log.debug("Injection of {} into object {}", value, object);
+            set(setter, object, value, "configuration " + conf);
+        };
+    }
+
+    /**
+     * Create a setter for a field
+     *
+     * @param field the field
+     * @return the setter of type {@link #SETTER_TYPE} or null if the field
+     * cannot be written
+     */
+    private static MethodHandle setter(Field field)
+    {
+        try
+        {
+            field.setAccessible(true);
+            MethodHandle setter = MethodHandles.lookup().unreflectSetter(field);
+            if (Modifier.isStatic(field.getModifiers()))
+            {
+                setter = MethodHandles.dropArguments(setter, 0, Object.class);
+            }
+            return setter.asType(SETTER_TYPE);
+        }
+        catch (IllegalAccessException | RuntimeException e)
+        {
+            log.debug("Field {} cannot be written", field, e);
+            return null;
+        }
+    }
+
+    /**
+     * Create a setter for a method with one parameter
+     *
+     * @param method the method
+     * @return the setter of type {@link #SETTER_TYPE} or null if the method
+     * cannot be called
+     */
+    private static MethodHandle setter(Method method)
+    {
+        try
+        {
+            method.setAccessible(true);
+            MethodHandle setter = MethodHandles.lookup().unreflect(method);
+            if (Modifier.isStatic(method.getModifiers()))
+            {
+                setter = MethodHandles.dropArguments(setter, 0, Object.class);
+            }
+            return setter.asType(SETTER_TYPE);
+        }
+        catch (IllegalAccessException | RuntimeException e)
+        {
+            log.debug("Method {} cannot be called", method, e);
+            return null;
+        }
+    }
+
+    /**
+     * Call a setter
+     *
+     * @param setter the setter
+     * @param object the target object
+     * @param value the value to set
+     * @param what a description of the value for error messages
+     * @throws TurbineException if the value could not be set
+     */
+    private static void set(MethodHandle setter, Object object, Object value, String what)
+            throws TurbineException
+    {
+        if (setter == null)
+        {
+            throw new TurbineException("Could not inject " + what + " into object " + object);
+        }
+
+        try
+        {
+            setter.invokeExact(object, value);
+        }
+        catch (Error e)
+        {
+            throw e;
+        }
+        catch (Throwable e)
+        {
+            throw new TurbineException("Could not inject " + what + " into object " + object, e);
+        }
+    }
+
+    /**
+     * A single planned injection
+     */
+    @FunctionalInterface
+    private interface Injection
+    {
+        /**
+         * Inject into an object
+         *
+         * @param object the object
+         * @param context the lazily resolved sources
+         * @throws TurbineException if the injection fails
+         */
+        void inject(Object object, Context context) throws TurbineException;
+    }
+
+    /**
+     * The sources of injected objects, resolved once per processed object
+     */
+    private static final class Context
+    {
+        private ServiceManager manager;
+        private Configuration config;
+        private AssemblerBrokerService assembler;
+
+        ServiceManager getManager()
+        {
+            if (manager == null)
+            {
+                manager = TurbineServices.getInstance();
+            }
+            return manager;
+        }
+
+        Configuration getConfiguration()
+        {
+            if (config == null)
+            {
+                config = Turbine.getConfiguration();
+            }
+            return config;
+        }
+
+        AssemblerBrokerService getAssembler()
+        {
+            if (assembler == null)
+            {
+                assembler = (AssemblerBrokerService) getManager().getService(AssemblerBrokerService.SERVICE_NAME);
+            }
+            return assembler;
+        }
+    }
+
+    /**
+     * The supported types of configuration values
+     */
+    private enum ValueType
+    {
+        CONFIGURATION, STRING, BOOLEAN, INT, LONG, SHORT, FLOAT, DOUBLE, BYTE, LIST, UNSUPPORTED;
+
+        /**
+         * Determine the value type of a field type
+         *
+         * @param type the field type
+         * @return the value type
+         */
+        static ValueType of(Class<?> type)
+        {
+            if (Configuration.class.isAssignableFrom(type))
+            {
+                return CONFIGURATION;
+            }
+            else if (String.class.isAssignableFrom(type))
+            {
+                return STRING;
+            }
+            else if (Boolean.TYPE.isAssignableFrom(type))
+            {
+                return BOOLEAN;
+            }
+            else if (Integer.TYPE.isAssignableFrom(type))
+            {
+                return INT;
+            }
+            else if (Long.TYPE.isAssignableFrom(type))
+            {
+                return LONG;
+            }
+            else if (Short.TYPE.isAssignableFrom(type))
+            {
+                return SHORT;
+            }
+            else if (Float.TYPE.isAssignableFrom(type))
+            {
+                return FLOAT;
+            }
+            else if (Double.TYPE.isAssignableFrom(type))
+            {
+                return DOUBLE;
+            }
+            else if (Byte.TYPE.isAssignableFrom(type))
+            {
+                return BYTE;
+            }
+            else if (List.class.isAssignableFrom(type))
+            {
+                return LIST;
+            }
+
+            return UNSUPPORTED;
+        }
+
+        /**
+         * Read a configuration value of this type
+         *
+         * @param conf the configuration
+         * @param key the key
+         * @return the value
+         */
+        @SuppressWarnings("boxing")
+        Object get(Configuration conf, String key)
+        {
+            switch (this)
+            {
+                case STRING:
+                    return conf.getString(key);
+                case BOOLEAN:
+                    return conf.getBoolean(key);
+                case INT:
+                    return conf.getInt(key);
+                case LONG:
+                    return conf.getLong(key);
+                case SHORT:
+                    return conf.getShort(key);
+                case FLOAT:
+                    return conf.getFloat(key);
+                case DOUBLE:
+                    return conf.getDouble(key);
+                case BYTE:
+                    return conf.getByte(key);
+                case LIST:
+                    return conf.getList(key);
+                default:
+                    return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package org.apache.turbine.annotation;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+
+/**
+ * Annotation to mark screens and navigations whose output can be kept in
+ * the fragment cache. The cached output is reused for all requests which
+ * agree in the values the fragment is declared to vary by.
+ *
+ * @see org.apache.turbine.services.fragmentcache.FragmentCacheService
+ */
+@Retention( RetentionPolicy.RUNTIME )
+@Target( ElementType.TYPE )
+public @interface TurbineFragmentCache
+{
+    /**
+     * Time to live of a cached fragment in seconds, 0 for the default
+     * of the service
+     *
+     * @return the time to live
+     */
+    int ttl() default 0;
+
+    /**
+     * Keep a separate fragment per locale of the request
+     *
+     * @return true if the fragment depends on the locale
+     */
+    boolean locale() default false;
+
+    /**
+     * Keep a separate fragment per skin of the user
+     *
+     * @return true if the fragment depends on the skin
+     */
+    boolean skin() default false;
+
+    /**
+     * Keep a separate fragment per set of roles of the user
+     *
+     * @return true if the fragment depends on the roles
+     */
+    boolean roles() default false;
+
+    /**
+     * Names of request parameters the fragment depends on
+     *
+     * @return the parameter names
+     */
+    String[] parameters() default {};
+}
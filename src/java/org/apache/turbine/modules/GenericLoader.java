@@ -20,14 +20,18 @@ package org.apache.turbine.modules;
  */
 
 import java.util.List;
+import java.util.concurrent.Callable;
 import java.util.function.IntSupplier;
 import java.util.stream.Collectors;
 
 import org.apache.turbine.Turbine;
 import org.apache.turbine.TurbineConstants;
 import org.apache.turbine.pipeline.PipelineData;
+import org.apache.turbine.services.ServiceHandle;
 import org.apache.turbine.services.TurbineServices;
 import org.apache.turbine.services.assemblerbroker.AssemblerBrokerService;
+import org.apache.turbine.services.fragmentcache.FragmentCacheService;
+import org.apache.turbine.services.fragmentcache.FragmentPolicy;
 
 /**
  * This is the base class for the loaders. It contains code that is
@@ -59,6 +63,10 @@ public abstract class GenericLoader<T extends Assembler> implements Loader<T>
     /** Packages paths for Turbine */
     private static List<String> TURBINE_PACKAGES = null;
 
+    /** The fragment cache service */
+    private static final ServiceHandle<FragmentCacheService> FRAGMENT_CACHE =
+            ServiceHandle.of(FragmentCacheService.class, FragmentCacheService.SERVICE_NAME);
+
     /**
      * Basic constructor for creating a loader.
      *
@@ -211,6 +219,63 @@ public abstract class GenericLoader<T extends Assembler> implements Loader<T>
         return asm;
     }
 
+    /**
+     * Builds the output of an assembler. If the class of the assembler
+     * is annotated with
+     * {@link org.apache.turbine.annotation.TurbineFragmentCache} and the
+     * FragmentCacheService is configured, the output is taken from the
+     * fragment cache.
+     *
+     * @param pipelineData Turbine information.
+     * @param assembler the assembler
+     * @param name the name of the assembler
+     * @param builder builds the output of the assembler
+     * @return the output of the assembler
+     * @throws Exception a generic exception.
+     */
+    protected String buildFragment(PipelineData pipelineData, T assembler,
+            String name, Callable<String> builder)
+        throws Exception
+    {
+        FragmentPolicy policy = FragmentPolicy.of(assembler.getClass());
+
+        if (policy != null && TurbineServices.getInstance()
+                .isRegistered(FragmentCacheService.SERVICE_NAME))
+        {
+            return FRAGMENT_CACHE.get().getFragment(assemblerClass,
+                    getFragmentName(pipelineData, name), policy, pipelineData, builder);
+        }
+
+        return builder.call();
+    }
+
+    /**
+     * Gets the name under which the output of an assembler is kept in
+     * the fragment cache. Loaders of template based assemblers return
+     * the name of the current template.
+     *
+     * @param pipelineData Turbine information.
+     * @param name the name of the assembler
+     * @return the fragment name
+     */
+    protected String getFragmentName(PipelineData pipelineData, String name)
+    {
+        return name;
+    }
+
+    /**
+     * Checks whether an assembler of the given name exists without
+     * instantiating it or throwing an exception if it does not.
+     *
+     * @param name Name of object instance.
+     * @return true if the assembler exists
+     */
+    @Override
+    public boolean hasAssembler(String name)
+    {
+        return ab != null && ab.hasAssembler(assemblerClass, name);
+    }
+
     /**
      * @see org.apache.turbine.modules.Loader#getCacheSize()
      */
@@ -36,6 +36,25 @@ public interface Loader<T extends Assembler>
      */
     T getAssembler(String name) throws Exception;
 
+    /**
+     * Check whether an Assembler exists. Unlike {@link #getAssembler(String)}
+     * this method does not signal a missing Assembler with an exception.
+     *
+     * @param name name of the requested Assembler
+     * @return true if the Assembler exists
+     */
+    default boolean hasAssembler(String name)
+    {
+        try
+        {
+            return getAssembler(name) != null;
+        }
+        catch (Exception e)
+        {
+            return false;
+        }
+    }
+
     /**
      * Get the size of a possibly configured cache
      *
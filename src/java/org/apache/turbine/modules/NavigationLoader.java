@@ -19,6 +19,7 @@ package org.apache.turbine.modules;
  * under the License.
  */
 
+import org.apache.commons.lang3.StringUtils;
 import org.apache.turbine.Turbine;
 import org.apache.turbine.pipeline.PipelineData;
 
@@ -63,8 +64,11 @@ public class NavigationLoader
     public String eval(PipelineData pipelineData, String name)
             throws Exception
     {
-        // Execute Navigation
-        return getAssembler(name).build(pipelineData);
+        Navigation navigation = getAssembler(name);
+
+        // Execute navigation, possibly from the fragment cache
+        return buildFragment(pipelineData, navigation, name,
+                () -> navigation.build(pipelineData));
     }
 
     /**
@@ -81,6 +85,19 @@ public class NavigationLoader
         this.eval(pipelineData, name);
     }
 
+    /**
+     * The fragment name of a navigation is the name of the current navigation
+     * template, if any.
+     *
+     * @see org.apache.turbine.modules.GenericLoader#getFragmentName(PipelineData, String)
+     */
+    @Override
+    protected String getFragmentName(PipelineData pipelineData, String name)
+    {
+        String template = pipelineData.getRunData().getTemplateInfo().getNavigationTemplate();
+        return StringUtils.isEmpty(template) ? name : template;
+    }
+
     /**
      * The method through which this class is accessed.
      *
@@ -72,6 +72,39 @@ public interface Screen extends Assembler
         return doBuild(pipelineData);
     }
 
+    /**
+     * Subclasses can override this method to declare the time of the last
+     * modification of their content. It is called by the
+     * ConditionalGetValve before the page is executed, so it should be
+     * cheap. The screen has not been built yet when this is called.
+     *
+     * @param pipelineData Turbine information.
+     * @return the time of the last modification in milliseconds since the
+     * epoch, or -1 if unknown
+     * @throws Exception a generic exception.
+     */
+    default long getLastModified(PipelineData pipelineData)
+        throws Exception
+    {
+        return -1;
+    }
+
+    /**
+     * Subclasses can override this method to declare an entity tag for
+     * their content, e.g. a version number. It is called by the
+     * ConditionalGetValve before the page is executed, so it should be
+     * cheap. The screen has not been built yet when this is called.
+     *
+     * @param pipelineData Turbine information.
+     * @return the entity tag, with or without quotes, or null if unknown
+     * @throws Exception a generic exception.
+     */
+    default String getETag(PipelineData pipelineData)
+        throws Exception
+    {
+        return null;
+    }
+
     /**
      * If the Layout has not been defined by the Screen then set the
      * layout to be "DefaultLayout".  The Screen object can also
@@ -21,6 +21,7 @@ package org.apache.turbine.modules;
  */
 
 
+import org.apache.commons.lang3.StringUtils;
 import org.apache.turbine.Turbine;
 import org.apache.turbine.pipeline.PipelineData;
 
@@ -65,8 +66,11 @@ public class ScreenLoader
     public String eval(PipelineData pipelineData, String name)
             throws Exception
     {
-        // Execute screen
-        return getAssembler(name).build(pipelineData);
+        Screen screen = getAssembler(name);
+
+        // Execute screen, possibly from the fragment cache
+        return buildFragment(pipelineData, screen, name,
+                () -> screen.build(pipelineData));
     }
 
     /**
@@ -85,6 +89,19 @@ public class ScreenLoader
         this.eval(pipelineData, name);
 	}
 
+    /**
+     * The fragment name of a screen is the name of the current screen
+     * template, if any.
+     *
+     * @see org.apache.turbine.modules.GenericLoader#getFragmentName(PipelineData, String)
+     */
+    @Override
+    protected String getFragmentName(PipelineData pipelineData, String name)
+    {
+        String template = pipelineData.getRunData().getTemplateInfo().getScreenTemplate();
+        return StringUtils.isEmpty(template) ? name : template;
+    }
+
     /**
      * The method through which this class is accessed.
      *
@@ -92,9 +92,7 @@ public class DefaultSessionValidator
         if (data.getUser() == null)
         {
             log.debug("Creating an anonymous user object!");
-            User anonymousUser = security.getAnonymousUser();
-            data.setUser(anonymousUser);
-            data.save();
+            setAnonymousUser(data);
         }
 
         // Make sure the User has logged into the system.
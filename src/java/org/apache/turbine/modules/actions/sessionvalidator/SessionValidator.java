@@ -24,6 +24,8 @@ import org.apache.turbine.annotation.TurbineService;
  */
 
 import org.apache.turbine.modules.Action;
+import org.apache.turbine.om.security.UnmodifiableUser;
+import org.apache.turbine.om.security.User;
 import org.apache.turbine.services.security.SecurityService;
 import org.apache.turbine.util.RunData;
 
@@ -68,6 +70,41 @@ public abstract class SessionValidator implements Action
     @TurbineConfiguration( TurbineConstants.SCREEN_INVALID_STATE )
     protected String screenInvalidState;
 
+    /** The anonymous user shared by all stateless requests */
+    private volatile User sharedAnonymousUser;
+
+    /**
+     * Sets the anonymous user for a request without a user. A normal
+     * request gets a new anonymous user which is saved in the session.
+     * A stateless request gets a shared, unmodifiable anonymous user
+     * and nothing is written into the session.
+     *
+     * @param data RunData object
+     * @throws Exception The anonymous user could not be obtained
+     *         from the security service
+     */
+    protected void setAnonymousUser(RunData data) throws Exception
+    {
+        if (data.isStateless())
+        {
+            User user = sharedAnonymousUser;
+
+            if (user == null)
+            {
+                user = UnmodifiableUser.of(security.getAnonymousUser());
+                sharedAnonymousUser = user;
+            }
+
+            data.setUser(user);
+        }
+        else
+        {
+            User anonymousUser = security.getAnonymousUser();
+            data.setUser(anonymousUser);
+            data.save();
+        }
+    }
+
     // the session_access_counter can be placed as a hidden field in
     // forms.  This can be used to prevent a user from using the
     // browsers back button and submitting stale data.
@@ -92,9 +92,7 @@ public class TemplateSecureSessionValidator
         if (data.getUser() == null)
         {
             log.debug("Creating an anonymous user object!");
-            User anonymousUser = security.getAnonymousUser();
-            data.setUser(anonymousUser);
-            data.save();
+            setAnonymousUser(data);
         }
 
         // This is the secure session validator, so user must be logged in.
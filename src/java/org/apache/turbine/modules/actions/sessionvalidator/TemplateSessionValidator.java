@@ -67,9 +67,7 @@ public class TemplateSessionValidator
         if (data.getUser() == null)
         {
             log.debug("Creating an anonymous user object!");
-            User anonymousUser = security.getAnonymousUser();
-            data.setUser(anonymousUser);
-            data.save();
+            setAnonymousUser(data);
         }
 
         // Make sure we have some way to return a response
@@ -0,0 +1,362 @@
+package org.apache.turbine.modules.layouts;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.turbine.util.template.DeferredScreen;
+
+/**
+ * The fragments of one request which are rendered apart from the layout.
+ * The layout template is rendered with a placeholder for each fragment,
+ * the fragments are spliced into its output afterwards. Navigations are
+ * rendered concurrently by an executor, a deferred screen is rendered by
+ * the request thread while splicing.
+ *
+ * <p>
+ * Fragments use the RunData of the request, which is recycled after the
+ * request. Therefore the request must {@link #close()} the fragments
+ * before it ends: fragments which have not started yet are dropped and
+ * the request waits for the running ones.
+ * </p>
+ *
+ * @version $Id$
+ */
+final class ParallelFragments
+{
+    /** Logging */
+    private static final Logger log = LogManager.getLogger(ParallelFragments.class);
+
+    /** Delimits the placeholders, does not occur in templates */
+    private static final char MARKER = '\u0000';
+
+    /** The executor rendering the fragments */
+    private final ExecutorService executor;
+
+    /** The maximum number of fragments submitted to the executor */
+    private final int limit;
+
+    /** The time to wait for a fragment after its submission, in nanoseconds */
+    private final long timeout;
+
+    /** The start of all placeholders of this request */
+    private final String prefix;
+
+    /** The fragments, indexed by placeholder */
+    private final List<Fragment> fragments = new ArrayList<>();
+
+    /** The number of fragments submitted to the executor */
+    private int submitted = 0;
+
+    /** Guards running and closed */
+    private final Object lock = new Object();
+
+    /** The number of fragments being rendered by the executor */
+    private int running = 0;
+
+    /** Set when the request ends, fragments must not start afterwards */
+    private boolean closed = false;
+
+    /**
+     * A fragment, either rendered by the executor or deferred
+     */
+    private static final class Fragment
+    {
+        final String name;
+        final Future<String> future;
+        final long deadline;
+        final DeferredScreen screen;
+
+        Fragment(String name, Future<String> future, long deadline, DeferredScreen screen)
+        {
+            this.name = name;
+            this.future = future;
+            this.deadline = deadline;
+            this.screen = screen;
+        }
+    }
+
+    /**
+     * Constructor
+     *
+     * @param executor the executor rendering the fragments, null if
+     *        all fragments are rendered in place
+     * @param limit the maximum number of fragments rendered concurrently
+     * @param timeout the time in milliseconds to wait for a fragment,
+     *        counted from its submission
+     */
+    ParallelFragments(ExecutorService executor, int limit, long timeout)
+    {
+        this.executor = executor;
+        this.limit = limit;
+        this.timeout = TimeUnit.MILLISECONDS.toNanos(timeout);
+        this.prefix = MARKER + "fragment-"
+                + Long.toHexString(ThreadLocalRandom.current().nextLong()) + ":";
+    }
+
+    /**
+     * Check whether another fragment can be submitted
+     *
+     * @return true if the limit of this request is not reached
+     */
+    boolean hasCapacity()
+    {
+        return executor != null && submitted < limit;
+    }
+
+    /**
+     * Submit a fragment for rendering.
+     *
+     * @param name the name of the fragment, for logging
+     * @param task renders the fragment
+     * @return the placeholder of the fragment or null if it was not
+     * submitted and must be rendered by the caller
+     */
+    String submit(String name, Callable<String> task)
+    {
+        if (!hasCapacity())
+        {
+            return null;
+        }
+
+        try
+        {
+            long deadline = System.nanoTime() + timeout;
+            Future<String> future = executor.submit(() -> run(task));
+            submitted++;
+            return add(new Fragment(name, future, deadline, null));
+        }
+        catch (RejectedExecutionException e)
+        {
+            log.warn("Could not submit fragment {}, rendering it sequentially", name);
+            return null;
+        }
+    }
+
+    /**
+     * Render a fragment on a thread of the executor unless the request
+     * has ended.
+     *
+     * @param task renders the fragment
+     * @return the output of the fragment or null if the request has ended
+     * @throws Exception if rendering fails
+     */
+    private String run(Callable<String> task)
+        throws Exception
+    {
+        synchronized (lock)
+        {
+            if (closed)
+            {
+                return null;
+            }
+            running++;
+        }
+
+        try
+        {
+            return task.call();
+        }
+        finally
+        {
+            synchronized (lock)
+            {
+                running--;
+                lock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Check whether the request has ended. A fragment checks this before
+     * it accesses the RunData of the request.
+     *
+     * @return true if the fragments have been closed
+     */
+    boolean isClosed()
+    {
+        synchronized (lock)
+        {
+            return closed;
+        }
+    }
+
+    /**
+     * Add a deferred screen which is rendered while splicing.
+     *
+     * @param screen the deferred screen
+     * @return the placeholder of the screen
+     */
+    String defer(DeferredScreen screen)
+    {
+        return add(new Fragment(screen.getTemplate(), null, 0, screen));
+    }
+
+    /**
+     * Add a fragment
+     *
+     * @param fragment the fragment
+     * @return the placeholder of the fragment
+     */
+    private String add(Fragment fragment)
+    {
+        fragments.add(fragment);
+        return prefix + (fragments.size() - 1) + MARKER;
+    }
+
+    /**
+     * Write the output of the layout, replacing the placeholders with the
+     * fragments.
+     *
+     * @param layout the output of the layout
+     * @param writer the writer of the response
+     * @throws IOException if writing fails or the request was interrupted
+     */
+    void splice(String layout, Writer writer)
+        throws IOException
+    {
+        int pos = 0;
+        int start;
+
+        while ((start = layout.indexOf(prefix, pos)) >= 0)
+        {
+            int end = layout.indexOf(MARKER, start + prefix.length());
+            if (end < 0)
+            {
+                break;
+            }
+
+            writer.write(layout, pos, start - pos);
+            int index = Integer.parseInt(layout.substring(start + prefix.length(), end));
+            write(fragments.get(index), writer);
+            pos = end + 1;
+        }
+
+        writer.write(layout, pos, layout.length() - pos);
+    }
+
+    /**
+     * Write a fragment, waiting for it if necessary
+     *
+     * @param fragment the fragment
+     * @param writer the writer of the response
+     * @throws IOException if writing fails or the request was interrupted
+     */
+    private void write(Fragment fragment, Writer writer)
+        throws IOException
+    {
+        if (fragment.screen != null)
+        {
+            fragment.screen.render(writer);
+            return;
+        }
+
+        String output;
+
+        try
+        {
+            output = fragment.future.get(Math.max(0, fragment.deadline - System.nanoTime()),
+                    TimeUnit.NANOSECONDS);
+        }
+        catch (TimeoutException e)
+        {
+            fragment.future.cancel(true);
+            output = "Timeout processing navigation template: " + fragment.name;
+            log.error(output);
+        }
+        catch (ExecutionException e)
+        {
+            output = "Error processing navigation template: " + fragment.name;
+            log.error(output, e.getCause());
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for " + fragment.name);
+        }
+
+        if (output != null)
+        {
+            writer.write(output);
+        }
+    }
+
+    /**
+     * End the fragments of the request. Fragments which have not started
+     * yet are cancelled. Since rendering a template does not stop on an
+     * interrupt, this waits for the running fragments, at most for the
+     * fragment timeout.
+     */
+    void close()
+    {
+        synchronized (lock)
+        {
+            closed = true;
+        }
+
+        for (Fragment fragment : fragments)
+        {
+            if (fragment.future != null)
+            {
+                fragment.future.cancel(true);
+            }
+        }
+
+        long end = System.nanoTime() + timeout;
+
+        synchronized (lock)
+        {
+            try
+            {
+                while (running > 0)
+                {
+                    long remaining = end - System.nanoTime();
+                    if (remaining <= 0)
+                    {
+                        log.error("{} fragments are still running after the end of the request", Integer.valueOf(running));
+                        break;
+                    }
+
+                    TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+                }
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
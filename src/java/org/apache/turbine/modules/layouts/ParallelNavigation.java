@@ -0,0 +1,164 @@
+package org.apache.turbine.modules.layouts;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.turbine.annotation.TurbineIndependentFragment;
+import org.apache.turbine.modules.Navigation;
+import org.apache.turbine.modules.NavigationLoader;
+import org.apache.turbine.modules.navigations.VelocityNavigation;
+import org.apache.turbine.pipeline.PipelineData;
+import org.apache.turbine.services.TurbineServices;
+import org.apache.turbine.services.fragmentcache.FragmentPolicy;
+import org.apache.turbine.services.template.TemplateService;
+import org.apache.turbine.services.velocity.VelocityService;
+import org.apache.turbine.util.template.TemplateNavigation;
+import org.apache.velocity.context.Context;
+
+/**
+ * A navigation placeholder for the VelocityParallelLayout. Navigations
+ * annotated with {@link TurbineIndependentFragment} are submitted for
+ * concurrent rendering and replaced by a placeholder, all others are
+ * rendered in place.
+ *
+ * @version $Id$
+ */
+class ParallelNavigation extends TemplateNavigation
+{
+    /** Logging */
+    private static final Logger log = LogManager.getLogger(ParallelNavigation.class);
+
+    /** The PipelineData object */
+    private final PipelineData pipelineData;
+
+    /** The fragments of the request */
+    private final ParallelFragments fragments;
+
+    /** The Velocity service */
+    private final VelocityService velocityService;
+
+    /**
+     * Constructor
+     *
+     * @param pipelineData A Turbine PipelineData object.
+     * @param fragments the fragments of the request
+     * @param velocityService the Velocity service
+     */
+    ParallelNavigation(PipelineData pipelineData, ParallelFragments fragments,
+            VelocityService velocityService)
+    {
+        super(pipelineData);
+        this.pipelineData = pipelineData;
+        this.fragments = fragments;
+        this.velocityService = velocityService;
+    }
+
+    /**
+     * Submits the navigation template for concurrent rendering if
+     * possible, otherwise builds it in place.
+     *
+     * @return A placeholder or the output of the navigation.
+     */
+    @Override
+    public String toString()
+    {
+        String template = getTemplate();
+
+        if (template != null && fragments.hasCapacity())
+        {
+            try
+            {
+                String placeholder = submit(template);
+
+                if (placeholder != null)
+                {
+                    return placeholder;
+                }
+            }
+            catch (Exception e)
+            {
+                log.warn("Could not submit navigation template {}, rendering it sequentially", template, e);
+            }
+        }
+
+        return super.toString();
+    }
+
+    /**
+     * Submit a navigation template for concurrent rendering.
+     *
+     * @param template the navigation template
+     * @return the placeholder or null if the navigation is not independent
+     *         or the service does not render fragments in parallel
+     * @throws Exception if the navigation cannot be loaded
+     */
+    private String submit(String template)
+        throws Exception
+    {
+        TemplateService templateService = (TemplateService) TurbineServices.getInstance()
+                .getService(TemplateService.SERVICE_NAME);
+        String module = templateService.getNavigationName(template);
+
+        if (module == null)
+        {
+            return null;
+        }
+
+        Navigation navigation = NavigationLoader.getInstance().getAssembler(module);
+
+        // fragment cached navigations are cheap enough in place
+        if (!(navigation instanceof VelocityNavigation)
+                || !navigation.getClass().isAnnotationPresent(TurbineIndependentFragment.class)
+                || FragmentPolicy.of(navigation.getClass()) != null)
+        {
+            return null;
+        }
+
+        VelocityNavigation velocityNavigation = (VelocityNavigation) navigation;
+        Context context = velocityService.getFragmentContext(pipelineData);
+
+        if (context == null)
+        {
+            return null;
+        }
+
+        String placeholder = fragments.submit(template, () -> {
+            try
+            {
+                return velocityNavigation.buildFragment(pipelineData, template, context,
+                        fragments::isClosed);
+            }
+            finally
+            {
+                velocityService.requestFinished(context);
+            }
+        });
+
+        if (placeholder == null)
+        {
+            velocityService.requestFinished(context);
+        }
+
+        return placeholder;
+    }
+}
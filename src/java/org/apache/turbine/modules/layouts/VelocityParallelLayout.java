@@ -0,0 +1,163 @@
+package org.apache.turbine.modules.layouts;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.configuration2.Configuration;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.turbine.Turbine;
+import org.apache.turbine.TurbineConstants;
+import org.apache.turbine.annotation.TurbineIndependentFragment;
+import org.apache.turbine.annotation.TurbineLoader;
+import org.apache.turbine.modules.Screen;
+import org.apache.turbine.modules.ScreenLoader;
+import org.apache.turbine.modules.screens.VelocityScreen;
+import org.apache.turbine.pipeline.PipelineData;
+import org.apache.turbine.services.fragmentcache.FragmentPolicy;
+import org.apache.turbine.services.velocity.VelocityService;
+import org.apache.turbine.util.RunData;
+import org.apache.turbine.util.template.DeferredScreen;
+import org.apache.velocity.context.Context;
+
+/**
+ * This Layout module works like the VelocityOnlyLayout, but renders
+ * independent fragments of the page concurrently. Navigations annotated
+ * with {@link TurbineIndependentFragment} are rendered by the executor of
+ * the VelocityService with their own Velocity context while the layout
+ * template is rendered. The layout output is buffered and the fragments
+ * are spliced into it in order, so the page takes roughly as long as its
+ * slowest fragment.
+ *
+ * <p>
+ * The business logic of the screen is executed before the layout. The
+ * template of a screen annotated with {@link TurbineIndependentFragment}
+ * is rendered directly into the response while the navigations are still
+ * running, like in the VelocityStreamingLayout. Other screens are
+ * rendered before the layout.
+ * </p>
+ *
+ * <p>
+ * The number of fragments rendered concurrently per request and the time
+ * to wait for them are configured in the VelocityService with the keys
+ * <code>parallel.limit</code> and <code>parallel.timeout</code>. Fragments
+ * beyond the limit are rendered in place.
+ * </p>
+ *
+ * @version $Id$
+ */
+public class VelocityParallelLayout extends VelocityLayout
+{
+    /** Temporary storage key of the fragments of the current request */
+    private static final String FRAGMENTS_KEY = VelocityParallelLayout.class.getName() + ".fragments";
+
+    /** Injected loader instance */
+    @TurbineLoader( Screen.class )
+    private ScreenLoader screenLoader;
+
+    /**
+     * @see org.apache.turbine.modules.layouts.VelocityLayout#populateContext(org.apache.turbine.pipeline.PipelineData, org.apache.velocity.context.Context)
+     */
+    @Override
+    protected void populateContext(PipelineData pipelineData, Context context) throws Exception
+    {
+        RunData data = pipelineData.getRunData();
+        Configuration conf = velocityService.getConfiguration();
+
+        ParallelFragments fragments = new ParallelFragments(
+                velocityService.getFragmentExecutor(),
+                conf.getInt(VelocityService.PARALLEL_LIMIT_KEY, VelocityService.PARALLEL_LIMIT_DEFAULT),
+                conf.getLong(VelocityService.PARALLEL_TIMEOUT_KEY, VelocityService.PARALLEL_TIMEOUT_DEFAULT));
+        data.getTemplateInfo().setTemp(FRAGMENTS_KEY, fragments);
+
+        String screenName = data.getScreen();
+
+        log.debug("Loading Screen {}", screenName);
+
+        Screen screen = screenLoader.getAssembler(screenName);
+        DeferredScreen deferred = null;
+
+        if (screen instanceof VelocityScreen
+                && FragmentPolicy.of(screen.getClass()) == null)
+        {
+            deferred = ((VelocityScreen) screen).buildDeferred(pipelineData);
+        }
+
+        String screenOutput;
+
+        if (deferred == null)
+        {
+            String results = screenLoader.eval(pipelineData, screenName);
+            screenOutput = StringUtils.defaultIfEmpty(results, StringUtils.EMPTY);
+        }
+        else if (screen.getClass().isAnnotationPresent(TurbineIndependentFragment.class)
+                && StringUtils.isEmpty(data.getRedirectURI())
+                && !DeferredScreen.isBuffered(data))
+        {
+            screenOutput = fragments.defer(deferred);
+        }
+        else
+        {
+            screenOutput = deferred.toString();
+        }
+
+        // variable for the screen in the layout template
+        context.put(TurbineConstants.SCREEN_PLACEHOLDER, screenOutput);
+
+        // variable to reference the navigation screen in the layout template
+        context.put(TurbineConstants.NAVIGATION_PLACEHOLDER,
+                    new ParallelNavigation(pipelineData, fragments, velocityService));
+    }
+
+    /**
+     * Render the layout into a buffer and splice the fragments into it
+     *
+     * @see org.apache.turbine.modules.layouts.VelocityLayout#render(org.apache.turbine.pipeline.PipelineData, org.apache.velocity.context.Context, java.lang.String)
+     */
+    @Override
+    protected void render(PipelineData pipelineData, Context context, String templateName)
+        throws Exception
+    {
+        RunData data = pipelineData.getRunData();
+        ParallelFragments fragments =
+                (ParallelFragments) data.getTemplateInfo().removeTemp(FRAGMENTS_KEY);
+
+        try
+        {
+            String layout = velocityService.handleRequest(context, prefix + templateName);
+
+            Writer writer = new OutputStreamWriter(
+                    pipelineData.get(Turbine.class, HttpServletResponse.class).getOutputStream(),
+                    data.getCharset());
+            fragments.splice(layout, writer);
+            writer.flush();
+        }
+        finally
+        {
+            // wait for the fragments, they use the RunData of the request
+            fragments.close();
+        }
+    }
+}
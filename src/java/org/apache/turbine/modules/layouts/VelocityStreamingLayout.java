@@ -0,0 +1,112 @@
+package org.apache.turbine.modules.layouts;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.turbine.TurbineConstants;
+import org.apache.turbine.annotation.TurbineLoader;
+import org.apache.turbine.modules.Screen;
+import org.apache.turbine.modules.ScreenLoader;
+import org.apache.turbine.modules.screens.VelocityScreen;
+import org.apache.turbine.pipeline.PipelineData;
+import org.apache.turbine.services.fragmentcache.FragmentPolicy;
+import org.apache.turbine.util.RunData;
+import org.apache.turbine.util.template.DeferredScreen;
+import org.apache.turbine.util.template.TemplateNavigation;
+import org.apache.velocity.context.Context;
+
+/**
+ * This Layout module works like the VelocityOnlyLayout, but streams the
+ * screen template directly into the output of the layout. The business
+ * logic of the screen is still executed before the layout is rendered,
+ * so the screen can set headers, redirect or change the layout template.
+ * Only the screen template is rendered when the layout template
+ * references <code>$screen_placeholder</code>, which avoids building the
+ * screen output as a String. Use this for pages with large screens.
+ *
+ * <p>
+ * As the screen template is rendered _after_ the head of the layout,
+ * information added to the $page tool in the screen template does not
+ * show up in the &lt;head&gt; of the page. The screen is rendered into a
+ * buffer before the layout, like in the VelocityOnlyLayout, if
+ * </p>
+ * <ul>
+ * <li>the screen is no plain VelocityScreen or is fragment cached,</li>
+ * <li>the screen has set a redirect or</li>
+ * <li>the screen has called {@link DeferredScreen#setBuffered(RunData)},
+ * e.g. because its template sets response headers.</li>
+ * </ul>
+ *
+ * @version $Id$
+ */
+public class VelocityStreamingLayout extends VelocityLayout
+{
+    /** Injected loader instance */
+    @TurbineLoader( Screen.class )
+    private ScreenLoader screenLoader;
+
+    /**
+     * @see org.apache.turbine.modules.layouts.VelocityLayout#populateContext(org.apache.turbine.pipeline.PipelineData, org.apache.velocity.context.Context)
+     */
+    @Override
+    protected void populateContext(PipelineData pipelineData, Context context) throws Exception
+    {
+        RunData data = pipelineData.getRunData();
+        String screenName = data.getScreen();
+
+        log.debug("Loading Screen {}", screenName);
+
+        Screen screen = screenLoader.getAssembler(screenName);
+        DeferredScreen deferred = null;
+
+        if (screen instanceof VelocityScreen
+                && FragmentPolicy.of(screen.getClass()) == null)
+        {
+            deferred = ((VelocityScreen) screen).buildDeferred(pipelineData);
+        }
+
+        Object screenOutput;
+
+        if (deferred == null)
+        {
+            String results = screenLoader.eval(pipelineData, screenName);
+            screenOutput = StringUtils.defaultIfEmpty(results, StringUtils.EMPTY);
+        }
+        else if (StringUtils.isNotEmpty(data.getRedirectURI())
+                || DeferredScreen.isBuffered(data))
+        {
+            log.debug("Rendering Screen {} into a buffer", screenName);
+            screenOutput = deferred.toString();
+        }
+        else
+        {
+            screenOutput = deferred;
+        }
+
+        // variable for the screen in the layout template
+        context.put(TurbineConstants.SCREEN_PLACEHOLDER, screenOutput);
+
+        // variable to reference the navigation screen in the layout template
+        context.put(TurbineConstants.NAVIGATION_PLACEHOLDER,
+                    new TemplateNavigation(pipelineData));
+    }
+}
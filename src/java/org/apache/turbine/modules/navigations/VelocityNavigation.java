@@ -21,6 +21,8 @@ package org.apache.turbine.modules.navigations;
  */
 
 
+import java.util.function.BooleanSupplier;
+
 import org.apache.turbine.annotation.TurbineService;
 import org.apache.turbine.pipeline.PipelineData;
 import org.apache.turbine.services.template.TemplateService;
@@ -106,4 +108,59 @@ public class VelocityNavigation
 
         return velocity.handleRequest(context, prefix + templateName);
     }
+
+    /**
+     * Builds a navigation template with the given context instead of the
+     * context of the request. This is used to render navigations
+     * concurrently, the current navigation template of the request is
+     * neither read nor changed.
+     *
+     * @param pipelineData Turbine information.
+     * @param navigationTemplate the navigation template to render
+     * @param context the Velocity context of this navigation
+     * @return the content of the navigation
+     * @throws Exception a generic exception.
+     */
+    public String buildFragment(PipelineData pipelineData,
+            String navigationTemplate, Context context)
+            throws Exception
+    {
+        return buildFragment(pipelineData, navigationTemplate, context, () -> false);
+    }
+
+    /**
+     * Builds a navigation template with the given context instead of the
+     * context of the request, unless the request has ended. The check is
+     * repeated before the template is rendered.
+     *
+     * @param pipelineData Turbine information.
+     * @param navigationTemplate the navigation template to render
+     * @param context the Velocity context of this navigation
+     * @param closed true if the request has ended and its RunData must
+     *        no longer be used
+     * @return the content of the navigation or null if the request has
+     *         ended
+     * @throws Exception a generic exception.
+     */
+    public String buildFragment(PipelineData pipelineData,
+            String navigationTemplate, Context context, BooleanSupplier closed)
+            throws Exception
+    {
+        if (closed.getAsBoolean())
+        {
+            return null;
+        }
+
+        doBuildTemplate(pipelineData, context);
+
+        if (closed.getAsBoolean())
+        {
+            return null;
+        }
+
+        String templateName
+                = templateService.getNavigationTemplateName(navigationTemplate);
+
+        return velocity.handleRequest(context, prefix + templateName);
+    }
 }
@@ -19,11 +19,9 @@ package org.apache.turbine.modules.screens;
  * under the License.
  */
 
-import java.io.BufferedReader;
-import java.io.CharArrayWriter;
-import java.io.InputStreamReader;
+import java.io.BufferedWriter;
 import java.io.OutputStreamWriter;
-import java.io.PrintWriter;
+import java.io.Writer;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 
@@ -72,6 +70,10 @@ import org.jabsorb.JSONRPCBridge;
  * }
  * </code>
  *
+ * <p>The request is parsed directly from the input stream and the results
+ * are written directly to the response. A JSON array of calls is processed
+ * as a batch and answered with an array of results.
+ *
  * <p>This code is derived from the com.metaparadigm.jsonrpc.JSONRPCServlet and (after upgrade) checked against
  * org.jabsorb.JSONRPCServlet.
  *
@@ -114,29 +116,17 @@ public class JSONScreen extends RawScreen
 
         // we require utf-8, cft
         Charset charset =  StandardCharsets.UTF_8; //request.getCharacterEncoding();
-        BufferedReader in = new BufferedReader(new InputStreamReader(request.getInputStream(), charset));
-
-        // Read the request
-        CharArrayWriter cdata = new CharArrayWriter();
-        char buf[] = new char[BUFFER_SIZE];
-        int ret;
-        while ((ret = in.read(buf, 0, BUFFER_SIZE)) != -1)
-        {
-            cdata.write(buf, 0, ret);
-        }
 
         // Find the JSONRPCBridge for this session or create one
         // if it doesn't exist
         JSONRPCBridge json_bridge = jsonRpcService.getBridge(data.getSession());
 
-        // Process the request
-        Object json_res = jsonRpcService.processCall(cdata, json_bridge, request);
-
-        try (PrintWriter out = new PrintWriter(
+        // Process the request, streaming from the request to the response
+        try (Writer out = new BufferedWriter(
                 new OutputStreamWriter(
-                    data.getResponse().getOutputStream(), charset)))
+                    data.getResponse().getOutputStream(), charset), BUFFER_SIZE))
         {
-            out.print(json_res.toString());
+            jsonRpcService.processCall(request.getInputStream(), out, json_bridge, request);
             out.flush();
         }
     }
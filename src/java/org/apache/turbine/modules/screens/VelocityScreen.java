@@ -19,6 +19,8 @@ package org.apache.turbine.modules.screens;
  * under the License.
  */
 
+import java.lang.reflect.Method;
+
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.apache.turbine.TurbineConstants;
@@ -28,6 +30,7 @@ import org.apache.turbine.pipeline.PipelineData;
 import org.apache.turbine.services.template.TemplateService;
 import org.apache.turbine.services.velocity.VelocityService;
 import org.apache.turbine.util.RunData;
+import org.apache.turbine.util.template.DeferredScreen;
 import org.apache.velocity.context.Context;
 
 /**
@@ -62,6 +65,49 @@ public class VelocityScreen
     @TurbineConfiguration( TurbineConstants.TEMPLATE_ERROR_KEY )
     protected String templateError = TurbineConstants.TEMPLATE_ERROR_VM;
 
+    /**
+     * Whether a screen class renders its template like this class does,
+     * i.e. does not override one of the methods building it
+     */
+    private static final ClassValue<Boolean> DEFERRABLE = new ClassValue<Boolean>()
+    {
+        @Override
+        protected Boolean computeValue(Class<?> type)
+        {
+            try
+            {
+                return Boolean.valueOf(
+                        declaredBy(type, VelocityScreen.class, "buildTemplate", PipelineData.class)
+                        && declaredBy(type, TemplateScreen.class, "doBuild", PipelineData.class)
+                        && declaredBy(type, TemplateScreen.class, "doPostBuildTemplate", PipelineData.class)
+                        && type.getMethod("build", PipelineData.class).getDeclaringClass().isInterface());
+            }
+            catch (NoSuchMethodException e)
+            {
+                return Boolean.FALSE;
+            }
+        }
+
+        private boolean declaredBy(Class<?> type, Class<?> declaringClass,
+                String name, Class<?>... parameterTypes)
+        {
+            for (Class<?> c = type; c != null; c = c.getSuperclass())
+            {
+                try
+                {
+                    Method method = c.getDeclaredMethod(name, parameterTypes);
+                    return method.getDeclaringClass() == declaringClass;
+                }
+                catch (NoSuchMethodException e)
+                {
+                    // try the super class
+                }
+            }
+
+            return false;
+        }
+    };
+
     /**
      * Velocity Screens extending this class should override this
      * method to perform any particular business logic and add
@@ -108,17 +154,7 @@ public class VelocityScreen
         String screenData = null;
 
         Context context = velocity.getContext(pipelineData);
-
-        String screenTemplate = data.getTemplateInfo().getScreenTemplate();
-        String templateName
-            = templateService.getScreenTemplateName(screenTemplate);
-
-        // The Template Service could not find the Screen
-        if (StringUtils.isEmpty(templateName))
-        {
-            log.error("Screen " + screenTemplate + " not found!");
-            throw new Exception("Could not find screen for " + screenTemplate);
-        }
+        String templateName = getTemplateName(data);
 
         try
         {
@@ -149,4 +185,54 @@ public class VelocityScreen
 
         return screenData;
     }
+
+    /**
+     * Executes the business logic of the screen but does not render its
+     * template yet. The returned DeferredScreen renders the template
+     * later, directly into the writer of the layout.
+     *
+     * @param pipelineData Turbine information.
+     * @return the deferred screen template or <code>null</code> if this
+     * screen builds its output in another way and must be evaluated
+     * through the ScreenLoader
+     * @throws Exception a generic exception.
+     */
+    public DeferredScreen buildDeferred(PipelineData pipelineData)
+        throws Exception
+    {
+        if (!DEFERRABLE.get(getClass()).booleanValue())
+        {
+            return null;
+        }
+
+        doBuildTemplate(pipelineData);
+
+        String templateName = getTemplateName(pipelineData.getRunData());
+        return new DeferredScreen(velocity, velocity.getContext(pipelineData),
+                prefix + templateName, prefix + templateError);
+    }
+
+    /**
+     * Resolves the screen template of the current request.
+     *
+     * @param data Turbine information.
+     * @return the name of the screen template
+     * @throws Exception if the template service could not find the screen
+     */
+    private String getTemplateName(RunData data)
+        throws Exception
+    {
+        String screenTemplate = data.getTemplateInfo().getScreenTemplate();
+        String templateName
+            = templateService.getScreenTemplateName(screenTemplate);
+
+        // The Template Service could not find the Screen
+        if (StringUtils.isEmpty(templateName))
+        {
+            log.error("Screen " + screenTemplate + " not found!");
+            throw new Exception("Could not find screen for " + screenTemplate);
+        }
+
+        return templateName;
+    }
 }
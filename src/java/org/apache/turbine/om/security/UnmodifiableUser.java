@@ -0,0 +1,139 @@
+package org.apache.turbine.om.security;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang3.ClassUtils;
+
+/**
+ * A read-only view of a {@link User}, so one instance can be shared
+ * between requests, e.g. the anonymous user of stateless requests.
+ * <p>
+ * The view implements all interfaces of the wrapped user. Getters are
+ * passed to the user, storage maps are returned unmodifiable and all
+ * setters and other mutators (methods starting with set, add, remove,
+ * increment or update) throw an {@link UnsupportedOperationException}.
+ * </p>
+ * <p>
+ * The view is a dynamic proxy, not an instance of the class of the
+ * wrapped user. Code which casts it to a concrete class fails with a
+ * {@link ClassCastException}; use the interfaces of the user instead.
+ * </p>
+ *
+ * @version $Id$
+ */
+public final class UnmodifiableUser implements InvocationHandler
+{
+    /** Prefixes of methods which change the user */
+    private static final String[] MUTATOR_PREFIXES =
+        { "set", "add", "remove", "increment", "update" };
+
+    /** The wrapped user */
+    private final User user;
+
+    /**
+     * Create the handler.
+     *
+     * @param user the wrapped user
+     */
+    private UnmodifiableUser(User user)
+    {
+        this.user = user;
+    }
+
+    /**
+     * Create a read-only view of a user.
+     *
+     * @param <U> the type of the user
+     * @param user the user to wrap
+     * @return a proxy implementing all interfaces of the user
+     */
+    @SuppressWarnings("unchecked")
+    public static <U extends User> U of(U user)
+    {
+        if (Proxy.isProxyClass(user.getClass())
+                && Proxy.getInvocationHandler(user) instanceof UnmodifiableUser)
+        {
+            return user;
+        }
+
+        List<Class<?>> interfaces = ClassUtils.getAllInterfaces(user.getClass());
+
+        return (U) Proxy.newProxyInstance(user.getClass().getClassLoader(),
+                interfaces.toArray(new Class<?>[interfaces.size()]),
+                new UnmodifiableUser(user));
+    }
+
+    /**
+     * @see java.lang.reflect.InvocationHandler#invoke(java.lang.Object, java.lang.reflect.Method, java.lang.Object[])
+     */
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+    {
+        String name = method.getName();
+
+        if ("equals".equals(name) && method.getParameterCount() == 1)
+        {
+            return Boolean.valueOf(proxy == args[0] || user.equals(args[0]));
+        }
+        else if ("valueBound".equals(name) || "valueUnbound".equals(name))
+        {
+            // the shared user is never bound to a session
+            return null;
+        }
+
+        for (String prefix : MUTATOR_PREFIXES)
+        {
+            if (name.startsWith(prefix))
+            {
+                throw new UnsupportedOperationException("User " + user.getName()
+                    + " is shared between requests and cannot be modified ("
+                    + name + ")");
+            }
+        }
+
+        Object result;
+
+        try
+        {
+            result = method.invoke(user, args);
+        }
+        catch (InvocationTargetException e)
+        {
+            throw e.getCause();
+        }
+
+        if (result instanceof Map)
+        {
+            result = Collections.unmodifiableMap((Map<?, ?>) result);
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,265 @@
+package org.apache.turbine.pipeline;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+/**
+ * A response which keeps the body in memory, so it can be inspected
+ * before it is sent. If the body grows beyond a limit or the buffer is
+ * released, the buffered bytes are written to the wrapped response and
+ * all further output passes through.
+ *
+ * @version $Id$
+ */
+class BufferedResponse extends HttpServletResponseWrapper
+{
+    /** The buffered body */
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(8192);
+
+    /** The maximum size of the buffer */
+    private final int limit;
+
+    /** Whether the output passes through to the wrapped response */
+    private boolean released = false;
+
+    /** The stream of this response */
+    private ServletOutputStream outputStream;
+
+    /** The writer of this response */
+    private PrintWriter writer;
+
+    /**
+     * The stream writing into the buffer or the wrapped response
+     */
+    private final class BufferedOutputStream extends ServletOutputStream
+    {
+        @Override
+        public void write(int b) throws IOException
+        {
+            if (reserve(1))
+            {
+                buffer.write(b);
+            }
+            else
+            {
+                getResponse().getOutputStream().write(b);
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException
+        {
+            if (reserve(len))
+            {
+                buffer.write(b, off, len);
+            }
+            else
+            {
+                getResponse().getOutputStream().write(b, off, len);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException
+        {
+            if (released)
+            {
+                getResponse().getOutputStream().flush();
+            }
+        }
+
+        @Override
+        public boolean isReady()
+        {
+            return true;
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener)
+        {
+            throw new UnsupportedOperationException("Non-blocking output is not supported");
+        }
+    }
+
+    /**
+     * Constructor
+     *
+     * @param response the wrapped response
+     * @param limit the maximum number of bytes to buffer
+     */
+    BufferedResponse(HttpServletResponse response, int limit)
+    {
+        super(response);
+        this.limit = limit;
+    }
+
+    /**
+     * Check whether the given number of bytes still fit into the buffer,
+     * releasing it otherwise
+     *
+     * @param len the number of bytes to write
+     * @return true if the bytes are to be buffered
+     * @throws IOException if releasing the buffer fails
+     */
+    private boolean reserve(int len) throws IOException
+    {
+        if (!released && buffer.size() + len > limit)
+        {
+            release();
+        }
+
+        return !released;
+    }
+
+    /**
+     * Write the buffered body to the wrapped response and pass all
+     * further output through.
+     *
+     * @throws IOException if writing fails
+     */
+    void release() throws IOException
+    {
+        if (!released)
+        {
+            released = true;
+            buffer.writeTo(getResponse().getOutputStream());
+            buffer.reset();
+        }
+    }
+
+    /**
+     * @return whether the output passes through to the wrapped response
+     */
+    boolean isReleased()
+    {
+        return released;
+    }
+
+    /**
+     * Get the buffered body. The writer of this response is flushed first.
+     *
+     * @return the body
+     */
+    byte[] getBody()
+    {
+        if (writer != null)
+        {
+            writer.flush();
+        }
+
+        return buffer.toByteArray();
+    }
+
+    /**
+     * @see javax.servlet.ServletResponseWrapper#getOutputStream()
+     */
+    @Override
+    public ServletOutputStream getOutputStream()
+    {
+        if (writer != null)
+        {
+            throw new IllegalStateException("getWriter() has already been called");
+        }
+
+        if (outputStream == null)
+        {
+            outputStream = new BufferedOutputStream();
+        }
+
+        return outputStream;
+    }
+
+    /**
+     * @see javax.servlet.ServletResponseWrapper#getWriter()
+     */
+    @Override
+    public PrintWriter getWriter() throws IOException
+    {
+        if (outputStream != null)
+        {
+            throw new IllegalStateException("getOutputStream() has already been called");
+        }
+
+        if (writer == null)
+        {
+            writer = new PrintWriter(new OutputStreamWriter(
+                    new BufferedOutputStream(), getCharacterEncoding()));
+        }
+
+        return writer;
+    }
+
+    /**
+     * @see javax.servlet.ServletResponseWrapper#flushBuffer()
+     */
+    @Override
+    public void flushBuffer() throws IOException
+    {
+        if (writer != null)
+        {
+            writer.flush();
+        }
+
+        if (released)
+        {
+            super.flushBuffer();
+        }
+    }
+
+    /**
+     * @see javax.servlet.ServletResponseWrapper#isCommitted()
+     */
+    @Override
+    public boolean isCommitted()
+    {
+        return released && super.isCommitted();
+    }
+
+    /**
+     * @see javax.servlet.ServletResponseWrapper#resetBuffer()
+     */
+    @Override
+    public void resetBuffer()
+    {
+        buffer.reset();
+        super.resetBuffer();
+    }
+
+    /**
+     * @see javax.servlet.ServletResponseWrapper#reset()
+     */
+    @Override
+    public void reset()
+    {
+        buffer.reset();
+        super.reset();
+    }
+}
@@ -0,0 +1,367 @@
+package org.apache.turbine.pipeline;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.turbine.Turbine;
+import org.apache.turbine.TurbineConstants;
+import org.apache.turbine.annotation.TurbineConfiguration;
+import org.apache.turbine.annotation.TurbineLoader;
+import org.apache.turbine.annotation.TurbineService;
+import org.apache.turbine.modules.Screen;
+import org.apache.turbine.modules.ScreenLoader;
+import org.apache.turbine.services.template.TemplateService;
+import org.apache.turbine.util.RunData;
+import org.apache.turbine.util.TurbineException;
+
+/**
+ * Answers conditional GET requests with <code>304 Not Modified</code>.
+ * <p>
+ * If the screen of the request declares a validator with
+ * {@link Screen#getETag(PipelineData)} or
+ * {@link Screen#getLastModified(PipelineData)}, the valve compares it
+ * with the <code>If-None-Match</code> and <code>If-Modified-Since</code>
+ * headers of the request. If the client has a current copy, the valve
+ * sets the status code of the request to <code>304</code>, which makes
+ * the {@link ExecutePageValve} skip the page execution. The valves after
+ * it, e.g. the {@link CleanUpValve}, still run.
+ * </p>
+ * <p>
+ * Otherwise, if <code>conditional.etag.buffer</code> is set, the page is
+ * rendered into a buffer and a strong ETag is computed from its content.
+ * This saves bandwidth, but not the rendering. Pages larger than
+ * <code>conditional.etag.maxsize</code> are streamed without ETag.
+ * </p>
+ * <p>
+ * Only GET and HEAD requests without an action are considered. This valve
+ * must run after the target has been determined and the ACL has been
+ * created, and before the page is executed.
+ * </p>
+ *
+ * @version $Id$
+ */
+public class ConditionalGetValve
+    implements Valve
+{
+    /** Logging */
+    private static final Logger log = LogManager.getLogger(ConditionalGetValve.class);
+
+    /** Injected service instance */
+    @TurbineService
+    private TemplateService templateService;
+
+    /** Injected loader instance */
+    @TurbineLoader( Screen.class )
+    private ScreenLoader screenLoader;
+
+    @TurbineConfiguration( TurbineConstants.CONDITIONAL_ETAG_BUFFER_KEY )
+    private boolean bufferEnabled = TurbineConstants.CONDITIONAL_ETAG_BUFFER_DEFAULT;
+
+    @TurbineConfiguration( TurbineConstants.CONDITIONAL_ETAG_MAXSIZE_KEY )
+    private int bufferMaxSize = TurbineConstants.CONDITIONAL_ETAG_MAXSIZE_DEFAULT;
+
+    /**
+     * @see org.apache.turbine.pipeline.Valve#invoke(PipelineData, ValveContext)
+     */
+    @Override
+    public void invoke(PipelineData pipelineData, ValveContext context)
+        throws IOException, TurbineException
+    {
+        RunData data = pipelineData.getRunData();
+        HttpServletRequest request = data.getRequest();
+        String method = request.getMethod();
+
+        if (!("GET".equals(method) || "HEAD".equals(method)) || data.hasAction())
+        {
+            context.invokeNext(pipelineData);
+            return;
+        }
+
+        String etag = null;
+        long lastModified = -1;
+        Screen screen = getScreen(data);
+
+        if (screen != null)
+        {
+            try
+            {
+                etag = quote(screen.getETag(pipelineData));
+                lastModified = screen.getLastModified(pipelineData);
+            }
+            catch (Exception e)
+            {
+                throw new TurbineException(e);
+            }
+        }
+
+        if (etag != null || lastModified >= 0)
+        {
+            HttpServletResponse response = data.getResponse();
+
+            if (etag != null)
+            {
+                response.setHeader("ETag", etag);
+            }
+
+            if (lastModified >= 0)
+            {
+                response.setDateHeader("Last-Modified", lastModified);
+            }
+
+            if (isNotModified(request, etag, lastModified))
+            {
+                log.debug("Screen {} not modified", data.getScreen());
+                response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                data.setStatusCode(HttpServletResponse.SC_NOT_MODIFIED);
+            }
+
+            context.invokeNext(pipelineData);
+        }
+        else if (bufferEnabled)
+        {
+            invokeBuffered(pipelineData, context);
+        }
+        else
+        {
+            context.invokeNext(pipelineData);
+        }
+    }
+
+    /**
+     * Get the screen of the request without building it.
+     *
+     * @param data the current request
+     * @return the screen or null if it cannot be determined
+     */
+    protected Screen getScreen(RunData data)
+    {
+        String screenName = data.getScreen();
+
+        if (StringUtils.isEmpty(screenName) && templateService != null)
+        {
+            String template = data.getTemplateInfo().getScreenTemplate();
+
+            if (StringUtils.isNotEmpty(template))
+            {
+                try
+                {
+                    screenName = templateService.getScreenName(template);
+                }
+                catch (Exception e)
+                {
+                    log.debug("Could not map template {} to a screen", template, e);
+                }
+            }
+        }
+
+        if (StringUtils.isEmpty(screenName) || !screenLoader.hasAssembler(screenName))
+        {
+            return null;
+        }
+
+        try
+        {
+            return screenLoader.getAssembler(screenName);
+        }
+        catch (Exception e)
+        {
+            log.debug("Could not load screen {}", screenName, e);
+            return null;
+        }
+    }
+
+    /**
+     * Render the rest of the pipeline into a buffer and answer with the
+     * buffered body and its ETag or with 304 if the client has a copy.
+     *
+     * @param pipelineData the current request
+     * @param context the valve context
+     * @throws IOException if writing the response fails
+     * @throws TurbineException if the pipeline fails
+     */
+    private void invokeBuffered(PipelineData pipelineData, ValveContext context)
+        throws IOException, TurbineException
+    {
+        RunData data = pipelineData.getRunData();
+        Map<Class<?>, ? super Object> turbineData = pipelineData.get(Turbine.class);
+        HttpServletResponse response = data.getResponse();
+        BufferedResponse buffered = new BufferedResponse(response, bufferMaxSize);
+
+        turbineData.put(HttpServletResponse.class, buffered);
+
+        try
+        {
+            context.invokeNext(pipelineData);
+        }
+        catch (IOException | TurbineException | RuntimeException e)
+        {
+            // let the error page pass through
+            buffered.release();
+            throw e;
+        }
+        finally
+        {
+            turbineData.put(HttpServletResponse.class, response);
+        }
+
+        byte[] body = buffered.getBody();
+
+        if (buffered.isReleased() || StringUtils.isNotEmpty(data.getRedirectURI())
+                || data.getStatusCode() != HttpServletResponse.SC_OK)
+        {
+            buffered.release();
+            return;
+        }
+
+        String etag = computeETag(body);
+        response.setHeader("ETag", etag);
+
+        if (isNotModified(data.getRequest(), etag, -1))
+        {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+    }
+
+    /**
+     * Evaluate the conditional headers of a request, see RFC 7232.
+     *
+     * @param request the request
+     * @param etag the current entity tag, quoted, or null
+     * @param lastModified the time of the last modification or -1
+     * @return true if the client has a current copy
+     */
+    static boolean isNotModified(HttpServletRequest request, String etag, long lastModified)
+    {
+        String ifNoneMatch = request.getHeader("If-None-Match");
+
+        if (ifNoneMatch != null)
+        {
+            return etag != null && matches(ifNoneMatch, etag);
+        }
+
+        if (lastModified >= 0)
+        {
+            long ifModifiedSince;
+
+            try
+            {
+                ifModifiedSince = request.getDateHeader("If-Modified-Since");
+            }
+            catch (IllegalArgumentException e)
+            {
+                return false;
+            }
+
+            // HTTP dates have a resolution of one second
+            return ifModifiedSince >= 0 && lastModified / 1000 <= ifModifiedSince / 1000;
+        }
+
+        return false;
+    }
+
+    /**
+     * Check whether an entity tag is in a list of entity tags using the
+     * weak comparison.
+     *
+     * @param list the value of an If-None-Match header
+     * @param etag the quoted entity tag
+     * @return true if the tag is in the list or the list is "*"
+     */
+    static boolean matches(String list, String etag)
+    {
+        String opaque = stripWeak(etag);
+
+        for (String candidate : StringUtils.split(list, ','))
+        {
+            String tag = candidate.trim();
+
+            if ("*".equals(tag) || opaque.equals(stripWeak(tag)))
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Remove the weakness indicator of an entity tag
+     *
+     * @param etag the entity tag
+     * @return the opaque tag
+     */
+    private static String stripWeak(String etag)
+    {
+        return etag.startsWith("W/") ? etag.substring(2) : etag;
+    }
+
+    /**
+     * Put an entity tag into quotes if necessary
+     *
+     * @param etag the entity tag or null
+     * @return the quoted entity tag or null
+     */
+    static String quote(String etag)
+    {
+        if (StringUtils.isEmpty(etag) || etag.startsWith("\"") || etag.startsWith("W/\""))
+        {
+            return StringUtils.isEmpty(etag) ? null : etag;
+        }
+
+        return '"' + etag + '"';
+    }
+
+    /**
+     * Compute a strong entity tag from a body
+     *
+     * @param body the body
+     * @return the quoted entity tag
+     */
+    static String computeETag(byte[] body)
+    {
+        try
+        {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(body);
+            return '"' + Base64.getUrlEncoder().withoutPadding().encodeToString(digest) + '"';
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            // every Java platform supports SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package org.apache.turbine.pipeline;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.turbine.TurbineConstants;
+import org.apache.turbine.annotation.TurbineConfiguration;
+import org.apache.turbine.util.RunData;
+import org.apache.turbine.util.TurbineException;
+
+/**
+ * Marks requests as stateless if they do not belong to an existing
+ * session and their screen or path matches one of the configured
+ * patterns. Stateless requests do not create a session unless
+ * something is stored in it, and anonymous users share one
+ * unmodifiable user object.
+ * <p>
+ * This valve must run after the target has been determined and before
+ * the session is accessed, i.e. before the session timeout, login and
+ * session validation valves.
+ * </p>
+ * <pre>
+ * session.stateless.screens = Health, api\..*
+ * session.stateless.paths = /api/.*, /robots\.txt
+ * </pre>
+ *
+ * @version $Id$
+ */
+public class DetermineStatelessValve
+    implements Valve
+{
+    /** Logging */
+    private static final Logger log = LogManager.getLogger(DetermineStatelessValve.class);
+
+    @TurbineConfiguration( TurbineConstants.SESSION_STATELESS_SCREENS_KEY )
+    private List<?> screens;
+
+    @TurbineConfiguration( TurbineConstants.SESSION_STATELESS_PATHS_KEY )
+    private List<?> paths;
+
+    /** Compiled screen patterns */
+    private Pattern[] screenPatterns = new Pattern[0];
+
+    /** Compiled path patterns */
+    private Pattern[] pathPatterns = new Pattern[0];
+
+    /**
+     * Compile the configured patterns.
+     *
+     * @see org.apache.turbine.pipeline.Valve#initialize()
+     */
+    @Override
+    public void initialize() throws Exception
+    {
+        screenPatterns = compile(screens);
+        pathPatterns = compile(paths);
+    }
+
+    /**
+     * @see org.apache.turbine.pipeline.Valve#invoke(PipelineData, ValveContext)
+     */
+    @Override
+    public void invoke(PipelineData pipelineData, ValveContext context)
+        throws IOException, TurbineException
+    {
+        RunData data = pipelineData.getRunData();
+
+        if (!data.isStateless() && isStateless(data))
+        {
+            log.debug("Serving request without a session");
+            data.setStateless(true);
+        }
+
+        // Pass control to the next Valve in the Pipeline
+        context.invokeNext(pipelineData);
+    }
+
+    /**
+     * Check whether a request can be served without a session.
+     *
+     * @param data the current request
+     * @return true if there is no session and the screen or path matches
+     */
+    protected boolean isStateless(RunData data)
+    {
+        if (screenPatterns.length == 0 && pathPatterns.length == 0)
+        {
+            return false;
+        }
+
+        HttpServletRequest request = data.getRequest();
+
+        if (request.getSession(false) != null)
+        {
+            return false;
+        }
+
+        if (matches(screenPatterns, data.getScreen())
+                || matches(screenPatterns, data.getTemplateInfo().getScreenTemplate()))
+        {
+            return true;
+        }
+
+        String path = StringUtils.removeStart(request.getRequestURI(), request.getContextPath());
+        return matches(pathPatterns, path);
+    }
+
+    /**
+     * Check a value against a list of patterns.
+     */
+    private static boolean matches(Pattern[] patterns, String value)
+    {
+        if (StringUtils.isNotEmpty(value))
+        {
+            for (Pattern pattern : patterns)
+            {
+                if (pattern.matcher(value).matches())
+                {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Compile a list of regular expressions.
+     */
+    private static Pattern[] compile(List<?> expressions)
+    {
+        List<Pattern> patterns = new ArrayList<>();
+
+        if (expressions != null)
+        {
+            for (Object expression : expressions)
+            {
+                String regex = StringUtils.trimToNull(String.valueOf(expression));
+
+                if (regex != null)
+                {
+                    patterns.add(Pattern.compile(regex));
+                }
+            }
+        }
+
+        return patterns.toArray(new Pattern[patterns.size()]);
+    }
+}
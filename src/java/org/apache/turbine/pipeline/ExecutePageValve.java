@@ -23,6 +23,8 @@ package org.apache.turbine.pipeline;
 
 import java.io.IOException;
 
+import javax.servlet.http.HttpServletResponse;
+
 import org.apache.turbine.TurbineConstants;
 import org.apache.turbine.annotation.TurbineConfiguration;
 import org.apache.turbine.annotation.TurbineLoader;
@@ -61,13 +63,17 @@ public class ExecutePageValve
     public void invoke(PipelineData pipelineData, ValveContext context)
         throws IOException, TurbineException
     {
-        try
-        {
-            executePage(pipelineData);
-        }
-        catch (Exception e)
+        // The ConditionalGetValve has answered with 304 Not Modified
+        if (pipelineData.getRunData().getStatusCode() != HttpServletResponse.SC_NOT_MODIFIED)
         {
-            throw new TurbineException(e);
+            try
+            {
+                executePage(pipelineData);
+            }
+            catch (Exception e)
+            {
+                throw new TurbineException(e);
+            }
         }
 
         // Pass control to the next Valve in the Pipeline
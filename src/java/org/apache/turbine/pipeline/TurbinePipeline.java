@@ -20,7 +20,8 @@ package org.apache.turbine.pipeline;
  */
 
 import java.io.IOException;
-import java.util.Iterator;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 import javax.xml.bind.annotation.XmlAccessType;
@@ -32,12 +33,19 @@ import javax.xml.bind.annotation.XmlRootElement;
 import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
 
 import org.apache.turbine.annotation.AnnotationProcessor;
+import org.apache.turbine.services.ServiceManager;
+import org.apache.turbine.services.TurbineServices;
+import org.apache.turbine.services.metrics.PipelineMetricsService;
 import org.apache.turbine.util.TurbineException;
 
 /**
  * Flexible implementation of a {@link org.apache.turbine.pipeline.Pipeline}.
  * Originally based on code from Catalina and ideas from Apache httpd.
  *
+ * <p>Since Turbine 5.2 the pipeline does not implement
+ * {@link ValveContext} itself. Each invocation creates its own context,
+ * which is passed to the valves.</p>
+ *
  * @author <a href="mailto:dlr@finemaltcoding.com">Daniel Rall</a>
  * @author <a href="mailto:jvanzyl@zenplex.com">Jason van Zyl</a>
  * @author <a href="mailto:peter@courcoux.biz">Peter Courcoux</a>
@@ -45,7 +53,7 @@ import org.apache.turbine.util.TurbineException;
 @XmlRootElement(name="pipeline")
 @XmlAccessorType(XmlAccessType.NONE)
 public class TurbinePipeline
-        implements Pipeline, ValveContext
+        implements Pipeline
 {
     /**
      * The "Turbine Classic" pipeline.
@@ -65,9 +73,21 @@ public class TurbinePipeline
     private CopyOnWriteArrayList<Valve> valves = new CopyOnWriteArrayList<>();
 
     /**
-     * The per-thread execution state for processing through this pipeline.
+     * Immutable snapshot of the valves used for request dispatch. Rebuilt
+     * whenever the set of valves changes.
      */
-    private ThreadLocal<Iterator<Valve>> state = new ThreadLocal<>();
+    private volatile Valve[] compiled = new Valve[0];
+
+    /**
+     * Whether per-valve statistics are recorded
+     */
+    private boolean statisticsEnabled = false;
+
+    /**
+     * The statistics of the valves, in dispatch order. Null if statistics
+     * are disabled.
+     */
+    private volatile ValveStatistics[] statistics = null;
 
     /**
      * @see org.apache.turbine.pipeline.Pipeline#initialize()
@@ -85,6 +105,91 @@ public class TurbinePipeline
             AnnotationProcessor.process(v);
             v.initialize();
         }
+
+        ServiceManager serviceManager = TurbineServices.getInstance();
+        if (serviceManager.isRegistered(PipelineMetricsService.SERVICE_NAME))
+        {
+            PipelineMetricsService metrics = (PipelineMetricsService)
+                    serviceManager.getService(PipelineMetricsService.SERVICE_NAME);
+
+            if (metrics.isEnabled())
+            {
+                setStatisticsEnabled(true);
+                metrics.register(this);
+            }
+        }
+
+        compile();
+    }
+
+    /**
+     * Snapshot the current set of valves into the array used for
+     * request dispatch.
+     */
+    private synchronized void compile()
+    {
+        Valve[] snapshot = valves.toArray(new Valve[0]);
+
+        if (statisticsEnabled)
+        {
+            ValveStatistics[] stats = new ValveStatistics[snapshot.length];
+            Map<String, Integer> names = new HashMap<>();
+
+            for (int i = 0; i < snapshot.length; i++)
+            {
+                String valveName = snapshot[i].getClass().getSimpleName();
+                int count = names.merge(valveName, Integer.valueOf(1), Integer::sum).intValue();
+                if (count > 1)
+                {
+                    valveName = valveName + "#" + count;
+                }
+
+                stats[i] = new ValveStatistics(valveName, snapshot[i]);
+            }
+
+            statistics = stats;
+        }
+        else
+        {
+            statistics = null;
+        }
+
+        compiled = snapshot;
+    }
+
+    /**
+     * Enable or disable recording of per-valve statistics. While disabled,
+     * request dispatch does not incur any measurement overhead.
+     *
+     * @param enabled true if statistics should be recorded
+     */
+    public synchronized void setStatisticsEnabled(boolean enabled)
+    {
+        if (statisticsEnabled != enabled)
+        {
+            statisticsEnabled = enabled;
+            compile();
+        }
+    }
+
+    /**
+     * @return true if per-valve statistics are recorded
+     */
+    public synchronized boolean isStatisticsEnabled()
+    {
+        return statisticsEnabled;
+    }
+
+    /**
+     * Get the statistics of the valves of this pipeline
+     *
+     * @return the statistics in valve order, an empty array if
+     *         statistics are disabled
+     */
+    public ValveStatistics[] getValveStatistics()
+    {
+        ValveStatistics[] stats = statistics;
+        return stats == null ? new ValveStatistics[0] : stats.clone();
     }
 
     /**
@@ -116,6 +221,7 @@ public class TurbinePipeline
     {
         // Add this Valve to the end of the set associated with this Pipeline
         valves.add(valve);
+        compile();
     }
 
     /**
@@ -138,6 +244,7 @@ public class TurbinePipeline
     protected void setValves(Valve[] valves)
     {
         this.valves = new CopyOnWriteArrayList<>(valves);
+        compile();
     }
 
     /**
@@ -147,6 +254,7 @@ public class TurbinePipeline
     public void removeValve(Valve valve)
     {
         valves.remove(valve);
+        compile();
     }
 
     /**
@@ -156,28 +264,124 @@ public class TurbinePipeline
     public void invoke(PipelineData pipelineData)
             throws TurbineException, IOException
     {
-        // Initialize the per-thread state for this thread
-        state.set(valves.iterator());
+        // The execution state lives in the context of this invocation,
+        // so the pipeline may be re-entered from the same thread and a
+        // request may continue on a different thread.
+        ValveStatistics[] stats = statistics;
 
-        // Invoke the first Valve in this pipeline for this request
-        invokeNext(pipelineData);
+        if (stats == null)
+        {
+            new Invocation(compiled).invokeNext(pipelineData);
+        }
+        else
+        {
+            new MeasuredInvocation(stats).invokeNext(pipelineData);
+        }
     }
 
     /**
-     * @see org.apache.turbine.pipeline.ValveContext#invokeNext(PipelineData)
+     * The execution state for processing a single request through this
+     * pipeline.
      */
-    @Override
-    public void invokeNext(PipelineData pipelineData)
-            throws TurbineException, IOException
+    private static final class Invocation implements ValveContext
+    {
+        /** The valves to invoke */
+        private final Valve[] valves;
+
+        /** Index of the next valve to invoke */
+        private int cursor = 0;
+
+        /**
+         * Constructor
+         *
+         * @param valves the valves to invoke
+         */
+        Invocation(Valve[] valves)
+        {
+            this.valves = valves;
+        }
+
+        /**
+         * @see org.apache.turbine.pipeline.ValveContext#invokeNext(PipelineData)
+         */
+        @Override
+        public void invokeNext(PipelineData pipelineData)
+                throws TurbineException, IOException
+        {
+            if (cursor < valves.length)
+            {
+                // Invoke the requested Valve for the current request
+                // and advance the cursor.
+                valves[cursor++].invoke(pipelineData, this);
+            }
+        }
+    }
+
+    /**
+     * The execution state for processing a single request through this
+     * pipeline while recording valve statistics.
+     */
+    private static final class MeasuredInvocation implements ValveContext
     {
-        // Identify the current valve for the current request thread
-        Iterator<Valve> current = state.get();
+        /** The valves to invoke along with their statistics */
+        private final ValveStatistics[] statistics;
 
-        if (current.hasNext())
+        /** Index of the next valve to invoke */
+        private int cursor = 0;
+
+        /** Time spent in the valves invoked by the current valve */
+        private long nested = 0;
+
+        /** The last error which occurred in this invocation */
+        private Throwable failure = null;
+
+        /**
+         * Constructor
+         *
+         * @param statistics the valves to invoke along with their statistics
+         */
+        MeasuredInvocation(ValveStatistics[] statistics)
         {
-            // Invoke the requested Valve for the current request
-            // thread and increment its thread-local state.
-            current.next().invoke(pipelineData, this);
+            this.statistics = statistics;
+        }
+
+        /**
+         * @see org.apache.turbine.pipeline.ValveContext#invokeNext(PipelineData)
+         */
+        @Override
+        public void invokeNext(PipelineData pipelineData)
+                throws TurbineException, IOException
+        {
+            if (cursor < statistics.length)
+            {
+                ValveStatistics stats = statistics[cursor++];
+                long outerNested = nested;
+                boolean failed = false;
+
+                nested = 0;
+                long start = System.nanoTime();
+
+                try
+                {
+                    stats.getValve().invoke(pipelineData, this);
+                }
+                catch (Throwable t)
+                {
+                    // Count the error only for the valve it originated from
+                    failed = t != failure;
+                    failure = t;
+                    throw t;
+                }
+                finally
+                {
+                    long elapsed = System.nanoTime() - start;
+
+                    // Record the time of this valve only, then account
+                    // the whole elapsed time to the calling valve.
+                    stats.record(elapsed - nested, failed);
+                    nested = outerNested + elapsed;
+                }
+            }
         }
     }
 }
@@ -0,0 +1,159 @@
+package org.apache.turbine.pipeline;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.turbine.util.LatencyHistogram;
+
+/**
+ * Invocation statistics of a single {@link Valve} in a
+ * {@link TurbinePipeline}. The recorded time is the time spent in the
+ * valve itself, excluding the time spent in the valves invoked after it.
+ */
+public class ValveStatistics
+{
+    /** The name of the valve */
+    private final String name;
+
+    /** The valve */
+    private final Valve valve;
+
+    /** The latency histogram */
+    private final LatencyHistogram histogram = new LatencyHistogram();
+
+    /** The number of failed invocations */
+    private final LongAdder errors = new LongAdder();
+
+    /**
+     * Constructor
+     *
+     * @param name the name of the valve
+     * @param valve the valve
+     */
+    public ValveStatistics(String name, Valve valve)
+    {
+        this.name = name;
+        this.valve = valve;
+    }
+
+    /**
+     * Record a successful or failed invocation
+     *
+     * @param nanos the time spent in the valve in nanoseconds
+     * @param failed true if the valve threw an exception
+     */
+    void record(long nanos, boolean failed)
+    {
+        histogram.record(nanos);
+        if (failed)
+        {
+            errors.increment();
+        }
+    }
+
+    /**
+     * @return the name of the valve
+     */
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * @return the valve
+     */
+    public Valve getValve()
+    {
+        return valve;
+    }
+
+    /**
+     * @return the number of invocations
+     */
+    public long getCount()
+    {
+        return histogram.getCount();
+    }
+
+    /**
+     * @return the number of invocations which threw an exception
+     */
+    public long getErrorCount()
+    {
+        return errors.sum();
+    }
+
+    /**
+     * @return the total time spent in the valve in nanoseconds
+     */
+    public long getTotalTime()
+    {
+        return histogram.getTotal();
+    }
+
+    /**
+     * @return the mean time spent in the valve in nanoseconds
+     */
+    public double getMeanTime()
+    {
+        return histogram.getMean();
+    }
+
+    /**
+     * @return the maximum time spent in the valve in nanoseconds
+     */
+    public long getMaxTime()
+    {
+        return histogram.getMax();
+    }
+
+    /**
+     * Get an approximation of a latency percentile
+     *
+     * @param percentile the percentile, between 0.0 and 100.0
+     * @return the time in nanoseconds
+     */
+    public long getPercentile(double percentile)
+    {
+        return histogram.getPercentile(percentile);
+    }
+
+    /**
+     * Clear all statistics
+     */
+    public void reset()
+    {
+        histogram.reset();
+        errors.reset();
+    }
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString()
+    {
+        return String.format("%s: count=%d, errors=%d, mean=%.0fns, p50=%dns, p99=%dns, max=%dns",
+                name, getCount(), getErrorCount(), getMeanTime(),
+                getPercentile(50), getPercentile(99), getMaxTime());
+    }
+}
@@ -24,15 +24,19 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.commons.configuration2.Configuration;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.apache.turbine.annotation.AnnotationProcessor;
 
 /**
  * A generic implementation of a <code>ServiceBroker</code> which
@@ -91,6 +95,24 @@ public abstract class BaseServiceBroker implements ServiceBroker
      */
     public static final String CLASSNAME_SUFFIX = ".classname";
 
+    /**
+     * If set to true, services with early initialization are started
+     * concurrently, respecting their dependencies.
+     */
+    public static final String STARTUP_PARALLEL_KEY = "services.startup.parallel";
+
+    /**
+     * The maximum number of services started concurrently. Defaults to
+     * the number of available processors.
+     */
+    public static final String STARTUP_THREADS_KEY = "services.startup.threads";
+
+    /**
+     * A <code>Service</code> property listing the services it needs
+     * to be initialized before itself in a parallel startup.
+     */
+    public static final String DEPENDENCIES_KEY = "dependencies";
+
     /**
      * These are objects that the parent application
      * can provide so that application specific
@@ -118,6 +140,22 @@ public abstract class BaseServiceBroker implements ServiceBroker
      */
     private final ConcurrentHashMap<String, Service> serviceProviderInstanceMap = new ConcurrentHashMap<>();
 
+    /**
+     * Non-local services already resolved through a TurbineServiceProvider
+     */
+    private final ConcurrentHashMap<String, Object> nonLocalServices = new ConcurrentHashMap<>();
+
+    /**
+     * Incremented whenever resolved service references may have become
+     * stale, see {@link ServiceHandle}
+     */
+    private final AtomicInteger generation = new AtomicInteger();
+
+    /**
+     * Initialization time in milliseconds of the early services
+     */
+    private final Map<String, Long> startupTimes = new ConcurrentHashMap<>();
+
     /**
      * Default constructor, protected as to only be usable by subclasses.
      *
@@ -302,6 +340,8 @@ public abstract class BaseServiceBroker implements ServiceBroker
         {
             configuration.setProperty(entry.getKey(), entry.getValue());
         }
+
+        invalidateServiceCache();
     }
 
     /**
@@ -365,6 +405,11 @@ public abstract class BaseServiceBroker implements ServiceBroker
         {
             // this call might result in an indirect recursion
             instance.init();
+
+            if (instance instanceof TurbineServiceProvider)
+            {
+                invalidateServiceCache();
+            }
         }
     }
 
@@ -399,7 +444,13 @@ public abstract class BaseServiceBroker implements ServiceBroker
     public void initServices(boolean report)
             throws InstantiationException, InitializationException
     {
-        if (report)
+        long start = System.nanoTime();
+
+        if (configuration != null && configuration.getBoolean(STARTUP_PARALLEL_KEY, false))
+        {
+            initServicesParallel(report);
+        }
+        else if (report)
         {
             // Throw exceptions
             for (Iterator<String> names = getServiceNames(); names.hasNext();)
@@ -424,9 +475,155 @@ public abstract class BaseServiceBroker implements ServiceBroker
                 }
             }
         }
+
+        logStartupTimes(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
         log.info("Finished initializing all services!");
     }
 
+    /**
+     * Initializes all services with early initialization concurrently.
+     * A service is started after the services it depends on, which are
+     * taken from its <code>dependencies</code> property and from its
+     * fields and methods annotated with
+     * {@link org.apache.turbine.annotation.TurbineService}. Service
+     * providers are started before all other services.
+     *
+     * @param report <code>true</code> if you want exceptions thrown.
+     * @throws InitializationException if a service could not be initialized
+     */
+    private void initServicesParallel(boolean report)
+            throws InitializationException
+    {
+        Set<String> names = new LinkedHashSet<>();
+        Set<String> providers = new LinkedHashSet<>();
+
+        for (Iterator<String> it = getServiceNames(); it.hasNext();)
+        {
+            String name = it.next();
+
+            if (getConfiguration(name).getBoolean("earlyInit", false))
+            {
+                names.add(name);
+
+                if (TurbineServiceProvider.class.isAssignableFrom(mapping.get(name)))
+                {
+                    providers.add(name);
+                }
+            }
+        }
+
+        Map<String, Set<String>> dependencies = new LinkedHashMap<>();
+
+        for (String name : names)
+        {
+            Set<String> depends = new LinkedHashSet<>();
+
+            for (String dependency : getConfiguration(name).getStringArray(DEPENDENCIES_KEY))
+            {
+                depends.add(dependency.trim());
+            }
+
+            try
+            {
+                depends.addAll(AnnotationProcessor.getServiceNames(mapping.get(name)));
+            }
+            catch (RuntimeException e)
+            {
+                log.debug("Could not determine annotated dependencies of service {}", name, e);
+            }
+
+            // non-local services may be looked up at any time
+            if (!providers.contains(name))
+            {
+                depends.addAll(providers);
+            }
+
+            depends.retainAll(names);
+            depends.remove(name);
+            dependencies.put(name, depends);
+
+            log.debug("Service {} depends on {}", name, depends);
+        }
+
+        int threads = configuration.getInt(STARTUP_THREADS_KEY,
+                Runtime.getRuntime().availableProcessors());
+
+        new ServiceStartup(this, dependencies).run(threads, report);
+    }
+
+    /**
+     * Initializes a service and records the time it took. This is
+     * used by the parallel startup and does not lock the broker.
+     *
+     * @param name The name of the service.
+     * @throws InstantiationException if the service could not be instantiated
+     * @throws InitializationException if the service could not be initialized
+     */
+    void startService(String name)
+            throws InstantiationException, InitializationException
+    {
+        long start = System.nanoTime();
+        Service service = getServiceInstance(name);
+
+        synchronized (service.getClass())
+        {
+            if (!service.getInit())
+            {
+                service.init();
+
+                if (service instanceof TurbineServiceProvider)
+                {
+                    invalidateServiceCache();
+                }
+            }
+        }
+
+        startupTimes.put(name, Long.valueOf(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+    }
+
+    /**
+     * Log the initialization times of the early services, slowest first.
+     *
+     * @param total the total time of the startup in milliseconds
+     */
+    private void logStartupTimes(long total)
+    {
+        if (log.isInfoEnabled() && !startupTimes.isEmpty())
+        {
+            StringBuilder sb = new StringBuilder();
+
+            for (Map.Entry<String, Long> entry : getStartupTimes().entrySet())
+            {
+                sb.append("\n  ").append(entry.getKey()).append(": ")
+                    .append(entry.getValue()).append(" ms");
+            }
+
+            log.info("Initialized {} services in {} ms:{}", Integer.valueOf(startupTimes.size()),
+                    Long.valueOf(total), sb);
+        }
+    }
+
+    /**
+     * Returns the time it took to initialize each early service, in
+     * milliseconds, slowest first. In a sequential startup, the time
+     * of a service includes the services it initialized itself.
+     *
+     * @return a map of service names to initialization times
+     */
+    public Map<String, Long> getStartupTimes()
+    {
+        List<Map.Entry<String, Long>> entries = new ArrayList<>(startupTimes.entrySet());
+        entries.sort(Map.Entry.<String, Long>comparingByValue().reversed());
+
+        Map<String, Long> times = new LinkedHashMap<>();
+        for (Map.Entry<String, Long> entry : entries)
+        {
+            times.put(entry.getKey(), entry.getValue());
+        }
+
+        return times;
+    }
+
     /**
      * Internal utility method for use in {@link #initServices(boolean)}
      * to prevent duplication of code.
@@ -438,7 +635,9 @@ public abstract class BaseServiceBroker implements ServiceBroker
         if (getConfiguration(name).getBoolean("earlyInit", false))
         {
             log.info("Start Initializing service (early): {}", name);
+            long start = System.nanoTime();
             initService(name);
+            startupTimes.put(name, Long.valueOf(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
             log.info("Finish Initializing service (early): {}", name);
         }
     }
@@ -467,6 +666,8 @@ public abstract class BaseServiceBroker implements ServiceBroker
                     // but could've been overriden poorly.
                     ((BaseService) service).setInit(false);
                 }
+
+                invalidateServiceCache();
             }
         }
         catch (InstantiationException e)
@@ -512,7 +713,9 @@ public abstract class BaseServiceBroker implements ServiceBroker
     }
 
     /**
-     * Returns an instance of requested Service.
+     * Returns an instance of requested Service. Services provided by a
+     * TurbineServiceProvider are cached after the first lookup until
+     * a service is shut down or a provider is initialized.
      *
      * @param name The name of the Service requested.
      * @return An instance of requested Service.
@@ -522,13 +725,11 @@ public abstract class BaseServiceBroker implements ServiceBroker
     @Override
     public Object getService(String name) throws InstantiationException
     {
-        Service service;
-
         if (this.isLocalService(name))
         {
 	        try
 	        {
-	            service = getServiceInstance(name);
+	            Service service = getServiceInstance(name);
 	            if (!service.getInit())
 	            {
 	                synchronized (service.getClass())
@@ -558,16 +759,41 @@ public abstract class BaseServiceBroker implements ServiceBroker
 	                    " failed to initialize", e);
 	        }
         }
-        else if (this.isNonLocalService(name))
-        {
-            return this.getNonLocalService(name);
-        }
-        else
+
+        // non-local services are looked up in the providers only once
+        Object service = nonLocalServices.get(name);
+
+        if (service == null)
         {
-            throw new InstantiationException(
-                "ServiceBroker: unknown service " + name
-                + " requested");
+            if (!this.isNonLocalService(name))
+            {
+                throw new InstantiationException(
+                    "ServiceBroker: unknown service " + name
+                    + " requested");
+            }
+
+            // Only cache the service if the cache has not been invalidated
+            // while it was resolved, otherwise a stale reference would
+            // survive the invalidation.
+            int resolvedGeneration = generation.get();
+            service = this.getNonLocalService(name);
+
+            if (generation.get() == resolvedGeneration)
+            {
+                Object previous = nonLocalServices.putIfAbsent(name, service);
+                if (previous != null)
+                {
+                    service = previous;
+                }
+                else if (generation.get() != resolvedGeneration)
+                {
+                    // invalidated concurrently, after the check above
+                    nonLocalServices.remove(name, service);
+                }
+            }
         }
+
+        return service;
     }
 
     /**
@@ -674,6 +900,32 @@ public abstract class BaseServiceBroker implements ServiceBroker
         return service;
     }
 
+    /**
+     * Drops all resolved non-local services and invalidates the
+     * references held by {@link ServiceHandle}s. This is called whenever
+     * a service is shut down or a service provider is initialized.
+     */
+    protected void invalidateServiceCache()
+    {
+        // The generation changes before and after clearing, so a service
+        // resolved concurrently is either cleared or recognized as stale
+        // by getService() and by the service handles.
+        generation.incrementAndGet();
+        nonLocalServices.clear();
+        generation.incrementAndGet();
+    }
+
+    /**
+     * Returns the current generation of resolved service references.
+     * It changes whenever {@link #invalidateServiceCache()} is called.
+     *
+     * @return the generation counter
+     */
+    int getGeneration()
+    {
+        return generation.get();
+    }
+
     /**
      * Returns the configuration for the specified service.
      *
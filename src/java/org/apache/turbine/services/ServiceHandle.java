@@ -0,0 +1,150 @@
+package org.apache.turbine.services;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+/**
+ * A typed reference to a service which can be kept in a field. The
+ * service is looked up by name on first use and then returned directly
+ * until the service manager is replaced or the broker invalidates its
+ * resolved services, e.g. because a service was shut down.
+ * <p>
+ * Usage:
+ * </p>
+ * <pre>
+ * private static final ServiceHandle&lt;PoolService&gt; POOL =
+ *     ServiceHandle.of(PoolService.class, PoolService.ROLE);
+ *
+ * PoolService pool = POOL.get();
+ * </pre>
+ *
+ * @param <T> the type of the service
+ * @version $Id$
+ */
+public final class ServiceHandle<T>
+{
+    /** The service type */
+    private final Class<T> type;
+
+    /** The service name or role */
+    private final String name;
+
+    /** The current binding, replaced as a whole */
+    private volatile Binding<T> binding;
+
+    /**
+     * A resolved service together with the state of the manager
+     * it was resolved from
+     */
+    private static final class Binding<T>
+    {
+        final ServiceManager manager;
+        final int generation;
+        final T service;
+
+        Binding(ServiceManager manager, int generation, T service)
+        {
+            this.manager = manager;
+            this.generation = generation;
+            this.service = service;
+        }
+    }
+
+    /**
+     * Create a handle.
+     *
+     * @param type the service type
+     * @param name the service name or role
+     */
+    private ServiceHandle(Class<T> type, String name)
+    {
+        this.type = type;
+        this.name = name;
+    }
+
+    /**
+     * Create a handle for a service. No lookup is done until
+     * {@link #get()} is called.
+     *
+     * @param <T> the type of the service
+     * @param type the service type
+     * @param name the service name or role
+     *
+     * @return a new handle
+     */
+    public static <T> ServiceHandle<T> of(Class<T> type, String name)
+    {
+        return new ServiceHandle<>(type, name);
+    }
+
+    /**
+     * Get the service, resolving it through
+     * {@link TurbineServices#getInstance()} if necessary.
+     *
+     * @return the service instance
+     * @throws InstantiationException if the service is unknown or
+     * can't be initialized.
+     */
+    public T get() throws InstantiationException
+    {
+        ServiceManager manager = TurbineServices.getInstance();
+        Binding<T> current = binding;
+
+        if (current != null && current.manager == manager
+                && current.generation >= 0
+                && current.generation == generationOf(manager))
+        {
+            return current.service;
+        }
+
+        // read the generation first, so a concurrent invalidation
+        // leads to another lookup next time
+        int generation = generationOf(manager);
+        T service = type.cast(manager.getService(name));
+        binding = new Binding<>(manager, generation, service);
+
+        return service;
+    }
+
+    /**
+     * Get the service name
+     *
+     * @return the service name or role
+     */
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * Get the generation of the given manager. Managers which are no
+     * {@link BaseServiceBroker} are never cached.
+     */
+    private static int generationOf(ServiceManager manager)
+    {
+        if (manager instanceof BaseServiceBroker)
+        {
+            return ((BaseServiceBroker) manager).getGeneration();
+        }
+
+        return -1;
+    }
+}
@@ -0,0 +1,201 @@
+package org.apache.turbine.services;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Initializes a set of services on a bounded thread pool. Each service
+ * is started as soon as all services it depends on have been started,
+ * so independent services are initialized concurrently.
+ *
+ * @version $Id$
+ */
+final class ServiceStartup
+{
+    /** Logging */
+    private static final Logger log = LogManager.getLogger(ServiceStartup.class);
+
+    /** The broker which owns the services */
+    private final BaseServiceBroker broker;
+
+    /** Service names in configuration order, mapped to their dependencies */
+    private final Map<String, Set<String>> dependencies;
+
+    /** The scheduled start of each service */
+    private final Map<String, CompletableFuture<Void>> futures = new HashMap<>();
+
+    /** Failed services and their exceptions */
+    private final Map<String, Throwable> failures = new ConcurrentHashMap<>();
+
+    /**
+     * Create a startup plan.
+     *
+     * @param broker the broker which owns the services
+     * @param dependencies the services to start in configuration order,
+     *        mapped to the names of the services they depend on
+     */
+    ServiceStartup(BaseServiceBroker broker, Map<String, Set<String>> dependencies)
+    {
+        this.broker = broker;
+        this.dependencies = dependencies;
+    }
+
+    /**
+     * Start all services and wait until they are initialized. Services
+     * whose dependencies failed are started anyway, like in the
+     * sequential startup.
+     *
+     * @param threads the maximum number of concurrent initializations
+     * @param report true if the first failure should be thrown
+     *
+     * @throws InitializationException if report is true and a service
+     *         failed to initialize
+     */
+    void run(int threads, boolean report) throws InitializationException
+    {
+        AtomicInteger count = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads), runnable -> {
+            Thread thread = new Thread(runnable, "TurbineServices-startup-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try
+        {
+            for (String name : dependencies.keySet())
+            {
+                schedule(name, new HashSet<>(), executor);
+            }
+
+            for (String name : dependencies.keySet())
+            {
+                futures.get(name).join();
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+
+        if (report)
+        {
+            for (String name : dependencies.keySet())
+            {
+                Throwable failure = failures.get(name);
+
+                if (failure instanceof InitializationException)
+                {
+                    throw (InitializationException) failure;
+                }
+                else if (failure instanceof RuntimeException)
+                {
+                    throw (RuntimeException) failure;
+                }
+                else if (failure != null)
+                {
+                    throw new InitializationException("Service " + name + " failed to initialize", failure);
+                }
+            }
+        }
+    }
+
+    /**
+     * Schedule the start of a service after its dependencies.
+     *
+     * @param name the service name
+     * @param path the services which are currently being scheduled,
+     *        used to detect circular dependencies
+     * @param executor the executor to run the initialization on
+     *
+     * @return the future of the service start
+     */
+    private CompletableFuture<Void> schedule(String name, Set<String> path, ExecutorService executor)
+    {
+        CompletableFuture<Void> future = futures.get(name);
+
+        if (future == null)
+        {
+            path.add(name);
+
+            List<CompletableFuture<Void>> before = new ArrayList<>();
+            for (String dependency : dependencies.get(name))
+            {
+                if (path.contains(dependency))
+                {
+                    log.warn("Ignoring circular dependency of service {} on {}", name, dependency);
+                }
+                else
+                {
+                    before.add(schedule(dependency, path, executor));
+                }
+            }
+
+            path.remove(name);
+
+            future = CompletableFuture.allOf(before.toArray(new CompletableFuture<?>[0]))
+                    .thenRunAsync(() -> start(name), executor);
+            futures.put(name, future);
+        }
+
+        return future;
+    }
+
+    /**
+     * Start a single service, recording any failure.
+     *
+     * @param name the service name
+     */
+    private void start(String name)
+    {
+        try
+        {
+            log.info("Start Initializing service (parallel): {}", name);
+            broker.startService(name);
+            log.info("Finish Initializing service (parallel): {}", name);
+        }
+        catch (ThreadDeath | OutOfMemoryError e)
+        {
+            throw e;
+        }
+        catch (Throwable e)
+        {
+            // In case of an exception, file an error message; the
+            // system may be still functional, though.
+            log.error("Service {} failed to initialize", name, e);
+            failures.put(name, e);
+        }
+    }
+}
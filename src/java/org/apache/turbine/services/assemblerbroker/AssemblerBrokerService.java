@@ -65,6 +65,33 @@ public interface AssemblerBrokerService
      */
     <T extends Assembler> T getAssembler(Class<T> type, String name) throws TurbineException;
 
+    /**
+     * Checks whether an Assembler of a type with a given name exists,
+     * without necessarily loading it.
+     *
+     * <p>
+     * The default implementation loads the Assembler.
+     * </p>
+     *
+     * @param type The Type of the Assembler
+     * @param name The Name of the Assembler
+     *
+     * @param <T> the type of the assembler
+     *
+     * @return true if one of the registered factories provides the Assembler
+     */
+    default <T extends Assembler> boolean hasAssembler(Class<T> type, String name)
+    {
+        try
+        {
+            return getAssembler(type, name) != null;
+        }
+        catch (TurbineException e)
+        {
+            return false;
+        }
+    }
+
     /**
      * Get a Loader for the given assembler type
      *
@@ -0,0 +1,235 @@
+package org.apache.turbine.services.assemblerbroker;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.turbine.modules.Assembler;
+import org.apache.turbine.util.LRUCache;
+
+/**
+ * The cache of the assemblers of one type, keyed by name.  If a
+ * maximum size is given, the least recently used assemblers are evicted
+ * beyond that size.  The cache counts hits, misses and the loads of
+ * assemblers with their duration.
+ *
+ * @version $Id$
+ */
+public final class AssemblerCache
+{
+    /** The assemblers if the cache is unbounded */
+    private final ConcurrentMap<String, Assembler> assemblers;
+
+    /** The assemblers if the cache is bounded */
+    private final LRUCache<String, Assembler> boundedAssemblers;
+
+    /** Cache hits */
+    private final LongAdder hits = new LongAdder();
+
+    /** Cache misses */
+    private final LongAdder misses = new LongAdder();
+
+    /** Number of loaded assemblers */
+    private final LongAdder loads = new LongAdder();
+
+    /** Total time spent loading assemblers in nanoseconds */
+    private final LongAdder loadTime = new LongAdder();
+
+    /**
+     * Constructor
+     *
+     * @param initialCapacity the initial capacity of an unbounded cache
+     * @param maxSize the maximum number of assemblers, 0 for no limit
+     */
+    AssemblerCache(int initialCapacity, int maxSize)
+    {
+        if (maxSize > 0)
+        {
+            this.assemblers = null;
+            this.boundedAssemblers = new LRUCache<>(maxSize);
+        }
+        else
+        {
+            this.assemblers = new ConcurrentHashMap<>(initialCapacity);
+            this.boundedAssemblers = null;
+        }
+    }
+
+    /**
+     * Get a cached assembler and count the lookup
+     *
+     * @param name the name of the assembler
+     * @return the assembler or null if it is not cached
+     */
+    Assembler get(String name)
+    {
+        Assembler assembler = assemblers != null
+                ? assemblers.get(name) : boundedAssemblers.get(name);
+
+        if (assembler == null)
+        {
+            misses.increment();
+        }
+        else
+        {
+            hits.increment();
+        }
+
+        return assembler;
+    }
+
+    /**
+     * Check whether an assembler is cached, without counting the lookup
+     *
+     * @param name the name of the assembler
+     * @return true if the assembler is cached
+     */
+    boolean contains(String name)
+    {
+        return assemblers != null
+                ? assemblers.containsKey(name) : boundedAssemblers.get(name) != null;
+    }
+
+    /**
+     * Cache an assembler unless another thread has cached one with the
+     * same name in the meantime.
+     *
+     * @param name the name of the assembler
+     * @param assembler the assembler
+     * @return the cached assembler
+     */
+    Assembler putIfAbsent(String name, Assembler assembler)
+    {
+        Assembler oldAssembler = assemblers != null
+                ? assemblers.putIfAbsent(name, assembler)
+                : boundedAssemblers.putIfAbsent(name, assembler);
+
+        return oldAssembler != null ? oldAssembler : assembler;
+    }
+
+    /**
+     * Count the load of an assembler
+     *
+     * @param nanos the duration of the load in nanoseconds
+     */
+    void recordLoad(long nanos)
+    {
+        loads.increment();
+        loadTime.add(nanos);
+    }
+
+    /**
+     * Remove all assemblers from the cache.  The statistics are kept.
+     */
+    public void clear()
+    {
+        if (assemblers != null)
+        {
+            assemblers.clear();
+        }
+        else
+        {
+            boundedAssemblers.clear();
+        }
+    }
+
+    /**
+     * @return the number of cached assemblers
+     */
+    public int getSize()
+    {
+        return assemblers != null ? assemblers.size() : boundedAssemblers.size();
+    }
+
+    /**
+     * @return the maximum number of assemblers, 0 if unbounded
+     */
+    public int getMaxSize()
+    {
+        return assemblers != null ? 0 : boundedAssemblers.getMaxSize();
+    }
+
+    /**
+     * @return the number of cache hits
+     */
+    public long getHitCount()
+    {
+        return hits.sum();
+    }
+
+    /**
+     * @return the number of cache misses
+     */
+    public long getMissCount()
+    {
+        return misses.sum();
+    }
+
+    /**
+     * @return the ratio of hits to all lookups, 0.0 if there were none
+     */
+    public double getHitRatio()
+    {
+        long h = getHitCount();
+        long total = h + getMissCount();
+        return total == 0 ? 0.0 : (double) h / total;
+    }
+
+    /**
+     * @return the number of assemblers evicted because of the size limit
+     */
+    public long getEvictionCount()
+    {
+        return assemblers != null ? 0 : boundedAssemblers.getEvictionCount();
+    }
+
+    /**
+     * @return the number of assemblers loaded from the factories
+     */
+    public long getLoadCount()
+    {
+        return loads.sum();
+    }
+
+    /**
+     * @return the total time spent loading assemblers in milliseconds
+     */
+    public long getTotalLoadTime()
+    {
+        return TimeUnit.NANOSECONDS.toMillis(loadTime.sum());
+    }
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString()
+    {
+        return String.format("AssemblerCache[size=%d, maxSize=%d, hits=%d, misses=%d, "
+                + "evictions=%d, loads=%d, loadTime=%dms]",
+                getSize(), getMaxSize(), getHitCount(), getMissCount(),
+                getEvictionCount(), getLoadCount(), getTotalLoadTime());
+    }
+}
@@ -22,6 +22,7 @@ package org.apache.turbine.services.assemblerbroker;
 
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -63,8 +64,8 @@ public class TurbineAssemblerBrokerService
     /** A structure that holds the registered AssemblerFactories */
     private Map<Class<?>, List<?>> factories = null;
 
-    /** A cache that holds the generated Assemblers */
-    private ConcurrentMap<String, Assembler> assemblerCache = null;
+    /** The caches of the generated Assemblers by type */
+    private ConcurrentMap<Class<?>, AssemblerCache> assemblerCaches = null;
 
     /** A cache that holds the Loaders */
     private ConcurrentMap<Class<?>, Loader<? extends Assembler>> loaderCache = null;
@@ -72,6 +73,12 @@ public class TurbineAssemblerBrokerService
     /** Caching on/off */
     private boolean isCaching;
 
+    /** The initial capacity of the assembler caches */
+    private int cacheSize;
+
+    /** The maximum size of each assembler cache, 0 for no limit */
+    private int cacheMaxSize;
+
     /**
      * Get a list of AssemblerFactories of a certain type
      *
@@ -165,19 +172,44 @@ public class TurbineAssemblerBrokerService
             .getBoolean(TurbineConstants.MODULE_CACHE_KEY,
                         TurbineConstants.MODULE_CACHE_DEFAULT);
 
+        cacheSize = Turbine.getConfiguration()
+            .getInt(TurbineConstants.MODULE_CACHE_SIZE_KEY,
+                    TurbineConstants.MODULE_CACHE_SIZE_DEFAULT);
+        cacheMaxSize = Turbine.getConfiguration()
+            .getInt(TurbineConstants.MODULE_CACHE_MAX_SIZE_KEY,
+                    TurbineConstants.MODULE_CACHE_MAX_SIZE_DEFAULT);
+
+        // The caches also keep the load statistics if caching is off
+        assemblerCaches = new ConcurrentHashMap<>();
+
         if (isCaching)
         {
-            int cacheSize = Turbine.getConfiguration()
-                .getInt(TurbineConstants.MODULE_CACHE_SIZE_KEY,
-                        TurbineConstants.MODULE_CACHE_SIZE_DEFAULT);
-
-            assemblerCache = new ConcurrentHashMap<>(cacheSize);
             loaderCache = new ConcurrentHashMap<>(cacheSize);
         }
 
         setInit(true);
     }
 
+    /**
+     * Shuts down the registered factories.
+     */
+    @Override
+    public void shutdown()
+    {
+        if (factories != null)
+        {
+            for (List<?> group : factories.values())
+            {
+                for (Object factory : group)
+                {
+                    ((AssemblerFactory<?>) factory).shutdown();
+                }
+            }
+        }
+
+        setInit(false);
+    }
+
     /**
      * Register a new AssemblerFactory
      *
@@ -211,52 +243,130 @@ public class TurbineAssemblerBrokerService
     public <T extends Assembler> T getAssembler(Class<T> type, String name)
         throws TurbineException
     {
-        String key = type + ":" + name;
-        T assembler = null;
+        AssemblerCache cache = getAssemblerCache(type);
 
-        if (isCaching && assemblerCache.containsKey(key))
+        if (isCaching && name != null)
         {
-            assembler = (T) assemblerCache.get(key);
-            log.debug("Found {} in the cache!", key);
+            T assembler = (T) cache.get(name);
+            if (assembler != null)
+            {
+                log.debug("Found {} {} in the cache!", type, name);
+                return assembler;
+            }
         }
-        else
+
+        log.debug("Loading {} {}", type, name);
+        long start = System.nanoTime();
+        T assembler = loadAssembler(type, name);
+        cache.recordLoad(System.nanoTime() - start);
+
+        if (assembler != null && isCaching && name != null)
         {
-            log.debug("Loading {}", key);
-            List<AssemblerFactory<T>> facs = getFactoryGroup(type);
+            assembler = (T) cache.putIfAbsent(name, assembler);
+        }
+
+        return assembler;
+    }
+
+    /**
+     * Cycle through all the registered AssemblerFactory classes of
+     * type and return the first non-null assembly found.
+     *
+     * @param type type of Assembler
+     * @param name name of the requested Assembler
+     *
+     * @param <T> the type of the assembler
+     *
+     * @return an Assembler or null
+     * @throws TurbineException if the assembler could not be loaded
+     */
+    private <T extends Assembler> T loadAssembler(Class<T> type, String name)
+        throws TurbineException
+    {
+        for (AssemblerFactory<T> fac : getFactoryGroup(type))
+        {
+            T assembler = null;
 
-            for (Iterator<AssemblerFactory<T>> it = facs.iterator(); (assembler == null) && it.hasNext();)
+            try
             {
-                AssemblerFactory<T> fac = it.next();
+                assembler = fac.getAssembler(name);
+            }
+            catch (Exception e)
+            {
+                throw new TurbineException("Failed to load an assembler for "
+                                           + name + " from the "
+                                           + type + " factory "
+                                           + fac.getClass().getName(), e);
+            }
 
-                try
-                {
-                    assembler = fac.getAssembler(name);
-                }
-                catch (Exception e)
-                {
-                    throw new TurbineException("Failed to load an assembler for "
-                                               + name + " from the "
-                                               + type + " factory "
-                                               + fac.getClass().getName(), e);
-                }
+            if (assembler != null)
+            {
+                AnnotationProcessor.process(assembler);
+                return assembler;
+            }
+        }
 
-                if (assembler != null)
-                {
-                    AnnotationProcessor.process(assembler);
-
-                    if (isCaching)
-                    {
-                        T oldAssembler = (T) assemblerCache.putIfAbsent(key, assembler);
-                        if (oldAssembler != null)
-                        {
-                            assembler = oldAssembler;
-                        }
-                    }
-                }
+        return null;
+    }
+
+    /**
+     * Get the assembler cache of a type, creating it on first use
+     *
+     * @param type type of Assembler
+     * @return the cache
+     */
+    private AssemblerCache getAssemblerCache(Class<?> type)
+    {
+        AssemblerCache cache = assemblerCaches.get(type);
+        if (cache == null)
+        {
+            cache = assemblerCaches.computeIfAbsent(type,
+                    t -> new AssemblerCache(cacheSize, cacheMaxSize));
+        }
+
+        return cache;
+    }
+
+    /**
+     * Get the assembler caches with their statistics.  If caching is
+     * off, the caches stay empty but still count the loads.
+     *
+     * @return an unmodifiable map of assembler types to their caches
+     */
+    public Map<Class<?>, AssemblerCache> getAssemblerCaches()
+    {
+        return Collections.unmodifiableMap(assemblerCaches);
+    }
+
+    /**
+     * Check whether an Assembler of a given type with a name exists.
+     * Cycle through all the registered AssemblerFactory classes of type
+     * and ask them for the assembly without instantiating it.
+     *
+     * @param type type of Assembler
+     * @param name name of the requested Assembler
+     *
+     * @param <T> the type of the assembler
+     *
+     * @return true if the Assembler exists
+     */
+    @Override
+    public <T extends Assembler> boolean hasAssembler(Class<T> type, String name)
+    {
+        if (isCaching && name != null && getAssemblerCache(type).contains(name))
+        {
+            return true;
+        }
+
+        for (AssemblerFactory<T> fac : getFactoryGroup(type))
+        {
+            if (fac.hasAssembler(name))
+            {
+                return true;
             }
         }
 
-        return assembler;
+        return false;
     }
 
     /**
@@ -272,11 +382,10 @@ public class TurbineAssemblerBrokerService
     @SuppressWarnings("unchecked")
     public <T extends Assembler> Loader<T> getLoader(Class<T> type)
     {
-        Loader<T> loader = null;
+        Loader<T> loader = isCaching ? (Loader<T>) loaderCache.get(type) : null;
 
-        if (isCaching && loaderCache.containsKey(type))
+        if (loader != null)
         {
-            loader = (Loader<T>) loaderCache.get(type);
             log.debug("Found {} loader in the cache!", type);
         }
         else
@@ -45,4 +45,13 @@ public interface AssemblerFactory<T extends Assembler> extends Loader<T>
      * @return a class
      */
     Class<T> getManagedClass();
+
+    /**
+     * Release the resources held by this factory. This is called when
+     * the assembler broker shuts down.
+     */
+    default void shutdown()
+    {
+        // nothing to release
+    }
 }
@@ -20,16 +20,20 @@ package org.apache.turbine.services.assemblerbroker.util.java;
  * under the License.
  */
 
+import java.lang.reflect.Modifier;
 import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.apache.turbine.Turbine;
+import org.apache.turbine.TurbineConstants;
 import org.apache.turbine.modules.Assembler;
 import org.apache.turbine.modules.GenericLoader;
 import org.apache.turbine.modules.Loader;
 import org.apache.turbine.services.assemblerbroker.util.AssemblerFactory;
+import org.apache.turbine.util.LRUCache;
 
 /**
  * A screen factory that attempts to load a java class from
@@ -42,6 +46,9 @@ import org.apache.turbine.services.assemblerbroker.util.AssemblerFactory;
 public abstract class JavaBaseFactory<T extends Assembler>
     implements AssemblerFactory<T>
 {
+    /** Maximum number of remembered missing classes */
+    private static final int MISSING_CLASSES_CACHE_SIZE = 1000;
+
     /** A vector of packages. */
     private static List<String> packages = GenericLoader.getPackages();
 
@@ -54,6 +61,19 @@ public abstract class JavaBaseFactory<T extends Assembler>
      */
     private final ConcurrentHashMap<String, Class<T>> classCache = new ConcurrentHashMap<>();
 
+    /**
+     * Use the module class index and remember missing classes. This is
+     * only done if module caching is enabled, so newly added classes are
+     * found during development.
+     */
+    private final boolean useIndex = Turbine.getConfiguration().getBoolean(
+            TurbineConstants.MODULE_CACHE_KEY, TurbineConstants.MODULE_CACHE_DEFAULT);
+
+    /**
+     * A bounded cache of classes which could not be loaded.
+     */
+    private final LRUCache<String, Boolean> missingClasses = new LRUCache<>(MISSING_CLASSES_CACHE_SIZE);
+
     /**
      * Get an Assembler.
      *
@@ -61,7 +81,6 @@ public abstract class JavaBaseFactory<T extends Assembler>
      * @param name name of the requested Assembler
      * @return an Assembler
      */
-    @SuppressWarnings("unchecked")
     public T getAssembler(String packageName, String name)
     {
         T assembler = null;
@@ -72,37 +91,20 @@ public abstract class JavaBaseFactory<T extends Assembler>
         {
             for (String p : packages)
             {
-                StringBuilder sb = new StringBuilder();
-
-                sb.append(p).append('.').append(packageName).append('.').append(name);
-                String className = sb.toString();
+                String className = getClassName(p, packageName, name);
 
                 log.debug("Trying {}", className);
 
-                try
-                {
-                    Class<T> servClass = classCache.get(className);
-                    if (servClass == null)
-                    {
-                        servClass = (Class<T>) Class.forName(className);
-                        Class<T> _servClass = classCache.putIfAbsent(className, servClass);
-                        if (_servClass != null)
-                        {
-                            servClass = _servClass;
-                        }
-                    }
-                    assembler = servClass.newInstance();
-                    break; // for()
-                }
-                catch (ClassNotFoundException cnfe)
+                Class<T> servClass = findClass(p, className);
+                if (servClass == null || !isAssembler(servClass))
                 {
                     // Do this so we loop through all the packages.
-                    log.debug("{}: Not found", className);
+                    continue;
                 }
-                catch (NoClassDefFoundError ncdfe)
+
+                try
                 {
-                    // Do this so we loop through all the packages.
-                    log.debug("{}: No Class Definition found", className);
+                    assembler = servClass.newInstance();
                 }
                 // With ClassCastException, InstantiationException we hit big problems
                 catch (ClassCastException | InstantiationException | IllegalAccessException e)
@@ -111,8 +113,9 @@ public abstract class JavaBaseFactory<T extends Assembler>
                     // Alternatively we can throw this exception so
                     // that it will appear on the client browser
                     log.error("Could not load {}", className, e);
-                    break; // for()
                 }
+
+                break; // for()
             }
         }
 
@@ -121,6 +124,149 @@ public abstract class JavaBaseFactory<T extends Assembler>
         return assembler;
     }
 
+    /**
+     * Check whether an Assembler class exists, without instantiating it.
+     *
+     * @param packageName java package name
+     * @param name name of the requested Assembler
+     * @return true if a class for the Assembler has been found
+     */
+    public boolean hasAssembler(String packageName, String name)
+    {
+        if (StringUtils.isNotEmpty(name))
+        {
+            for (String p : packages)
+            {
+                Class<T> servClass = findClass(p, getClassName(p, packageName, name));
+                if (servClass != null && isAssembler(servClass))
+                {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Check whether a class can be instantiated as an Assembler of the
+     * managed type. Abstract classes, interfaces and other classes which
+     * happen to share the name of an Assembler are skipped.
+     *
+     * @param servClass the class to check
+     * @return true if the class is a concrete Assembler
+     */
+    private boolean isAssembler(Class<?> servClass)
+    {
+        if (getManagedClass().isAssignableFrom(servClass)
+                && !servClass.isInterface()
+                && !Modifier.isAbstract(servClass.getModifiers()))
+        {
+            return true;
+        }
+
+        log.debug("{}: Not a concrete {}", servClass.getName(), getManagedClass().getSimpleName());
+        return false;
+    }
+
+    /**
+     * Build the class name of an Assembler
+     *
+     * @param basePackage the module package
+     * @param packageName java package name
+     * @param name name of the requested Assembler
+     * @return the fully qualified class name
+     */
+    private static String getClassName(String basePackage, String packageName, String name)
+    {
+        StringBuilder sb = new StringBuilder(basePackage.length() + packageName.length() + name.length() + 2);
+        sb.append(basePackage).append('.').append(packageName).append('.').append(name);
+        return sb.toString();
+    }
+
+    /**
+     * Find a class, using the class cache, the module class index and the
+     * cache of missing classes before attempting to load it.
+     *
+     * @param basePackage the module package the class belongs to
+     * @param className the fully qualified class name
+     * @return the class or null if it does not exist
+     */
+    @SuppressWarnings("unchecked")
+    private Class<T> findClass(String basePackage, String className)
+    {
+        Class<T> servClass = classCache.get(className);
+
+        if (servClass == null)
+        {
+            // The index is a fast path only: a package split between a
+            // directory and a jar without directory entries is not
+            // scanned completely, so a class missing from the index is
+            // still loaded once before it is remembered as missing.
+            if (useIndex
+                    && !getClassIndex().contains(basePackage, className)
+                    && missingClasses.get(className) != null)
+            {
+                log.debug("{}: Not found", className);
+                return null;
+            }
+
+            try
+            {
+                servClass = (Class<T>) Class.forName(className);
+                Class<T> _servClass = classCache.putIfAbsent(className, servClass);
+                if (_servClass != null)
+                {
+                    servClass = _servClass;
+                }
+            }
+            catch (ClassNotFoundException cnfe)
+            {
+                log.debug("{}: Not found", className);
+                rememberMissing(className);
+            }
+            catch (NoClassDefFoundError ncdfe)
+            {
+                log.debug("{}: No Class Definition found", className);
+                rememberMissing(className);
+            }
+        }
+
+        return servClass;
+    }
+
+    /**
+     * Remember a class which could not be loaded
+     *
+     * @param className the fully qualified class name
+     */
+    private void rememberMissing(String className)
+    {
+        if (useIndex)
+        {
+            missingClasses.put(className, Boolean.TRUE);
+        }
+    }
+
+    /**
+     * Get the index of the module packages, building it on first access.
+     *
+     * @return the module class index
+     */
+    private static ModuleClassIndex getClassIndex()
+    {
+        return ClassIndexHolder.INDEX;
+    }
+
+    /**
+     * Lazy holder of the module class index
+     */
+    private static class ClassIndexHolder
+    {
+        static final ModuleClassIndex INDEX =
+                ModuleClassIndex.build(packages, JavaBaseFactory.class.getClassLoader());
+    }
+
     /**
      * Get the loader for this type of assembler
      *
@@ -48,6 +48,18 @@ public class JavaPageFactory
         return getAssembler(Page.PREFIX, name);
     }
 
+    /**
+     * Check whether an Assembler exists.
+     *
+     * @param name name of the requested Assembler
+     * @return true if the Assembler exists
+     */
+    @Override
+    public boolean hasAssembler(String name)
+    {
+        return hasAssembler(Page.PREFIX, name);
+    }
+
     /**
      * Get the loader for this type of assembler
      *
@@ -48,6 +48,18 @@ public class JavaScheduledJobFactory
         return getAssembler(ScheduledJob.PREFIX, name);
     }
 
+    /**
+     * Check whether an Assembler exists.
+     *
+     * @param name name of the requested Assembler
+     * @return true if the Assembler exists
+     */
+    @Override
+    public boolean hasAssembler(String name)
+    {
+        return hasAssembler(ScheduledJob.PREFIX, name);
+    }
+
     /**
      * Get the loader for this type of assembler
      *
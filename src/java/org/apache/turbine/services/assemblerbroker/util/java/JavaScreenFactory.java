@@ -48,6 +48,18 @@ public class JavaScreenFactory
         return getAssembler(Screen.PREFIX, name);
     }
 
+    /**
+     * Check whether an Assembler exists.
+     *
+     * @param name name of the requested Assembler
+     * @return true if the Assembler exists
+     */
+    @Override
+    public boolean hasAssembler(String name)
+    {
+        return hasAssembler(Screen.PREFIX, name);
+    }
+
     /**
      * Get the loader for this type of assembler
      *
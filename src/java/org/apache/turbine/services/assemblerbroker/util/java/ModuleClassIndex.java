@@ -0,0 +1,264 @@
+package org.apache.turbine.services.assemblerbroker.util.java;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * An index of the classes available in the module packages, built once
+ * by scanning the class path. It allows to find module classes which
+ * exist quickly.
+ *
+ * Only packages which could be scanned (directories and jar files) are
+ * indexed. For all other packages, {@link #isIndexed(String)} returns
+ * false. Since a jar file need not contain directory entries, a package
+ * split between a directory and such a jar may be indexed incompletely,
+ * so a class missing from the index may still exist and the caller must
+ * fall back to loading it.
+ */
+public class ModuleClassIndex
+{
+    /** Logging */
+    private static final Logger log = LogManager.getLogger(ModuleClassIndex.class);
+
+    /** Extension of class files */
+    private static final String CLASS_EXTENSION = ".class";
+
+    /** Indexed base packages mapped to the fully qualified class names found */
+    private final Map<String, Set<String>> index;
+
+    /**
+     * Constructor
+     *
+     * @param index the indexed packages and their classes
+     */
+    private ModuleClassIndex(Map<String, Set<String>> index)
+    {
+        this.index = index;
+    }
+
+    /**
+     * Scan the given packages and all their sub-packages
+     *
+     * @param packages the base packages to scan
+     * @param classLoader the class loader to query
+     *
+     * @return the index
+     */
+    public static ModuleClassIndex build(List<String> packages, ClassLoader classLoader)
+    {
+        Map<String, Set<String>> index = new HashMap<>();
+        long start = System.currentTimeMillis();
+
+        for (String pkg : packages)
+        {
+            Set<String> classes = scan(pkg, classLoader);
+            if (classes != null)
+            {
+                index.put(pkg, Collections.unmodifiableSet(classes));
+                log.debug("Indexed {} classes in package {}", Integer.valueOf(classes.size()), pkg);
+            }
+            else
+            {
+                log.debug("Package {} could not be indexed", pkg);
+            }
+        }
+
+        log.info("Indexed module packages {} in {} ms", index.keySet(),
+                Long.valueOf(System.currentTimeMillis() - start));
+
+        return new ModuleClassIndex(index);
+    }
+
+    /**
+     * Check whether the classes of a base package are known to this index
+     *
+     * @param pkg the base package as configured in module.packages
+     * @return true if the package has been scanned
+     */
+    public boolean isIndexed(String pkg)
+    {
+        return index.containsKey(pkg);
+    }
+
+    /**
+     * Check whether a class exists in an indexed base package
+     *
+     * @param pkg the base package as configured in module.packages
+     * @param className the fully qualified class name
+     * @return true if the class has been found during the scan
+     */
+    public boolean contains(String pkg, String className)
+    {
+        Set<String> classes = index.get(pkg);
+        return classes != null && classes.contains(className);
+    }
+
+    /**
+     * Scan a package and its sub-packages
+     *
+     * @param pkg the package
+     * @param classLoader the class loader to query
+     *
+     * @return the set of fully qualified class names or null if the
+     *         package could not be scanned completely
+     */
+    private static Set<String> scan(String pkg, ClassLoader classLoader)
+    {
+        String path = pkg.replace('.', '/');
+        Set<String> classes = new HashSet<>();
+
+        try
+        {
+            Enumeration<URL> resources = classLoader.getResources(path);
+
+            if (!resources.hasMoreElements())
+            {
+                // Either the package does not exist or it resides in
+                // an archive without directory entries. We cannot tell.
+                return null;
+            }
+
+            while (resources.hasMoreElements())
+            {
+                URL url = resources.nextElement();
+
+                if ("file".equals(url.getProtocol()))
+                {
+                    scanDirectory(new File(url.toURI()), pkg, classes);
+                }
+                else if ("jar".equals(url.getProtocol()))
+                {
+                    scanJar(url, path, classes);
+                }
+                else
+                {
+                    log.debug("Cannot scan {} in {}", pkg, url);
+                    return null;
+                }
+            }
+        }
+        catch (IOException | URISyntaxException | IllegalArgumentException e)
+        {
+            log.warn("Could not scan package {}", pkg, e);
+            return null;
+        }
+
+        return classes;
+    }
+
+    /**
+     * Collect the classes in a directory tree
+     *
+     * @param dir the directory
+     * @param pkg the package name of the directory
+     * @param classes the set to add the class names to
+     */
+    private static void scanDirectory(File dir, String pkg, Set<String> classes)
+    {
+        File[] files = dir.listFiles();
+
+        if (files == null)
+        {
+            return;
+        }
+
+        for (File f : files)
+        {
+            String name = f.getName();
+
+            if (f.isDirectory())
+            {
+                scanDirectory(f, pkg + "." + name, classes);
+            }
+            else if (name.endsWith(CLASS_EXTENSION))
+            {
+                addClass(pkg + "." + name.substring(0, name.length() - CLASS_EXTENSION.length()), classes);
+            }
+        }
+    }
+
+    /**
+     * Collect the classes in a jar file below the given path
+     *
+     * @param url the jar URL of the package
+     * @param path the resource path of the package
+     * @param classes the set to add the class names to
+     * @throws IOException if the jar file cannot be read
+     */
+    private static void scanJar(URL url, String path, Set<String> classes) throws IOException
+    {
+        URLConnection connection = url.openConnection();
+
+        if (!(connection instanceof JarURLConnection))
+        {
+            throw new IOException("Not a jar URL: " + url);
+        }
+
+        connection.setUseCaches(false);
+        String prefix = path + "/";
+
+        try (JarFile jar = ((JarURLConnection) connection).getJarFile())
+        {
+            for (Enumeration<JarEntry> entries = jar.entries(); entries.hasMoreElements();)
+            {
+                String name = entries.nextElement().getName();
+
+                if (name.startsWith(prefix) && name.endsWith(CLASS_EXTENSION))
+                {
+                    addClass(name.substring(0, name.length() - CLASS_EXTENSION.length())
+                            .replace('/', '.'), classes);
+                }
+            }
+        }
+    }
+
+    /**
+     * Add a class name to the set, skipping nested and anonymous classes
+     *
+     * @param className the fully qualified class name
+     * @param classes the set to add the class name to
+     */
+    private static void addClass(String className, Set<String> classes)
+    {
+        if (className.indexOf('$') < 0)
+        {
+            classes.add(className);
+        }
+    }
+}
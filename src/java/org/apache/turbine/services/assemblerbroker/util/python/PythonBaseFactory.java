@@ -33,7 +33,9 @@ import org.apache.turbine.services.TurbineServices;
 import org.apache.turbine.services.assemblerbroker.AssemblerBrokerService;
 import org.apache.turbine.services.assemblerbroker.util.AssemblerFactory;
 import org.python.core.Py;
-import org.python.util.PythonInterpreter;
+import org.python.core.PyException;
+import org.python.core.PyObject;
+import org.python.core.PyStringMap;
 
 /**
  * A factory that attempts to load a python class in the
@@ -51,9 +53,24 @@ public abstract class PythonBaseFactory<T extends Assembler>
     /** Key for the python path */
     public static final String PYTHON_PATH = "python.path";
 
-    /** Global config file. This is executed before every screen */
+    /** Global config file. Its globals are visible in every screen */
     public static final String PYTHON_CONFIG_FILE = "conf.py";
 
+    /** Key for the number of pooled interpreters */
+    public static final String PYTHON_POOL_SIZE_KEY = "python.pool.size";
+
+    /** Default number of pooled interpreters */
+    public static final int PYTHON_POOL_SIZE_DEFAULT = 4;
+
+    /** Key for the minimum time between two checks of a script file in ms */
+    public static final String PYTHON_CHECK_INTERVAL_KEY = "python.check.interval";
+
+    /** Default check interval, check on every access */
+    public static final long PYTHON_CHECK_INTERVAL_DEFAULT = 0;
+
+    /** Compiled scripts and interpreters, shared by all python factories */
+    private static volatile PythonScriptCache scriptCache;
+
     /** Logging */
     private static Logger log = LogManager.getLogger(PythonBaseFactory.class);
 
@@ -86,48 +103,28 @@ public abstract class PythonBaseFactory<T extends Assembler>
         String confName = path + "/" + PYTHON_CONFIG_FILE;
 
         // The filename of the Python script
-        StringBuilder fName = new StringBuilder();
-
-        fName.append(path);
-        fName.append("/");
-        fName.append(subDirectory);
-        fName.append("/");
-        fName.append(name.toLowerCase());
-        fName.append(".py");
-
-        File f = new File(fName.toString());
+        File f = getScriptFile(path, subDirectory, name);
 
         if (f.exists())
         {
-            // We try to open the Py Interpreter
-            try (PythonInterpreter interp = new PythonInterpreter())
+            try
             {
-                // Make sure the Py Interpreter use the right classloader
-                // This is necessary for servlet engines generally has
-                // their own classloader implementations and servlets aren't
-                // loaded in the system classloader.  The python script will
-                // load java package
-                // org.apache.turbine.services.assemblerbroker.util.python;
-                // the new classes to it as well.
-                Py.getSystemState().setClassLoader(this.getClass().getClassLoader());
-
-                // We import the Python SYS module. Now we don't need to do this
-                // explicitly in the script.  We always use the sys module to
-                // do stuff like loading java package
-                // org.apache.turbine.services.assemblerbroker.util.python;
-                interp.exec("import sys");
-
-                // Now we try to load the script file
-                interp.execfile(confName);
-                interp.execfile(fName.toString());
+                PyStringMap globals = getScriptCache().execute(new File(confName), f);
 
+                // We create an instance of the screen class from the
+                // python script
+                PyObject cls = globals.__finditem__(name);
+                PyObject scr = null;
                 try
                 {
-                    // We create an instance of the screen class from the
-                    // python script
-                    interp.exec("scr = " + name + "()");
+                    scr = cls == null ? null : cls.__call__();
                 }
-                catch (Throwable e)
+                catch (PyException e)
+                {
+                    log.debug("Cannot create an instance of {}", name, e);
+                }
+
+                if (scr == null)
                 {
                     throw new Exception(
                         "\nCannot create an instance of the python class.\n"
@@ -139,9 +136,16 @@ public abstract class PythonBaseFactory<T extends Assembler>
                 }
 
                 // Here we convert the python screen instance to a java instance.
+                Object t = scr.__tojava__(Assembler.class);
+                if (t == Py.NoConversion)
+                {
+                    throw new Exception("The python class " + name
+                        + " does not extend " + Assembler.class.getName());
+                }
+
                 @SuppressWarnings("unchecked") // Cast from Object necessary
-				T t = (T) interp.get("scr", Assembler.class);
-				assembler = t;
+                T a = (T) t;
+                assembler = a;
             }
             catch (Exception e)
             {
@@ -155,6 +159,91 @@ public abstract class PythonBaseFactory<T extends Assembler>
         return assembler;
     }
 
+    /**
+     * Get the shared script cache, creating it on first use
+     *
+     * @return the script cache
+     */
+    private PythonScriptCache getScriptCache()
+    {
+        PythonScriptCache cache = scriptCache;
+        if (cache == null)
+        {
+            synchronized (PythonBaseFactory.class)
+            {
+                cache = scriptCache;
+                if (cache == null)
+                {
+                    cache = new PythonScriptCache(
+                            conf.getInt(PYTHON_POOL_SIZE_KEY, PYTHON_POOL_SIZE_DEFAULT),
+                            conf.getLong(PYTHON_CHECK_INTERVAL_KEY, PYTHON_CHECK_INTERVAL_DEFAULT),
+                            getClass().getClassLoader());
+                    scriptCache = cache;
+                }
+            }
+        }
+
+        return cache;
+    }
+
+    /**
+     * Drop the shared script cache, so the next use creates it with the
+     * current configuration.
+     */
+    @Override
+    public void shutdown()
+    {
+        PythonScriptCache cache;
+
+        synchronized (PythonBaseFactory.class)
+        {
+            cache = scriptCache;
+            scriptCache = null;
+        }
+
+        if (cache != null)
+        {
+            cache.close();
+        }
+    }
+
+    /**
+     * Check whether the script of an Assembler exists, without executing it.
+     *
+     * @param subDirectory subdirectory within python.path
+     * @param name name of the requested Assembler
+     * @return true if the script file exists
+     */
+    public boolean hasAssembler(String subDirectory, String name)
+    {
+        String path = conf.getString(PYTHON_PATH);
+
+        return StringUtils.isNotEmpty(path) && StringUtils.isNotEmpty(name)
+                && getScriptFile(path, subDirectory, name).exists();
+    }
+
+    /**
+     * Get the script file of an Assembler
+     *
+     * @param path the python path
+     * @param subDirectory subdirectory within python.path
+     * @param name name of the requested Assembler
+     * @return the script file
+     */
+    private static File getScriptFile(String path, String subDirectory, String name)
+    {
+        StringBuilder fName = new StringBuilder();
+
+        fName.append(path);
+        fName.append("/");
+        fName.append(subDirectory);
+        fName.append("/");
+        fName.append(name.toLowerCase());
+        fName.append(".py");
+
+        return new File(fName.toString());
+    }
+
     /**
      * Get the loader for this type of assembler
      *
@@ -52,6 +52,18 @@ public class PythonLayoutFactory
         return getAssembler(Layout.PREFIX, name);
     }
 
+    /**
+     * Check whether an Assembler exists.
+     *
+     * @param name name of the requested Assembler
+     * @return true if the Assembler exists
+     */
+    @Override
+    public boolean hasAssembler(String name)
+    {
+        return hasAssembler(Layout.PREFIX, name);
+    }
+
     /**
      * Get the loader for this type of assembler
      *
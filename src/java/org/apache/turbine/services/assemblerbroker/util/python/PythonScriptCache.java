@@ -0,0 +1,295 @@
+package org.apache.turbine.services.assemblerbroker.util.python;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.python.core.CompileMode;
+import org.python.core.CompilerFlags;
+import org.python.core.Py;
+import org.python.core.PyCode;
+import org.python.core.PyStringMap;
+import org.python.util.PythonInterpreter;
+
+/**
+ * Keeps the compiled code of the python scripts and a pool of
+ * interpreters for the python assembler factories.
+ *
+ * Each script is compiled once and recompiled only when its
+ * modification time or length changes.  The global config script is
+ * executed once into a namespace which is copied for every assembler,
+ * so the scripts of different assemblers never share their globals.
+ *
+ * @version $Id$
+ */
+final class PythonScriptCache
+{
+    /** Logging */
+    private static Logger log = LogManager.getLogger(PythonScriptCache.class);
+
+    /** The compiled scripts, keyed by file path */
+    private final ConcurrentMap<String, CompiledScript> scripts = new ConcurrentHashMap<>();
+
+    /** Idle interpreters */
+    private final BlockingQueue<PythonInterpreter> pool;
+
+    /** Minimum time between two modification checks of a script in ms */
+    private final long checkInterval;
+
+    /** The class loader for the python scripts */
+    private final ClassLoader classLoader;
+
+    /** The namespace of the global config script */
+    private volatile ConfigNamespace configNamespace;
+
+    /**
+     * A compiled script with the file state it was compiled from
+     */
+    private static final class CompiledScript
+    {
+        final long lastModified;
+        final long length;
+        final PyCode code;
+        volatile long checked;
+
+        CompiledScript(long lastModified, long length, PyCode code, long checked)
+        {
+            this.lastModified = lastModified;
+            this.length = length;
+            this.code = code;
+            this.checked = checked;
+        }
+    }
+
+    /**
+     * The globals defined by a version of the config script
+     */
+    private static final class ConfigNamespace
+    {
+        final PyCode code;
+        final PyStringMap globals;
+
+        ConfigNamespace(PyCode code, PyStringMap globals)
+        {
+            this.code = code;
+            this.globals = globals;
+        }
+    }
+
+    /**
+     * Constructor
+     *
+     * @param poolSize the number of interpreters to keep
+     * @param checkInterval the minimum time between two modification
+     *        checks of a script in ms, 0 to check on every access
+     * @param classLoader the class loader for the python scripts
+     */
+    PythonScriptCache(int poolSize, long checkInterval, ClassLoader classLoader)
+    {
+        this.pool = new ArrayBlockingQueue<>(Math.max(1, poolSize));
+        this.checkInterval = checkInterval;
+        this.classLoader = classLoader;
+
+        for (int i = 0; i < poolSize; i++)
+        {
+            pool.offer(createInterpreter());
+        }
+    }
+
+    /**
+     * Execute a script in a copy of the config namespace
+     *
+     * @param configFile the global config script
+     * @param scriptFile the script to execute
+     * @return the namespace of the script
+     * @throws IOException if a script cannot be read
+     */
+    PyStringMap execute(File configFile, File scriptFile)
+        throws IOException
+    {
+        PyStringMap globals = getConfigNamespace(configFile).copy();
+        PyCode code = getCode(scriptFile);
+
+        PythonInterpreter interp = borrowInterpreter();
+        try
+        {
+            interp.setLocals(globals);
+            interp.exec(code);
+        }
+        finally
+        {
+            returnInterpreter(interp);
+        }
+
+        return globals;
+    }
+
+    /**
+     * Get the namespace of the config script, executing it again if it
+     * has changed.
+     *
+     * @param configFile the global config script
+     * @return the namespace, not to be modified
+     * @throws IOException if the script cannot be read
+     */
+    private PyStringMap getConfigNamespace(File configFile)
+        throws IOException
+    {
+        PyCode code = getCode(configFile);
+        ConfigNamespace namespace = configNamespace;
+
+        if (namespace == null || namespace.code != code)
+        {
+            PyStringMap globals = new PyStringMap();
+            PythonInterpreter interp = borrowInterpreter();
+            try
+            {
+                interp.setLocals(globals);
+
+                // We import the Python SYS module. Now we don't need to do this
+                // explicitly in the script.
+                interp.exec("import sys");
+                interp.exec(code);
+            }
+            finally
+            {
+                returnInterpreter(interp);
+            }
+
+            namespace = new ConfigNamespace(code, globals);
+            configNamespace = namespace;
+        }
+
+        return namespace.globals;
+    }
+
+    /**
+     * Get the compiled code of a script
+     *
+     * @param file the script file
+     * @return the compiled code
+     * @throws IOException if the script cannot be read
+     */
+    private PyCode getCode(File file)
+        throws IOException
+    {
+        String key = file.getPath();
+        CompiledScript script = scripts.get(key);
+        long now = System.currentTimeMillis();
+
+        if (script != null)
+        {
+            if (checkInterval > 0 && now - script.checked < checkInterval)
+            {
+                return script.code;
+            }
+
+            if (script.lastModified == file.lastModified()
+                    && script.length == file.length())
+            {
+                script.checked = now;
+                return script.code;
+            }
+        }
+
+        long lastModified = file.lastModified();
+        long length = file.length();
+
+        log.debug("Compiling python script {}", key);
+
+        PyCode code;
+        try (InputStream in = new FileInputStream(file))
+        {
+            code = Py.compile_flags(in, key, CompileMode.exec, new CompilerFlags());
+        }
+
+        scripts.put(key, new CompiledScript(lastModified, length, code, now));
+        return code;
+    }
+
+    /**
+     * Close all pooled interpreters and drop the compiled scripts
+     */
+    void close()
+    {
+        scripts.clear();
+        configNamespace = null;
+
+        for (PythonInterpreter interp = pool.poll(); interp != null; interp = pool.poll())
+        {
+            interp.close();
+        }
+    }
+
+    /**
+     * Take an interpreter from the pool or create a new one
+     *
+     * @return the interpreter
+     */
+    private PythonInterpreter borrowInterpreter()
+    {
+        PythonInterpreter interp = pool.poll();
+        return interp != null ? interp : createInterpreter();
+    }
+
+    /**
+     * Put an interpreter back into the pool or close it if the pool is
+     * full
+     *
+     * @param interp the interpreter
+     */
+    private void returnInterpreter(PythonInterpreter interp)
+    {
+        // Drop the namespace so the pool does not keep the scripts alive
+        interp.setLocals(new PyStringMap());
+
+        if (!pool.offer(interp))
+        {
+            interp.close();
+        }
+    }
+
+    /**
+     * Create a new interpreter
+     *
+     * @return the interpreter
+     */
+    private PythonInterpreter createInterpreter()
+    {
+        // Make sure the Py Interpreter use the right classloader
+        // This is necessary for servlet engines generally has
+        // their own classloader implementations and servlets aren't
+        // loaded in the system classloader.
+        Py.getSystemState().setClassLoader(classLoader);
+
+        return new PythonInterpreter(new PyStringMap());
+    }
+}
@@ -0,0 +1,113 @@
+package org.apache.turbine.services.fragmentcache;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.util.concurrent.Callable;
+
+import org.apache.turbine.modules.Assembler;
+import org.apache.turbine.pipeline.PipelineData;
+import org.apache.turbine.services.Service;
+
+/**
+ * The FragmentCacheService keeps the rendered output of screens and
+ * navigations. Screen and navigation classes annotated with
+ * {@link org.apache.turbine.annotation.TurbineFragmentCache} are cached
+ * by the loaders automatically, templates can cache navigations through
+ * the {@link FragmentCacheTool}.
+ *
+ * @version $Id$
+ */
+public interface FragmentCacheService extends Service
+{
+    /**
+     * The key under which this service is stored in TurbineServices.
+     */
+    String SERVICE_NAME = "FragmentCacheService";
+
+    /** The maximum number of cached fragments */
+    String CACHE_SIZE_KEY = "cache.size";
+
+    /** Default maximum number of cached fragments */
+    int CACHE_SIZE_DEFAULT = 1000;
+
+    /** The default time to live of a fragment in seconds */
+    String CACHE_TTL_KEY = "cache.ttl";
+
+    /** Default time to live of a fragment in seconds */
+    int CACHE_TTL_DEFAULT = 300;
+
+    /**
+     * Get a fragment from the cache or build and cache it. Fragments which
+     * build to <code>null</code>, e.g. because they write to the output
+     * stream directly, are not cached.
+     *
+     * @param type the assembler type, e.g. Screen.class
+     * @param name the name of the fragment, usually the template name
+     * @param policy the caching policy of the fragment
+     * @param pipelineData the current request
+     * @param builder renders the fragment on a cache miss
+     *
+     * @return the fragment
+     * @throws Exception if building the fragment fails
+     */
+    String getFragment(Class<? extends Assembler> type, String name,
+            FragmentPolicy policy, PipelineData pipelineData,
+            Callable<String> builder)
+        throws Exception;
+
+    /**
+     * Invalidate all variations of the fragments with the given name
+     *
+     * @param name the name of the fragment
+     */
+    void invalidate(String name);
+
+    /**
+     * Invalidate all fragments
+     */
+    void invalidateAll();
+
+    /**
+     * @return the number of cached fragments
+     */
+    int getSize();
+
+    /**
+     * @return the number of cache hits
+     */
+    long getHitCount();
+
+    /**
+     * @return the number of cache misses
+     */
+    long getMissCount();
+
+    /**
+     * @return the ratio of hits to all lookups
+     */
+    double getHitRatio();
+
+    /**
+     * @return the number of evicted or expired fragments
+     */
+    long getEvictionCount();
+}
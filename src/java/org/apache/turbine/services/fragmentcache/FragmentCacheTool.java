@@ -0,0 +1,190 @@
+package org.apache.turbine.services.fragmentcache;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.turbine.annotation.TurbineService;
+import org.apache.turbine.modules.Navigation;
+import org.apache.turbine.modules.NavigationLoader;
+import org.apache.turbine.pipeline.PipelineData;
+import org.apache.turbine.services.pull.ApplicationTool;
+import org.apache.turbine.services.template.TemplateService;
+
+/**
+ * A request scope pull tool which renders navigations through the
+ * FragmentCacheService. The policy is built by chaining, e.g.
+ *
+ * <p><code>
+ * .varyByLocale().ttl(600).navigation("Menu.vm")
+ * </code>
+ *
+ * @version $Id$
+ */
+public class FragmentCacheTool
+        implements ApplicationTool
+{
+    /** Logging */
+    private static final Logger log = LogManager.getLogger(FragmentCacheTool.class);
+
+    /** The fragment cache service */
+    @TurbineService
+    private FragmentCacheService fragmentCacheService;
+
+    /** The template service */
+    @TurbineService
+    private TemplateService templateService;
+
+    /** The current request */
+    private PipelineData pipelineData;
+
+    /** The policy for the next fragment */
+    private FragmentPolicy policy = FragmentPolicy.DEFAULT;
+
+    /**
+     * Default constructor, used by the pull service
+     */
+    public FragmentCacheTool()
+    {
+        super();
+    }
+
+    /**
+     * Copy a tool with another policy
+     *
+     * @param tool the tool to copy
+     * @param policy the new policy
+     */
+    private FragmentCacheTool(FragmentCacheTool tool, FragmentPolicy policy)
+    {
+        this.fragmentCacheService = tool.fragmentCacheService;
+        this.templateService = tool.templateService;
+        this.pipelineData = tool.pipelineData;
+        this.policy = policy;
+    }
+
+    /**
+     * Initialize the tool with the current request
+     *
+     * @param data the PipelineData of the request
+     */
+    @Override
+    public void init(Object data)
+    {
+        this.pipelineData = (PipelineData) data;
+        this.policy = FragmentPolicy.DEFAULT;
+    }
+
+    /**
+     * Nothing to refresh, request tools are created per request
+     */
+    @Override
+    public void refresh()
+    {
+        // empty
+    }
+
+    /**
+     * @param seconds the time to live of the fragment in seconds
+     * @return a tool with the given time to live
+     */
+    public FragmentCacheTool ttl(int seconds)
+    {
+        return new FragmentCacheTool(this, policy.withTtl(seconds));
+    }
+
+    /**
+     * @return a tool which caches per locale
+     */
+    public FragmentCacheTool varyByLocale()
+    {
+        return new FragmentCacheTool(this, policy.varyByLocale());
+    }
+
+    /**
+     * @return a tool which caches per skin
+     */
+    public FragmentCacheTool varyBySkin()
+    {
+        return new FragmentCacheTool(this, policy.varyBySkin());
+    }
+
+    /**
+     * @return a tool which caches per set of roles
+     */
+    public FragmentCacheTool varyByRoles()
+    {
+        return new FragmentCacheTool(this, policy.varyByRoles());
+    }
+
+    /**
+     * @param name the name of a request parameter
+     * @return a tool which caches per value of the parameter
+     */
+    public FragmentCacheTool varyBy(String name)
+    {
+        return new FragmentCacheTool(this, policy.varyBy(name));
+    }
+
+    /**
+     * Render a navigation template or take it from the cache.
+     *
+     * @param template the name of the navigation template
+     * @return the output of the navigation
+     */
+    public String navigation(String template)
+    {
+        String module = null;
+
+        try
+        {
+            pipelineData.getRunData().getTemplateInfo().setNavigationTemplate(template);
+            module = templateService.getNavigationName(template);
+
+            if (module == null)
+            {
+                throw new Exception("Template Service returned null for Navigation Template " + template);
+            }
+
+            Navigation navigation = NavigationLoader.getInstance().getAssembler(module);
+            return fragmentCacheService.getFragment(Navigation.class, template,
+                    policy, pipelineData, () -> navigation.build(pipelineData));
+        }
+        catch (Exception e)
+        {
+            String message = "Error processing navigation template: "
+                    + template + ", using module: " + module;
+            log.error(message, e);
+            return message;
+        }
+    }
+
+    /**
+     * Invalidate all cached variations of a fragment
+     *
+     * @param name the name of the fragment, i.e. the template name
+     */
+    public void invalidate(String name)
+    {
+        fragmentCacheService.invalidate(name);
+    }
+}
@@ -0,0 +1,115 @@
+package org.apache.turbine.services.fragmentcache;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * The key of a cached fragment. It consists of the assembler type, the
+ * fragment name, the generation of the name at the time of caching and
+ * the request values the fragment varies by.
+ *
+ * @version $Id$
+ */
+final class FragmentKey
+{
+    /** The assembler type */
+    private final Class<?> type;
+
+    /** The fragment name */
+    private final String name;
+
+    /** The generation of the name */
+    private final long generation;
+
+    /** The values the fragment varies by */
+    private final Object[] values;
+
+    /** The precomputed hash code */
+    private final int hash;
+
+    /**
+     * Constructor
+     *
+     * @param type the assembler type
+     * @param name the fragment name
+     * @param generation the generation of the name
+     * @param values the values the fragment varies by
+     */
+    FragmentKey(Class<?> type, String name, long generation, Object[] values)
+    {
+        this.type = type;
+        this.name = name;
+        this.generation = generation;
+        this.values = values;
+
+        int h = type.hashCode();
+        h = 31 * h + name.hashCode();
+        h = 31 * h + Long.hashCode(generation);
+        h = 31 * h + Arrays.hashCode(values);
+        this.hash = h;
+    }
+
+    /**
+     * @see java.lang.Object#hashCode()
+     */
+    @Override
+    public int hashCode()
+    {
+        return hash;
+    }
+
+    /**
+     * @see java.lang.Object#equals(java.lang.Object)
+     */
+    @Override
+    public boolean equals(Object obj)
+    {
+        if (this == obj)
+        {
+            return true;
+        }
+
+        if (!(obj instanceof FragmentKey))
+        {
+            return false;
+        }
+
+        FragmentKey other = (FragmentKey) obj;
+        return hash == other.hash
+                && generation == other.generation
+                && type == other.type
+                && Objects.equals(name, other.name)
+                && Arrays.equals(values, other.values);
+    }
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString()
+    {
+        return type.getSimpleName() + ":" + name + "#" + generation
+                + Arrays.toString(values);
+    }
+}
@@ -0,0 +1,221 @@
+package org.apache.turbine.services.fragmentcache;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.fulcrum.security.entity.Role;
+import org.apache.fulcrum.security.model.turbine.TurbineAccessControlList;
+import org.apache.turbine.annotation.TurbineFragmentCache;
+import org.apache.turbine.om.security.User;
+import org.apache.turbine.services.pull.tools.UITool;
+import org.apache.turbine.util.RunData;
+
+/**
+ * Describes how the output of a fragment is cached: how long it lives
+ * and which values of the request it varies by. Policies are immutable,
+ * the modifying methods return a new policy.
+ *
+ * @see TurbineFragmentCache
+ * @version $Id$
+ */
+public final class FragmentPolicy
+{
+    /** A policy without variations and the default time to live */
+    public static final FragmentPolicy DEFAULT =
+            new FragmentPolicy(0, false, false, false, new String[0]);
+
+    /** The policies of annotated classes */
+    private static final ClassValue<Optional<FragmentPolicy>> POLICIES =
+            new ClassValue<Optional<FragmentPolicy>>()
+    {
+        @Override
+        protected Optional<FragmentPolicy> computeValue(Class<?> type)
+        {
+            TurbineFragmentCache annotation =
+                    type.getAnnotation(TurbineFragmentCache.class);
+
+            if (annotation == null)
+            {
+                return Optional.empty();
+            }
+
+            return Optional.of(new FragmentPolicy(annotation.ttl(),
+                    annotation.locale(), annotation.skin(),
+                    annotation.roles(), annotation.parameters()));
+        }
+    };
+
+    /** Time to live in seconds, 0 for the service default */
+    private final int ttl;
+
+    /** Vary by locale */
+    private final boolean locale;
+
+    /** Vary by skin */
+    private final boolean skin;
+
+    /** Vary by roles */
+    private final boolean roles;
+
+    /** Vary by these request parameters */
+    private final String[] parameters;
+
+    /**
+     * Constructor
+     */
+    private FragmentPolicy(int ttl, boolean locale, boolean skin,
+            boolean roles, String[] parameters)
+    {
+        this.ttl = Math.max(ttl, 0);
+        this.locale = locale;
+        this.skin = skin;
+        this.roles = roles;
+        this.parameters = parameters;
+    }
+
+    /**
+     * Get the policy of a class annotated with {@link TurbineFragmentCache}
+     *
+     * @param type the class of a screen or navigation
+     * @return the policy or null if the class is not annotated
+     */
+    public static FragmentPolicy of(Class<?> type)
+    {
+        return POLICIES.get(type).orElse(null);
+    }
+
+    /**
+     * @return the time to live in seconds, 0 for the service default
+     */
+    public int getTtl()
+    {
+        return ttl;
+    }
+
+    /**
+     * @param seconds the time to live in seconds, 0 for the service default
+     * @return a policy with the given time to live
+     */
+    public FragmentPolicy withTtl(int seconds)
+    {
+        return new FragmentPolicy(seconds, locale, skin, roles, parameters);
+    }
+
+    /**
+     * @return a policy which also varies by the locale of the request
+     */
+    public FragmentPolicy varyByLocale()
+    {
+        return new FragmentPolicy(ttl, true, skin, roles, parameters);
+    }
+
+    /**
+     * @return a policy which also varies by the skin of the user
+     */
+    public FragmentPolicy varyBySkin()
+    {
+        return new FragmentPolicy(ttl, locale, true, roles, parameters);
+    }
+
+    /**
+     * @return a policy which also varies by the roles of the user
+     */
+    public FragmentPolicy varyByRoles()
+    {
+        return new FragmentPolicy(ttl, locale, skin, true, parameters);
+    }
+
+    /**
+     * @param name the name of a request parameter
+     * @return a policy which also varies by the given request parameter
+     */
+    public FragmentPolicy varyBy(String name)
+    {
+        String[] names = Arrays.copyOf(parameters, parameters.length + 1);
+        names[parameters.length] = name;
+        return new FragmentPolicy(ttl, locale, skin, roles, names);
+    }
+
+    /**
+     * Collect the values of the request this policy varies by. The
+     * values are compared with equals() to find a cached fragment.
+     *
+     * @param data the current request
+     * @return the values, in a fixed order
+     */
+    Object[] values(RunData data)
+    {
+        List<Object> values = new ArrayList<>(3 + parameters.length);
+
+        if (locale)
+        {
+            values.add(data.getLocale());
+        }
+
+        if (skin)
+        {
+            User user = data.getUser();
+            values.add(user == null ? null : user.getTemp(UITool.SKIN_ATTRIBUTE));
+        }
+
+        if (roles)
+        {
+            Set<String> names = new TreeSet<>();
+            TurbineAccessControlList<?> acl = data.getACL();
+
+            if (acl != null)
+            {
+                for (Role role : acl.getRoles())
+                {
+                    names.add(role.getName());
+                }
+            }
+
+            values.add(names);
+        }
+
+        for (String name : parameters)
+        {
+            String[] strings = data.getParameters().getStrings(name);
+            values.add(strings == null ? null : Arrays.asList(strings));
+        }
+
+        return values.toArray();
+    }
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString()
+    {
+        return "FragmentPolicy[ttl=" + ttl + ", locale=" + locale
+                + ", skin=" + skin + ", roles=" + roles
+                + ", parameters=" + Arrays.toString(parameters) + "]";
+    }
+}
@@ -0,0 +1,182 @@
+package org.apache.turbine.services.fragmentcache;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.configuration2.Configuration;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.turbine.modules.Assembler;
+import org.apache.turbine.pipeline.PipelineData;
+import org.apache.turbine.services.TurbineBaseService;
+import org.apache.turbine.util.LRUCache;
+
+/**
+ * The default implementation of the {@link FragmentCacheService}. The
+ * fragments are kept in a size limited LRU cache. Invalidating a name
+ * increments its generation, so the outdated fragments are no longer
+ * found and are evicted eventually.
+ *
+ * @version $Id$
+ */
+public class TurbineFragmentCacheService
+        extends TurbineBaseService
+        implements FragmentCacheService
+{
+    /** Logging */
+    private static final Logger log = LogManager.getLogger(TurbineFragmentCacheService.class);
+
+    /** The cached fragments */
+    private LRUCache<FragmentKey, String> fragments;
+
+    /** The generation of each invalidated fragment name */
+    private ConcurrentMap<String, Long> generations;
+
+    /** The default time to live in milliseconds */
+    private long defaultTtl;
+
+    /**
+     * Initializes the service.
+     */
+    @Override
+    public void init()
+    {
+        Configuration conf = getConfiguration();
+
+        int size = conf.getInt(CACHE_SIZE_KEY, CACHE_SIZE_DEFAULT);
+        this.defaultTtl = conf.getInt(CACHE_TTL_KEY, CACHE_TTL_DEFAULT) * 1000L;
+        this.fragments = new LRUCache<>(size, defaultTtl);
+        this.generations = new ConcurrentHashMap<>();
+
+        log.info("Fragment cache initialized with {} entries, time to live {}s",
+                Integer.valueOf(size), Long.valueOf(defaultTtl / 1000));
+
+        setInit(true);
+    }
+
+    /**
+     * Returns to uninitialized state.
+     */
+    @Override
+    public void shutdown()
+    {
+        this.fragments = null;
+        this.generations = null;
+
+        setInit(false);
+    }
+
+    /**
+     * @see FragmentCacheService#getFragment(Class, String, FragmentPolicy, PipelineData, Callable)
+     */
+    @Override
+    public String getFragment(Class<? extends Assembler> type, String name,
+            FragmentPolicy policy, PipelineData pipelineData,
+            Callable<String> builder)
+        throws Exception
+    {
+        FragmentKey key = new FragmentKey(type, name,
+                generations.getOrDefault(name, Long.valueOf(0)).longValue(),
+                policy.values(pipelineData.getRunData()));
+
+        String fragment = fragments.get(key);
+
+        if (fragment == null)
+        {
+            fragment = builder.call();
+
+            if (fragment != null)
+            {
+                long ttl = policy.getTtl() > 0 ? policy.getTtl() * 1000L : defaultTtl;
+                fragments.put(key, fragment, ttl);
+            }
+        }
+
+        return fragment;
+    }
+
+    /**
+     * @see FragmentCacheService#invalidate(String)
+     */
+    @Override
+    public void invalidate(String name)
+    {
+        generations.merge(name, Long.valueOf(1), Long::sum);
+    }
+
+    /**
+     * @see FragmentCacheService#invalidateAll()
+     */
+    @Override
+    public void invalidateAll()
+    {
+        fragments.clear();
+    }
+
+    /**
+     * @see FragmentCacheService#getSize()
+     */
+    @Override
+    public int getSize()
+    {
+        return fragments.size();
+    }
+
+    /**
+     * @see FragmentCacheService#getHitCount()
+     */
+    @Override
+    public long getHitCount()
+    {
+        return fragments.getHitCount();
+    }
+
+    /**
+     * @see FragmentCacheService#getMissCount()
+     */
+    @Override
+    public long getMissCount()
+    {
+        return fragments.getMissCount();
+    }
+
+    /**
+     * @see FragmentCacheService#getHitRatio()
+     */
+    @Override
+    public double getHitRatio()
+    {
+        return fragments.getHitRatio();
+    }
+
+    /**
+     * @see FragmentCacheService#getEvictionCount()
+     */
+    @Override
+    public long getEvictionCount()
+    {
+        return fragments.getEvictionCount();
+    }
+}
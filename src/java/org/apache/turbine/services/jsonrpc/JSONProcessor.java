@@ -20,6 +20,9 @@ package org.apache.turbine.services.jsonrpc;
  */
 
 import java.io.CharArrayWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
 
 import javax.servlet.http.HttpServletRequest;
 
@@ -31,6 +34,12 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+
 /**
  * Process a JSON RPC call
  *
@@ -41,6 +50,9 @@ public class JSONProcessor
     /** Log. */
     private static Logger log = LogManager.getLogger(JSONProcessor.class);
 
+    /** Factory for streaming parsers, thread-safe */
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
     /**
      * Process a JSON RPC call
      * @param cdata the JSON data
@@ -56,23 +68,7 @@ public class JSONProcessor
         try
         {
             json_req = new JSONObject(cdata.toString());
-            if (log.isDebugEnabled())
-            {
-                String methodName = json_req.getString("method");
-                JSONArray arguments = json_req.getJSONArray("params");
-
-                // If this a CallableReference it will have a non-zero objectID
-                int object_id = json_req.optInt("objectID");
-                StringBuilder sb = new StringBuilder(".doprocessCall(): call ");
-                if (object_id != 0)
-                {
-                    sb.append("objectID=").append(object_id).append(" ");
-                }
-                sb.append(methodName).append("(").append(arguments).append(")");
-                log.debug(sb.toString());
-            }
-            //json_res = json_bridge.call(new Object[] {request}, object_id, methodName, arguments);
-            json_res = json_bridge.call(new Object[] {request}, json_req);
+            json_res = call(json_req, json_bridge, request);
         }
         catch (JSONException e)
         {
@@ -80,8 +76,170 @@ public class JSONProcessor
             json_res = JSONRPCResult.MSG_ERR_PARSE;
         }
         // Write the response
-        log.debug(".processCall():  returns ", json_res::toString);
+        log.debug(".processCall():  returns {}", json_res::toString);
         return json_res;
     }
 
+    /**
+     * Process a JSON RPC call or a batch of calls, parsing the request
+     * directly from the input stream and writing the results directly to
+     * the output. A batch is a JSON array of calls and is answered with
+     * a JSON array of the results in the same order.
+     *
+     * @param in the request body, UTF-8 encoded
+     * @param out the writer for the response
+     * @param json_bridge the {@link JSONRPCBridge} object
+     * @param request the request
+     * @throws IOException if reading the request or writing the response fails
+     */
+    public static void processCall(InputStream in, Writer out, JSONRPCBridge json_bridge, HttpServletRequest request)
+        throws IOException
+    {
+        Object json_req = null;
+
+        try (JsonParser parser = JSON_FACTORY.createParser(in))
+        {
+            Object value = readValue(parser, parser.nextToken());
+
+            JsonToken trailing = parser.nextToken();
+            if (trailing != null)
+            {
+                throw new JsonParseException(parser, "Unexpected content after the request: " + trailing);
+            }
+
+            json_req = value;
+        }
+        catch (JsonProcessingException | JSONException e)
+        {
+            log.error(".processCall(): can't parse call", e);
+        }
+
+        if (json_req instanceof JSONObject)
+        {
+            write(out, call((JSONObject) json_req, json_bridge, request));
+        }
+        else if (json_req instanceof JSONArray && ((JSONArray) json_req).length() > 0)
+        {
+            JSONArray batch = (JSONArray) json_req;
+            log.debug(".processCall(): batch of {} calls", batch.length());
+
+            out.write('[');
+            for (int i = 0; i < batch.length(); i++)
+            {
+                if (i > 0)
+                {
+                    out.write(',');
+                }
+
+                Object item = batch.opt(i);
+                write(out, item instanceof JSONObject ?
+                        call((JSONObject) item, json_bridge, request) : JSONRPCResult.MSG_ERR_PARSE);
+            }
+            out.write(']');
+        }
+        else
+        {
+            write(out, JSONRPCResult.MSG_ERR_PARSE);
+        }
+    }
+
+    /**
+     * Invoke a single call on the bridge
+     *
+     * @param json_req the JSON RPC request
+     * @param json_bridge the {@link JSONRPCBridge} object
+     * @param request the request
+     * @return the return object of the JSON RPC call
+     */
+    private static Object call(JSONObject json_req, JSONRPCBridge json_bridge, HttpServletRequest request)
+    {
+        if (log.isDebugEnabled())
+        {
+            String methodName = json_req.optString("method");
+            JSONArray arguments = json_req.optJSONArray("params");
+
+            // If this a CallableReference it will have a non-zero objectID
+            int object_id = json_req.optInt("objectID");
+            StringBuilder sb = new StringBuilder(".doprocessCall(): call ");
+            if (object_id != 0)
+            {
+                sb.append("objectID=").append(object_id).append(" ");
+            }
+            sb.append(methodName).append("(").append(arguments).append(")");
+            log.debug(sb.toString());
+        }
+
+        //json_res = json_bridge.call(new Object[] {request}, object_id, methodName, arguments);
+        return json_bridge.call(new Object[] {request}, json_req);
+    }
+
+    /**
+     * Write a result to the output
+     *
+     * @param out the writer for the response
+     * @param json_res the result
+     * @throws IOException if writing fails
+     */
+    private static void write(Writer out, Object json_res) throws IOException
+    {
+        log.debug(".processCall():  returns {}", json_res::toString);
+        out.write(json_res.toString());
+    }
+
+    /**
+     * Read a JSON value from a streaming parser into the org.json model
+     * used by the {@link JSONRPCBridge}
+     *
+     * @param parser the parser
+     * @param token the current token
+     * @return a JSONObject, JSONArray, String, Number, Boolean or JSONObject.NULL
+     * @throws IOException if the input is not valid JSON
+     * @throws JSONException if the JSON model cannot be built
+     */
+    private static Object readValue(JsonParser parser, JsonToken token) throws IOException, JSONException
+    {
+        if (token == null)
+        {
+            throw new JsonParseException(parser, "Unexpected end of input");
+        }
+
+        switch (token)
+        {
+            case START_OBJECT:
+                JSONObject object = new JSONObject();
+                for (JsonToken t = parser.nextToken(); t == JsonToken.FIELD_NAME; t = parser.nextToken())
+                {
+                    String name = parser.getCurrentName();
+                    object.put(name, readValue(parser, parser.nextToken()));
+                }
+                return object;
+
+            case START_ARRAY:
+                JSONArray array = new JSONArray();
+                for (JsonToken t = parser.nextToken(); t != JsonToken.END_ARRAY; t = parser.nextToken())
+                {
+                    array.put(readValue(parser, t));
+                }
+                return array;
+
+            case VALUE_STRING:
+                return parser.getText();
+
+            case VALUE_NUMBER_INT:
+            case VALUE_NUMBER_FLOAT:
+                return parser.getNumberValue();
+
+            case VALUE_TRUE:
+                return Boolean.TRUE;
+
+            case VALUE_FALSE:
+                return Boolean.FALSE;
+
+            case VALUE_NULL:
+                return JSONObject.NULL;
+
+            default:
+                throw new JsonParseException(parser, "Unexpected token " + token);
+        }
+    }
 }
@@ -20,6 +20,9 @@ package org.apache.turbine.services.jsonrpc;
  */
 
 import java.io.CharArrayWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpSession;
@@ -50,6 +53,21 @@ public interface JsonRpcService
     Object processCall(CharArrayWriter cdata,
             JSONRPCBridge json_bridge, HttpServletRequest request);
 
+    /**
+     * Process a JSON RPC call or a batch of calls, streaming the request
+     * from the input and the results to the output
+     * @param in the request body, UTF-8 encoded
+     * @param out the writer for the response
+     * @param json_bridge the {@link JSONRPCBridge} object
+     * @param request the request
+     * @throws IOException if reading the request or writing the response fails
+     */
+    default void processCall(InputStream in, Writer out,
+            JSONRPCBridge json_bridge, HttpServletRequest request) throws IOException
+    {
+        JSONProcessor.processCall(in, out, json_bridge, request);
+    }
+
     /**
      * Register an object with the {@link JSONRPCBridge} in a given session
      *
@@ -0,0 +1,49 @@
+package org.apache.turbine.services.metrics;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.List;
+
+/**
+ * Management interface of the pipeline statistics of a single pipeline.
+ */
+public interface PipelineMetricsMXBean
+{
+    /**
+     * @return the name of the pipeline
+     */
+    String getPipelineName();
+
+    /**
+     * @return a snapshot of the statistics of all valves in pipeline order
+     */
+    List<ValveMetrics> getValveMetrics();
+
+    /**
+     * @return the total number of requests processed by the pipeline
+     */
+    long getRequestCount();
+
+    /**
+     * Clear the statistics of the pipeline
+     */
+    void reset();
+}
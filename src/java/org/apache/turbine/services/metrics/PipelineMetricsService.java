@@ -0,0 +1,86 @@
+package org.apache.turbine.services.metrics;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.List;
+
+import org.apache.turbine.pipeline.TurbinePipeline;
+import org.apache.turbine.pipeline.ValveStatistics;
+import org.apache.turbine.services.Service;
+
+/**
+ * The PipelineMetricsService collects invocation counts, latency and
+ * error statistics for every valve of the request pipeline. When the
+ * service is not configured or disabled, the pipeline does not measure
+ * anything.
+ */
+public interface PipelineMetricsService extends Service
+{
+    /**
+     * The key under which this service is stored in TurbineServices.
+     */
+    String SERVICE_NAME = "PipelineMetricsService";
+
+    /**
+     * Configuration key to enable or disable the recording of statistics
+     */
+    String ENABLED_KEY = "enabled";
+
+    /**
+     * Default value for enabling statistics
+     */
+    boolean ENABLED_DEFAULT = true;
+
+    /**
+     * Configuration key to enable or disable the registration of the MBean
+     */
+    String JMX_ENABLED_KEY = "jmx.enabled";
+
+    /**
+     * Default value for the MBean registration
+     */
+    boolean JMX_ENABLED_DEFAULT = true;
+
+    /**
+     * @return true if valve statistics should be recorded
+     */
+    boolean isEnabled();
+
+    /**
+     * Register a pipeline with this service. Called by the pipeline
+     * during initialization.
+     *
+     * @param pipeline the pipeline recording statistics
+     */
+    void register(TurbinePipeline pipeline);
+
+    /**
+     * Get the statistics of all valves of all registered pipelines
+     *
+     * @return a list of valve statistics in pipeline order
+     */
+    List<ValveStatistics> getValveStatistics();
+
+    /**
+     * Clear the statistics of all registered pipelines
+     */
+    void reset();
+}
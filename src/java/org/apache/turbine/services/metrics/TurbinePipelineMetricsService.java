@@ -0,0 +1,239 @@
+package org.apache.turbine.services.metrics;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.commons.configuration2.Configuration;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.turbine.pipeline.TurbinePipeline;
+import org.apache.turbine.pipeline.ValveStatistics;
+import org.apache.turbine.services.InitializationException;
+import org.apache.turbine.services.TurbineBaseService;
+
+/**
+ * Default implementation of the {@link PipelineMetricsService}. Each
+ * registered pipeline is exposed as an MBean named
+ * <code>org.apache.turbine:type=PipelineMetrics,name=[pipeline name]</code>
+ * in the platform MBean server.
+ *
+ * <pre>
+ * services.PipelineMetricsService.classname=org.apache.turbine.services.metrics.TurbinePipelineMetricsService
+ * services.PipelineMetricsService.enabled=true
+ * services.PipelineMetricsService.jmx.enabled=true
+ * </pre>
+ */
+public class TurbinePipelineMetricsService
+        extends TurbineBaseService
+        implements PipelineMetricsService
+{
+    /** Logging */
+    private static final Logger log = LogManager.getLogger(TurbinePipelineMetricsService.class);
+
+    /** JMX domain of the MBeans */
+    private static final String JMX_DOMAIN = "org.apache.turbine";
+
+    /** Whether statistics are recorded */
+    private boolean enabled;
+
+    /** Whether MBeans are registered */
+    private boolean jmxEnabled;
+
+    /** The registered pipelines */
+    private final List<TurbinePipeline> pipelines = new CopyOnWriteArrayList<>();
+
+    /** The registered MBean names */
+    private final List<ObjectName> mbeanNames = new CopyOnWriteArrayList<>();
+
+    /**
+     * Initializes the service.
+     *
+     * @throws InitializationException if the initialization fails
+     */
+    @Override
+    public void init() throws InitializationException
+    {
+        Configuration conf = getConfiguration();
+
+        enabled = conf.getBoolean(ENABLED_KEY, ENABLED_DEFAULT);
+        jmxEnabled = conf.getBoolean(JMX_ENABLED_KEY, JMX_ENABLED_DEFAULT);
+
+        log.info("Pipeline metrics are {}", enabled ? "enabled" : "disabled");
+
+        setInit(true);
+    }
+
+    /**
+     * Unregisters all MBeans and releases the pipelines.
+     */
+    @Override
+    public void shutdown()
+    {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+        for (ObjectName name : mbeanNames)
+        {
+            try
+            {
+                if (server.isRegistered(name))
+                {
+                    server.unregisterMBean(name);
+                }
+            }
+            catch (JMException e)
+            {
+                log.warn("Could not unregister MBean {}", name, e);
+            }
+        }
+
+        mbeanNames.clear();
+        pipelines.clear();
+
+        setInit(false);
+    }
+
+    /**
+     * @see org.apache.turbine.services.metrics.PipelineMetricsService#isEnabled()
+     */
+    @Override
+    public boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    /**
+     * @see org.apache.turbine.services.metrics.PipelineMetricsService#register(org.apache.turbine.pipeline.TurbinePipeline)
+     */
+    @Override
+    public void register(TurbinePipeline pipeline)
+    {
+        pipelines.add(pipeline);
+
+        if (jmxEnabled)
+        {
+            String pipelineName = pipeline.getName() == null ? "default" : pipeline.getName();
+
+            try
+            {
+                MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+                ObjectName name = new ObjectName(JMX_DOMAIN + ":type=PipelineMetrics,name="
+                        + ObjectName.quote(pipelineName));
+
+                if (server.isRegistered(name))
+                {
+                    server.unregisterMBean(name);
+                }
+
+                server.registerMBean(new PipelineMetrics(pipelineName, pipeline), name);
+                mbeanNames.add(name);
+
+                log.debug("Registered MBean {}", name);
+            }
+            catch (JMException e)
+            {
+                log.warn("Could not register pipeline metrics MBean for pipeline {}", pipelineName, e);
+            }
+        }
+    }
+
+    /**
+     * @see org.apache.turbine.services.metrics.PipelineMetricsService#getValveStatistics()
+     */
+    @Override
+    public List<ValveStatistics> getValveStatistics()
+    {
+        List<ValveStatistics> stats = new ArrayList<>();
+
+        for (TurbinePipeline pipeline : pipelines)
+        {
+            stats.addAll(Arrays.asList(pipeline.getValveStatistics()));
+        }
+
+        return stats;
+    }
+
+    /**
+     * @see org.apache.turbine.services.metrics.PipelineMetricsService#reset()
+     */
+    @Override
+    public void reset()
+    {
+        getValveStatistics().forEach(ValveStatistics::reset);
+    }
+
+    /**
+     * MBean exposing the statistics of a single pipeline
+     */
+    private static class PipelineMetrics implements PipelineMetricsMXBean
+    {
+        private final String name;
+        private final TurbinePipeline pipeline;
+
+        /**
+         * Constructor
+         *
+         * @param name the name of the pipeline
+         * @param pipeline the pipeline
+         */
+        public PipelineMetrics(String name, TurbinePipeline pipeline)
+        {
+            this.name = name;
+            this.pipeline = pipeline;
+        }
+
+        @Override
+        public String getPipelineName()
+        {
+            return name;
+        }
+
+        @Override
+        public List<ValveMetrics> getValveMetrics()
+        {
+            return Arrays.stream(pipeline.getValveStatistics())
+                    .map(ValveMetrics::of)
+                    .collect(Collectors.toList());
+        }
+
+        @Override
+        public long getRequestCount()
+        {
+            ValveStatistics[] stats = pipeline.getValveStatistics();
+            return stats.length == 0 ? 0 : stats[0].getCount();
+        }
+
+        @Override
+        public void reset()
+        {
+            Arrays.stream(pipeline.getValveStatistics()).forEach(ValveStatistics::reset);
+        }
+    }
+}
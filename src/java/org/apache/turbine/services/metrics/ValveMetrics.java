@@ -0,0 +1,163 @@
+package org.apache.turbine.services.metrics;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.beans.ConstructorProperties;
+
+import org.apache.turbine.pipeline.ValveStatistics;
+
+/**
+ * Immutable snapshot of the statistics of a single valve, as exposed
+ * via JMX. All times are in microseconds.
+ */
+public class ValveMetrics
+{
+    private final String name;
+    private final long count;
+    private final long errorCount;
+    private final long totalTime;
+    private final long meanTime;
+    private final long medianTime;
+    private final long percentile90Time;
+    private final long percentile99Time;
+    private final long maxTime;
+
+    /**
+     * Constructor
+     *
+     * @param name the name of the valve
+     * @param count the number of invocations
+     * @param errorCount the number of failed invocations
+     * @param totalTime the total time spent in the valve
+     * @param meanTime the mean time spent in the valve
+     * @param medianTime the median time spent in the valve
+     * @param percentile90Time the 90th percentile of the time spent in the valve
+     * @param percentile99Time the 99th percentile of the time spent in the valve
+     * @param maxTime the maximum time spent in the valve
+     */
+    @ConstructorProperties({"name", "count", "errorCount", "totalTime", "meanTime",
+        "medianTime", "percentile90Time", "percentile99Time", "maxTime"})
+    public ValveMetrics(String name, long count, long errorCount, long totalTime,
+            long meanTime, long medianTime, long percentile90Time,
+            long percentile99Time, long maxTime)
+    {
+        this.name = name;
+        this.count = count;
+        this.errorCount = errorCount;
+        this.totalTime = totalTime;
+        this.meanTime = meanTime;
+        this.medianTime = medianTime;
+        this.percentile90Time = percentile90Time;
+        this.percentile99Time = percentile99Time;
+        this.maxTime = maxTime;
+    }
+
+    /**
+     * Create a snapshot of the given valve statistics
+     *
+     * @param stats the valve statistics
+     * @return the snapshot
+     */
+    public static ValveMetrics of(ValveStatistics stats)
+    {
+        return new ValveMetrics(stats.getName(),
+                stats.getCount(),
+                stats.getErrorCount(),
+                stats.getTotalTime() / 1000,
+                Math.round(stats.getMeanTime() / 1000),
+                stats.getPercentile(50) / 1000,
+                stats.getPercentile(90) / 1000,
+                stats.getPercentile(99) / 1000,
+                stats.getMaxTime() / 1000);
+    }
+
+    /**
+     * @return the name of the valve
+     */
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * @return the number of invocations
+     */
+    public long getCount()
+    {
+        return count;
+    }
+
+    /**
+     * @return the number of failed invocations
+     */
+    public long getErrorCount()
+    {
+        return errorCount;
+    }
+
+    /**
+     * @return the total time spent in the valve
+     */
+    public long getTotalTime()
+    {
+        return totalTime;
+    }
+
+    /**
+     * @return the mean time spent in the valve
+     */
+    public long getMeanTime()
+    {
+        return meanTime;
+    }
+
+    /**
+     * @return the median time spent in the valve
+     */
+    public long getMedianTime()
+    {
+        return medianTime;
+    }
+
+    /**
+     * @return the 90th percentile of the time spent in the valve
+     */
+    public long getPercentile90Time()
+    {
+        return percentile90Time;
+    }
+
+    /**
+     * @return the 99th percentile of the time spent in the valve
+     */
+    public long getPercentile99Time()
+    {
+        return percentile99Time;
+    }
+
+    /**
+     * @return the maximum time spent in the valve
+     */
+    public long getMaxTime()
+    {
+        return maxTime;
+    }
+}
@@ -96,6 +96,15 @@ public interface PullService
     /** Default value for per request tool refreshing */
     boolean TOOLS_PER_REQUEST_REFRESH_DEFAULT = false;
 
+    /**
+     * Property tag for lazy request tools. If set, request tools are
+     * only fetched and initialized when a template looks them up.
+     */
+    String TOOLS_REQUEST_LAZY_KEY = "tools.request.lazy";
+
+    /** Default value for lazy request tools */
+    boolean TOOLS_REQUEST_LAZY_DEFAULT = false;
+
     /** prefix for key used in the session to store session scope pull tools */
     String SESSION_TOOLS_ATTRIBUTE_PREFIX = "turbine.sessiontools.";
 
@@ -0,0 +1,42 @@
+package org.apache.turbine.services.pull;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+/**
+ * Session, authorized and persistent tools can implement this interface
+ * to tell the pull service whether they need a refresh on the current
+ * request. Tools without it are refreshed on every request if
+ * <code>tools.per.request.refresh</code> is set.
+ *
+ * @version $Id$
+ */
+public interface RefreshableTool
+{
+    /**
+     * Checks whether the tool must be refreshed before it is put into
+     * the context. This is only asked if
+     * <code>tools.per.request.refresh</code> is set.
+     *
+     * @return true if the refresh method of the tool should be called
+     */
+    boolean isRefreshNeeded();
+}
@@ -0,0 +1,59 @@
+package org.apache.turbine.services.pull;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.io.Serializable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Coordinates the creation of session scope tools. One holder is stored
+ * in each session and hands out a lock per tool, so concurrent requests
+ * of the same session only wait for each other while a tool is
+ * created for the first time and never for tools which already exist.
+ *
+ * @version $Id$
+ */
+class SessionToolHolder
+        implements Serializable
+{
+    /** Serial version */
+    private static final long serialVersionUID = 5113093414786651453L;
+
+    /** The session attribute which holds the holder */
+    static final String ATTRIBUTE = SessionToolHolder.class.getName();
+
+    /** One lock per tool key */
+    private final ConcurrentMap<String, ReentrantLock> locks = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the lock which guards the creation of a tool.
+     *
+     * @param key the key of the tool
+     * @return the lock for this key, created on first use
+     */
+    ReentrantLock getLock(String key)
+    {
+        return locks.computeIfAbsent(key, k -> new ReentrantLock());
+    }
+}
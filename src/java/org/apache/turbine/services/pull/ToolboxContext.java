@@ -0,0 +1,187 @@
+package org.apache.turbine.services.pull;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import org.apache.velocity.VelocityContext;
+import org.apache.velocity.context.Context;
+
+/**
+ * A request context which can hold tools that are only created
+ * when a template looks them up for the first time.
+ * <p>
+ * The pull service registers a factory for each request tool. The
+ * first lookup runs the factory and stores the result like any other
+ * value; removing a tool which has never been looked up just drops
+ * its factory. Contexts of other types get their tools eagerly.
+ * </p>
+ *
+ * @version $Id$
+ */
+public class ToolboxContext
+        extends VelocityContext
+{
+    /** Factories of tools that have not been looked up yet */
+    private Map<String, Supplier<Object>> pending;
+
+    /**
+     * Creates a new toolbox context chained to the given context.
+     *
+     * @param innerContext the chained context, may be null
+     */
+    public ToolboxContext(Context innerContext)
+    {
+        super(innerContext);
+    }
+
+    /**
+     * Registers a tool which is created on first lookup.
+     *
+     * @param key the name of the tool in the context
+     * @param factory creates the tool, may return null if that fails
+     */
+    public void putLazy(String key, Supplier<Object> factory)
+    {
+        if (pending == null)
+        {
+            pending = new HashMap<>();
+        }
+
+        super.internalRemove(key);
+        pending.put(key, factory);
+    }
+
+    /**
+     * Checks whether the named tool is still waiting for its first lookup.
+     *
+     * @param key the name of the tool
+     * @return true if the tool has been registered but not created yet
+     */
+    public boolean isPending(String key)
+    {
+        return pending != null && pending.containsKey(key);
+    }
+
+    /**
+     * @see org.apache.velocity.VelocityContext#internalGet(java.lang.String)
+     */
+    @Override
+    public Object internalGet(String key)
+    {
+        Object value = super.internalGet(key);
+
+        if (value == null && pending != null)
+        {
+            Supplier<Object> factory = pending.remove(key);
+
+            if (factory != null)
+            {
+                value = factory.get();
+
+                if (value != null)
+                {
+                    super.internalPut(key, value);
+                }
+            }
+        }
+
+        return value;
+    }
+
+    /**
+     * @see org.apache.velocity.VelocityContext#internalPut(java.lang.String, java.lang.Object)
+     */
+    @Override
+    public Object internalPut(String key, Object value)
+    {
+        if (pending != null)
+        {
+            pending.remove(key);
+        }
+
+        return super.internalPut(key, value);
+    }
+
+    /**
+     * @see org.apache.velocity.VelocityContext#internalContainsKey(java.lang.String)
+     */
+    @Override
+    public boolean internalContainsKey(String key)
+    {
+        return super.internalContainsKey(key) || isPending(key);
+    }
+
+    /**
+     * @see org.apache.velocity.VelocityContext#internalGetKeys()
+     */
+    @Override
+    public String[] internalGetKeys()
+    {
+        if (pending == null || pending.isEmpty())
+        {
+            return super.internalGetKeys();
+        }
+
+        Set<String> keys = new LinkedHashSet<>(Arrays.asList(super.internalGetKeys()));
+        keys.addAll(pending.keySet());
+        return keys.toArray(new String[keys.size()]);
+    }
+
+    /**
+     * Removes a value. A tool which has never been looked up is not
+     * created, so null is returned for it.
+     *
+     * @see org.apache.velocity.VelocityContext#internalRemove(java.lang.String)
+     */
+    @Override
+    public Object internalRemove(String key)
+    {
+        if (pending != null)
+        {
+            pending.remove(key);
+        }
+
+        return super.internalRemove(key);
+    }
+
+    /**
+     * @see org.apache.velocity.VelocityContext#clone()
+     */
+    @Override
+    public Object clone()
+    {
+        ToolboxContext clone = (ToolboxContext) super.clone();
+
+        if (pending != null)
+        {
+            clone.pending = new HashMap<>(pending);
+        }
+
+        return clone;
+    }
+}
@@ -23,7 +23,13 @@ package org.apache.turbine.services.pull;
 
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.servlet.http.HttpSession;
 
 import org.apache.commons.configuration2.Configuration;
 import org.apache.fulcrum.pool.PoolService;
@@ -35,6 +41,7 @@ import org.apache.turbine.annotation.AnnotationProcessor;
 import org.apache.turbine.om.security.User;
 import org.apache.turbine.pipeline.PipelineData;
 import org.apache.turbine.services.InitializationException;
+import org.apache.turbine.services.ServiceHandle;
 import org.apache.turbine.services.TurbineBaseService;
 import org.apache.turbine.services.TurbineServices;
 import org.apache.turbine.services.velocity.VelocityService;
@@ -110,6 +117,13 @@ import org.apache.velocity.context.Context;
  *
  * Defaults: none
  * </pre>
+ * <p>
+ * If <code>tools.request.lazy</code> is set, request tools are put into
+ * a {@link ToolboxContext} as factories and only fetched from the pool
+ * and initialized when a template looks them up. Only those tools are
+ * released at the end of the request. {@link #getRequestToolUsage()}
+ * shows how often each request tool was actually created.
+ * </p>
  *
  * @author <a href="mailto:jvanzyl@periapt.com">Jason van Zyl</a>
  * @author <a href="mailto:sean@informage.net">Sean Legassick</a>
@@ -125,6 +139,10 @@ public class TurbinePullService
     /** Logging */
     private static Logger log = LogManager.getLogger(TurbinePullService.class);
 
+    /** Handle of the user manager, used on every request */
+    private static final ServiceHandle<TurbineUserManager> USER_MANAGER =
+            ServiceHandle.of(TurbineUserManager.class, TurbineUserManager.ROLE);
+
     /** Reference to the pool service */
     private PoolService pool = null;
 
@@ -151,6 +169,7 @@ public class TurbinePullService
         String toolName;
         String toolClassName;
         Class<ApplicationTool> toolClass;
+        LongAdder materialized = new LongAdder();
 
         public ToolData(String toolName, String toolClassName, Class<ApplicationTool> toolClass)
         {
@@ -181,6 +200,12 @@ public class TurbinePullService
     /** Should we refresh the application tools on a per request basis? */
     private boolean refreshToolsPerRequest = false;
 
+    /** Striped locks guarding the creation of the session tool holders */
+    private final Object[] holderLocks = new Object[64];
+
+    /** Should request tools only be created on first lookup? */
+    private boolean lazyRequestTools = false;
+
     /**
      * Called the first time the Service is used.
      */
@@ -230,6 +255,11 @@ public class TurbinePullService
     private void initPullService()
         throws Exception
     {
+        for (int i = 0; i < holderLocks.length; i++)
+        {
+            holderLocks[i] = new Object();
+        }
+
         // This is the per-service configuration, prefixed with services.PullService
         Configuration conf = getConfiguration();
 
@@ -252,6 +282,16 @@ public class TurbinePullService
         {
             log.info("Pull Model tools will be refreshed on a per request basis.");
         }
+
+        lazyRequestTools =
+            conf.getBoolean(
+                TOOLS_REQUEST_LAZY_KEY,
+                TOOLS_REQUEST_LAZY_DEFAULT);
+
+        if (lazyRequestTools)
+        {
+            log.info("Pull Model request tools will be created on first access.");
+        }
     }
 
     /**
@@ -397,10 +437,7 @@ public class TurbinePullService
         // new user object.
         populateWithSessionTools(sessionTools, context, data, user);
 
-        TurbineUserManager userManager =
-        	(TurbineUserManager)TurbineServices
-        		.getInstance()
-        		.getService(TurbineUserManager.ROLE);
+        TurbineUserManager userManager = USER_MANAGER.get();
 
         if (!userManager.isAnonymousUser(user) && user.hasLoggedIn())
         {
@@ -443,10 +480,7 @@ public class TurbinePullService
         // new user object.
         populateWithSessionTools(sessionTools, context, data, user);
 
-        TurbineUserManager userManager =
-        	(TurbineUserManager)TurbineServices
-        		.getInstance()
-        		.getService(TurbineUserManager.ROLE);
+        TurbineUserManager userManager = USER_MANAGER.get();
 
         if (!userManager.isAnonymousUser(user) && user.hasLoggedIn())
         {
@@ -490,30 +524,86 @@ public class TurbinePullService
      */
     private void populateWithRequestTools(Context context, Object data)
     {
-        // Iterate the tools
-        for (ToolData toolData : requestTools)
+        if (lazyRequestTools && context instanceof ToolboxContext)
         {
-            try
+            ToolboxContext toolbox = (ToolboxContext) context;
+
+            for (ToolData toolData : requestTools)
             {
-                // Fetch Object through the Pool.
-                Object tool = pool.getInstance(toolData.toolClass);
+                toolbox.putLazy(toolData.toolName, () -> getRequestTool(toolData, data));
+            }
+
+            return;
+        }
 
-                // request tools are init'd with a RunData object
-                initTool(tool, data);
+        // Iterate the tools
+        for (ToolData toolData : requestTools)
+        {
+            Object tool = getRequestTool(toolData, data);
 
+            if (tool != null)
+            {
                 // put the tool in the context
                 context.put(toolData.toolName, tool);
             }
-            catch (Exception e)
+        }
+    }
+
+    /**
+     * Fetch a request-scope tool from the pool and initialize it
+     *
+     * @param toolData the tool to create
+     * @param data a RunData or PipelineData instance
+     *
+     * @return the initialized tool or null if it could not be created
+     */
+    private Object getRequestTool(ToolData toolData, Object data)
+    {
+        try
+        {
+            // Fetch Object through the Pool.
+            Object tool = pool.getInstance(toolData.toolClass);
+
+            // request tools are init'd with a RunData object
+            initTool(tool, data);
+
+            toolData.materialized.increment();
+            return tool;
+        }
+        catch (Exception e)
+        {
+            log.error("Could not instantiate request tool {} from a {} object",
+                    toolData.toolName, toolData.toolClassName, e);
+            return null;
+        }
+    }
+
+    /**
+     * Return how often each request tool has been fetched and
+     * initialized since the service was started. With lazy request
+     * tools, this shows which tools the templates actually use.
+     *
+     * @return a map of tool names to the number of created instances
+     */
+    public Map<String, Long> getRequestToolUsage()
+    {
+        Map<String, Long> usage = new LinkedHashMap<>();
+
+        if (requestTools != null)
+        {
+            for (ToolData toolData : requestTools)
             {
-                log.error("Could not instantiate request tool {} from a {} object",
-                        toolData.toolName, toolData.toolClassName, e);
+                usage.put(toolData.toolName, Long.valueOf(toolData.materialized.sum()));
             }
         }
+
+        return usage;
     }
 
     /**
-     * Populate the given context with the session-scoped tools.
+     * Populate the given context with the session-scoped tools. In a
+     * stateless request, the tools are only created on first lookup, so
+     * no session is created for templates which do not use them.
      *
      * @param tools The list of tools with which to populate the session.
      * @param context The context to populate.
@@ -524,20 +614,68 @@ public class TurbinePullService
     private void populateWithSessionTools(List<ToolData> tools, Context context,
             RunData data, User user)
     {
+        if (tools.isEmpty())
+        {
+            return;
+        }
+
+        if (data.isStateless() && context instanceof ToolboxContext)
+        {
+            ToolboxContext toolbox = (ToolboxContext) context;
+
+            for (ToolData toolData : tools)
+            {
+                toolbox.putLazy(toolData.toolName, () -> getSessionTool(toolData, data, user));
+            }
+
+            return;
+        }
+
         // Iterate the tools
         for (ToolData toolData : tools)
         {
-            try
+            Object tool = getSessionTool(toolData, data, user);
+
+            if (tool != null)
             {
-                // ensure that tool is created only once for a user
-                // by synchronizing against the user object
-                synchronized (data.getSession())
+                // put the tool in the context
+                log.debug("Adding {} to ctx as {}", tool, toolData.toolName);
+                context.put(toolData.toolName, tool);
+            }
+        }
+    }
+
+    /**
+     * Fetch a session-scoped tool from the session, creating and
+     * storing it if necessary.
+     *
+     * @param toolData the tool to fetch
+     * @param data The current RunData object
+     * @param user The <code>User</code> object to initialize the tool with
+     *
+     * @return the tool or null if it could not be created
+     */
+    private Object getSessionTool(ToolData toolData, RunData data, User user)
+    {
+        try
+        {
+            HttpSession session = data.getSession();
+            String key = SESSION_TOOLS_ATTRIBUTE_PREFIX + toolData.toolClassName;
+
+            // first try and fetch the tool from the session
+            Object tool = session.getAttribute(key);
+
+            if (tool == null)
+            {
+                // ensure that the tool is created only once for a
+                // session. Only requests which need this very tool
+                // wait here.
+                ReentrantLock lock = getSessionToolHolder(session).getLock(key);
+                lock.lock();
+
+                try
                 {
-                    // first try and fetch the tool from the user's
-                    // hashmap
-                    Object tool = data.getSession().getAttribute(
-                            SESSION_TOOLS_ATTRIBUTE_PREFIX
-                            + toolData.toolClassName);
+                    tool = session.getAttribute(key);
 
                     if (tool == null)
                     {
@@ -547,49 +685,51 @@ public class TurbinePullService
 
                         // session tools are init'd with the User object
                         initTool(tool, user);
-                    }
 
-                    // *NOT* else
-                    if(tool != null)
-                    {
                         // store the newly created tool in the session
-                        data.getSession().setAttribute(
-                                SESSION_TOOLS_ATTRIBUTE_PREFIX
-                                + tool.getClass().getName(), tool);
-
-                        // This is a semantics change. In the old
-                        // Turbine, Session tools were initialized and
-                        // then refreshed every time they were pulled
-                        // into the context if "refreshToolsPerRequest"
-                        // was wanted.
-                        //
-                        // RunDataApplicationTools now have a parameter
-                        // for refresh. If it is not refreshed immediately
-                        // after init(), the parameter value will be undefined
-                        // until the 2nd run. So we refresh all the session
-                        // tools on every run, even if we just init'ed it.
-                        //
-
-                        if (refreshToolsPerRequest)
-                        {
-                            refreshTool(tool, data);
-                        }
-
-                        // put the tool in the context
-                        log.debug("Adding {} to ctx as {}", tool, toolData.toolName);
-                        context.put(toolData.toolName, tool);
-                    }
-                    else
-                    {
-                        log.info("Tool {} was null, skipping it.", toolData.toolName);
+                        session.setAttribute(key, tool);
                     }
                 }
+                finally
+                {
+                    lock.unlock();
+                }
             }
-            catch (Exception e)
+
+            // *NOT* else
+            if (tool != null)
             {
-                log.error("Could not instantiate session tool {} from a {} object",
-                        toolData.toolName, toolData.toolClassName, e);
+                // This is a semantics change. In the old
+                // Turbine, Session tools were initialized and
+                // then refreshed every time they were pulled
+                // into the context if "refreshToolsPerRequest"
+                // was wanted.
+                //
+                // RunDataApplicationTools now have a parameter
+                // for refresh. If it is not refreshed immediately
+                // after init(), the parameter value will be undefined
+                // until the 2nd run. So we refresh all the session
+                // tools on every run, even if we just init'ed it,
+                // unless the tool tells us otherwise.
+                //
+
+                if (refreshToolsPerRequest)
+                {
+                    refreshSessionTool(tool, data);
+                }
+            }
+            else
+            {
+                log.info("Tool {} was null, skipping it.", toolData.toolName);
             }
+
+            return tool;
+        }
+        catch (Exception e)
+        {
+            log.error("Could not instantiate session tool {} from a {} object",
+                    toolData.toolName, toolData.toolClassName, e);
+            return null;
         }
     }
 
@@ -606,62 +746,77 @@ public class TurbinePullService
     private void populateWithPermTools(List<ToolData> tools, Context context,
             Object data, User user)
     {
+        if (tools.isEmpty())
+        {
+            return;
+        }
+
+        RunData runData = data instanceof PipelineData ?
+                ((PipelineData) data).getRunData() : (RunData) data;
+        SessionToolHolder holder = null;
+
         // Iterate the tools
         for (ToolData toolData : tools)
         {
             try
             {
-                // ensure that tool is created only once for a user
-                // by synchronizing against the user object
-                synchronized (user)
-                {
-                    // first try and fetch the tool from the user's
-                    // hashtable
-                    Object tool = user.getPerm(toolData.toolClassName);
+                // first try and fetch the tool from the user's
+                // hashtable
+                Object tool = user.getPerm(toolData.toolClassName);
 
-                    if (tool == null)
+                if (tool == null)
+                {
+                    if (holder == null)
                     {
-                        // if not there, an instance must be fetched from
-                        // the pool
-                        tool = pool.getInstance(toolData.toolClass);
-
-                        // session tools are init'd with the User object
-                        initTool(tool, user);
-
-                        // store the newly created tool in the user's hashtable
-                        user.setPerm(toolData.toolClassName, tool);
+                        holder = getSessionToolHolder(runData.getSession());
                     }
 
-                    // *NOT* else
-                    if (tool != null)
+                    // ensure that the tool is created only once for a
+                    // user. The user belongs to the session, so the lock
+                    // of the session holder is sufficient.
+                    ReentrantLock lock = holder.getLock(PERSISTENT_TOOL + "." + toolData.toolClassName);
+                    lock.lock();
+
+                    try
                     {
-                        // This is a semantics change. In the old
-                        // Turbine, Session tools were initialized and
-                        // then refreshed every time they were pulled
-                        // into the context if "refreshToolsPerRequest"
-                        // was wanted.
-                        //
-                        // RunDataApplicationTools now have a parameter
-                        // for refresh. If it is not refreshed immediately
-                        // after init(), the parameter value will be undefined
-                        // until the 2nd run. So we refresh all the session
-                        // tools on every run, even if we just init'ed it.
-                        //
-
-                        if (refreshToolsPerRequest)
+                        tool = user.getPerm(toolData.toolClassName);
+
+                        if (tool == null)
                         {
-                            refreshTool(tool, data);
-                        }
+                            // if not there, an instance must be fetched from
+                            // the pool
+                            tool = pool.getInstance(toolData.toolClass);
+
+                            // session tools are init'd with the User object
+                            initTool(tool, user);
 
-                        // put the tool in the context
-                        log.debug("Adding {} to ctx as {}", tool, toolData.toolName);
-                        log.warn("Persistent scope tools are deprecated.");
-                        context.put(toolData.toolName, tool);
+                            // store the newly created tool in the user's hashtable
+                            user.setPerm(toolData.toolClassName, tool);
+                        }
+                    }
+                    finally
+                    {
+                        lock.unlock();
                     }
-                    else
+                }
+
+                // *NOT* else
+                if (tool != null)
+                {
+                    // See the comment in populateWithSessionTools()
+                    if (refreshToolsPerRequest)
                     {
-                        log.info("Tool {} was null, skipping it.", toolData.toolName);
+                        refreshSessionTool(tool, data);
                     }
+
+                    // put the tool in the context
+                    log.debug("Adding {} to ctx as {}", tool, toolData.toolName);
+                    log.warn("Persistent scope tools are deprecated.");
+                    context.put(toolData.toolName, tool);
+                }
+                else
+                {
+                    log.info("Tool {} was null, skipping it.", toolData.toolName);
                 }
             }
             catch (Exception e)
@@ -672,7 +827,55 @@ public class TurbinePullService
         }
     }
 
+    /**
+     * Get the tool holder of a session, creating it if necessary. The
+     * creation is guarded by a striped lock on the session id, so it
+     * does not depend on the identity of the session object, which may
+     * be a different wrapper on every request.
+     *
+     * @param session the current session
+     * @return the tool holder of this session
+     */
+    private SessionToolHolder getSessionToolHolder(HttpSession session)
+    {
+        SessionToolHolder holder =
+                (SessionToolHolder) session.getAttribute(SessionToolHolder.ATTRIBUTE);
 
+        if (holder == null)
+        {
+            Object lock = holderLocks[(session.getId().hashCode() & Integer.MAX_VALUE) % holderLocks.length];
+
+            synchronized (lock)
+            {
+                holder = (SessionToolHolder) session.getAttribute(SessionToolHolder.ATTRIBUTE);
+
+                if (holder == null)
+                {
+                    holder = new SessionToolHolder();
+                    session.setAttribute(SessionToolHolder.ATTRIBUTE, holder);
+                }
+            }
+        }
+
+        return holder;
+    }
+
+    /**
+     * Refresh a session, authorized or persistent tool unless it
+     * declares that it does not need it.
+     *
+     * @param tool A Tool Object
+     * @param data The current RunData or PipelineData Object
+     */
+    private void refreshSessionTool(Object tool, Object data)
+    {
+        if (tool instanceof RefreshableTool && !((RefreshableTool) tool).isRefreshNeeded())
+        {
+            return;
+        }
+
+        refreshTool(tool, data);
+    }
 
     /**
      * Return the absolute path to the resources directory
@@ -719,7 +922,8 @@ public class TurbinePullService
 
     /**
      * Release the request-scope tool instances in the
-     * given Context back to the pool
+     * given Context back to the pool. Lazy tools which have never
+     * been looked up are only dropped from the context.
      *
      * @param context the Velocity Context to release tools from
      */
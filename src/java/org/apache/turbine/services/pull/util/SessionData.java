@@ -26,6 +26,7 @@ import java.util.Iterator;
 import java.util.Map;
 
 import org.apache.turbine.services.pull.ApplicationTool;
+import org.apache.turbine.services.pull.RefreshableTool;
 
 /**
  * Pull tool designed to be used in the session scope for storage of
@@ -36,7 +37,7 @@ import org.apache.turbine.services.pull.ApplicationTool;
  * @author <a href="mailto:quintonm@bellsouth.net">Quinton McCombs</a>
  * @version $Id$
  */
-public class SessionData implements ApplicationTool
+public class SessionData implements ApplicationTool, RefreshableTool
 {
     /** Storage of user defined data */
     private Map<String, Object> dataStorage;
@@ -61,6 +62,17 @@ public class SessionData implements ApplicationTool
         // do nothing
     }
 
+    /**
+     * This tool has nothing to refresh.
+     *
+     * @return false
+     */
+    @Override
+    public boolean isRefreshNeeded()
+    {
+        return false;
+    }
+
     /**
      * Gets the data stored under the key.  Null will be returned if the
      * key does not exist or if null was stored under the key.
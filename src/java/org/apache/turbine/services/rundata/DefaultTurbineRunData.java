@@ -150,6 +150,12 @@ public class DefaultTurbineRunData
      */
     private final Map<String, Object> debugVariables = new HashMap<>();
 
+    /** Whether the request must not create a session by itself. */
+    private boolean stateless;
+
+    /** The lazy session of a stateless request. */
+    private HttpSession lazySession;
+
     /** Logging */
     private static final Logger log = LogManager.getLogger(DefaultTurbineRunData.class);
 
@@ -245,6 +251,8 @@ public class DefaultTurbineRunData
         stackTrace = null;
         stackTraceException = null;
         debugVariables.clear();
+        stateless = false;
+        lazySession = null;
     }
 
     // ***************************************
@@ -321,9 +329,43 @@ public class DefaultTurbineRunData
     @Override
     public HttpSession getSession()
     {
+        if (stateless)
+        {
+            if (lazySession == null)
+            {
+                lazySession = new LazySession(getRequest());
+            }
+
+            return lazySession;
+        }
+
         return getRequest().getSession();
     }
 
+    /**
+     * Whether this request is served without a session.
+     *
+     * @return true if the request is stateless.
+     */
+    @Override
+    public boolean isStateless()
+    {
+        return stateless;
+    }
+
+    /**
+     * Marks this request as stateless or not.
+     *
+     * @param stateless true if the request should not create a session
+     * unless something is stored in it.
+     */
+    @Override
+    public void setStateless(boolean stateless)
+    {
+        this.stateless = stateless;
+        this.lazySession = null;
+    }
+
     /**
      * Gets the servlet configuration used during servlet init.
      *
@@ -0,0 +1,236 @@
+package org.apache.turbine.services.rundata;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.util.Collections;
+import java.util.Enumeration;
+
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpSession;
+
+/**
+ * The session of a stateless request. As long as nothing is written
+ * into it, all read operations behave like an empty, new session and
+ * no session is created in the container. The first write creates the
+ * real session and delegates to it from then on.
+ *
+ * @version $Id$
+ */
+@SuppressWarnings("deprecation")
+class LazySession implements HttpSession
+{
+    /** The current request */
+    private final HttpServletRequest request;
+
+    /** A max inactive interval set before the session existed */
+    private int maxInactiveInterval = Integer.MIN_VALUE;
+
+    /** The time this wrapper was created */
+    private final long creationTime = System.currentTimeMillis();
+
+    /**
+     * Create a lazy session for a request.
+     *
+     * @param request the current request
+     */
+    LazySession(HttpServletRequest request)
+    {
+        this.request = request;
+    }
+
+    /**
+     * @return the real session or null if none was created yet
+     */
+    private HttpSession existing()
+    {
+        return request.getSession(false);
+    }
+
+    /**
+     * @return the real session, created if necessary
+     */
+    private HttpSession create()
+    {
+        HttpSession session = request.getSession(true);
+
+        if (maxInactiveInterval != Integer.MIN_VALUE)
+        {
+            session.setMaxInactiveInterval(maxInactiveInterval);
+            maxInactiveInterval = Integer.MIN_VALUE;
+        }
+
+        return session;
+    }
+
+    @Override
+    public long getCreationTime()
+    {
+        HttpSession session = existing();
+        return session != null ? session.getCreationTime() : creationTime;
+    }
+
+    /**
+     * The id identifies a session across requests, so asking for it
+     * creates the session.
+     */
+    @Override
+    public String getId()
+    {
+        return create().getId();
+    }
+
+    @Override
+    public long getLastAccessedTime()
+    {
+        HttpSession session = existing();
+        return session != null ? session.getLastAccessedTime() : creationTime;
+    }
+
+    @Override
+    public ServletContext getServletContext()
+    {
+        return request.getServletContext();
+    }
+
+    /**
+     * The interval is applied when the session is created.
+     */
+    @Override
+    public void setMaxInactiveInterval(int interval)
+    {
+        HttpSession session = existing();
+
+        if (session != null)
+        {
+            session.setMaxInactiveInterval(interval);
+        }
+        else
+        {
+            maxInactiveInterval = interval;
+        }
+    }
+
+    @Override
+    public int getMaxInactiveInterval()
+    {
+        HttpSession session = existing();
+
+        if (session != null)
+        {
+            return session.getMaxInactiveInterval();
+        }
+
+        return maxInactiveInterval != Integer.MIN_VALUE ? maxInactiveInterval : 0;
+    }
+
+    @Override
+    public javax.servlet.http.HttpSessionContext getSessionContext()
+    {
+        return create().getSessionContext();
+    }
+
+    @Override
+    public Object getAttribute(String name)
+    {
+        HttpSession session = existing();
+        return session != null ? session.getAttribute(name) : null;
+    }
+
+    @Override
+    public Object getValue(String name)
+    {
+        return getAttribute(name);
+    }
+
+    @Override
+    public Enumeration<String> getAttributeNames()
+    {
+        HttpSession session = existing();
+        return session != null ? session.getAttributeNames() : Collections.emptyEnumeration();
+    }
+
+    @Override
+    public String[] getValueNames()
+    {
+        HttpSession session = existing();
+        return session != null ? session.getValueNames() : new String[0];
+    }
+
+    /**
+     * Setting a null value is the same as removing the attribute and
+     * does not create the session.
+     */
+    @Override
+    public void setAttribute(String name, Object value)
+    {
+        if (value == null)
+        {
+            removeAttribute(name);
+        }
+        else
+        {
+            create().setAttribute(name, value);
+        }
+    }
+
+    @Override
+    public void putValue(String name, Object value)
+    {
+        setAttribute(name, value);
+    }
+
+    @Override
+    public void removeAttribute(String name)
+    {
+        HttpSession session = existing();
+
+        if (session != null)
+        {
+            session.removeAttribute(name);
+        }
+    }
+
+    @Override
+    public void removeValue(String name)
+    {
+        removeAttribute(name);
+    }
+
+    @Override
+    public void invalidate()
+    {
+        HttpSession session = existing();
+
+        if (session != null)
+        {
+            session.invalidate();
+        }
+    }
+
+    @Override
+    public boolean isNew()
+    {
+        HttpSession session = existing();
+        return session == null || session.isNew();
+    }
+}
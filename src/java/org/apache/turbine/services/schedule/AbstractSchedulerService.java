@@ -19,12 +19,27 @@ package org.apache.turbine.services.schedule;
  * under the License.
  */
 
+import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.List;
-
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.commons.configuration2.Configuration;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.turbine.services.InitializationException;
 import org.apache.turbine.services.TurbineBaseService;
+import org.apache.turbine.util.LatencyHistogram;
 import org.apache.turbine.util.TurbineException;
 
 /**
@@ -39,6 +54,15 @@ public abstract class AbstractSchedulerService extends TurbineBaseService implem
     /** Logging */
     protected static final Logger log = LogManager.getLogger(ScheduleService.LOGGER_NAME);
 
+    /** The configuration key for the number of worker threads */
+    public static final String WORKER_THREADS_KEY = "worker.threads";
+
+    /** The default number of worker threads */
+    public static final int WORKER_THREADS_DEFAULT = 5;
+
+    /** The configuration key to run jobs on virtual threads (Java 21 and later) */
+    public static final String WORKER_VIRTUAL_KEY = "worker.virtual";
+
     /** The queue */
     protected JobQueue<JobEntry> scheduleQueue = null;
 
@@ -51,6 +75,18 @@ public abstract class AbstractSchedulerService extends TurbineBaseService implem
     /** The thread used to process commands. */
     protected Thread thread;
 
+    /** The executor running the jobs. */
+    protected ExecutorService executor;
+
+    /** The jobs currently running or waiting for a worker */
+    private final Set<JobEntry> runningJobs = ConcurrentHashMap.newKeySet();
+
+    /** The delay between the scheduled and the actual start of jobs */
+    private final LatencyHistogram lag = new LatencyHistogram();
+
+    /** The number of runs skipped because the previous run was still active */
+    private final LongAdder skippedRuns = new LongAdder();
+
     /**
      * Creates a new instance.
      */
@@ -74,6 +110,7 @@ public abstract class AbstractSchedulerService extends TurbineBaseService implem
             setEnabled(getConfiguration().getBoolean("enabled", true));
             scheduleQueue = new JobQueue<>();
             mainLoop = new MainLoop();
+            executor = createExecutor();
 
             @SuppressWarnings("unchecked") // Why is this cast necessary?
             List<JobEntry> jobs = (List<JobEntry>)loadJobs();
@@ -96,10 +133,101 @@ public abstract class AbstractSchedulerService extends TurbineBaseService implem
      */
     protected abstract List<? extends JobEntry> loadJobs() throws TurbineException;
 
+    /**
+     * Load the jobs defined in the service configuration, see
+     * {@link TurbineNonPersistentSchedulerService} for the format.
+     *
+     * @return the list of pre-configured jobs
+     * @throws TurbineException if the configuration is invalid
+     */
+    protected List<JobEntry> loadConfiguredJobs() throws TurbineException
+    {
+        Configuration conf = getConfiguration();
+        List<Object> jobProps = conf.getList("scheduler.jobs");
+        List<JobEntry> jobs = new ArrayList<>();
+
+        // If there are scheduler.jobs defined then set up a job vector
+        // for the scheduleQueue
+        if (!jobProps.isEmpty())
+        {
+            for (int i = 0; i < jobProps.size(); i++)
+            {
+                String jobName = (String)jobProps.get(i);
+                String jobPrefix = "scheduler.job." + jobName;
+
+                String jobId = conf.getString(jobPrefix + ".ID", null);
+                if (StringUtils.isEmpty(jobId))
+                {
+                    throw new TurbineException(
+                            "There is an error in the TurbineResources.properties file. \n"
+                            + jobPrefix + ".ID is not found.\n");
+                }
+
+                int sec = conf.getInt(jobPrefix + ".SECOND", -1);
+                int min = conf.getInt(jobPrefix + ".MINUTE", -1);
+                int hr = conf.getInt(jobPrefix + ".HOUR", -1);
+                int wkday = conf.getInt(jobPrefix + ".WEEKDAY", -1);
+                int dayOfMonth = conf.getInt(jobPrefix + ".DAY_OF_MONTH", -1);
+
+                JobEntry je = newJob(
+                        sec,
+                        min,
+                        hr,
+                        wkday,
+                        dayOfMonth,
+                        jobName);
+                je.setJobId(Integer.parseInt(jobId));
+                jobs.add(je);
+            }
+        }
+
+        return jobs;
+    }
+
+    /**
+     * Create the executor for running the jobs. This is a fixed pool of
+     * daemon threads or, if configured and supported by the JVM, an
+     * executor starting a virtual thread per job.
+     *
+     * @return the executor
+     */
+    protected ExecutorService createExecutor()
+    {
+        if (getConfiguration().getBoolean(WORKER_VIRTUAL_KEY, false))
+        {
+            try
+            {
+                Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+                log.info("Running scheduled jobs on virtual threads");
+                return (ExecutorService) factory.invoke(null);
+            }
+            catch (ReflectiveOperationException e)
+            {
+                log.warn("Virtual threads are not supported by this JVM, using a fixed worker pool");
+            }
+        }
+
+        int threads = Math.max(1, getConfiguration().getInt(WORKER_THREADS_KEY, WORKER_THREADS_DEFAULT));
+        AtomicInteger counter = new AtomicInteger();
+
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads,
+                60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                r -> {
+                    Thread worker = new Thread(r, ScheduleService.SERVICE_NAME + "-worker-" + counter.incrementAndGet());
+                    // see restart()
+                    worker.setDaemon(true);
+                    return worker;
+                });
+        pool.allowCoreThreadTimeOut(true);
+
+        return pool;
+    }
+
     /**
      * Shutdowns the service.
      *
-     * This methods interrupts the housekeeping thread.
+     * This methods interrupts the housekeeping thread. Running jobs are
+     * allowed to complete.
      */
     @Override
     public void shutdown()
@@ -108,6 +236,11 @@ public abstract class AbstractSchedulerService extends TurbineBaseService implem
         {
             getThread().interrupt();
         }
+
+        if (executor != null)
+        {
+            executor.shutdown();
+        }
     }
 
     /**
@@ -175,6 +308,58 @@ public abstract class AbstractSchedulerService extends TurbineBaseService implem
         return scheduleQueue.list();
     }
 
+    /**
+     * Return the number of jobs in the queue.
+     *
+     * @return the queue depth
+     */
+    public int getQueueDepth()
+    {
+        return scheduleQueue.size();
+    }
+
+    /**
+     * Return the number of jobs currently running or waiting for a worker.
+     *
+     * @return the number of active jobs
+     */
+    public int getActiveJobCount()
+    {
+        return runningJobs.size();
+    }
+
+    /**
+     * Return the delay between the scheduled and the actual start of
+     * jobs in nanoseconds.
+     *
+     * @return the lag histogram
+     */
+    public LatencyHistogram getLag()
+    {
+        return lag;
+    }
+
+    /**
+     * Record the delay between the scheduled and the actual start of a job.
+     *
+     * @param delay the delay in milliseconds
+     */
+    protected void recordLag(long delay)
+    {
+        lag.record(TimeUnit.MILLISECONDS.toNanos(delay));
+    }
+
+    /**
+     * Return the number of job runs that were skipped because the previous
+     * run of the same job was still active.
+     *
+     * @return the number of skipped runs
+     */
+    public long getSkippedRunCount()
+    {
+        return skippedRuns.sum();
+    }
+
     /**
      * Sets the enabled status of the scheduler
      *
@@ -286,28 +471,26 @@ public abstract class AbstractSchedulerService extends TurbineBaseService implem
         {
             while (!Thread.interrupted())
             {
-                // Grab the next job off the queue.
-                JobEntry je = scheduleQueue.getNext();
+                long now = System.currentTimeMillis();
+                long when = scheduleQueue.getNextRuntime();
 
-                if (je == null)
+                if (when == Long.MAX_VALUE)
                 {
                     // Queue must be empty. Wait on it.
                     wait();
                 }
+                else if (when > now)
+                {
+                    // Wait till next runtime.
+                    wait(when - now);
+                }
                 else
                 {
-                    long now = System.currentTimeMillis();
-                    long when = je.getNextRuntime();
-
-                    if (when > now)
-                    {
-                        // Wait till next runtime.
-                        wait(when - now);
-                    }
-                    else
+                    // Take the job and update its next runtime.
+                    JobEntry je = scheduleQueue.pollDue(now);
+                    if (je != null)
                     {
-                        // Update the next runtime for the job.
-                        scheduleQueue.updateQueue(je);
+                        recordLag(now - when);
                         // Return the job to run it.
                         return je;
                     }
@@ -323,6 +506,43 @@ public abstract class AbstractSchedulerService extends TurbineBaseService implem
         return null;
     }
 
+    /**
+     * Hand a job over to the executor. If the previous run of the job is
+     * still active, this run is skipped.
+     *
+     * @param je the job to run
+     */
+    protected void dispatch(JobEntry je)
+    {
+        if (!runningJobs.add(je))
+        {
+            skippedRuns.increment();
+            log.debug("Skipping scheduled job #{}, task: {}, previous run still active",
+                    Integer.valueOf(je.getJobId()), je.getTask());
+            return;
+        }
+
+        try
+        {
+            executor.execute(() -> {
+                try
+                {
+                    new WorkerThread(je).run();
+                }
+                finally
+                {
+                    runningJobs.remove(je);
+                }
+            });
+        }
+        catch (RejectedExecutionException e)
+        {
+            runningJobs.remove(je);
+            log.warn("Scheduled job #{} rejected, task: {}",
+                    Integer.valueOf(je.getJobId()), je.getTask(), e);
+        }
+    }
+
     /**
      * Inner class. This is isolated in its own Runnable class just so that the
      * main class need not implement Runnable, which would allow others to
@@ -345,11 +565,7 @@ public abstract class AbstractSchedulerService extends TurbineBaseService implem
                     if (je != null)
                     {
                         taskName = je.getTask();
-
-                        // Start the thread to run the job.
-                        Runnable wt = new WorkerThread(je);
-                        Thread helper = new Thread(wt);
-                        helper.start();
+                        dispatch(je);
                     }
                     else
                     {
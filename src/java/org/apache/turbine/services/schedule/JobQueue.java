@@ -19,15 +19,24 @@ package org.apache.turbine.services.schedule;
  * under the License.
  */
 
-import java.util.Collections;
-import java.util.Comparator;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Vector;
 
 import org.apache.turbine.util.TurbineException;
 
 /**
  * Queue for the scheduler.
+ * <p>
+ * The jobs are kept in a binary heap ordered by their next runtime, so
+ * adding, removing and rescheduling a job costs O(log n). Every job is
+ * queued at most once, jobs are identified by {@link Object#equals(Object)}.
+ * The runtime of a job is captured when it is queued, so changing it
+ * requires {@link #modify(JobEntry)} or {@link #updateQueue(JobEntry)}.
+ * All methods are thread-safe.
  *
  * @author <a href="mailto:mbryson@mont.mindspring.com">Dave Bryson</a>
  * @author <a href="mailto:quintonm@bellsouth.net">Quinton McCombs</a>
@@ -37,16 +46,27 @@ import org.apache.turbine.util.TurbineException;
 public class JobQueue<J extends JobEntry>
 {
     /**
-     * The queue of <code>JobEntry</code> objects.
+     * The heap of queued jobs, may contain cancelled slots.
      */
-    private Vector<J> queue = null;
+    private final PriorityQueue<Slot<J>> queue;
+
+    /**
+     * The current slot of every queued job.
+     */
+    private final Map<J, Slot<J>> slots;
+
+    /**
+     * Sequence number to keep jobs with the same runtime in insertion order.
+     */
+    private long sequence = 0;
 
     /**
      * Creates a new instance.
      */
     public JobQueue()
     {
-        queue = new Vector<>(10);
+        queue = new PriorityQueue<>();
+        slots = new HashMap<>();
     }
 
     /**
@@ -55,16 +75,43 @@ public class JobQueue<J extends JobEntry>
      *
      * @return The next job in the queue.
      */
-    public J getNext()
+    public synchronized J getNext()
     {
-        if (queue.size() > 0)
-        {
-            return queue.elementAt(0);
-        }
-        else
+        Slot<J> slot = peek();
+        return slot == null ? null : slot.job;
+    }
+
+    /**
+     * Return the next job if it is due and reschedule it for its next
+     * runtime.
+     *
+     * @param now the current time in milliseconds
+     * @return the due job or <code>null</code> if no job is due
+     * @throws TurbineException if the runtime calculation fails
+     */
+    public synchronized J pollDue(long now) throws TurbineException
+    {
+        Slot<J> slot = peek();
+
+        if (slot == null || slot.runtime > now)
         {
             return null;
         }
+
+        updateQueue(slot.job);
+        return slot.job;
+    }
+
+    /**
+     * Return the scheduled runtime of the next job in the queue.
+     *
+     * @return the runtime in milliseconds or <code>Long.MAX_VALUE</code> if
+     * there are no jobs in the queue.
+     */
+    public synchronized long getNextRuntime()
+    {
+        Slot<J> slot = peek();
+        return slot == null ? Long.MAX_VALUE : slot.runtime;
     }
 
     /**
@@ -73,52 +120,70 @@ public class JobQueue<J extends JobEntry>
      * @param je The JobEntry we are looking for.
      * @return A JobEntry.
      */
-    public J getJob(J je)
+    public synchronized J getJob(J je)
     {
-        int index = -1;
-
-        if (je != null)
-        {
-            index = queue.indexOf(je);
-        }
-
-        if (index < 0)
+        if (je == null)
         {
             return null;
         }
-        else
-        {
-            return queue.elementAt(index);
-        }
+
+        Slot<J> slot = slots.get(je);
+        return slot == null ? null : slot.job;
     }
 
     /**
      * List jobs in the queue.  This is used by the scheduler UI.
      *
-     * @return A Vector of <code>JobEntry</code> objects.
+     * @return A Vector of <code>JobEntry</code> objects in order of their
+     * next runtime.
      */
-    @SuppressWarnings("unchecked")
-    public Vector<J> list()
+    public synchronized Vector<J> list()
     {
-        if (queue != null && queue.size() > 0)
+        if (slots.isEmpty())
         {
-            return (Vector<J>) queue.clone();
+            return null;
         }
-        else
+
+        List<Slot<J>> sorted = new ArrayList<>(slots.values());
+        sorted.sort(null);
+
+        Vector<J> jobs = new Vector<>(sorted.size());
+        for (Slot<J> slot : sorted)
         {
-            return null;
+            jobs.addElement(slot.job);
         }
+
+        return jobs;
     }
 
     /**
-     * Add a job to the queue.
+     * Return the number of jobs in the queue.
+     *
+     * @return the queue depth
+     */
+    public synchronized int size()
+    {
+        return slots.size();
+    }
+
+    /**
+     * Add a job to the queue. If the job is already queued, it is
+     * rescheduled with its current runtime.
      *
      * @param je A JobEntry job.
      */
     public synchronized void add(J je)
     {
-        queue.addElement(je);
-        sortQueue();
+        Slot<J> slot = new Slot<>(je, je.getNextRuntime(), sequence++);
+        Slot<J> previous = slots.put(je, slot);
+
+        queue.add(slot);
+
+        if (previous != null)
+        {
+            previous.cancelled = true;
+            purge();
+        }
     }
 
     /**
@@ -131,10 +196,11 @@ public class JobQueue<J extends JobEntry>
     {
         if (jobEntries != null)
         {
-            queue.addAll(jobEntries);
-            sortQueue();
+            for (J je : jobEntries)
+            {
+                add(je);
+            }
         }
-
     }
 
     /**
@@ -144,8 +210,14 @@ public class JobQueue<J extends JobEntry>
      */
     public synchronized void remove(J je)
     {
-        queue.removeElement(je);
-        sortQueue();
+        Slot<J> slot = slots.remove(je);
+
+        if (slot != null)
+        {
+            // removed lazily from the heap
+            slot.cancelled = true;
+            purge();
+        }
     }
 
     /**
@@ -158,8 +230,7 @@ public class JobQueue<J extends JobEntry>
     {
         remove(je);
         je.calcRunTime();
-        this.add(je);
-        sortQueue();
+        add(je);
     }
 
     /**
@@ -172,21 +243,84 @@ public class JobQueue<J extends JobEntry>
             throws TurbineException
     {
         je.calcRunTime();
-        sortQueue();
+
+        Slot<J> slot = slots.get(je);
+        if (slot != null)
+        {
+            add(slot.job);
+        }
     }
 
     /**
-     * Re-sort the existing queue.  Consumers of this method should be
-     * <code>synchronized</code>.
+     * Return the first valid slot of the heap, dropping cancelled slots.
+     * Consumers of this method should be <code>synchronized</code>.
+     *
+     * @return the slot or null if the queue is empty
      */
-    private void sortQueue()
+    private Slot<J> peek()
     {
-        Comparator<J> aComparator = (o1, o2) -> {
-            Long time1 = Long.valueOf(o1.getNextRuntime());
-            Long time2 = Long.valueOf(o2.getNextRuntime());
-            return time1.compareTo(time2);
-        };
+        Slot<J> slot = queue.peek();
+
+        while (slot != null && slot.cancelled)
+        {
+            queue.poll();
+            slot = queue.peek();
+        }
 
-        queue.sort(aComparator);
+        return slot;
+    }
+
+    /**
+     * Rebuild the heap if it consists mostly of cancelled slots.
+     * Consumers of this method should be <code>synchronized</code>.
+     */
+    private void purge()
+    {
+        if (queue.size() > 2 * slots.size() + 16)
+        {
+            queue.clear();
+            queue.addAll(slots.values());
+        }
+    }
+
+    /**
+     * A queued job with the runtime it is scheduled for
+     *
+     * @param <J> a specialized job entry type
+     */
+    private static final class Slot<J extends JobEntry> implements Comparable<Slot<J>>
+    {
+        /** The job */
+        final J job;
+
+        /** The runtime the job is scheduled for */
+        final long runtime;
+
+        /** The insertion sequence */
+        final long sequence;
+
+        /** Whether this slot has been superseded or removed */
+        boolean cancelled = false;
+
+        /**
+         * Constructor
+         *
+         * @param job the job
+         * @param runtime the runtime
+         * @param sequence the insertion sequence
+         */
+        Slot(J job, long runtime, long sequence)
+        {
+            this.job = job;
+            this.runtime = runtime;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(Slot<J> other)
+        {
+            int result = Long.compare(runtime, other.runtime);
+            return result != 0 ? result : Long.compare(sequence, other.sequence);
+        }
     }
 }
@@ -0,0 +1,448 @@
+package org.apache.turbine.services.schedule;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Vector;
+
+/**
+ * A hierarchical timing wheel for scheduled jobs.
+ * <p>
+ * The lowest level consists of <code>wheelSize</code> buckets of one tick
+ * each. Every higher level has buckets as wide as the whole level below, so
+ * a few levels cover any realistic delay. Jobs are kept in doubly linked
+ * lists per bucket, so scheduling and cancelling a job costs O(1). When the
+ * wheel advances, all jobs of the expired buckets are returned in one batch;
+ * jobs in buckets of higher levels are moved down as their time approaches.
+ * A job never fires early, and at most one tick late.
+ * <p>
+ * Every job is scheduled at most once, jobs are identified by
+ * {@link Object#equals(Object)}. All methods are thread-safe.
+ *
+ * @param <J> a specialized job entry type
+ */
+public class TimingWheel<J extends JobEntry>
+{
+    /** The duration of a tick in milliseconds */
+    private final long tickMillis;
+
+    /** The number of buckets per level */
+    private final int wheelSize;
+
+    /** The levels, created on demand */
+    private final List<Bucket<J>[]> levels = new ArrayList<>();
+
+    /** The tick duration of each level */
+    private final List<Long> levelTicks = new ArrayList<>();
+
+    /** The entry of every scheduled job */
+    private final Map<J, Entry<J>> entries = new HashMap<>();
+
+    /** The start of the current tick, all earlier ticks have expired */
+    private long currentTime;
+
+    /**
+     * Creates a new timing wheel.
+     *
+     * @param tickMillis the duration of a tick in milliseconds
+     * @param wheelSize the number of buckets per level
+     * @param startTime the current time in milliseconds
+     */
+    public TimingWheel(long tickMillis, int wheelSize, long startTime)
+    {
+        if (tickMillis < 1 || wheelSize < 2)
+        {
+            throw new IllegalArgumentException("Invalid timing wheel: tick="
+                    + tickMillis + "ms, size=" + wheelSize);
+        }
+
+        this.tickMillis = tickMillis;
+        this.wheelSize = wheelSize;
+        this.currentTime = startTime - startTime % tickMillis;
+    }
+
+    /**
+     * @return the duration of a tick in milliseconds
+     */
+    public long getTickMillis()
+    {
+        return tickMillis;
+    }
+
+    /**
+     * Return the time of the next tick, i.e. the earliest time at which
+     * {@link #advance(long)} can return jobs.
+     *
+     * @return the time in milliseconds
+     */
+    public synchronized long getNextTickTime()
+    {
+        return currentTime + tickMillis;
+    }
+
+    /**
+     * Schedule a job for its next runtime. If the job is already scheduled,
+     * it is moved. Jobs with a runtime in the past fire with the next tick.
+     *
+     * @param job the job
+     */
+    public synchronized void schedule(J job)
+    {
+        Entry<J> entry = entries.remove(job);
+        if (entry != null)
+        {
+            entry.unlink();
+        }
+
+        entry = new Entry<>(job, job.getNextRuntime());
+        entries.put(job, entry);
+        insert(entry);
+    }
+
+    /**
+     * Schedule a job returned by {@link #advance(long)} for its next runtime,
+     * unless it has been cancelled or scheduled again in the meantime.
+     *
+     * @param job the job
+     * @return true if the job has been scheduled
+     */
+    public synchronized boolean reschedule(J job)
+    {
+        Entry<J> entry = entries.get(job);
+        if (entry == null || entry.job != job || entry.bucket != null)
+        {
+            return false;
+        }
+
+        entry = new Entry<>(job, job.getNextRuntime());
+        entries.put(job, entry);
+        insert(entry);
+        return true;
+    }
+
+    /**
+     * Cancel a scheduled job.
+     *
+     * @param job the job
+     * @return true if the job was scheduled
+     */
+    public synchronized boolean cancel(J job)
+    {
+        Entry<J> entry = entries.remove(job);
+        if (entry == null)
+        {
+            return false;
+        }
+
+        entry.unlink();
+        return true;
+    }
+
+    /**
+     * Return a specific job.
+     *
+     * @param job a job equal to the one we are looking for
+     * @return the scheduled job or <code>null</code>
+     */
+    public synchronized J getJob(J job)
+    {
+        Entry<J> entry = job == null ? null : entries.get(job);
+        return entry == null ? null : entry.job;
+    }
+
+    /**
+     * @return the number of scheduled jobs
+     */
+    public synchronized int size()
+    {
+        return entries.size();
+    }
+
+    /**
+     * List the scheduled jobs.
+     *
+     * @return A Vector of <code>JobEntry</code> objects in order of their
+     * next runtime or <code>null</code> if no jobs are scheduled.
+     */
+    public synchronized Vector<J> list()
+    {
+        if (entries.isEmpty())
+        {
+            return null;
+        }
+
+        List<Entry<J>> sorted = new ArrayList<>(entries.values());
+        sorted.sort((e1, e2) -> Long.compare(e1.deadline, e2.deadline));
+
+        Vector<J> jobs = new Vector<>(sorted.size());
+        for (Entry<J> entry : sorted)
+        {
+            jobs.addElement(entry.job);
+        }
+
+        return jobs;
+    }
+
+    /**
+     * Advance the wheel to the given time and take all jobs that are due.
+     * The jobs stay registered until they are passed to
+     * {@link #reschedule(JobEntry)} or {@link #cancel(JobEntry)}.
+     *
+     * @param now the current time in milliseconds
+     * @return the due jobs in order of their runtime, may be empty
+     */
+    public synchronized List<J> advance(long now)
+    {
+        List<J> due = new ArrayList<>();
+
+        if (entries.isEmpty())
+        {
+            // nothing to do, just catch up
+            currentTime = Math.max(currentTime, now - now % tickMillis);
+            return due;
+        }
+
+        List<Entry<J>> expired = new ArrayList<>();
+
+        while (currentTime + tickMillis <= now)
+        {
+            int index = bucketIndex(currentTime, tickMillis);
+            currentTime += tickMillis;
+
+            // the bucket of the tick that just passed
+            drain(levels.get(0)[index], expired);
+
+            // move down the jobs of higher level buckets starting now
+            for (int level = 1; level < levels.size(); level++)
+            {
+                long levelTick = levelTicks.get(level).longValue();
+                if (currentTime % levelTick != 0)
+                {
+                    break;
+                }
+
+                List<Entry<J>> cascade = new ArrayList<>();
+                drain(levels.get(level)[bucketIndex(currentTime, levelTick)], cascade);
+                for (Entry<J> entry : cascade)
+                {
+                    insert(entry);
+                }
+            }
+        }
+
+        if (!expired.isEmpty())
+        {
+            expired.sort((e1, e2) -> Long.compare(e1.deadline, e2.deadline));
+            for (Entry<J> entry : expired)
+            {
+                due.add(entry.job);
+            }
+        }
+
+        return due;
+    }
+
+    /**
+     * Put an entry into the bucket of the lowest level that covers its
+     * deadline. Consumers of this method should be <code>synchronized</code>.
+     *
+     * @param entry the entry
+     */
+    private void insert(Entry<J> entry)
+    {
+        long deadline = Math.max(entry.deadline, currentTime);
+
+        if (deadline < currentTime + wheelSize * tickMillis)
+        {
+            level(0)[bucketIndex(deadline, tickMillis)].add(entry);
+            return;
+        }
+
+        for (int level = 1; ; level++)
+        {
+            Bucket<J>[] buckets = level(level);
+            long levelTick = levelTicks.get(level).longValue();
+            long bucketStart = deadline - deadline % levelTick;
+
+            if (bucketStart < currentTime + wheelSize * levelTick
+                    || levelTick > Long.MAX_VALUE / wheelSize / wheelSize)
+            {
+                buckets[bucketIndex(deadline, levelTick)].add(entry);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Return the buckets of a level, creating them if necessary.
+     *
+     * @param level the level
+     * @return the buckets
+     */
+    private Bucket<J>[] level(int level)
+    {
+        while (levels.size() <= level)
+        {
+            long levelTick = levels.isEmpty() ? tickMillis :
+                levelTicks.get(levels.size() - 1).longValue() * wheelSize;
+
+            @SuppressWarnings("unchecked")
+            Bucket<J>[] buckets = new Bucket[wheelSize];
+            for (int i = 0; i < wheelSize; i++)
+            {
+                buckets[i] = new Bucket<>();
+            }
+
+            levels.add(buckets);
+            levelTicks.add(Long.valueOf(levelTick));
+        }
+
+        return levels.get(level);
+    }
+
+    /**
+     * Compute the bucket index of a time
+     *
+     * @param time the time
+     * @param levelTick the tick duration of the level
+     * @return the index
+     */
+    private int bucketIndex(long time, long levelTick)
+    {
+        return (int) ((time / levelTick) % wheelSize);
+    }
+
+    /**
+     * Remove all entries from a bucket
+     *
+     * @param bucket the bucket
+     * @param result the list to add the entries to
+     */
+    private static <J extends JobEntry> void drain(Bucket<J> bucket, List<Entry<J>> result)
+    {
+        for (Entry<J> entry = bucket.head; entry != null; )
+        {
+            Entry<J> next = entry.next;
+            entry.bucket = null;
+            entry.prev = null;
+            entry.next = null;
+            result.add(entry);
+            entry = next;
+        }
+
+        bucket.head = null;
+    }
+
+    /**
+     * A bucket of the wheel, a doubly linked list of entries
+     *
+     * @param <J> a specialized job entry type
+     */
+    private static final class Bucket<J extends JobEntry>
+    {
+        /** The first entry */
+        Entry<J> head;
+
+        /**
+         * Add an entry
+         *
+         * @param entry the entry
+         */
+        void add(Entry<J> entry)
+        {
+            entry.bucket = this;
+            entry.prev = null;
+            entry.next = head;
+            if (head != null)
+            {
+                head.prev = entry;
+            }
+            head = entry;
+        }
+    }
+
+    /**
+     * A scheduled job
+     *
+     * @param <J> a specialized job entry type
+     */
+    private static final class Entry<J extends JobEntry>
+    {
+        /** The job */
+        final J job;
+
+        /** The runtime the job is scheduled for */
+        final long deadline;
+
+        /** The bucket holding this entry */
+        Bucket<J> bucket;
+
+        /** The previous entry in the bucket */
+        Entry<J> prev;
+
+        /** The next entry in the bucket */
+        Entry<J> next;
+
+        /**
+         * Constructor
+         *
+         * @param job the job
+         * @param deadline the runtime
+         */
+        Entry(J job, long deadline)
+        {
+            this.job = job;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Remove this entry from its bucket
+         */
+        void unlink()
+        {
+            if (bucket == null)
+            {
+                return;
+            }
+
+            if (prev != null)
+            {
+                prev.next = next;
+            }
+            else
+            {
+                bucket.head = next;
+            }
+
+            if (next != null)
+            {
+                next.prev = prev;
+            }
+
+            bucket = null;
+            prev = null;
+            next = null;
+        }
+    }
+}
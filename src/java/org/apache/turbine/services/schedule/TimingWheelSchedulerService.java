@@ -0,0 +1,282 @@
+package org.apache.turbine.services.schedule;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.List;
+
+import org.apache.commons.configuration2.Configuration;
+import org.apache.turbine.services.InitializationException;
+import org.apache.turbine.util.TurbineException;
+
+/**
+ * Service for a cron like scheduler based on a hierarchical
+ * {@link TimingWheel}. It is meant for a large number of jobs with short
+ * intervals: adding and removing a job costs O(1), and a single ticker
+ * thread fires all due jobs of a tick in one batch instead of waiting on
+ * a monitor that is notified on every queue change.
+ * <p>
+ * The jobs are defined in the service configuration like for
+ * {@link TurbineNonPersistentSchedulerService}, changes are not persisted.
+ * The resolution of the scheduler is configured with
+ *
+ * <PRE>
+ *
+ * services.SchedulerService.wheel.tick=100
+ * services.SchedulerService.wheel.size=512
+ *
+ * </PRE>
+ *
+ * A job starts at most one tick after its scheduled time.
+ */
+public class TimingWheelSchedulerService extends AbstractSchedulerService
+{
+    /** The configuration key for the tick duration in milliseconds */
+    public static final String TICK_KEY = "wheel.tick";
+
+    /** The default tick duration in milliseconds */
+    public static final long TICK_DEFAULT = 100;
+
+    /** The configuration key for the number of buckets per wheel level */
+    public static final String WHEEL_SIZE_KEY = "wheel.size";
+
+    /** The default number of buckets per wheel level */
+    public static final int WHEEL_SIZE_DEFAULT = 512;
+
+    /** The timing wheel */
+    private TimingWheel<JobEntry> wheel;
+
+    /**
+     * Initializes the SchedulerService.
+     *
+     * @throws InitializationException
+     *             Something went wrong in the init stage
+     */
+    @Override
+    public void init() throws InitializationException
+    {
+        try
+        {
+            Configuration conf = getConfiguration();
+            setEnabled(conf.getBoolean("enabled", true));
+            wheel = new TimingWheel<>(
+                    conf.getLong(TICK_KEY, TICK_DEFAULT),
+                    conf.getInt(WHEEL_SIZE_KEY, WHEEL_SIZE_DEFAULT),
+                    System.currentTimeMillis());
+            executor = createExecutor();
+
+            for (JobEntry je : loadJobs())
+            {
+                wheel.schedule(je);
+            }
+
+            restart();
+
+            setInit(true);
+        }
+        catch (Exception e)
+        {
+            throw new InitializationException("Could not initialize the scheduler service", e);
+        }
+    }
+
+    /**
+     * @see org.apache.turbine.services.schedule.AbstractSchedulerService#loadJobs()
+     */
+    @Override
+    protected List<? extends JobEntry> loadJobs() throws TurbineException
+    {
+        return loadConfiguredJobs();
+    }
+
+    /**
+     * @see org.apache.turbine.services.schedule.ScheduleService#newJob(int, int, int, int, int, java.lang.String)
+     */
+    @Override
+    public JobEntry newJob(int sec, int min, int hour, int wd, int day_mo, String task) throws TurbineException
+    {
+        return new JobEntryNonPersistent(sec, min, hour, wd, day_mo, task);
+    }
+
+    /**
+     * This method returns the job element from the timing wheel.
+     *
+     * @param oid The int id for the job.
+     * @return A JobEntry.
+     * @throws TurbineException could not retrieve job
+     */
+    @Override
+    public JobEntry getJob(int oid)
+            throws TurbineException
+    {
+        JobEntry je = new JobEntryNonPersistent();
+        je.setJobId(oid);
+        return wheel.getJob(je);
+    }
+
+    /**
+     * Remove a job from the timing wheel.
+     *
+     * @param je A JobEntry with the job to remove.
+     */
+    @Override
+    public void removeJob(JobEntry je)
+    {
+        wheel.cancel(je);
+    }
+
+    /**
+     * Add/update a job
+     *
+     * @param je A JobEntry with the job to modify
+     * @throws TurbineException job could not be updated
+     */
+    @Override
+    public void updateJob(JobEntry je)
+            throws TurbineException
+    {
+        try
+        {
+            je.calcRunTime();
+            wheel.schedule(je);
+        }
+        catch (Exception e)
+        {
+            throw new TurbineException("Problem updating Scheduled Job: " + je.getTask(), e);
+        }
+    }
+
+    /**
+     * List jobs in the timing wheel. This is used by the scheduler UI.
+     *
+     * @return A List of jobs.
+     */
+    @Override
+    public List<JobEntry> listJobs()
+    {
+        return wheel.list();
+    }
+
+    /**
+     * Return the number of jobs in the timing wheel.
+     *
+     * @return the queue depth
+     */
+    @Override
+    public int getQueueDepth()
+    {
+        return wheel.size();
+    }
+
+    /**
+     * Start the ticker thread if the scheduler is enabled and the thread
+     * is not running.
+     */
+    @Override
+    public synchronized void restart()
+    {
+        if (enabled && thread == null)
+        {
+            log.info("Starting timing wheel job scheduler");
+            thread = new Thread(new Ticker(), ScheduleService.SERVICE_NAME);
+            // see AbstractSchedulerService.restart()
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Not used, the ticker takes the jobs from the timing wheel.
+     *
+     * @return always null
+     */
+    @Override
+    protected JobEntry nextJob()
+    {
+        return null;
+    }
+
+    /**
+     * The ticker advances the timing wheel once per tick and dispatches
+     * all due jobs.
+     */
+    private class Ticker implements Runnable
+    {
+        /**
+         * Method to run the class.
+         */
+        @Override
+        public void run()
+        {
+            try
+            {
+                while (enabled)
+                {
+                    long now = System.currentTimeMillis();
+
+                    for (JobEntry je : wheel.advance(now))
+                    {
+                        fire(je, now);
+                    }
+
+                    long delay = wheel.getNextTickTime() - System.currentTimeMillis();
+                    if (delay > 0)
+                    {
+                        Thread.sleep(delay);
+                    }
+                }
+            }
+            catch (InterruptedException e)
+            {
+                // scheduler stopped
+            }
+            finally
+            {
+                clearThread();
+            }
+        }
+
+        /**
+         * Reschedule a due job and hand it over to the executor
+         *
+         * @param je the job
+         * @param now the current time in milliseconds
+         */
+        private void fire(JobEntry je, long now)
+        {
+            recordLag(now - je.getNextRuntime());
+
+            try
+            {
+                // Update the next runtime for the job.
+                je.calcRunTime();
+                wheel.reschedule(je);
+            }
+            catch (TurbineException | RuntimeException e)
+            {
+                log.error("Could not reschedule job #{}, task: {}",
+                        Integer.valueOf(je.getJobId()), je.getTask(), e);
+                wheel.cancel(je);
+            }
+
+            dispatch(je);
+        }
+    }
+}
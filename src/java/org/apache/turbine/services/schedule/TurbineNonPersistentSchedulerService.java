@@ -19,11 +19,8 @@ package org.apache.turbine.services.schedule;
  * under the License.
  */
 
-import java.util.ArrayList;
 import java.util.List;
 
-import org.apache.commons.configuration2.Configuration;
-import org.apache.commons.lang3.StringUtils;
 import org.apache.turbine.util.TurbineException;
 
 /**
@@ -73,46 +70,7 @@ public class TurbineNonPersistentSchedulerService extends AbstractSchedulerServi
     @Override
     protected List<? extends JobEntry> loadJobs() throws TurbineException
     {
-        Configuration conf = getConfiguration();
-        List<Object> jobProps = conf.getList("scheduler.jobs");
-        List<JobEntry> jobs = new ArrayList<>();
-
-        // If there are scheduler.jobs defined then set up a job vector
-        // for the scheduleQueue
-        if (!jobProps.isEmpty())
-        {
-            for (int i = 0; i < jobProps.size(); i++)
-            {
-                String jobName = (String)jobProps.get(i);
-                String jobPrefix = "scheduler.job." + jobName;
-
-                String jobId = conf.getString(jobPrefix + ".ID", null);
-                if (StringUtils.isEmpty(jobId))
-                {
-                    throw new TurbineException(
-                            "There is an error in the TurbineResources.properties file. \n"
-                            + jobPrefix + ".ID is not found.\n");
-                }
-
-                int sec = conf.getInt(jobPrefix + ".SECOND", -1);
-                int min = conf.getInt(jobPrefix + ".MINUTE", -1);
-                int hr = conf.getInt(jobPrefix + ".HOUR", -1);
-                int wkday = conf.getInt(jobPrefix + ".WEEKDAY", -1);
-                int dayOfMonth = conf.getInt(jobPrefix + ".DAY_OF_MONTH", -1);
-
-                JobEntry je = newJob(
-                        sec,
-                        min,
-                        hr,
-                        wkday,
-                        dayOfMonth,
-                        jobName);
-                je.setJobId(Integer.parseInt(jobId));
-                jobs.add(je);
-            }
-        }
-
-        return jobs;
+        return loadConfiguredJobs();
     }
 
     /**
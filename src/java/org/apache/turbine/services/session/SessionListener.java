@@ -24,14 +24,18 @@ package org.apache.turbine.services.session;
 import java.io.Serializable;
 
 import javax.servlet.http.HttpSessionActivationListener;
+import javax.servlet.http.HttpSessionAttributeListener;
+import javax.servlet.http.HttpSessionBindingEvent;
 import javax.servlet.http.HttpSessionEvent;
 import javax.servlet.http.HttpSessionListener;
 
+import org.apache.turbine.om.security.User;
 import org.apache.turbine.services.TurbineServices;
 
 /**
  * This class is a listener for both session creation and destruction,
- * and for session activation and passivation.  It must be configured
+ * for session activation and passivation and for changes of the user
+ * object stored in the session.  It must be configured
  * via your web application's <code>web.xml</code> deployment
  * descriptor as follows for the container to call it:
  *
@@ -52,14 +56,20 @@ import org.apache.turbine.services.TurbineServices;
  * <code>HttpSession</code> for detection of session passivation and
  * re-activation.
  *
+ * The attribute callbacks keep the user index of the session service
+ * current whenever the user object under {@link User#SESSION_KEY} is
+ * bound, replaced or removed.
+ *
  * @since 2.3
  * @version $Id$
  * @author <a href="mailto:quintonm@bellsouth.net">Quinton McCombs</a>
  * @author <a href="mailto:dlr@apache.org">Daniel Rall</a>
  * @see javax.servlet.http.HttpSessionListener
+ * @see javax.servlet.http.HttpSessionAttributeListener
  */
 public class SessionListener
-        implements HttpSessionListener, HttpSessionActivationListener, Serializable
+        implements HttpSessionListener, HttpSessionActivationListener,
+            HttpSessionAttributeListener, Serializable
 {
     // ---- HttpSessionListener implementation -----------------------------
 
@@ -138,4 +148,55 @@ public class SessionListener
     {
         getSessionService().removeSession(event.getSession());
     }
+
+
+    // ---- HttpSessionAttributeListener implementation --------------------
+
+    /**
+     * Called by the servlet container when an attribute is added to a
+     * session
+     *
+     * @param event Session binding event.
+     */
+    @Override
+    public void attributeAdded(HttpSessionBindingEvent event)
+    {
+        if (User.SESSION_KEY.equals(event.getName()))
+        {
+            getSessionService().setSessionUser(event.getSession(), (User) event.getValue());
+        }
+    }
+
+    /**
+     * Called by the servlet container when an attribute is removed from a
+     * session
+     *
+     * @param event Session binding event.
+     */
+    @Override
+    public void attributeRemoved(HttpSessionBindingEvent event)
+    {
+        if (User.SESSION_KEY.equals(event.getName()))
+        {
+            getSessionService().setSessionUser(event.getSession(), null);
+        }
+    }
+
+    /**
+     * Called by the servlet container when an attribute of a session is
+     * replaced.  The event carries the old value, so the new user is
+     * read from the session.
+     *
+     * @param event Session binding event.
+     */
+    @Override
+    public void attributeReplaced(HttpSessionBindingEvent event)
+    {
+        if (User.SESSION_KEY.equals(event.getName()))
+        {
+            SessionService service = getSessionService();
+            service.setSessionUser(event.getSession(),
+                    service.getUserFromSession(event.getSession()));
+        }
+    }
 }
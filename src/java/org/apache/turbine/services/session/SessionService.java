@@ -69,6 +69,24 @@ public interface SessionService extends Service
      */
     void removeSession(HttpSession session);
 
+    /**
+     * Updates the user index of a session.  This method should only be
+     * called by the listener when the user object of the session is
+     * bound, replaced or removed.
+     *
+     * <p>
+     * The default implementation does nothing, for services which do
+     * not keep a user index.
+     * </p>
+     *
+     * @param session Session whose user changed
+     * @param user the new user of the session, may be <code>null</code>
+     */
+    default void setSessionUser(HttpSession session, User user)
+    {
+        // no user index
+    }
+
     /**
      * Determines if a given user is currently logged in.  The actual
      * implementation of the User object must implement the equals()
@@ -91,6 +109,16 @@ public interface SessionService extends Service
      */
     Collection<User> getActiveUsers();
 
+    /**
+     * Gets the number of users currently logged in.
+     *
+     * @return the number of distinct logged in users
+     */
+    default int getActiveUserCount()
+    {
+        return getActiveUsers().size();
+    }
+
     /**
      * Gets the User object of the the specified HttpSession.
      *
@@ -116,6 +116,16 @@ public class SessionTool
         return sessionService.getActiveUsers();
     }
 
+    /**
+     * Gets the number of users currently logged in.
+     *
+     * @return the number of distinct logged in users
+     */
+    public int getActiveUserCount()
+    {
+        return sessionService.getActiveUserCount();
+    }
+
     /**
      * Gets the User object of the the specified HttpSession.
      *
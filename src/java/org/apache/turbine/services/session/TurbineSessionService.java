@@ -23,6 +23,8 @@ package org.apache.turbine.services.session;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
@@ -46,6 +48,10 @@ import org.apache.turbine.services.TurbineBaseService;
  * &lt;/listener&gt;
  * </pre>
  *
+ * The logged in users are indexed by the listener through the
+ * attribute events of the user object, so looking up the users and
+ * their sessions does not need to touch every active session.
+ *
  * @author <a href="mailto:quintonm@bellsouth.net">Quinton McCombs</a>
  * @author <a href="mailto:dlr@collab.net">Daniel Rall</a>
  * @since 2.3
@@ -59,6 +65,12 @@ public class TurbineSessionService
     /** Map of active sessions */
     private ConcurrentMap<String, HttpSession> activeSessions;
 
+    /** Map of session ids to the user logged in on that session */
+    private ConcurrentMap<String, User> sessionUsers;
+
+    /** Map of logged in users to the ids of their sessions */
+    private ConcurrentMap<User, Set<String>> userSessions;
+
     /**
      * Gets a list of the active sessions.
      *
@@ -80,6 +92,9 @@ public class TurbineSessionService
     public void addSession(HttpSession session)
     {
         activeSessions.put(session.getId(), session);
+
+        // a re-activated session already carries its user
+        setSessionUser(session, getUserFromSession(session));
     }
 
     /**
@@ -92,6 +107,75 @@ public class TurbineSessionService
     public void removeSession(HttpSession session)
     {
         activeSessions.remove(session.getId());
+        unbindUser(session.getId());
+    }
+
+    /**
+     * Updates the user index of a session.  This method should only be
+     * called by the listener when the user object of the session is
+     * bound, replaced or removed.  Users who have not logged in are
+     * not indexed.
+     *
+     * @param session Session whose user changed
+     * @param user the new user of the session, may be <code>null</code>
+     */
+    @Override
+    public void setSessionUser(HttpSession session, User user)
+    {
+        String sessionId = session.getId();
+
+        if (user == null || !user.hasLoggedIn())
+        {
+            unbindUser(sessionId);
+            return;
+        }
+
+        User oldUser = sessionUsers.put(sessionId, user);
+        if (oldUser != null && !oldUser.equals(user))
+        {
+            removeIndex(oldUser, sessionId);
+        }
+
+        userSessions.compute(user, (u, ids) ->
+        {
+            Set<String> sessionIds = ids;
+            if (sessionIds == null)
+            {
+                sessionIds = ConcurrentHashMap.newKeySet();
+            }
+            sessionIds.add(sessionId);
+            return sessionIds;
+        });
+    }
+
+    /**
+     * Removes a session from the user index
+     *
+     * @param sessionId the session identifier
+     */
+    private void unbindUser(String sessionId)
+    {
+        User oldUser = sessionUsers.remove(sessionId);
+        if (oldUser != null)
+        {
+            removeIndex(oldUser, sessionId);
+        }
+    }
+
+    /**
+     * Removes a session id from the index entry of a user and drops
+     * the entry once the user has no sessions left.
+     *
+     * @param user the user
+     * @param sessionId the session identifier
+     */
+    private void removeIndex(User user, String sessionId)
+    {
+        userSessions.computeIfPresent(user, (u, ids) ->
+        {
+            ids.remove(sessionId);
+            return ids.isEmpty() ? null : ids;
+        });
     }
 
     /**
@@ -108,7 +192,22 @@ public class TurbineSessionService
     @Override
     public boolean isUserLoggedIn(User user)
     {
-        return getActiveUsers().contains(user);
+        Set<String> sessionIds = userSessions.get(user);
+        if (sessionIds == null)
+        {
+            return false;
+        }
+
+        for (String sessionId : sessionIds)
+        {
+            User u = sessionUsers.get(sessionId);
+            if (u != null && u.hasLoggedIn())
+            {
+                return true;
+            }
+        }
+
+        return false;
     }
 
     /**
@@ -121,14 +220,11 @@ public class TurbineSessionService
     @Override
     public Collection<User> getActiveUsers()
     {
-        Collection<User> users;
-        // Pre-allocate a list which won't need expansion more
-        // than once.
-        users = new ArrayList<>((int) (activeSessions.size() * 0.7));
-        for (HttpSession session : activeSessions.values())
+        Collection<User> users = new ArrayList<>(userSessions.size());
+        for (User u : userSessions.keySet())
         {
-            User u = getUserFromSession(session);
-            if (u != null && u.hasLoggedIn())
+            // the flag may have been reset without rebinding the user
+            if (u.hasLoggedIn())
             {
                 users.add(u);
             }
@@ -137,6 +233,18 @@ public class TurbineSessionService
         return users;
     }
 
+    /**
+     * Gets the number of users currently logged in.  This is read from
+     * the user index and does not check each user again.
+     *
+     * @return the number of distinct logged in users
+     */
+    @Override
+    public int getActiveUserCount()
+    {
+        return userSessions.size();
+    }
+
     /**
      * Gets the User object of the the specified HttpSession.
      *
@@ -181,11 +289,17 @@ public class TurbineSessionService
     @Override
     public Collection<HttpSession> getSessionsForUser(User user)
     {
-        Collection<HttpSession> sessions = new ArrayList<>();
-        for (HttpSession session : activeSessions.values())
+        Set<String> sessionIds = userSessions.get(user);
+        if (sessionIds == null)
+        {
+            return Collections.emptyList();
+        }
+
+        Collection<HttpSession> sessions = new ArrayList<>(sessionIds.size());
+        for (String sessionId : sessionIds)
         {
-            User u = this.getUserFromSession(session);
-            if (user.equals(u))
+            HttpSession session = activeSessions.get(sessionId);
+            if (session != null)
             {
                 sessions.add(session);
             }
@@ -204,6 +318,8 @@ public class TurbineSessionService
     public void init()
     {
         this.activeSessions = new ConcurrentHashMap<>();
+        this.sessionUsers = new ConcurrentHashMap<>();
+        this.userSessions = new ConcurrentHashMap<>();
 
         setInit(true);
     }
@@ -215,6 +331,8 @@ public class TurbineSessionService
     public void shutdown()
     {
         this.activeSessions = null;
+        this.sessionUsers = null;
+        this.userSessions = null;
 
         setInit(false);
     }
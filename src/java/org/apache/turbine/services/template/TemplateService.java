@@ -57,6 +57,24 @@ public interface TemplateService
     /** Default value of the Turbine Module Caching */
     String DEFAULT_EXTENSION_VALUE = "";
 
+    /** Maximum number of cached mappings per mapper */
+    String MAPPER_CACHE_SIZE_KEY = "mapper.cache.size";
+
+    /** Default value for the maximum number of cached mappings per mapper */
+    int MAPPER_CACHE_SIZE_DEFAULT = 1000;
+
+    /** Time to live of cached mappings in milliseconds */
+    String MAPPER_CACHE_TTL_KEY = "mapper.cache.ttl";
+
+    /** Default time to live of cached mappings, 0 means forever */
+    long MAPPER_CACHE_TTL_DEFAULT = 0;
+
+    /** Time to live of cached failed mappings in milliseconds */
+    String MAPPER_NEGATIVE_CACHE_TTL_KEY = "mapper.cache.negative.ttl";
+
+    /** Default time to live of cached failed mappings, 0 means failed mappings are not cached */
+    long MAPPER_NEGATIVE_CACHE_TTL_DEFAULT = 0;
+
     /** Character that separates a Template Name from the Extension */
     char EXTENSION_SEPARATOR = '.';
 
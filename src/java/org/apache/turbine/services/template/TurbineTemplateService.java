@@ -766,6 +766,11 @@ public class TurbineTemplateService
 
         char [] mapperSeparator = new char [] { '.', '.', '.', '.', '/', '/', '/' };
 
+        int mapperMaxCacheSize = conf.getInt(MAPPER_CACHE_SIZE_KEY, MAPPER_CACHE_SIZE_DEFAULT);
+        long mapperCacheTTL = conf.getLong(MAPPER_CACHE_TTL_KEY, MAPPER_CACHE_TTL_DEFAULT);
+        long mapperNegativeCacheTTL = conf.getLong(MAPPER_NEGATIVE_CACHE_TTL_KEY,
+                MAPPER_NEGATIVE_CACHE_TTL_DEFAULT);
+
         String [] mapperPrefix = new String [] {
             null, null, null, null,
             Layout.PREFIX,
@@ -798,6 +803,9 @@ public class TurbineTemplateService
 
             tm.setUseCache(useCache);
             tm.setCacheSize(mapperCacheSize[i]);
+            tm.setMaxCacheSize(mapperMaxCacheSize);
+            tm.setCacheTimeToLive(mapperCacheTTL);
+            tm.setNegativeCacheTimeToLive(mapperNegativeCacheTTL);
             tm.setDefaultProperty(mapperDefaultProperty[i]);
             tm.setSeparator(mapperSeparator[i]);
 
@@ -21,13 +21,13 @@ package org.apache.turbine.services.template.mapper;
  */
 
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Optional;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.turbine.services.TurbineServices;
 import org.apache.turbine.services.template.TemplateEngineService;
 import org.apache.turbine.services.template.TemplateService;
+import org.apache.turbine.util.LRUCache;
 
 /**
  * A base class for the various mappers which contains common
@@ -45,8 +45,17 @@ public abstract class BaseMapper
     /** Default cache size. Just a number out of thin air. Will be set at init time */
     private int cacheSize = 5;
 
-    /** The internal template -> name mapping cache */
-    private Map<String, String> templateCache = null;
+    /** Maximum number of cached mappings */
+    private int maxCacheSize = TemplateService.MAPPER_CACHE_SIZE_DEFAULT;
+
+    /** Time to live of cached mappings in milliseconds, 0 means forever */
+    private long cacheTimeToLive = 0;
+
+    /** Time to live of cached failed mappings in milliseconds, 0 disables caching them */
+    private long negativeCacheTimeToLive = 0;
+
+    /** The internal template -> name mapping cache, empty values mark failed mappings */
+    private LRUCache<String, Optional<String>> templateCache = null;
 
     /** The name of the default property to pull from the Template Engine Service if the default is requested */
     protected String defaultProperty;
@@ -86,6 +95,73 @@ public abstract class BaseMapper
         this.cacheSize = cacheSize;
     }
 
+    /**
+     * Get the maximum number of cached mappings.
+     * @return the maximum cache size.
+     */
+    public int getMaxCacheSize()
+    {
+        return maxCacheSize;
+    }
+
+    /**
+     * Set the maximum number of cached mappings.
+     * @param maxCacheSize The new maximum cache size.
+     */
+    @Override
+    public void setMaxCacheSize(int maxCacheSize)
+    {
+        this.maxCacheSize = maxCacheSize;
+    }
+
+    /**
+     * Get the time to live of cached mappings.
+     * @return the time to live in milliseconds, 0 means forever.
+     */
+    public long getCacheTimeToLive()
+    {
+        return cacheTimeToLive;
+    }
+
+    /**
+     * Set the time to live of cached mappings.
+     * @param cacheTimeToLive The time to live in milliseconds, 0 means forever.
+     */
+    @Override
+    public void setCacheTimeToLive(long cacheTimeToLive)
+    {
+        this.cacheTimeToLive = cacheTimeToLive;
+    }
+
+    /**
+     * Get the time to live of cached failed mappings.
+     * @return the time to live in milliseconds, 0 means failed mappings are not cached.
+     */
+    public long getNegativeCacheTimeToLive()
+    {
+        return negativeCacheTimeToLive;
+    }
+
+    /**
+     * Set the time to live of cached failed mappings.
+     * @param negativeCacheTimeToLive The time to live in milliseconds, 0 means
+     * failed mappings are not cached.
+     */
+    @Override
+    public void setNegativeCacheTimeToLive(long negativeCacheTimeToLive)
+    {
+        this.negativeCacheTimeToLive = negativeCacheTimeToLive;
+    }
+
+    /**
+     * Get the mapping cache, e.g. to query its statistics.
+     * @return the cache or null if caching is disabled.
+     */
+    public LRUCache<String, Optional<String>> getTemplateCache()
+    {
+        return templateCache;
+    }
+
     /**
      * Get the UseCache value.
      * @return the UseCache value.
@@ -147,7 +223,7 @@ public abstract class BaseMapper
     {
         if (useCache)
         {
-            templateCache = new HashMap<>(cacheSize);
+            templateCache = new LRUCache<>(Math.max(maxCacheSize, cacheSize), cacheTimeToLive);
         }
     }
 
@@ -197,17 +273,27 @@ public abstract class BaseMapper
             return null;
         }
 
-        if (useCache && templateCache.containsKey(template))
+        if (!useCache)
         {
-            return templateCache.get(template);
+            return doMapping(template);
+        }
+
+        Optional<String> cached = templateCache.get(template);
+        if (cached != null)
+        {
+            return cached.orElse(null);
         }
 
         String res = doMapping(template);
 
-        // Never cache "null" return values and empty Strings.
-        if (useCache && StringUtils.isNotEmpty(res))
+        if (StringUtils.isNotEmpty(res))
+        {
+            templateCache.put(template, Optional.of(res));
+        }
+        else if (negativeCacheTimeToLive > 0)
         {
-            templateCache.put(template, res);
+            // Remember failed mappings for a limited time only
+            templateCache.put(template, Optional.empty(), negativeCacheTimeToLive);
         }
 
         return res;
@@ -31,7 +31,6 @@ import org.apache.logging.log4j.Logger;
 import org.apache.turbine.modules.Assembler;
 import org.apache.turbine.modules.Loader;
 import org.apache.turbine.services.template.TemplateService;
-import org.apache.turbine.util.TurbineException;
 
 /**
  * This mapper tries to map Template names to class names. If no direct match
@@ -144,20 +143,11 @@ public class ClassMapper
                 : TemplateService.DEFAULT_NAME);
 
             log.debug("Looking for {}", testName);
-            try
+            if (loader.hasAssembler(testName.toString()))
             {
-                loader.getAssembler(testName.toString());
                 log.debug("Found it, returning {}", testName);
                 return testName.toString();
             }
-            catch (TurbineException e)
-            {
-                log.error("Turbine Exception Class mapping", e);
-            }
-            catch (Exception e)
-            {
-                // Not found. Go on.
-            }
 
             if (firstRun)
             {
@@ -49,6 +49,34 @@ public interface Mapper
      */
     void setCacheSize(int cacheSize);
 
+    /**
+     * Set the maximum number of cached mappings.
+     * @param maxCacheSize The new maximum cache size.
+     */
+    default void setMaxCacheSize(int maxCacheSize)
+    {
+        // empty
+    }
+
+    /**
+     * Set the time to live of cached mappings.
+     * @param cacheTimeToLive The time to live in milliseconds, 0 means forever.
+     */
+    default void setCacheTimeToLive(long cacheTimeToLive)
+    {
+        // empty
+    }
+
+    /**
+     * Set the time to live of cached failed mappings.
+     * @param negativeCacheTimeToLive The time to live in milliseconds, 0 means
+     * failed mappings are not cached.
+     */
+    default void setNegativeCacheTimeToLive(long negativeCacheTimeToLive)
+    {
+        // empty
+    }
+
     /**
      * Get the UseCache value.
      * @return the UseCache value.
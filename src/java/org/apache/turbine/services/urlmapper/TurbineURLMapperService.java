@@ -21,18 +21,17 @@ package org.apache.turbine.services.urlmapper;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.HashSet;
-import java.util.LinkedHashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.Objects;
 import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
@@ -49,7 +48,6 @@ import org.apache.turbine.services.servlet.ServletService;
 import org.apache.turbine.services.urlmapper.model.URLMapEntry;
 import org.apache.turbine.services.urlmapper.model.URLMappingContainer;
 import org.apache.turbine.util.uri.TurbineURI;
-import org.apache.turbine.util.uri.URIParam;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.json.JsonMapper;
@@ -89,36 +87,56 @@ public class TurbineURLMapperService
     private static final String CONFIGURATION_FILE_KEY = "configFile";
 
     /**
-     * The container with the URL mappings.
+     * The configuration key for the maximum number of cached URL matches.
      */
-    private URLMappingContainer container;
+    private static final String CACHE_SIZE_KEY = "cache.size";
 
     /**
-     * Regex pattern for group names, equivalent to the characters defined in java {@link Pattern} (private) groupname method.
+     * The default maximum number of cached URL matches.
      */
-    private static final Pattern NAMED_GROUPS_PATTERN = Pattern.compile("\\(\\?<([a-zA-Z][a-zA-Z0-9]*)>.+?\\)");
+    private static final int CACHE_SIZE_DEFAULT = 1000;
 
     /**
-     * Regex pattern for multiple slashes
+     * The configuration key to enable reloading of a modified configuration file.
      */
-    private static final Pattern MULTI_SLASH_PATTERN = Pattern.compile("[/]+");
+    private static final String RELOAD_KEY = "reload";
 
     /**
-     * Symbolic group name for context path
+     * The delay in milliseconds before a modified configuration file is reloaded.
      */
-    private static final String CONTEXT_PATH_PARAMETER = "contextPath";
+    private static final long RELOAD_DELAY = 500;
 
     /**
-     * Symbolic group name for web application root
+     * The configuration file.
      */
-    private static final String WEBAPP_ROOT_PARAMETER = "webAppRoot";
+    private String configFile;
+
+    /**
+     * The maximum number of cached URL matches.
+     */
+    private int cacheSize;
+
+    /**
+     * The compiled URL mappings, replaced as a whole on reload.
+     */
+    private volatile URLMappingTable table;
+
+    /**
+     * The watch service for the configuration file.
+     */
+    private WatchService watchService;
+
+    /**
+     * The thread that reloads the configuration file.
+     */
+    private Thread watcher;
 
     /**
      * Symbolic group names that will not be added to parameters
      */
     private static final Set<String> DEFAULT_PARAMETERS = new HashSet<>(Arrays.asList(
-            CONTEXT_PATH_PARAMETER,
-            WEBAPP_ROOT_PARAMETER
+            URLMapTemplate.CONTEXT_PATH_PARAMETER,
+            URLMapTemplate.WEBAPP_ROOT_PARAMETER
     ));
 
     /**
@@ -135,76 +153,8 @@ public class TurbineURLMapperService
             return; // no mapping or mapping already done
         }
 
-        List<URIParam> pathInfo = uri.getPathInfo();
-        List<URIParam> queryData = uri.getQueryData();
-
-        // Create map from list, taking only the first appearance of a key
-        // PathInfo takes precedence
-        Map<String, Object> uriParameterMap =
-                Stream.concat(pathInfo.stream(), queryData.stream())
-                    .collect(Collectors.toMap(
-                        URIParam::getKey,
-                        URIParam::getValue,
-                        (e1, e2) -> e1,
-                        LinkedHashMap::new));
-
-        for (URLMapEntry urlMap : container.getMapEntries())
-        {
-            Set<String> keys = new HashSet<>(uriParameterMap.keySet());
-            keys.removeAll(urlMap.getIgnoreParameters().keySet());
-
-            Set<String> entryKeys = new HashSet<>(urlMap.getGroupNamesMap().keySet());
-
-            Set<String> implicitKeysFound = urlMap.getImplicitParameters().entrySet().stream()
-                    .filter(entry -> Objects.equals(uriParameterMap.get(entry.getKey()), entry.getValue()))
-                    .map(Map.Entry::getKey)
-                    .collect(Collectors.toSet());
-
-            entryKeys.addAll(implicitKeysFound);
+        table.mapToURL(uri);
 
-            if (entryKeys.containsAll(keys))
-            {
-                Matcher matcher = NAMED_GROUPS_PATTERN.matcher(urlMap.getUrlPattern().pattern());
-                StringBuffer sb = new StringBuffer();
-
-                while (matcher.find())
-                {
-                    String key = matcher.group(1);
-
-                    if (CONTEXT_PATH_PARAMETER.equals(key))
-                    {
-                        // remove
-                        matcher.appendReplacement(sb, "");
-                    } else if (WEBAPP_ROOT_PARAMETER.equals(key))
-                    {
-                        matcher.appendReplacement(sb, uri.getScriptName());
-                    } else
-                    {
-                        boolean ignore = urlMap.getIgnoreParameters().keySet().stream()
-                                .anyMatch( x-> x.equals( key ) );
-                        matcher.appendReplacement(sb,
-                                 Matcher.quoteReplacement(
-                                        (!ignore)? Objects.toString(uriParameterMap.get(key)):""));
-                        // Remove handled parameters (all of them!)
-                        pathInfo.removeIf(uriParam -> key.equals(uriParam.getKey()));
-                        queryData.removeIf(uriParam -> key.equals(uriParam.getKey()));
-                    }
-                }
-
-                matcher.appendTail(sb);
-                
-                implicitKeysFound.forEach(key -> {
-                    pathInfo.removeIf(uriParam -> key.equals(uriParam.getKey()));
-                    queryData.removeIf(uriParam -> key.equals(uriParam.getKey()));
-                });
-
-                // Clean up
-                uri.setScriptName(MULTI_SLASH_PATTERN.matcher(sb).replaceAll("/").replaceFirst( "/$", "" ));
-                
-                break;
-            }
-        }
-        
         log.debug("mapped to uri: {} ", uri);
     }
 
@@ -217,35 +167,40 @@ public class TurbineURLMapperService
     @Override
     public void mapFromURL(String url, ParameterParser pp)
     {
-        for (URLMapEntry urlMap : container.getMapEntries())
+        if (url.endsWith("/"))
         {
-            url = url.replaceFirst( "/$", "" );
-            Matcher matcher = urlMap.getUrlPattern().matcher(url);
-            if (matcher.matches())
+            url = url.substring(0, url.length() - 1);
+        }
+
+        URLMappingTable.Match match = table.mapFromURL(url);
+        if (match != null)
+        {
+            URLMapEntry urlMap = match.getEntry();
+            String[] slots = match.getSlots();
+            String[] values = match.getValues();
+
+            // extract parameters from URL, ignore default parameters
+            for (int i = 0; i < slots.length; i++)
             {
-                // extract parameters from URL
-                urlMap.getGroupNamesMap().entrySet().stream()
-                        // ignore default parameters
-                        .filter(group -> !DEFAULT_PARAMETERS.contains(group.getKey()))
-                        .forEach(group ->
-                                pp.setString(group.getKey(), matcher.group(group.getValue().intValue())));
-
-                // add implicit parameters
-                urlMap.getImplicitParameters()
-                        .forEach((key1, value1) -> pp.add(key1, value1));
-
-                // add override parameters
-                urlMap.getOverrideParameters()
-                        .forEach((key, value) -> pp.setString(key, value));
-
-                // remove ignore parameters
-                urlMap.getIgnoreParameters().keySet()
-                        .forEach(pp::remove);
-                
-                log.debug("mapped {} params from url {} ", pp.getKeys().length, url);
-
-                break;
+                if (!DEFAULT_PARAMETERS.contains(slots[i]))
+                {
+                    pp.setString(slots[i], values[i]);
+                }
             }
+
+            // add implicit parameters
+            urlMap.getImplicitParameters()
+                    .forEach((key1, value1) -> pp.add(key1, value1));
+
+            // add override parameters
+            urlMap.getOverrideParameters()
+                    .forEach((key, value) -> pp.setString(key, value));
+
+            // remove ignore parameters
+            urlMap.getIgnoreParameters().keySet()
+                    .forEach(pp::remove);
+
+            log.debug("mapped {} params from url {} ", pp.getKeys().length, url);
         }
     }
 
@@ -259,19 +214,56 @@ public class TurbineURLMapperService
     {
         Configuration cfg = getConfiguration();
 
-        String configFile = cfg.getString(CONFIGURATION_FILE_KEY, DEFAULT_CONFIGURATION_FILE);
+        String file = cfg.getString(CONFIGURATION_FILE_KEY, DEFAULT_CONFIGURATION_FILE);
 
         // context resource path has to begin with slash, cft.
         // context.getResource
-        if (!configFile.startsWith("/"))
+        if (!file.startsWith("/"))
+        {
+            file = "/" + file;
+        }
+
+        configFile = file;
+        cacheSize = cfg.getInt(CACHE_SIZE_KEY, CACHE_SIZE_DEFAULT);
+
+        try
+        {
+            table = loadTable();
+        }
+        catch (IOException | JAXBException e)
         {
-            configFile = "/" + configFile;
+            throw new InitializationException("Could not load configuration file " + configFile, e);
         }
 
+        log.info("Loaded {} url-mappings from {}", Integer.valueOf(table.size()), configFile);
+
+        if (cfg.getBoolean(RELOAD_KEY, false))
+        {
+            startWatcher();
+        }
+
+        setInit(true);
+    }
+
+    /**
+     * Load and compile the configuration file.
+     *
+     * @return the compiled URL mappings
+     * @throws IOException if the file cannot be read or parsed
+     * @throws JAXBException if the XML file cannot be parsed
+     */
+    private URLMappingTable loadTable() throws IOException, JAXBException
+    {
         ServletService servletService = (ServletService) TurbineServices.getInstance().getService(ServletService.SERVICE_NAME);
+        URLMappingContainer container = null;
 
         try (InputStream reader = servletService.getResourceAsStream(configFile))
         {
+            if (reader == null)
+            {
+                throw new IOException("Configuration file " + configFile + " not found");
+            }
+
             if (configFile.endsWith(".xml"))
             {
                 JAXBContext jaxb = JAXBContext.newInstance(URLMappingContainer.class);
@@ -289,28 +281,179 @@ public class TurbineURLMapperService
                 container = mapper.readValue(reader, URLMappingContainer.class);
             }
         }
-        catch (IOException | JAXBException e)
+
+        if (container == null)
         {
-            throw new InitializationException("Could not load configuration file " + configFile, e);
+            throw new IOException("Unsupported format of configuration file " + configFile);
+        }
+
+        // Compile the entries, this also stores the groupNamesMap in every entry
+        return new URLMappingTable(container.getMapEntries(), cacheSize);
+    }
+
+    /**
+     * Reload the configuration file and replace the URL mappings. Requests
+     * in progress keep using the previous mappings. If the file cannot be
+     * loaded, the previous mappings stay active.
+     *
+     * @return true if the mappings have been replaced
+     */
+    boolean reload()
+    {
+        try
+        {
+            URLMappingTable newTable = loadTable();
+            table = newTable;
+            log.info("Reloaded {} url-mappings from {}", Integer.valueOf(newTable.size()), configFile);
+            return true;
+        }
+        catch (IOException | JAXBException | RuntimeException e)
+        {
+            log.error("Could not reload configuration file {}, keeping the previous url-mappings", configFile, e);
+            return false;
+        }
+    }
+
+    /**
+     * Get the thread reloading the configuration file
+     *
+     * @return the thread or null if the file is not watched
+     */
+    Thread getWatcher()
+    {
+        return watcher;
+    }
+
+    /**
+     * Start watching the configuration file for modifications. This only
+     * works if the file is available in the file system.
+     */
+    private void startWatcher()
+    {
+        ServletService servletService = (ServletService) TurbineServices.getInstance().getService(ServletService.SERVICE_NAME);
+        String realPath = servletService.getRealPath(configFile);
+
+        if (realPath == null)
+        {
+            log.warn("Cannot watch configuration file {}, it is not in the file system", configFile);
+            return;
         }
 
-        // Get groupNamesMap for every Pattern and store it in the entry
-        for (URLMapEntry urlMap : container.getMapEntries())
+        Path file = Paths.get(realPath).toAbsolutePath();
+
+        try
+        {
+            watchService = file.getFileSystem().newWatchService();
+            file.getParent().register(watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+        }
+        catch (IOException e)
         {
-            int position = 1;
-            Map<String, Integer> groupNamesMap = new HashMap<>();
-            Matcher matcher = NAMED_GROUPS_PATTERN.matcher(urlMap.getUrlPattern().pattern());
+            log.warn("Cannot watch configuration file {}", realPath, e);
+            stopWatcher();
+            return;
+        }
+
+        WatchService ws = watchService;
+        watcher = new Thread(() -> watch(ws, file.getFileName()), SERVICE_NAME + "-reload");
+        watcher.setDaemon(true);
+        watcher.start();
+
+        log.info("Watching configuration file {} for modifications", realPath);
+    }
 
-            while (matcher.find())
+    /**
+     * The main loop of the watcher thread
+     *
+     * @param ws the watch service
+     * @param fileName the name of the configuration file
+     */
+    private void watch(WatchService ws, Path fileName)
+    {
+        try
+        {
+            while (!Thread.currentThread().isInterrupted())
             {
-                groupNamesMap.put(matcher.group(1), Integer.valueOf(position++));
+                WatchKey key = ws.take();
+                boolean modified = isModified(key, fileName);
+
+                if (!key.reset())
+                {
+                    log.warn("Directory of configuration file {} is no longer accessible", configFile);
+                    break;
+                }
+
+                if (modified)
+                {
+                    // let the writer finish and collapse bursts of events
+                    Thread.sleep(RELOAD_DELAY);
+
+                    for (WatchKey more = ws.poll(); more != null; more = ws.poll())
+                    {
+                        more.pollEvents();
+                        more.reset();
+                    }
+
+                    reload();
+                }
             }
-            urlMap.setGroupNamesMap(groupNamesMap);
         }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        catch (ClosedWatchServiceException e)
+        {
+            // service shut down
+        }
+    }
 
-        log.info("Loaded {} url-mappings from {}", Integer.valueOf(container.getMapEntries().size()), configFile);
+    /**
+     * Check whether the events of a watch key concern the configuration file
+     *
+     * @param key the watch key
+     * @param fileName the name of the configuration file
+     * @return true if the file has been modified
+     */
+    private static boolean isModified(WatchKey key, Path fileName)
+    {
+        boolean modified = false;
 
-        setInit(true);
+        for (WatchEvent<?> event : key.pollEvents())
+        {
+            if (fileName.equals(event.context()))
+            {
+                modified = true;
+            }
+        }
+
+        return modified;
+    }
+
+    /**
+     * Stop watching the configuration file
+     */
+    private void stopWatcher()
+    {
+        if (watchService != null)
+        {
+            try
+            {
+                watchService.close();
+            }
+            catch (IOException e)
+            {
+                log.debug("Could not close watch service", e);
+            }
+            watchService = null;
+        }
+
+        if (watcher != null)
+        {
+            watcher.interrupt();
+            watcher = null;
+        }
     }
 
     /**
@@ -319,7 +462,8 @@ public class TurbineURLMapperService
     @Override
     public void shutdown()
     {
-        container.getMapEntries().clear();
+        stopWatcher();
+        table = new URLMappingTable(Collections.<URLMapEntry>emptyList(), 0);
         setInit(false);
     }
 }
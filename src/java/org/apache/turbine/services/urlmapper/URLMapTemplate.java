@@ -0,0 +1,409 @@
+package org.apache.turbine.services.urlmapper;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.turbine.services.urlmapper.model.URLMapEntry;
+import org.apache.turbine.util.uri.TurbineURI;
+import org.apache.turbine.util.uri.URIParam;
+
+/**
+ * A URL map entry compiled into a template of literal segments and
+ * parameter slots, so links can be rendered without any regular
+ * expression processing. For inbound matching, the literal prefix of
+ * the pattern is split off so that only the residual part needs to be
+ * matched by a regular expression.
+ */
+final class URLMapTemplate
+{
+    /**
+     * Regex pattern for group names, equivalent to the characters defined in java {@link Pattern} (private) groupname method.
+     */
+    static final Pattern NAMED_GROUPS_PATTERN = Pattern.compile("\\(\\?<([a-zA-Z][a-zA-Z0-9]*)>.+?\\)");
+
+    /**
+     * Symbolic group name for context path
+     */
+    static final String CONTEXT_PATH_PARAMETER = "contextPath";
+
+    /**
+     * Symbolic group name for web application root
+     */
+    static final String WEBAPP_ROOT_PARAMETER = "webAppRoot";
+
+    /**
+     * Characters that end the literal prefix of a pattern
+     */
+    private static final String META_CHARACTERS = "\\[](){}.*+?^$|";
+
+    /**
+     * Characters that quantify the preceding character
+     */
+    private static final String QUANTIFIERS = "{*+?";
+
+    /** The map entry */
+    private final URLMapEntry entry;
+
+    /** The literal text between the slots, one more than slots */
+    private final String[] literals;
+
+    /** The group names of the slots */
+    private final String[] slots;
+
+    /** Map of group names to group indices */
+    private final Map<String, Integer> groupNames;
+
+    /** The literal prefix of the pattern */
+    private final String prefix;
+
+    /** The pattern without the literal prefix */
+    private final Pattern residual;
+
+    /**
+     * Compile a URL map entry. This also sets the group names map of the
+     * entry.
+     *
+     * @param entry the entry
+     */
+    URLMapTemplate(URLMapEntry entry)
+    {
+        this.entry = entry;
+
+        List<String> literalList = new ArrayList<>();
+        List<String> slotList = new ArrayList<>();
+        Map<String, Integer> groupNamesMap = new HashMap<>();
+
+        String pattern = entry.getUrlPattern().pattern();
+        Matcher matcher = NAMED_GROUPS_PATTERN.matcher(pattern);
+        int position = 1;
+        int last = 0;
+
+        while (matcher.find())
+        {
+            String key = matcher.group(1);
+
+            literalList.add(pattern.substring(last, matcher.start()));
+            slotList.add(key);
+            groupNamesMap.put(key, Integer.valueOf(position++));
+            last = matcher.end();
+        }
+
+        literalList.add(pattern.substring(last));
+
+        this.literals = literalList.toArray(new String[0]);
+        this.slots = slotList.toArray(new String[0]);
+        this.groupNames = Collections.unmodifiableMap(groupNamesMap);
+
+        entry.setGroupNamesMap(groupNames);
+
+        this.prefix = literalPrefix(entry.getUrlPattern());
+        this.residual = prefix.isEmpty() ? entry.getUrlPattern() :
+            Pattern.compile(pattern.substring(prefix.length()), entry.getUrlPattern().flags());
+    }
+
+    /**
+     * Determine the literal text every URL matching the pattern starts with
+     *
+     * @param pattern the pattern
+     * @return the literal prefix, may be empty
+     */
+    static String literalPrefix(Pattern pattern)
+    {
+        String regex = pattern.pattern();
+
+        if (pattern.flags() != 0 || regex.indexOf('|') >= 0)
+        {
+            // flags and alternatives may change the meaning of the prefix
+            return "";
+        }
+
+        int end = 0;
+        while (end < regex.length() && META_CHARACTERS.indexOf(regex.charAt(end)) < 0)
+        {
+            end++;
+        }
+
+        if (end > 0 && end < regex.length() && QUANTIFIERS.indexOf(regex.charAt(end)) >= 0)
+        {
+            // the last character is quantified
+            end--;
+        }
+
+        return regex.substring(0, end);
+    }
+
+    /**
+     * @return the map entry
+     */
+    URLMapEntry getEntry()
+    {
+        return entry;
+    }
+
+    /**
+     * @return the group names of the pattern
+     */
+    Map<String, Integer> getGroupNames()
+    {
+        return groupNames;
+    }
+
+    /**
+     * @return the literal prefix of the pattern
+     */
+    String getPrefix()
+    {
+        return prefix;
+    }
+
+    /**
+     * Match a URL against the pattern of this entry. The caller must make
+     * sure that the URL starts with the literal prefix.
+     *
+     * @param url the URL
+     * @return the values of the slots in pattern order or null if the URL
+     * does not match
+     */
+    String[] match(String url)
+    {
+        Matcher matcher = residual.matcher(url);
+        matcher.region(prefix.length(), url.length());
+
+        if (!matcher.matches())
+        {
+            return null;
+        }
+
+        String[] values = new String[slots.length];
+        for (int i = 0; i < slots.length; i++)
+        {
+            values[i] = matcher.group(i + 1);
+        }
+
+        return values;
+    }
+
+    /**
+     * @return the group names of the slots in pattern order
+     */
+    String[] getSlots()
+    {
+        return slots;
+    }
+
+    /**
+     * Check whether this template can render the given parameters, i.e.
+     * every parameter is either ignored, consumed by a slot or an implicit
+     * parameter with the implied value.
+     *
+     * @param pathInfo the path info parameters
+     * @param queryData the query data parameters
+     * @return true if this template matches
+     */
+    boolean accepts(List<URIParam> pathInfo, List<URIParam> queryData)
+    {
+        return acceptsAll(pathInfo, pathInfo, queryData)
+                && acceptsAll(queryData, pathInfo, queryData);
+    }
+
+    /**
+     * Check a list of parameters
+     *
+     * @param params the parameters to check
+     * @param pathInfo the path info parameters
+     * @param queryData the query data parameters
+     * @return true if all parameters are accepted
+     */
+    private boolean acceptsAll(List<URIParam> params, List<URIParam> pathInfo, List<URIParam> queryData)
+    {
+        for (int i = 0; i < params.size(); i++)
+        {
+            String key = params.get(i).getKey();
+
+            if (entry.getIgnoreParameters().containsKey(key) || groupNames.containsKey(key))
+            {
+                continue;
+            }
+
+            Map<String, String> implicit = entry.getImplicitParameters();
+            if (!implicit.containsKey(key)
+                    || !Objects.equals(firstValue(key, pathInfo, queryData), implicit.get(key)))
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Render the parameters into the script name of the URI and remove
+     * all consumed parameters.
+     *
+     * @param uri the URI to modify
+     */
+    void render(TurbineURI uri)
+    {
+        List<URIParam> pathInfo = uri.getPathInfo();
+        List<URIParam> queryData = uri.getQueryData();
+        StringBuilder sb = new StringBuilder(64);
+
+        for (int i = 0; i < slots.length; i++)
+        {
+            sb.append(literals[i]);
+
+            String key = slots[i];
+            if (WEBAPP_ROOT_PARAMETER.equals(key))
+            {
+                sb.append(uri.getScriptName());
+            }
+            else if (!CONTEXT_PATH_PARAMETER.equals(key)
+                    && !entry.getIgnoreParameters().containsKey(key))
+            {
+                sb.append(Objects.toString(firstValue(key, pathInfo, queryData)));
+            }
+        }
+
+        sb.append(literals[slots.length]);
+
+        // Determine the implicit parameters before removing anything
+        List<String> implicitKeysFound = null;
+        for (Map.Entry<String, String> implicit : entry.getImplicitParameters().entrySet())
+        {
+            if (Objects.equals(firstValue(implicit.getKey(), pathInfo, queryData), implicit.getValue()))
+            {
+                if (implicitKeysFound == null)
+                {
+                    implicitKeysFound = new ArrayList<>();
+                }
+                implicitKeysFound.add(implicit.getKey());
+            }
+        }
+
+        // Remove handled parameters (all of them!)
+        for (String key : slots)
+        {
+            if (!CONTEXT_PATH_PARAMETER.equals(key) && !WEBAPP_ROOT_PARAMETER.equals(key))
+            {
+                removeAll(key, pathInfo);
+                removeAll(key, queryData);
+            }
+        }
+
+        if (implicitKeysFound != null)
+        {
+            for (String key : implicitKeysFound)
+            {
+                removeAll(key, pathInfo);
+                removeAll(key, queryData);
+            }
+        }
+
+        uri.setScriptName(cleanUp(sb));
+    }
+
+    /**
+     * Collapse multiple slashes and remove a trailing slash
+     *
+     * @param sb the rendered URL
+     * @return the cleaned up URL
+     */
+    static String cleanUp(CharSequence sb)
+    {
+        StringBuilder result = new StringBuilder(sb.length());
+        char previous = 0;
+
+        for (int i = 0; i < sb.length(); i++)
+        {
+            char c = sb.charAt(i);
+            if (c != '/' || previous != '/')
+            {
+                result.append(c);
+            }
+            previous = c;
+        }
+
+        int length = result.length();
+        if (length > 0 && result.charAt(length - 1) == '/')
+        {
+            result.setLength(length - 1);
+        }
+
+        return result.toString();
+    }
+
+    /**
+     * Get the value of the first appearance of a parameter, path info
+     * taking precedence
+     *
+     * @param key the parameter name
+     * @param pathInfo the path info parameters
+     * @param queryData the query data parameters
+     * @return the value or null if the parameter does not exist
+     */
+    static Object firstValue(String key, List<URIParam> pathInfo, List<URIParam> queryData)
+    {
+        for (int i = 0; i < pathInfo.size(); i++)
+        {
+            URIParam param = pathInfo.get(i);
+            if (key.equals(param.getKey()))
+            {
+                return param.getValue();
+            }
+        }
+
+        for (int i = 0; i < queryData.size(); i++)
+        {
+            URIParam param = queryData.get(i);
+            if (key.equals(param.getKey()))
+            {
+                return param.getValue();
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Remove all parameters with the given key
+     *
+     * @param key the parameter name
+     * @param params the parameter list
+     */
+    private static void removeAll(String key, List<URIParam> params)
+    {
+        for (int i = params.size() - 1; i >= 0; i--)
+        {
+            if (key.equals(params.get(i).getKey()))
+            {
+                params.remove(i);
+            }
+        }
+    }
+}
@@ -0,0 +1,388 @@
+package org.apache.turbine.services.urlmapper;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.apache.turbine.services.urlmapper.model.URLMapEntry;
+import org.apache.turbine.util.LRUCache;
+import org.apache.turbine.util.uri.TurbineURI;
+import org.apache.turbine.util.uri.URIParam;
+
+/**
+ * An immutable, compiled form of the URL mappings. Every entry is
+ * compiled into a {@link URLMapTemplate}. Candidate entries for
+ * a link are looked up by the set of parameter names (the key signature)
+ * instead of scanning all entries.
+ * <p>
+ * Incoming URLs are matched against a trie of the literal prefixes of all
+ * patterns, so only entries whose prefix fits are tried with a regular
+ * expression, still in configuration order. Recent results are cached.
+ */
+final class URLMappingTable
+{
+    /** Maximum number of cached key signatures */
+    private static final int SIGNATURE_CACHE_SIZE = 256;
+
+    /** No candidates */
+    private static final int[] NO_CANDIDATES = new int[0];
+
+    /** The compiled entries in configuration order */
+    private final URLMapTemplate[] templates;
+
+    /** The parameter names known to any entry, mapped to their bit index */
+    private final Map<String, Integer> keyIndex;
+
+    /** The parameter names each entry can consume, as bit set */
+    private final BitSet[] allowedKeys;
+
+    /** Cache of key signatures to candidate entry indices */
+    private final LRUCache<BitSet, int[]> candidateCache;
+
+    /** The root of the literal prefix trie */
+    private final PrefixNode prefixes;
+
+    /** Cache of URLs to match results, may be null */
+    private final LRUCache<String, Optional<Match>> matchCache;
+
+    /**
+     * Compile the given URL map entries
+     *
+     * @param entries the entries in order of precedence
+     * @param cacheSize the maximum number of cached URL matches, 0 disables
+     * the cache
+     */
+    URLMappingTable(List<URLMapEntry> entries, int cacheSize)
+    {
+        int size = entries.size();
+        Map<String, Integer> keys = new HashMap<>();
+
+        this.templates = new URLMapTemplate[size];
+        this.allowedKeys = new BitSet[size];
+
+        for (int i = 0; i < size; i++)
+        {
+            URLMapEntry entry = entries.get(i);
+            URLMapTemplate template = new URLMapTemplate(entry);
+            BitSet allowed = new BitSet();
+
+            addKeys(template.getGroupNames().keySet(), keys, allowed);
+            addKeys(entry.getImplicitParameters().keySet(), keys, allowed);
+            addKeys(entry.getIgnoreParameters().keySet(), keys, allowed);
+
+            templates[i] = template;
+            allowedKeys[i] = allowed;
+        }
+
+        this.keyIndex = Collections.unmodifiableMap(keys);
+        this.candidateCache = new LRUCache<>(SIGNATURE_CACHE_SIZE);
+
+        this.prefixes = new PrefixNode();
+        for (int i = 0; i < size; i++)
+        {
+            prefixes.add(templates[i].getPrefix(), i);
+        }
+
+        this.matchCache = cacheSize > 0 ? new LRUCache<>(cacheSize) : null;
+    }
+
+    /**
+     * Register parameter names in the key index
+     *
+     * @param names the parameter names
+     * @param keys the key index
+     * @param allowed the bit set of the entry
+     */
+    private static void addKeys(Iterable<String> names, Map<String, Integer> keys, BitSet allowed)
+    {
+        for (String name : names)
+        {
+            Integer bit = keys.computeIfAbsent(name, k -> Integer.valueOf(keys.size()));
+            allowed.set(bit.intValue());
+        }
+    }
+
+    /**
+     * @return the number of entries
+     */
+    int size()
+    {
+        return templates.length;
+    }
+
+    /**
+     * Match a URL against the entries and return the first match.
+     *
+     * @param url the URL without trailing slash
+     * @return the match or null if no entry matches
+     */
+    Match mapFromURL(String url)
+    {
+        if (matchCache == null)
+        {
+            return findMatch(url);
+        }
+
+        return matchCache.computeIfAbsent(url, u -> Optional.ofNullable(findMatch(u))).orElse(null);
+    }
+
+    /**
+     * Try all entries whose literal prefix fits the URL in configuration
+     * order
+     *
+     * @param url the URL
+     * @return the match or null if no entry matches
+     */
+    private Match findMatch(String url)
+    {
+        BitSet candidates = getPrefixCandidates(url);
+
+        for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1))
+        {
+            String[] values = templates[i].match(url);
+            if (values != null)
+            {
+                return new Match(templates[i], values);
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Get the entries whose literal prefix is a prefix of the URL
+     *
+     * @param url the URL
+     * @return the indices of the entries
+     */
+    BitSet getPrefixCandidates(String url)
+    {
+        BitSet candidates = new BitSet(templates.length);
+        prefixes.collect(url, candidates);
+        return candidates;
+    }
+
+    /**
+     * @return the cache of URL matches or null if it is disabled
+     */
+    LRUCache<String, Optional<Match>> getMatchCache()
+    {
+        return matchCache;
+    }
+
+    /**
+     * Map the parameters of the URI to the first matching entry.
+     *
+     * @param uri the URI to be modified (with setScriptName())
+     * @return true if an entry matched
+     */
+    boolean mapToURL(TurbineURI uri)
+    {
+        List<URIParam> pathInfo = uri.getPathInfo();
+        List<URIParam> queryData = uri.getQueryData();
+
+        for (int candidate : getCandidates(pathInfo, queryData))
+        {
+            URLMapTemplate template = templates[candidate];
+            if (template.accepts(pathInfo, queryData))
+            {
+                template.render(uri);
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Get the entries which may consume all of the given parameters
+     *
+     * @param pathInfo the path info parameters
+     * @param queryData the query data parameters
+     * @return the indices of the candidate entries in configuration order
+     */
+    int[] getCandidates(List<URIParam> pathInfo, List<URIParam> queryData)
+    {
+        BitSet signature = new BitSet(keyIndex.size());
+        if (!addSignature(pathInfo, signature) || !addSignature(queryData, signature))
+        {
+            // a parameter no entry knows about, so no entry can match
+            return NO_CANDIDATES;
+        }
+
+        return candidateCache.computeIfAbsent(signature, this::findCandidates);
+    }
+
+    /**
+     * Add the parameter names to the key signature
+     *
+     * @param params the parameters
+     * @param signature the signature to modify
+     * @return false if a parameter name is not known to any entry
+     */
+    private boolean addSignature(List<URIParam> params, BitSet signature)
+    {
+        for (int i = 0; i < params.size(); i++)
+        {
+            Integer bit = keyIndex.get(params.get(i).getKey());
+            if (bit == null)
+            {
+                return false;
+            }
+            signature.set(bit.intValue());
+        }
+
+        return true;
+    }
+
+    /**
+     * Find all entries in order that may consume all parameters of the
+     * given signature
+     *
+     * @param signature the key signature
+     * @return the indices of the candidate entries
+     */
+    private int[] findCandidates(BitSet signature)
+    {
+        List<Integer> candidates = new ArrayList<>();
+
+        for (int i = 0; i < allowedKeys.length; i++)
+        {
+            BitSet rest = (BitSet) signature.clone();
+            rest.andNot(allowedKeys[i]);
+            if (rest.isEmpty())
+            {
+                candidates.add(Integer.valueOf(i));
+            }
+        }
+
+        if (candidates.isEmpty())
+        {
+            return NO_CANDIDATES;
+        }
+
+        return candidates.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * The result of matching a URL
+     */
+    static final class Match
+    {
+        /** The matching template */
+        private final URLMapTemplate template;
+
+        /** The values of the slots */
+        private final String[] values;
+
+        /**
+         * Constructor
+         *
+         * @param template the matching template
+         * @param values the values of the slots
+         */
+        Match(URLMapTemplate template, String[] values)
+        {
+            this.template = template;
+            this.values = values;
+        }
+
+        /**
+         * @return the matching entry
+         */
+        URLMapEntry getEntry()
+        {
+            return template.getEntry();
+        }
+
+        /**
+         * @return the group names of the slots
+         */
+        String[] getSlots()
+        {
+            return template.getSlots();
+        }
+
+        /**
+         * @return the values of the slots
+         */
+        String[] getValues()
+        {
+            return values;
+        }
+    }
+
+    /**
+     * A node of the literal prefix trie
+     */
+    private static final class PrefixNode
+    {
+        /** The child nodes by character */
+        private final Map<Character, PrefixNode> children = new HashMap<>();
+
+        /** The entries whose prefix ends at this node */
+        private final BitSet entries = new BitSet();
+
+        /**
+         * Add an entry
+         *
+         * @param prefix the literal prefix of the entry
+         * @param index the entry index
+         */
+        void add(String prefix, int index)
+        {
+            PrefixNode node = this;
+            for (int i = 0; i < prefix.length(); i++)
+            {
+                node = node.children.computeIfAbsent(Character.valueOf(prefix.charAt(i)), c -> new PrefixNode());
+            }
+            node.entries.set(index);
+        }
+
+        /**
+         * Collect all entries whose prefix is a prefix of the URL
+         *
+         * @param url the URL
+         * @param result the entry indices found
+         */
+        void collect(String url, BitSet result)
+        {
+            PrefixNode node = this;
+            result.or(node.entries);
+
+            for (int i = 0; i < url.length(); i++)
+            {
+                node = node.children.get(Character.valueOf(url.charAt(i)));
+                if (node == null)
+                {
+                    break;
+                }
+                result.or(node.entries);
+            }
+        }
+    }
+}
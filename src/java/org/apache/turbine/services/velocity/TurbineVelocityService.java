@@ -25,9 +25,16 @@ import java.io.ByteArrayOutputStream;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
+import java.lang.reflect.Method;
 import java.nio.charset.Charset;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.configuration2.Configuration;
 import org.apache.logging.log4j.LogManager;
@@ -37,6 +44,7 @@ import org.apache.turbine.pipeline.PipelineData;
 import org.apache.turbine.services.InitializationException;
 import org.apache.turbine.services.TurbineServices;
 import org.apache.turbine.services.pull.PullService;
+import org.apache.turbine.services.pull.ToolboxContext;
 import org.apache.turbine.services.template.BaseTemplateEngineService;
 import org.apache.turbine.util.LocaleUtils;
 import org.apache.turbine.util.RunData;
@@ -112,6 +120,9 @@ public class TurbineVelocityService
     /** Internal Reference to the pull Service */
     private PullService pullService = null;
 
+    /** The executor for rendering fragments in parallel, created on demand */
+    private volatile ExecutorService fragmentExecutor = null;
+
 
     /**
      * Load all configured components and initialize them. This is
@@ -182,7 +193,7 @@ public class TurbineVelocityService
         Context globalContext =
                 pullModelActive ? pullService.getGlobalContext() : null;
 
-        Context ctx = new VelocityContext(globalContext);
+        Context ctx = new ToolboxContext(globalContext);
         return ctx;
     }
 
@@ -612,4 +623,134 @@ public class TurbineVelocityService
             pullService.releaseTools(context);
         }
     }
+
+    /**
+     * Create a Context for rendering a fragment of the current request
+     * on another thread.
+     *
+     * @see org.apache.turbine.services.velocity.VelocityService#getFragmentContext(org.apache.turbine.pipeline.PipelineData)
+     */
+    @Override
+    public Context getFragmentContext(PipelineData pipelineData)
+    {
+        Context requestContext = getContext(pipelineData);
+
+        Context context = getContext();
+        context.put(VelocityService.RUNDATA_KEY, pipelineData.getRunData());
+        context.put(VelocityService.PIPELINEDATA_KEY, pipelineData);
+
+        if (pullModelActive)
+        {
+            // new instances of the request tools, created on first use
+            pullService.populateContext(context, pipelineData);
+        }
+
+        // copy the values added by actions and screens
+        for (String key : requestContext.getKeys())
+        {
+            if (!context.containsKey(key))
+            {
+                context.put(key, requestContext.get(key));
+            }
+        }
+
+        return context;
+    }
+
+    /**
+     * Get the executor for rendering fragments in parallel. This is a
+     * fixed pool of daemon threads which rejects fragments while all
+     * threads are busy or, if configured and supported by the JVM, an
+     * executor starting a virtual thread per fragment.
+     *
+     * @see org.apache.turbine.services.velocity.VelocityService#getFragmentExecutor()
+     */
+    @Override
+    public ExecutorService getFragmentExecutor()
+    {
+        ExecutorService executor = fragmentExecutor;
+
+        if (executor == null)
+        {
+            synchronized (this)
+            {
+                executor = fragmentExecutor;
+
+                if (executor == null)
+                {
+                    executor = createFragmentExecutor();
+                    fragmentExecutor = executor;
+                }
+            }
+        }
+
+        return executor;
+    }
+
+    /**
+     * Create the executor for rendering fragments in parallel
+     *
+     * @return the executor
+     */
+    private ExecutorService createFragmentExecutor()
+    {
+        if (getConfiguration().getBoolean(PARALLEL_VIRTUAL_KEY, false))
+        {
+            try
+            {
+                Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+                log.info("Rendering parallel fragments on virtual threads");
+                return (ExecutorService) factory.invoke(null);
+            }
+            catch (ReflectiveOperationException e)
+            {
+                log.warn("Virtual threads are not supported by this JVM, using a fixed thread pool");
+            }
+        }
+
+        return createFragmentPool(getConfiguration().getInt(PARALLEL_THREADS_KEY, PARALLEL_THREADS_DEFAULT));
+    }
+
+    /**
+     * Create a fixed pool of daemon threads for rendering fragments. The
+     * pool does not queue fragments: if all threads are busy, a submitted
+     * fragment is rejected, so that the request renders it itself instead
+     * of waiting for a thread until it times out.
+     *
+     * @param threads the number of threads
+     * @return the executor
+     */
+    static ExecutorService createFragmentPool(int threads)
+    {
+        AtomicInteger counter = new AtomicInteger();
+
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(Math.max(1, threads), Math.max(1, threads),
+                60, TimeUnit.SECONDS, new SynchronousQueue<>(),
+                r -> {
+                    Thread worker = new Thread(r, SERVICE_NAME + "-fragment-" + counter.incrementAndGet());
+                    worker.setDaemon(true);
+                    return worker;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        pool.allowCoreThreadTimeOut(true);
+
+        return pool;
+    }
+
+    /**
+     * Shuts down the service and the executor for parallel fragments.
+     */
+    @Override
+    public void shutdown()
+    {
+        ExecutorService executor = fragmentExecutor;
+
+        if (executor != null)
+        {
+            executor.shutdownNow();
+            fragmentExecutor = null;
+        }
+
+        super.shutdown();
+    }
 }
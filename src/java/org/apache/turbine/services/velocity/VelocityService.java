@@ -23,6 +23,7 @@ package org.apache.turbine.services.velocity;
 
 import java.io.OutputStream;
 import java.io.Writer;
+import java.util.concurrent.ExecutorService;
 
 import org.apache.turbine.pipeline.PipelineData;
 import org.apache.turbine.services.Service;
@@ -63,6 +64,27 @@ public interface VelocityService
     /** Default: Yes */
     boolean CATCH_ERRORS_DEFAULT = true;
 
+    /** The number of threads rendering fragments in parallel */
+    String PARALLEL_THREADS_KEY = "parallel.threads";
+
+    /** Default: 8 */
+    int PARALLEL_THREADS_DEFAULT = 8;
+
+    /** Render fragments on virtual threads (Java 21 and later) */
+    String PARALLEL_VIRTUAL_KEY = "parallel.virtual";
+
+    /** The maximum number of fragments rendered in parallel per request */
+    String PARALLEL_LIMIT_KEY = "parallel.limit";
+
+    /** Default: 4 */
+    int PARALLEL_LIMIT_DEFAULT = 4;
+
+    /** The time in milliseconds a request waits for its parallel fragments */
+    String PARALLEL_TIMEOUT_KEY = "parallel.timeout";
+
+    /** Default: 10 seconds */
+    long PARALLEL_TIMEOUT_DEFAULT = 10000;
+
     /**
      * Process the request and fill in the template with the values
      * you set in the Context.
@@ -134,4 +156,43 @@ public interface VelocityService
      * @param context a Velocity Context
      */
     void requestFinished(Context context);
+
+    /**
+     * Create a Context for rendering a fragment of the current request
+     * on another thread. The Context has its own instances of the request
+     * scope tools and a copy of all other values of the request Context.
+     * It must be released with {@link #requestFinished(Context)} after
+     * rendering.
+     *
+     * <p>
+     * A service which does not render fragments in parallel returns null
+     * here and from {@link #getFragmentExecutor()}, which is the default.
+     * </p>
+     *
+     * @param pipelineData The Turbine PipelineData object.
+     * @return A new Context or null if the service does not render
+     *         fragments in parallel
+     */
+    default Context getFragmentContext(PipelineData pipelineData)
+    {
+        return null;
+    }
+
+    /**
+     * Get the executor for rendering fragments in parallel. It is created
+     * on first use.
+     *
+     * <p>
+     * If this returns null, the service does not render fragments in
+     * parallel and all fragments are rendered by the request itself.
+     * This is the default.
+     * </p>
+     *
+     * @return the executor or null if the service does not render
+     *         fragments in parallel
+     */
+    default ExecutorService getFragmentExecutor()
+    {
+        return null;
+    }
 }
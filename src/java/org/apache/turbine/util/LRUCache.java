@@ -0,0 +1,401 @@
+package org.apache.turbine.util;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * A thread-safe, size-bounded cache with least-recently-used eviction
+ * and optional expiry of entries. The cache is split into independently
+ * locked segments, so concurrent accesses to different keys rarely
+ * contend. Null values are not supported.
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the values
+ */
+public class LRUCache<K, V>
+{
+    /** Maximum number of segments */
+    private static final int MAX_SEGMENTS = 16;
+
+    /** The segments */
+    private final Segment<K, V>[] segments;
+
+    /** Mask to calculate the segment index */
+    private final int segmentMask;
+
+    /** The maximum number of entries */
+    private final int maxSize;
+
+    /** The default time to live of an entry in milliseconds, 0 means forever */
+    private final long timeToLive;
+
+    /** The number of cache hits */
+    private final LongAdder hits = new LongAdder();
+
+    /** The number of cache misses */
+    private final LongAdder misses = new LongAdder();
+
+    /** The number of evicted or expired entries */
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Create a cache whose entries never expire
+     *
+     * @param maxSize the maximum number of entries
+     */
+    public LRUCache(int maxSize)
+    {
+        this(maxSize, 0);
+    }
+
+    /**
+     * Create a cache
+     *
+     * @param maxSize the maximum number of entries
+     * @param timeToLive the default time to live of an entry in
+     *        milliseconds, 0 means forever
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public LRUCache(int maxSize, long timeToLive)
+    {
+        if (maxSize < 1)
+        {
+            throw new IllegalArgumentException("Cache size must be positive: " + maxSize);
+        }
+
+        this.maxSize = maxSize;
+        this.timeToLive = Math.max(timeToLive, 0);
+
+        // Keep at least a handful of entries per segment
+        int count = 1;
+        while (count < MAX_SEGMENTS && count * 8 <= maxSize)
+        {
+            count <<= 1;
+        }
+
+        int segmentSize = (maxSize + count - 1) / count;
+        segments = new Segment[count];
+        for (int i = 0; i < count; i++)
+        {
+            segments[i] = new Segment<>(segmentSize, evictions);
+        }
+        segmentMask = count - 1;
+    }
+
+    /**
+     * Get the segment responsible for a key
+     *
+     * @param key the key
+     * @return the segment
+     */
+    private Segment<K, V> segmentFor(Object key)
+    {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return segments[h & segmentMask];
+    }
+
+    /**
+     * Get a cached value
+     *
+     * @param key the key
+     * @return the value or null if the key is not cached or has expired
+     */
+    public V get(K key)
+    {
+        V value = segmentFor(key).get(key, System.currentTimeMillis());
+
+        if (value == null)
+        {
+            misses.increment();
+        }
+        else
+        {
+            hits.increment();
+        }
+
+        return value;
+    }
+
+    /**
+     * Get a cached value, computing and caching it if absent. The value
+     * is computed outside of any lock, so concurrent callers may compute
+     * the same value more than once.
+     *
+     * @param key the key
+     * @param mappingFunction the function computing the value; if it
+     *        returns null, nothing is cached
+     * @return the cached or computed value
+     */
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction)
+    {
+        V value = get(key);
+
+        if (value == null)
+        {
+            value = mappingFunction.apply(key);
+            if (value != null)
+            {
+                put(key, value);
+            }
+        }
+
+        return value;
+    }
+
+    /**
+     * Cache a value with the default time to live
+     *
+     * @param key the key
+     * @param value the value, not null
+     */
+    public void put(K key, V value)
+    {
+        put(key, value, timeToLive);
+    }
+
+    /**
+     * Cache a value
+     *
+     * @param key the key
+     * @param value the value, not null
+     * @param ttl the time to live of the entry in milliseconds, 0 means
+     *        forever
+     */
+    public void put(K key, V value, long ttl)
+    {
+        if (value == null)
+        {
+            throw new NullPointerException("Cannot cache null value for key " + key);
+        }
+
+        long expires = ttl > 0 ? System.currentTimeMillis() + ttl : Long.MAX_VALUE;
+        segmentFor(key).put(key, value, expires);
+    }
+
+    /**
+     * Cache a value with the default time to live unless the key is
+     * already cached. The check and the update are atomic.
+     *
+     * @param key the key
+     * @param value the value, not null
+     * @return the value cached before or null if the value was added
+     */
+    public V putIfAbsent(K key, V value)
+    {
+        if (value == null)
+        {
+            throw new NullPointerException("Cannot cache null value for key " + key);
+        }
+
+        long now = System.currentTimeMillis();
+        long expires = timeToLive > 0 ? now + timeToLive : Long.MAX_VALUE;
+        return segmentFor(key).putIfAbsent(key, value, now, expires);
+    }
+
+    /**
+     * Remove a key from the cache
+     *
+     * @param key the key
+     */
+    public void remove(K key)
+    {
+        segmentFor(key).remove(key);
+    }
+
+    /**
+     * Remove all entries from the cache. The statistics are kept.
+     */
+    public void clear()
+    {
+        for (Segment<K, V> segment : segments)
+        {
+            segment.clear();
+        }
+    }
+
+    /**
+     * @return the number of cached entries, including expired entries not
+     *         yet removed
+     */
+    public int size()
+    {
+        int size = 0;
+        for (Segment<K, V> segment : segments)
+        {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /**
+     * @return the maximum number of entries
+     */
+    public int getMaxSize()
+    {
+        return maxSize;
+    }
+
+    /**
+     * @return the number of cache hits
+     */
+    public long getHitCount()
+    {
+        return hits.sum();
+    }
+
+    /**
+     * @return the number of cache misses
+     */
+    public long getMissCount()
+    {
+        return misses.sum();
+    }
+
+    /**
+     * @return the number of entries removed because of size limits or
+     *         expiry
+     */
+    public long getEvictionCount()
+    {
+        return evictions.sum();
+    }
+
+    /**
+     * @return the ratio of hits to all lookups, 0.0 if there were none
+     */
+    public double getHitRatio()
+    {
+        long h = getHitCount();
+        long total = h + getMissCount();
+        return total == 0 ? 0.0 : (double) h / total;
+    }
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString()
+    {
+        return String.format("LRUCache[size=%d, maxSize=%d, hits=%d, misses=%d, evictions=%d]",
+                size(), maxSize, getHitCount(), getMissCount(), getEvictionCount());
+    }
+
+    /**
+     * A cached value with its expiry time
+     */
+    private static final class Entry<V>
+    {
+        final V value;
+        final long expires;
+
+        Entry(V value, long expires)
+        {
+            this.value = value;
+            this.expires = expires;
+        }
+    }
+
+    /**
+     * A segment of the cache, an access-ordered map guarded by its own
+     * monitor.
+     */
+    private static final class Segment<K, V>
+    {
+        private final LinkedHashMap<K, Entry<V>> map;
+        private final LongAdder evictions;
+
+        Segment(int maxSize, LongAdder evictions)
+        {
+            this.evictions = evictions;
+            map = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true)
+            {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest)
+                {
+                    if (size() > maxSize)
+                    {
+                        evictions.increment();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        synchronized V get(Object key, long now)
+        {
+            Entry<V> entry = map.get(key);
+
+            if (entry == null)
+            {
+                return null;
+            }
+
+            if (entry.expires < now)
+            {
+                map.remove(key);
+                evictions.increment();
+                return null;
+            }
+
+            return entry.value;
+        }
+
+        synchronized void put(K key, V value, long expires)
+        {
+            map.put(key, new Entry<>(value, expires));
+        }
+
+        synchronized V putIfAbsent(K key, V value, long now, long expires)
+        {
+            V oldValue = get(key, now);
+
+            if (oldValue == null)
+            {
+                map.put(key, new Entry<>(value, expires));
+            }
+
+            return oldValue;
+        }
+
+        synchronized void remove(Object key)
+        {
+            map.remove(key);
+        }
+
+        synchronized void clear()
+        {
+            map.clear();
+        }
+
+        synchronized int size()
+        {
+            return map.size();
+        }
+    }
+}
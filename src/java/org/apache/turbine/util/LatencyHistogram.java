@@ -0,0 +1,186 @@
+package org.apache.turbine.util;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of latency values in nanoseconds. Values are
+ * collected in log-linear buckets (eight sub-buckets per power of two,
+ * similar to an HDR histogram), so percentiles are reported with a
+ * relative error of at most 12.5%. Recording a value does not allocate.
+ */
+public class LatencyHistogram
+{
+    /** Number of bits used for the linear sub-buckets */
+    private static final int SUB_BUCKET_BITS = 3;
+
+    /** Number of linear sub-buckets per power of two */
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /** Total number of buckets covering all positive long values */
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    /** The bucket counters */
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    /** The number of recorded values */
+    private final LongAdder count = new LongAdder();
+
+    /** The sum of all recorded values */
+    private final LongAdder total = new LongAdder();
+
+    /** The largest recorded value */
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Record a value
+     *
+     * @param value the value in nanoseconds, negative values are
+     *        recorded as zero
+     */
+    public void record(long value)
+    {
+        long v = Math.max(value, 0);
+
+        counts.incrementAndGet(bucketIndex(v));
+        count.increment();
+        total.add(v);
+        max.accumulate(v);
+    }
+
+    /**
+     * @return the number of recorded values
+     */
+    public long getCount()
+    {
+        return count.sum();
+    }
+
+    /**
+     * @return the sum of all recorded values in nanoseconds
+     */
+    public long getTotal()
+    {
+        return total.sum();
+    }
+
+    /**
+     * @return the largest recorded value in nanoseconds
+     */
+    public long getMax()
+    {
+        return max.get();
+    }
+
+    /**
+     * @return the mean of all recorded values in nanoseconds
+     */
+    public double getMean()
+    {
+        long n = getCount();
+        return n == 0 ? 0.0 : (double) getTotal() / n;
+    }
+
+    /**
+     * Get an approximation of the given percentile of all recorded values.
+     *
+     * @param percentile the percentile, between 0.0 and 100.0
+     *
+     * @return the upper bound of the bucket containing the percentile
+     *         in nanoseconds, 0 if no values have been recorded
+     */
+    public long getPercentile(double percentile)
+    {
+        long n = getCount();
+        if (n == 0)
+        {
+            return 0;
+        }
+
+        long rank = (long) Math.ceil(Math.min(Math.max(percentile, 0.0), 100.0) / 100.0 * n);
+        rank = Math.max(rank, 1);
+
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++)
+        {
+            seen += counts.get(i);
+            if (seen >= rank)
+            {
+                return Math.min(upperBound(i), getMax());
+            }
+        }
+
+        return getMax();
+    }
+
+    /**
+     * Clear all recorded values
+     */
+    public void reset()
+    {
+        for (int i = 0; i < BUCKETS; i++)
+        {
+            counts.set(i, 0);
+        }
+
+        count.reset();
+        total.reset();
+        max.reset();
+    }
+
+    /**
+     * Calculate the bucket index of a value
+     *
+     * @param value a non-negative value
+     * @return the index of the bucket
+     */
+    static int bucketIndex(long value)
+    {
+        if (value < 2 * SUB_BUCKETS)
+        {
+            return (int) value;
+        }
+
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    /**
+     * Calculate the largest value which falls into a bucket
+     *
+     * @param index the index of the bucket
+     * @return the inclusive upper bound of the bucket
+     */
+    static long upperBound(int index)
+    {
+        if (index < 2 * SUB_BUCKETS)
+        {
+            return index;
+        }
+
+        int shift = index / SUB_BUCKETS - 1;
+        long lower = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+        return lower + (1L << shift) - 1;
+    }
+}
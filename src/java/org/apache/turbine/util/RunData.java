@@ -92,6 +92,32 @@ public interface RunData extends PipelineData
      */
     HttpSession getSession();
 
+    /**
+     * Whether this request is served without a session. In a stateless
+     * request, {@link #getSession()} returns a session which is only
+     * created in the container when something is written into it.
+     *
+     * @return true if the request is stateless, false if the
+     * implementation does not support stateless requests.
+     */
+    default boolean isStateless()
+    {
+        return false;
+    }
+
+    /**
+     * Marks this request as stateless or not. This must be done before
+     * the session is accessed for the first time. Implementations which
+     * do not support stateless requests ignore this.
+     *
+     * @param stateless true if the request should not create a session
+     * unless something is stored in it.
+     */
+    default void setStateless(boolean stateless)
+    {
+        // stateless requests are not supported
+    }
+
     /**
      * Gets the servlet configuration used during servlet init.
      *
@@ -28,7 +28,7 @@ import org.apache.fulcrum.security.model.turbine.TurbineAccessControlList;
 import org.apache.fulcrum.security.model.turbine.TurbineModelManager;
 import org.apache.fulcrum.security.util.RoleSet;
 import org.apache.fulcrum.security.util.UnknownEntityException;
-import org.apache.turbine.services.TurbineServices;
+import org.apache.turbine.services.ServiceHandle;
 
 /**
  * Utility for doing security checks in Screens and Actions.
@@ -48,6 +48,10 @@ import org.apache.turbine.services.TurbineServices;
  */
 public class SecurityCheck
 {
+    /** Handle of the security service */
+    private static final ServiceHandle<SecurityService> SECURITY_SERVICE =
+            ServiceHandle.of(SecurityService.class, SecurityService.ROLE);
+
     private String message;
 
     private String failScreen;
@@ -94,9 +98,7 @@ public class SecurityCheck
         this.message = message;
         this.failScreen = failedScreen;
         this.initialize = initialize;
-        this.securityService = (SecurityService)TurbineServices
-    		.getInstance()
-    		.getService(SecurityService.ROLE);
+        this.securityService = SECURITY_SERVICE.get();
     }
 
     /**
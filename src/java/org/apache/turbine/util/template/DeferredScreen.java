@@ -0,0 +1,315 @@
+package org.apache.turbine.util.template;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.turbine.TurbineConstants;
+import org.apache.turbine.services.velocity.VelocityService;
+import org.apache.turbine.util.RunData;
+import org.apache.turbine.util.TurbineException;
+import org.apache.velocity.context.Context;
+import org.apache.velocity.context.InternalContextAdapter;
+import org.apache.velocity.runtime.Renderable;
+
+/**
+ * The template of a screen whose business logic has already been
+ * executed. An instance of this is placed in the Velocity context by the
+ * VelocityStreamingLayout. When the layout template references
+ * <code>$screen_placeholder</code>, the screen template is merged
+ * directly into the writer of the layout, without building the screen
+ * output as a String first.
+ *
+ * <p>
+ * Since the screen template is rendered after the layout has started
+ * its output, a screen template must not set response headers. Screens
+ * which do so call {@link #setBuffered(RunData)} from their business
+ * logic to have their template rendered before the layout.
+ * </p>
+ *
+ * <p>
+ * The screen template is rendered at most once. Once it has been
+ * written into the layout directly, it cannot be referenced again.
+ * </p>
+ *
+ * @version $Id$
+ */
+public class DeferredScreen implements Renderable
+{
+    /** Logging */
+    private static final Logger log = LogManager.getLogger(DeferredScreen.class);
+
+    /** Temporary storage key which requests buffered rendering */
+    private static final String BUFFERED_KEY = DeferredScreen.class.getName() + ".buffered";
+
+    /** The Velocity service */
+    private final VelocityService velocity;
+
+    /** The Velocity context of the request */
+    private final Context context;
+
+    /** The screen template */
+    private final String template;
+
+    /** The template to render on errors */
+    private final String errorTemplate;
+
+    /** The output of the screen if it has been rendered into a String */
+    private String output;
+
+    /** true if the screen template has been rendered */
+    private boolean rendered;
+
+    /**
+     * Constructor
+     *
+     * @param velocity the Velocity service
+     * @param context the Velocity context of the request
+     * @param template the path of the screen template
+     * @param errorTemplate the path of the template to render on errors
+     */
+    public DeferredScreen(VelocityService velocity, Context context,
+            String template, String errorTemplate)
+    {
+        this.velocity = velocity;
+        this.context = context;
+        this.template = template;
+        this.errorTemplate = errorTemplate;
+    }
+
+    /**
+     * Request that the screen of the current request is rendered into a
+     * buffer before the layout, e.g. because its template sets headers.
+     *
+     * @param data Turbine information.
+     */
+    public static void setBuffered(RunData data)
+    {
+        data.getTemplateInfo().setTemp(BUFFERED_KEY, Boolean.TRUE);
+    }
+
+    /**
+     * Check whether the screen of the current request must be rendered
+     * into a buffer before the layout.
+     *
+     * @param data Turbine information.
+     * @return true if deferred rendering is not possible
+     */
+    public static boolean isBuffered(RunData data)
+    {
+        return data.getTemplateInfo().getTemp(BUFFERED_KEY) != null;
+    }
+
+    /**
+     * @return the path of the screen template
+     */
+    public String getTemplate()
+    {
+        return template;
+    }
+
+    /**
+     * Render the screen template into the given writer. If the template
+     * fails before it has written anything, the error template is
+     * rendered instead. A template failing after it has written output
+     * aborts the layout, since the partial output cannot be taken back.
+     *
+     * <p>
+     * The screen template is rendered only once. If the screen has been
+     * rendered into a String by {@link #toString()} before, that output
+     * is written. If it has already been rendered directly into a writer,
+     * an IOException is thrown.
+     * </p>
+     *
+     * @param writer the writer of the layout
+     * @throws IOException if writing fails or the screen has already been
+     *         rendered
+     */
+    public void render(Writer writer)
+        throws IOException
+    {
+        if (output != null)
+        {
+            writer.write(output);
+            return;
+        }
+
+        if (rendered)
+        {
+            throw new IOException("Screen template " + template + " has already been rendered");
+        }
+
+        rendered = true;
+        TrackingWriter tracking = new TrackingWriter(writer);
+
+        try
+        {
+            velocity.handleRequest(context, template, tracking);
+        }
+        catch (TurbineException e)
+        {
+            if (tracking.written)
+            {
+                throw new IOException("Screen template " + template
+                        + " failed after writing output", e);
+            }
+
+            renderError(writer, e);
+        }
+    }
+
+    /**
+     * Render the error template for a failed screen template
+     *
+     * @param writer the writer
+     * @param e the exception of the screen template
+     * @throws IOException if the error template fails
+     */
+    private void renderError(Writer writer, TurbineException e)
+        throws IOException
+    {
+        // Like VelocityScreen, build a $processingException and
+        // render the error template in its place.
+        context.put(TurbineConstants.PROCESSING_EXCEPTION_PLACEHOLDER, e.toString());
+        context.put(TurbineConstants.STACK_TRACE_PLACEHOLDER, ExceptionUtils.getStackTrace(e));
+
+        try
+        {
+            velocity.handleRequest(context, errorTemplate, writer);
+        }
+        catch (TurbineException e1)
+        {
+            throw new IOException("Could not render " + errorTemplate, e1);
+        }
+    }
+
+    /**
+     * Called by Velocity when the layout template references the screen.
+     *
+     * @see org.apache.velocity.runtime.Renderable#render(org.apache.velocity.context.InternalContextAdapter, java.io.Writer)
+     */
+    @Override
+    public boolean render(InternalContextAdapter ica, Writer writer)
+        throws IOException
+    {
+        render(writer);
+        return true;
+    }
+
+    /**
+     * Render the screen template into a String. This is used if the
+     * screen is referenced in another way than by the layout template
+     * directly, e.g. in <code>#if($screen_placeholder)</code>. The output
+     * is kept, so later references do not render the template again.
+     *
+     * @return the output of the screen
+     * @throws IllegalStateException if the screen has already been
+     *         rendered directly into the layout
+     */
+    @Override
+    public String toString()
+    {
+        if (output != null)
+        {
+            return output;
+        }
+
+        if (rendered)
+        {
+            throw new IllegalStateException("Screen template " + template
+                    + " has already been rendered into the layout");
+        }
+
+        rendered = true;
+        StringWriter writer = new StringWriter();
+
+        try
+        {
+            velocity.handleRequest(context, template, writer);
+        }
+        catch (TurbineException e)
+        {
+            // The partial output is discarded
+            writer = new StringWriter();
+
+            try
+            {
+                renderError(writer, e);
+            }
+            catch (IOException e1)
+            {
+                log.error("Error rendering screen template {}", template, e1);
+            }
+        }
+
+        output = writer.toString();
+        return output;
+    }
+
+    /**
+     * A writer which records whether anything has been written
+     */
+    private static final class TrackingWriter extends FilterWriter
+    {
+        /** true if output has been written */
+        boolean written;
+
+        TrackingWriter(Writer out)
+        {
+            super(out);
+        }
+
+        @Override
+        public void write(int c) throws IOException
+        {
+            written = true;
+            super.write(c);
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException
+        {
+            written |= len > 0;
+            super.write(cbuf, off, len);
+        }
+
+        @Override
+        public void write(String str, int off, int len) throws IOException
+        {
+            written |= len > 0;
+            super.write(str, off, len);
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            // The writer of the layout is not closed by the screen
+            flush();
+        }
+    }
+}
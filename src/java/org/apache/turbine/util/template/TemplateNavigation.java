@@ -78,6 +78,16 @@ public class TemplateNavigation
         return this;
     }
 
+    /**
+     * Get the template.
+     *
+     * @return the name of the navigation template or null if unset
+     */
+    public String getTemplate()
+    {
+        return template;
+    }
+
     /**
      * Builds the output of the navigation template.
      *
@@ -28,6 +28,7 @@ import org.apache.fulcrum.security.model.turbine.TurbineUserManager;
 import org.apache.turbine.Turbine;
 import org.apache.turbine.TurbineConstants;
 import org.apache.turbine.pipeline.PipelineData;
+import org.apache.turbine.services.ServiceHandle;
 import org.apache.turbine.services.TurbineServices;
 import org.apache.turbine.services.template.TemplateService;
 import org.apache.turbine.util.RunData;
@@ -51,6 +52,10 @@ import org.apache.turbine.util.RunData;
  */
 public class TemplateSecurityCheck
 {
+    /* Handle of the user manager */
+    private static final ServiceHandle<TurbineUserManager> USER_MANAGER =
+            ServiceHandle.of(TurbineUserManager.class, TurbineUserManager.ROLE);
+
     private String message = "Sorry, you do not have permission to access this area.";
     private String failScreen;
     private String failTemplate;
@@ -146,10 +151,7 @@ public class TemplateSecurityCheck
         boolean value = true;
 
         // Do it like the AccessController
-        TurbineUserManager userManager =
-        	(TurbineUserManager)TurbineServices
-        		.getInstance()
-        		.getService(TurbineUserManager.ROLE);
+        TurbineUserManager userManager = USER_MANAGER.get();
 
         if (!userManager.isAnonymousUser(data.getUser())
             && !data.getUser().hasLoggedIn())
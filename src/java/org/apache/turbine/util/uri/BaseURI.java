@@ -509,12 +509,12 @@ public abstract class BaseURI
             }
             catch(Exception e)
             {
-                log.error("response" + response + ", uri: " + uri);
+                log.error("response {}, uri: {}", response, uri);
                 log.error("While trying to encode the URI: ", e);
             }
         }
 
-        log.debug("encodeResponse():  " + res);
+        log.debug("encodeResponse():  {}", res);
         return res;
     }
 }
@@ -20,7 +20,6 @@ package org.apache.turbine.util.uri;
  */
 
 import java.io.UnsupportedEncodingException;
-import java.net.URLEncoder;
 import java.nio.charset.Charset;
 import java.nio.charset.IllegalCharsetNameException;
 import java.nio.charset.UnsupportedCharsetException;
@@ -28,14 +27,13 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Objects;
-import java.util.stream.Collectors;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.fulcrum.parser.ParameterParser;
 import org.apache.fulcrum.parser.ParserService;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.apache.turbine.services.TurbineServices;
+import org.apache.turbine.services.ServiceHandle;
 import org.apache.turbine.util.RunData;
 import org.apache.turbine.util.ServerData;
 
@@ -58,6 +56,10 @@ public class TurbineURI
     /** Logging */
     private static final Logger log = LogManager.getLogger(TurbineURI.class);
 
+    /** Handle of the parser service, resolved once */
+    private static final ServiceHandle<ParserService> PARSER_SERVICE =
+            ServiceHandle.of(ParserService.class, ParserService.ROLE);
+
     /** Contains the PathInfo and QueryData vectors */
     private List<URIParam> [] dataVectors = null;
 
@@ -67,6 +69,12 @@ public class TurbineURI
     /** URI Parameter encoding as defined by the parser service */
     private Charset parameterEncoding;
 
+    /** Largest link buffer kept between two links */
+    private static final int MAX_BUFFER_SIZE = 4096;
+
+    /** Buffer for building links, reused by the links of this URI */
+    private StringBuilder linkBuffer;
+
     /*
      * ========================================================================
      *
@@ -267,7 +275,7 @@ public class TurbineURI
         dataVectors = new List[2];
         dataVectors[PATH_INFO]  = new ArrayList<>();
         dataVectors[QUERY_DATA] = new ArrayList<>();
-        parserService = (ParserService)TurbineServices.getInstance().getService(ParserService.ROLE);
+        parserService = PARSER_SERVICE.get();
 
         try
         {
@@ -619,7 +627,7 @@ public class TurbineURI
      */
     public String getAbsoluteLink()
     {
-        StringBuilder output = new StringBuilder();
+        StringBuilder output = getLinkBuffer();
 
         getSchemeAndPort(output);
 
@@ -652,7 +660,7 @@ public class TurbineURI
      */
     public String getRelativeLink()
     {
-        StringBuilder output = new StringBuilder();
+        StringBuilder output = getLinkBuffer();
 
         buildRelativeLink(output);
 
@@ -662,6 +670,25 @@ public class TurbineURI
         return encodeResponse(output.toString());
     }
 
+    /**
+     * Get the empty link buffer of this URI
+     *
+     * @return the buffer
+     */
+    private StringBuilder getLinkBuffer()
+    {
+        if (linkBuffer == null || linkBuffer.capacity() > MAX_BUFFER_SIZE)
+        {
+            linkBuffer = new StringBuilder(128);
+        }
+        else
+        {
+            linkBuffer.setLength(0);
+        }
+
+        return linkBuffer;
+    }
+
     /**
      * Add everything needed for a relative link to the passed StringBuilder.
      *
@@ -767,7 +794,7 @@ public class TurbineURI
      */
     private void getPathInfoAsString(StringBuilder output)
     {
-        doEncode(output, dataVectors[PATH_INFO], "/", "/");
+        doEncode(output, dataVectors[PATH_INFO], '/', '/');
     }
 
     /**
@@ -777,28 +804,35 @@ public class TurbineURI
      */
     private void getQueryDataAsString(StringBuilder output)
     {
-        doEncode(output, dataVectors[QUERY_DATA], "&", "=");
+        doEncode(output, dataVectors[QUERY_DATA], '&', '=');
     }
 
     /**
-     * URL encode the given string, catching possible Exceptions
+     * URL encode the given string into the output, catching possible
+     * Exceptions
      *
+     * @param output the output
      * @param string the string
-     * @return the encoded string
+     * @param name true if the string is a key or a screen, action or
+     *        template name, which are cached if they need full encoding
      */
-    private String urlEncode(String string)
+    private void urlEncode(StringBuilder output, String string, boolean name)
     {
         try
         {
-            // Java10: return URLEncoder.encode(string, parameterEncoding);
-            return URLEncoder.encode(string, parameterEncoding.name());
+            if (name)
+            {
+                URIEncoder.encodeName(output, string, parameterEncoding);
+            }
+            else
+            {
+                URIEncoder.encode(output, string, parameterEncoding);
+            }
         }
         catch (UnsupportedEncodingException e)
         {
             log.warn("Unsupported encoding {}", parameterEncoding);
         }
-
-        return StringUtils.EMPTY;
     }
 
     /**
@@ -809,20 +843,38 @@ public class TurbineURI
      * @param fieldDelim A char which is used to separate key/value pairs
      * @param valueDelim A char which is used to separate key and value
      */
-    private void doEncode(StringBuilder output, Collection<URIParam> list, String fieldDelim, String valueDelim)
+    private void doEncode(StringBuilder output, Collection<URIParam> list, char fieldDelim, char valueDelim)
     {
-        if(!list.isEmpty())
+        boolean first = true;
+
+        for (URIParam uriParam : list)
         {
-            output.append(list.stream()
-                    .map(uriParam ->
-                        String.join(
-                                valueDelim,
-                                urlEncode(uriParam.getKey()),
-                                urlEncode(Objects.toString(uriParam.getValue()))))
-                    .collect(Collectors.joining(fieldDelim)));
+            if (!first)
+            {
+                output.append(fieldDelim);
+            }
+            first = false;
+
+            String key = uriParam.getKey();
+            urlEncode(output, key, true);
+            output.append(valueDelim);
+            urlEncode(output, Objects.toString(uriParam.getValue()), isName(key));
         }
     }
 
+    /**
+     * Check whether the value of a parameter is a module or template name
+     *
+     * @param key the parameter key
+     * @return true for the screen, action and template parameters
+     */
+    private static boolean isName(String key)
+    {
+        return CGI_SCREEN_PARAM.equals(key)
+                || CGI_ACTION_PARAM.equals(key)
+                || CGI_TEMPLATE_PARAM.equals(key);
+    }
+
     /**
      * If the type is PATH_INFO, then add name/value to the pathInfo
      * hashtable.
@@ -0,0 +1,211 @@
+package org.apache.turbine.util.uri;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.charset.Charset;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Appends URL encoded strings to a buffer.  The result is the same as
+ * {@link URLEncoder#encode(String, String)}, but strings which need
+ * no encoding are appended as they are and other ASCII strings are
+ * percent-encoded in place.  Only strings with non-ASCII characters
+ * are passed to the URLEncoder.
+ *
+ * @version $Id$
+ */
+final class URIEncoder
+{
+    /** Maximum number of cached encoded strings per charset */
+    private static final int MAX_CACHED = 512;
+
+    /** Hex digits, upper case as in URLEncoder */
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    /** ASCII characters which are not encoded */
+    private static final boolean[] SAFE = new boolean[128];
+
+    /** Whether a charset encodes ASCII characters as single ASCII bytes */
+    private static final ConcurrentMap<Charset, Boolean> asciiCompatible =
+            new ConcurrentHashMap<>();
+
+    /** Encoded names with non-ASCII characters, by charset */
+    private static final ConcurrentMap<Charset, ConcurrentMap<String, String>> cache =
+            new ConcurrentHashMap<>();
+
+    static
+    {
+        for (char c = 'a'; c <= 'z'; c++)
+        {
+            SAFE[c] = true;
+        }
+        for (char c = 'A'; c <= 'Z'; c++)
+        {
+            SAFE[c] = true;
+        }
+        for (char c = '0'; c <= '9'; c++)
+        {
+            SAFE[c] = true;
+        }
+        SAFE['.'] = true;
+        SAFE['-'] = true;
+        SAFE['*'] = true;
+        SAFE['_'] = true;
+    }
+
+    /**
+     * Utility class
+     */
+    private URIEncoder()
+    {
+        // empty
+    }
+
+    /**
+     * Append a URL encoded string
+     *
+     * @param output the buffer
+     * @param string the string to encode
+     * @param charset the charset of the encoded characters
+     * @throws UnsupportedEncodingException if the charset is not supported
+     */
+    static void encode(StringBuilder output, String string, Charset charset)
+        throws UnsupportedEncodingException
+    {
+        encode(output, string, charset, false);
+    }
+
+    /**
+     * Append a URL encoded name, like a parameter key or a screen name.
+     * Names with non-ASCII characters are encoded once and cached.
+     *
+     * @param output the buffer
+     * @param name the name to encode
+     * @param charset the charset of the encoded characters
+     * @throws UnsupportedEncodingException if the charset is not supported
+     */
+    static void encodeName(StringBuilder output, String name, Charset charset)
+        throws UnsupportedEncodingException
+    {
+        encode(output, name, charset, true);
+    }
+
+    /**
+     * Append a URL encoded string
+     *
+     * @param output the buffer
+     * @param string the string to encode
+     * @param charset the charset of the encoded characters
+     * @param cached whether to cache strings with non-ASCII characters
+     * @throws UnsupportedEncodingException if the charset is not supported
+     */
+    private static void encode(StringBuilder output, String string, Charset charset,
+            boolean cached)
+        throws UnsupportedEncodingException
+    {
+        int length = string.length();
+        int safe = 0;
+        boolean ascii = true;
+
+        for (int i = 0; i < length; i++)
+        {
+            char c = string.charAt(i);
+            if (c >= 128)
+            {
+                ascii = false;
+                break;
+            }
+            if (SAFE[c] && safe == i)
+            {
+                safe++;
+            }
+        }
+
+        if (safe == length)
+        {
+            output.append(string);
+        }
+        else if (ascii && isAsciiCompatible(charset))
+        {
+            output.append(string, 0, safe);
+            for (int i = safe; i < length; i++)
+            {
+                char c = string.charAt(i);
+                if (SAFE[c])
+                {
+                    output.append(c);
+                }
+                else if (c == ' ')
+                {
+                    output.append('+');
+                }
+                else
+                {
+                    output.append('%').append(HEX[c >> 4]).append(HEX[c & 0xF]);
+                }
+            }
+        }
+        else if (cached)
+        {
+            ConcurrentMap<String, String> names =
+                    cache.computeIfAbsent(charset, cs -> new ConcurrentHashMap<>());
+            String encoded = names.get(string);
+            if (encoded == null)
+            {
+                encoded = URLEncoder.encode(string, charset.name());
+                if (names.size() < MAX_CACHED)
+                {
+                    names.putIfAbsent(string, encoded);
+                }
+            }
+            output.append(encoded);
+        }
+        else
+        {
+            output.append(URLEncoder.encode(string, charset.name()));
+        }
+    }
+
+    /**
+     * Check whether a charset encodes ASCII characters as single bytes
+     * of the same value
+     *
+     * @param charset the charset
+     * @return true if ASCII characters can be percent-encoded directly
+     */
+    private static boolean isAsciiCompatible(Charset charset)
+    {
+        Boolean compatible = asciiCompatible.get(charset);
+        if (compatible == null)
+        {
+            byte[] bytes = " %/~".getBytes(charset);
+            compatible = Boolean.valueOf(bytes.length == 4
+                    && bytes[0] == ' ' && bytes[1] == '%' && bytes[2] == '/' && bytes[3] == '~');
+            asciiCompatible.put(charset, compatible);
+        }
+
+        return compatible.booleanValue();
+    }
+}
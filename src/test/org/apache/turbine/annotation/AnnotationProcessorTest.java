@@ -4,6 +4,8 @@ package org.apache.turbine.annotation;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /*
@@ -30,17 +32,21 @@ import static org.mockito.Mockito.when;
 
 import java.lang.reflect.Method;
 import java.util.List;
+import java.util.Set;
 
 import org.apache.commons.configuration2.Configuration;
 import org.apache.fulcrum.factory.FactoryService;
 import org.apache.fulcrum.security.entity.Role;
 import org.apache.fulcrum.security.model.turbine.TurbineAccessControlList;
+import org.apache.turbine.Turbine;
 import org.apache.turbine.annotation.AnnotationProcessor.ConditionType;
 import org.apache.turbine.modules.Screen;
 import org.apache.turbine.modules.ScreenLoader;
+import org.apache.turbine.services.TurbineServices;
 import org.apache.turbine.services.assemblerbroker.AssemblerBrokerService;
 import org.apache.turbine.services.localization.DateTimeFormatterService;
 import org.apache.turbine.services.localization.DateTimeFormatterServiceTest;
+import org.apache.turbine.services.pull.PullService;
 import org.apache.turbine.util.RunData;
 import org.apache.turbine.util.TurbineConfig;
 import org.apache.turbine.util.TurbineException;
@@ -207,6 +213,135 @@ public class AnnotationProcessorTest
         }
     }
 
+    /**
+     * Annotated fields and methods in a base class
+     */
+    public static class InjectedBase
+    {
+        @TurbineService
+        private AssemblerBrokerService baseBroker;
+
+        @TurbineConfiguration("page.cache.size")
+        private int basePageCacheSize;
+
+        @TurbineLoader(Screen.class)
+        protected ScreenLoader baseScreenLoader;
+
+        protected PullService basePullService;
+
+        @TurbineService
+        public void setBasePullService(PullService pullService)
+        {
+            this.basePullService = pullService;
+        }
+    }
+
+    /**
+     * Annotated fields of all supported value types and methods in a subclass
+     */
+    public static class InjectedSub extends InjectedBase
+    {
+        @TurbineConfiguration("services.JspService.buffer.size")
+        private long bufferSize;
+
+        @TurbineConfiguration("screen.cache.size")
+        private short screenCacheSize;
+
+        @TurbineConfiguration("layout.cache.size")
+        private byte layoutCacheSize;
+
+        @TurbineConfiguration("page.cache.size")
+        private float pageCacheSize;
+
+        @TurbineConfiguration("serverdata.default.serverPort")
+        private double serverPort;
+
+        @TurbineConfiguration("use.ssl")
+        private boolean useSsl;
+
+        @TurbineConfiguration("module.packages")
+        private List<String> modulePackages;
+
+        @TurbineConfiguration("services.FragmentCacheService")
+        private Configuration fragmentCacheConfiguration;
+
+        @TurbineConfiguration("does.not.exist")
+        private int missing = 42;
+
+        @TurbineConfiguration("use.ssl")
+        private Object unsupported = "unchanged";
+
+        @TurbineService(FactoryService.ROLE)
+        private FactoryService factory;
+
+        private PullService pullService;
+
+        @TurbineService
+        public void setPullService(PullService pullService)
+        {
+            this.pullService = pullService;
+        }
+    }
+
+    @Test
+    public void testInheritedFields() throws Exception
+    {
+        InjectedSub sub = new InjectedSub();
+        AnnotationProcessor.process(sub);
+
+        assertSame(TurbineServices.getInstance().getService(AssemblerBrokerService.SERVICE_NAME), sub.baseBroker);
+        assertEquals(5, sub.basePageCacheSize);
+        assertNotNull(sub.baseScreenLoader);
+        assertNotNull(sub.factory);
+
+        // methods are only processed on request
+        assertNull(sub.pullService);
+        assertNull(sub.basePullService);
+    }
+
+    @Test
+    public void testMethodInjection() throws Exception
+    {
+        InjectedSub sub = new InjectedSub();
+        AnnotationProcessor.process(sub, true);
+
+        PullService pullService = (PullService) TurbineServices.getInstance().getService(PullService.SERVICE_NAME);
+        assertSame(pullService, sub.pullService);
+        assertSame(pullService, sub.basePullService);
+        assertNotNull(sub.baseBroker);
+
+        Set<String> serviceNames = AnnotationProcessor.getServiceNames(InjectedSub.class);
+        assertTrue(serviceNames.contains(AssemblerBrokerService.SERVICE_NAME));
+        assertTrue(serviceNames.contains(FactoryService.ROLE));
+        assertTrue(serviceNames.contains(PullService.SERVICE_NAME));
+        assertEquals(3, serviceNames.size());
+    }
+
+    @Test
+    public void testValueTypes() throws Exception
+    {
+        InjectedSub sub = new InjectedSub();
+        AnnotationProcessor.process(sub);
+
+        // compare with the values read from the configuration directly
+        Configuration conf = Turbine.getConfiguration();
+        assertEquals(conf.getLong("services.JspService.buffer.size"), sub.bufferSize);
+        assertEquals(8192, sub.bufferSize);
+        assertEquals(conf.getShort("screen.cache.size"), sub.screenCacheSize);
+        assertEquals(conf.getByte("layout.cache.size"), sub.layoutCacheSize);
+        assertEquals(conf.getFloat("page.cache.size"), sub.pageCacheSize);
+        assertEquals(conf.getDouble("serverdata.default.serverPort"), sub.serverPort);
+        assertTrue(sub.useSsl);
+        assertEquals(conf.getList("module.packages"), sub.modulePackages);
+        assertEquals(3, sub.modulePackages.size());
+        assertEquals(conf.getInt("services.FragmentCacheService.cache.size"),
+                sub.fragmentCacheConfiguration.getInt("cache.size"));
+
+        // missing keys and unsupported types are left alone
+        assertEquals(42, sub.missing);
+        assertEquals("unchanged", sub.unsupported);
+    }
+
     //@Disabled("For performance tests only")
     @Tag("performance") // ignore in surefire, activating seems to be still buggy ?
     @Test
@@ -0,0 +1,290 @@
+package org.apache.turbine.modules.layouts;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.turbine.services.velocity.VelocityService;
+import org.apache.turbine.util.template.DeferredScreen;
+import org.apache.velocity.context.Context;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit testing for splicing concurrently rendered fragments into a layout.
+ */
+public class ParallelFragmentsTest
+{
+    private ExecutorService executor;
+
+    @BeforeEach
+    public void setUp()
+    {
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @AfterEach
+    public void tearDown()
+    {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Tests that the fragments are rendered concurrently and spliced in order
+     */
+    @Test
+    public void testSplice() throws Exception
+    {
+        ParallelFragments fragments = new ParallelFragments(executor, 4, 5000);
+        CountDownLatch started = new CountDownLatch(2);
+
+        // both fragments only finish if they run at the same time
+        String top = fragments.submit("Top.vm", () -> {
+            started.countDown();
+            started.await(5, TimeUnit.SECONDS);
+            return "top";
+        });
+        String left = fragments.submit("Left.vm", () -> {
+            started.countDown();
+            started.await(5, TimeUnit.SECONDS);
+            return "left";
+        });
+
+        StringWriter writer = new StringWriter();
+        fragments.splice("<" + top + "|" + left + "|" + top + ">", writer);
+
+        assertEquals("<top|left|top>", writer.toString());
+        assertEquals(0, started.getCount());
+    }
+
+    /**
+     * Tests the limit of fragments per request
+     */
+    @Test
+    public void testLimit()
+    {
+        ParallelFragments fragments = new ParallelFragments(executor, 1, 5000);
+
+        assertNotNull(fragments.submit("Top.vm", () -> "top"));
+        assertFalse(fragments.hasCapacity());
+        assertNull(fragments.submit("Left.vm", () -> "left"));
+    }
+
+    /**
+     * Tests that without an executor all fragments are left to the caller
+     */
+    @Test
+    public void testNoExecutor()
+    {
+        ParallelFragments fragments = new ParallelFragments(null, 4, 5000);
+
+        assertFalse(fragments.hasCapacity());
+        assertNull(fragments.submit("Top.vm", () -> "top"));
+    }
+
+    /**
+     * Tests that slow fragments are cancelled after the timeout
+     */
+    @Test
+    public void testTimeout() throws Exception
+    {
+        ParallelFragments fragments = new ParallelFragments(executor, 4, 50);
+        CountDownLatch never = new CountDownLatch(1);
+
+        String slow = fragments.submit("Slow.vm", () -> {
+            never.await();
+            return "slow";
+        });
+
+        StringWriter writer = new StringWriter();
+        fragments.splice("a" + slow + "b", writer);
+
+        assertEquals("aTimeout processing navigation template: Slow.vm" + "b", writer.toString());
+    }
+
+    /**
+     * Tests that the timeout of a fragment starts with its submission,
+     * not with the request
+     */
+    @Test
+    public void testTimeoutFromSubmission() throws Exception
+    {
+        ParallelFragments fragments = new ParallelFragments(executor, 4, 200);
+
+        // e.g. a slow screen before the navigations are submitted
+        Thread.sleep(300);
+
+        String nav = fragments.submit("Top.vm", () -> "top");
+
+        StringWriter writer = new StringWriter();
+        fragments.splice("a" + nav + "b", writer);
+
+        assertEquals("atopb", writer.toString());
+    }
+
+    /**
+     * Tests that closing the fragments waits for a running fragment which
+     * ignores the interrupt, like a rendering template
+     */
+    @Test
+    public void testCloseWaitsForRunningFragments() throws Exception
+    {
+        ParallelFragments fragments = new ParallelFragments(executor, 4, 5000);
+        CountDownLatch started = new CountDownLatch(1);
+        AtomicBoolean finished = new AtomicBoolean();
+
+        String slow = fragments.submit("Slow.vm", () -> {
+            started.countDown();
+            long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(200);
+            while (System.nanoTime() < end)
+            {
+                Thread.yield();
+            }
+            finished.set(true);
+            return "slow";
+        });
+
+        assertNotNull(slow);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertFalse(fragments.isClosed());
+
+        fragments.close();
+
+        assertTrue(fragments.isClosed());
+        assertTrue(finished.get());
+    }
+
+    /**
+     * Tests that a fragment does not start after the request has ended
+     */
+    @Test
+    public void testClosedBeforeStart() throws Exception
+    {
+        ExecutorService single = Executors.newSingleThreadExecutor();
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicBoolean ran = new AtomicBoolean();
+
+        try
+        {
+            ParallelFragments fragments = new ParallelFragments(single, 4, 5000);
+            fragments.submit("Busy.vm", () -> {
+                release.await();
+                return "busy";
+            });
+            fragments.submit("Late.vm", () -> {
+                ran.set(true);
+                return "late";
+            });
+
+            fragments.close();
+            single.shutdown();
+            assertTrue(single.awaitTermination(5, TimeUnit.SECONDS));
+            assertFalse(ran.get());
+        }
+        finally
+        {
+            release.countDown();
+            single.shutdownNow();
+        }
+    }
+
+    /**
+     * Tests that a deferred screen is rendered in place
+     */
+    @Test
+    public void testDeferredScreen() throws Exception
+    {
+        VelocityService velocity = mock(VelocityService.class);
+        doAnswer(invocation -> {
+            Writer writer = invocation.getArgument(2);
+            writer.write("screen");
+            return null;
+        }).when(velocity).handleRequest(any(Context.class), any(String.class), any(Writer.class));
+
+        ParallelFragments fragments = new ParallelFragments(executor, 4, 5000);
+        String screen = fragments.defer(new DeferredScreen(velocity, mock(Context.class),
+                "screens/Index.vm", "screens/Error.vm"));
+        String nav = fragments.submit("Top.vm", () -> "top");
+
+        StringWriter writer = new StringWriter();
+        fragments.splice(nav + "-" + screen, writer);
+
+        assertEquals("top-screen", writer.toString());
+        assertTrue(screen.startsWith("\u0000"));
+    }
+
+    /**
+     * Tests that a fragment rejected by a saturated executor is left to
+     * the caller
+     */
+    @Test
+    public void testSaturated() throws Exception
+    {
+        ExecutorService pool = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS,
+                new SynchronousQueue<>());
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        try
+        {
+            ParallelFragments fragments = new ParallelFragments(pool, 4, 5000);
+
+            String busy = fragments.submit("Busy.vm", () -> {
+                started.countDown();
+                release.await();
+                return "busy";
+            });
+            started.await(5, TimeUnit.SECONDS);
+
+            assertNotNull(busy);
+            assertTrue(fragments.hasCapacity());
+            assertNull(fragments.submit("Left.vm", () -> "left"));
+
+            release.countDown();
+            StringWriter writer = new StringWriter();
+            fragments.splice("<" + busy + ">", writer);
+            assertEquals("<busy>", writer.toString());
+        }
+        finally
+        {
+            release.countDown();
+            pool.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package org.apache.turbine.om.security;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.apache.fulcrum.security.model.turbine.entity.impl.TurbineUserImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the read-only view of a user.
+ */
+public class UnmodifiableUserTest
+{
+    private User user;
+
+    private User view;
+
+    @BeforeEach
+    public void setUp()
+    {
+        user = new DefaultUserImpl(new TurbineUserImpl());
+        user.setName("anonymous");
+        user.setTemp("temp", "value");
+        user.setPerm("perm", "value");
+
+        view = UnmodifiableUser.of(user);
+    }
+
+    /**
+     * Tests that reads are passed to the user
+     */
+    @Test
+    public void testReads()
+    {
+        assertEquals("anonymous", view.getName());
+        assertEquals("value", view.getTemp("temp"));
+        assertEquals("default", view.getTemp("missing", "default"));
+        assertEquals("value", view.getPerm("perm"));
+        assertEquals(user.getCreateDate(), view.getCreateDate());
+        assertFalse(view.hasLoggedIn());
+        assertEquals("value", view.getTempStorage().get("temp"));
+    }
+
+    /**
+     * Tests that mutators are rejected and the user stays unchanged
+     */
+    @Test
+    public void testMutators()
+    {
+        assertThrows(UnsupportedOperationException.class, () -> view.setName("other"));
+        assertThrows(UnsupportedOperationException.class, () -> view.setTemp("temp", "other"));
+        assertThrows(UnsupportedOperationException.class, () -> view.setPerm("perm", "other"));
+        assertThrows(UnsupportedOperationException.class, () -> view.removeTemp("temp"));
+        assertThrows(UnsupportedOperationException.class, () -> view.incrementAccessCounter());
+        assertThrows(UnsupportedOperationException.class, () -> view.updateLastLogin());
+        assertThrows(UnsupportedOperationException.class, () -> view.setHasLoggedIn(Boolean.TRUE));
+        assertThrows(UnsupportedOperationException.class, () -> view.getTempStorage().put("temp", "other"));
+        assertThrows(UnsupportedOperationException.class, () -> view.getPermStorage().clear());
+
+        assertEquals("anonymous", user.getName());
+        assertEquals("value", user.getTemp("temp"));
+        assertEquals("value", user.getPerm("perm"));
+        assertFalse(user.hasLoggedIn());
+
+        // the shared user is never bound to a session
+        view.valueUnbound(null);
+    }
+
+    /**
+     * Tests the identity of the view
+     */
+    @Test
+    public void testIdentity()
+    {
+        assertSame(view, UnmodifiableUser.of(view));
+        assertTrue(view.equals(view));
+        assertTrue(view.equals(user));
+        assertNull(UnmodifiableUser.of(view).getTemp("missing"));
+
+        // the view is a proxy, not an instance of the user class
+        assertFalse(view instanceof DefaultUserImpl);
+        assertThrows(ClassCastException.class, () -> DefaultUserImpl.class.cast(view));
+    }
+}
@@ -0,0 +1,195 @@
+package org.apache.turbine.pipeline;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.turbine.modules.Screen;
+import org.apache.turbine.util.RunData;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit testing for the evaluation of conditional requests and the
+ * buffered response.
+ */
+public class ConditionalGetValveTest
+{
+    private HttpServletRequest request(String ifNoneMatch, long ifModifiedSince)
+    {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getHeader("If-None-Match")).thenReturn(ifNoneMatch);
+        when(request.getDateHeader("If-Modified-Since")).thenReturn(Long.valueOf(ifModifiedSince));
+        return request;
+    }
+
+    /**
+     * Tests the If-None-Match header
+     */
+    @Test
+    public void testIfNoneMatch()
+    {
+        assertTrue(ConditionalGetValve.isNotModified(request("\"v1\"", -1), "\"v1\"", -1));
+        assertTrue(ConditionalGetValve.isNotModified(request("\"v0\", W/\"v1\"", -1), "\"v1\"", -1));
+        assertTrue(ConditionalGetValve.isNotModified(request("*", -1), "\"v1\"", -1));
+        assertFalse(ConditionalGetValve.isNotModified(request("\"v0\"", -1), "\"v1\"", -1));
+
+        // If-None-Match takes precedence over If-Modified-Since
+        assertFalse(ConditionalGetValve.isNotModified(request("\"v0\"", 2000), "\"v1\"", 1000));
+    }
+
+    /**
+     * Tests the If-Modified-Since header
+     */
+    @Test
+    public void testIfModifiedSince()
+    {
+        assertTrue(ConditionalGetValve.isNotModified(request(null, 2000), null, 1999));
+        assertTrue(ConditionalGetValve.isNotModified(request(null, 2000), null, 2500));
+        assertFalse(ConditionalGetValve.isNotModified(request(null, 2000), null, 3000));
+        assertFalse(ConditionalGetValve.isNotModified(request(null, -1), null, 1000));
+        assertFalse(ConditionalGetValve.isNotModified(request(null, 2000), null, -1));
+    }
+
+    /**
+     * Tests quoting and computing entity tags
+     */
+    @Test
+    public void testETag()
+    {
+        assertNull(ConditionalGetValve.quote(null));
+        assertNull(ConditionalGetValve.quote(""));
+        assertEquals("\"v1\"", ConditionalGetValve.quote("v1"));
+        assertEquals("\"v1\"", ConditionalGetValve.quote("\"v1\""));
+        assertEquals("W/\"v1\"", ConditionalGetValve.quote("W/\"v1\""));
+
+        byte[] body = "body".getBytes(StandardCharsets.UTF_8);
+        String etag = ConditionalGetValve.computeETag(body);
+        assertTrue(etag.startsWith("\"") && etag.endsWith("\""));
+        assertEquals(etag, ConditionalGetValve.computeETag(body.clone()));
+        assertFalse(etag.equals(ConditionalGetValve.computeETag(new byte[0])));
+    }
+
+    private HttpServletResponse response(ByteArrayOutputStream target) throws IOException
+    {
+        HttpServletResponse response = mock(HttpServletResponse.class);
+        when(response.getCharacterEncoding()).thenReturn("UTF-8");
+        when(response.getOutputStream()).thenReturn(new ServletOutputStream()
+        {
+            @Override
+            public void write(int b)
+            {
+                target.write(b);
+            }
+
+            @Override
+            public boolean isReady()
+            {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener writeListener)
+            {
+                // not used
+            }
+        });
+        return response;
+    }
+
+    /**
+     * Tests that the body is kept until it exceeds the limit
+     */
+    @Test
+    public void testBufferedResponse() throws Exception
+    {
+        ByteArrayOutputStream target = new ByteArrayOutputStream();
+        BufferedResponse buffered = new BufferedResponse(response(target), 8);
+
+        buffered.getWriter().write("small");
+        assertArrayEquals("small".getBytes(StandardCharsets.UTF_8), buffered.getBody());
+        assertEquals(0, target.size());
+        assertFalse(buffered.isCommitted());
+
+        buffered.getWriter().write(" and large");
+        buffered.getBody();
+        assertTrue(buffered.isReleased());
+        assertEquals("small and large", target.toString("UTF-8"));
+    }
+
+    /**
+     * Tests that a 304 response skips the page execution, but not the
+     * rest of the pipeline
+     */
+    @Test
+    public void testNotModifiedContinuesPipeline() throws Exception
+    {
+        HttpServletRequest request = request("\"v1\"", -1);
+        when(request.getMethod()).thenReturn("GET");
+        HttpServletResponse response = mock(HttpServletResponse.class);
+
+        RunData data = mock(RunData.class);
+        when(data.getRunData()).thenReturn(data);
+        when(data.getRequest()).thenReturn(request);
+        when(data.getResponse()).thenReturn(response);
+
+        Screen screen = mock(Screen.class);
+        when(screen.getETag(data)).thenReturn("v1");
+        when(screen.getLastModified(data)).thenReturn(Long.valueOf(-1));
+
+        ConditionalGetValve valve = new ConditionalGetValve()
+        {
+            @Override
+            protected Screen getScreen(RunData runData)
+            {
+                return screen;
+            }
+        };
+
+        ValveContext context = mock(ValveContext.class);
+        valve.invoke(data, context);
+
+        verify(response).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        verify(data).setStatusCode(HttpServletResponse.SC_NOT_MODIFIED);
+        verify(context).invokeNext(data);
+
+        // the page loader is not injected, so executing the page would fail
+        when(data.getStatusCode()).thenReturn(HttpServletResponse.SC_NOT_MODIFIED);
+        ValveContext next = mock(ValveContext.class);
+        new ExecutePageValve().invoke(data, next);
+        verify(next).invokeNext(data);
+    }
+}
@@ -0,0 +1,193 @@
+package org.apache.turbine.pipeline;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpSession;
+
+import org.apache.commons.configuration2.Configuration;
+import org.apache.turbine.Turbine;
+import org.apache.turbine.TurbineConstants;
+import org.apache.turbine.annotation.AnnotationProcessor;
+import org.apache.turbine.util.RunData;
+import org.apache.turbine.util.TurbineConfig;
+import org.apache.turbine.util.template.TemplateInfo;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the decisions of the DetermineStatelessValve.
+ */
+public class DetermineStatelessValveTest
+{
+    private static TurbineConfig tc = null;
+
+    private DetermineStatelessValve valve;
+
+    private PipelineData pipelineData;
+
+    private RunData data;
+
+    private HttpServletRequest request;
+
+    private TemplateInfo templateInfo;
+
+    private ValveContext context;
+
+    @BeforeAll
+    public static void init()
+    {
+        tc = new TurbineConfig(
+                ".",
+                "/conf/test/CompleteTurbineResources.properties");
+        tc.initialize();
+
+        Configuration conf = Turbine.getConfiguration();
+        conf.setProperty(TurbineConstants.SESSION_STATELESS_SCREENS_KEY,
+                Arrays.asList("Health", "api,.*"));
+        conf.setProperty(TurbineConstants.SESSION_STATELESS_PATHS_KEY,
+                Arrays.asList("/api/.*", "/robots\\.txt"));
+    }
+
+    @AfterAll
+    public static void destroy()
+    {
+        Configuration conf = Turbine.getConfiguration();
+        conf.clearProperty(TurbineConstants.SESSION_STATELESS_SCREENS_KEY);
+        conf.clearProperty(TurbineConstants.SESSION_STATELESS_PATHS_KEY);
+
+        tc.dispose();
+    }
+
+    @BeforeEach
+    public void setUpBefore() throws Exception
+    {
+        valve = new DetermineStatelessValve();
+        AnnotationProcessor.process(valve);
+        valve.initialize();
+
+        request = mock(HttpServletRequest.class);
+        when(request.getContextPath()).thenReturn("/app");
+        when(request.getRequestURI()).thenReturn("/app/page");
+
+        templateInfo = mock(TemplateInfo.class);
+
+        data = mock(RunData.class);
+        when(data.getRequest()).thenReturn(request);
+        when(data.getTemplateInfo()).thenReturn(templateInfo);
+
+        pipelineData = mock(PipelineData.class);
+        when(pipelineData.getRunData()).thenReturn(data);
+
+        context = mock(ValveContext.class);
+    }
+
+    /**
+     * Tests requests matching a screen class or a screen template
+     */
+    @Test
+    public void testScreen() throws Exception
+    {
+        when(data.getScreen()).thenReturn("Health");
+        valve.invoke(pipelineData, context);
+        verify(data).setStateless(true);
+        verify(context).invokeNext(pipelineData);
+
+        setUpBefore();
+        when(templateInfo.getScreenTemplate()).thenReturn("api,Status.vm");
+        valve.invoke(pipelineData, context);
+        verify(data).setStateless(true);
+
+        setUpBefore();
+        when(data.getScreen()).thenReturn("HealthCheck");
+        when(templateInfo.getScreenTemplate()).thenReturn("Index.vm");
+        valve.invoke(pipelineData, context);
+        verify(data, never()).setStateless(true);
+        verify(context).invokeNext(pipelineData);
+    }
+
+    /**
+     * Tests requests matching a path below the context path
+     */
+    @Test
+    public void testPath() throws Exception
+    {
+        when(request.getRequestURI()).thenReturn("/app/api/books");
+        valve.invoke(pipelineData, context);
+        verify(data).setStateless(true);
+
+        setUpBefore();
+        when(request.getRequestURI()).thenReturn("/app/robots.txt");
+        valve.invoke(pipelineData, context);
+        verify(data).setStateless(true);
+
+        setUpBefore();
+        when(request.getRequestURI()).thenReturn("/app/robotsXtxt");
+        valve.invoke(pipelineData, context);
+        verify(data, never()).setStateless(true);
+
+        // the context path is not part of the matched path
+        setUpBefore();
+        when(request.getContextPath()).thenReturn("/api");
+        when(request.getRequestURI()).thenReturn("/api/page");
+        valve.invoke(pipelineData, context);
+        verify(data, never()).setStateless(true);
+    }
+
+    /**
+     * Tests that requests of an existing session keep the session
+     */
+    @Test
+    public void testExistingSession() throws Exception
+    {
+        when(data.getScreen()).thenReturn("Health");
+        when(request.getRequestURI()).thenReturn("/app/api/books");
+        when(request.getSession(false)).thenReturn(mock(HttpSession.class));
+
+        valve.invoke(pipelineData, context);
+        verify(data, never()).setStateless(true);
+        verify(context).invokeNext(pipelineData);
+    }
+
+    /**
+     * Tests that requests already marked as stateless are left alone
+     */
+    @Test
+    public void testAlreadyStateless() throws Exception
+    {
+        when(data.isStateless()).thenReturn(Boolean.TRUE);
+        when(data.getScreen()).thenReturn("Health");
+
+        valve.invoke(pipelineData, context);
+        verify(data, never()).setStateless(true);
+        verify(request, never()).getSession(false);
+        verify(context).invokeNext(pipelineData);
+    }
+}
@@ -25,6 +25,8 @@ import static org.junit.jupiter.api.Assertions.*;
 
 import java.io.StringWriter;
 
+import org.apache.turbine.util.TurbineException;
+
 import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 
@@ -63,6 +65,78 @@ public class PipelineTest
         assertEquals("foobar", writer.toString());
     }
 
+    /**
+     * Tests that the Pipeline may be re-entered by one of its valves.
+     */
+    @Test public void testPipelineReentrant() throws Exception
+    {
+        StringWriter writer = new StringWriter();
+        TurbinePipeline pipeline = new TurbinePipeline();
+
+        SimpleValve valve = new SimpleValve();
+        valve.setWriter(writer);
+        valve.setValue("foo");
+        pipeline.addValve(valve);
+
+        // Re-enter the pipeline exactly once
+        pipeline.addValve((data, context) -> {
+            if (writer.toString().length() < 4)
+            {
+                writer.write("[");
+                pipeline.invoke(data);
+                writer.write("]");
+            }
+            context.invokeNext(data);
+        });
+
+        valve = new SimpleValve();
+        valve.setWriter(writer);
+        valve.setValue("bar");
+        pipeline.addValve(valve);
+        pipeline.initialize();
+
+        pipeline.invoke(new DefaultPipelineData());
+
+        assertEquals("foo[foobar]bar", writer.toString());
+    }
+
+    /**
+     * Tests the recording of valve statistics.
+     */
+    @Test public void testPipelineStatistics() throws Exception
+    {
+        StringWriter writer = new StringWriter();
+        TurbinePipeline pipeline = new TurbinePipeline();
+
+        SimpleValve valve = new SimpleValve();
+        valve.setWriter(writer);
+        valve.setValue("foo");
+        pipeline.addValve(valve);
+        pipeline.addValve((data, context) -> {
+            throw new TurbineException("fail");
+        });
+
+        assertEquals(0, pipeline.getValveStatistics().length);
+        pipeline.setStatisticsEnabled(true);
+
+        for (int i = 0; i < 3; i++)
+        {
+            assertThrows(TurbineException.class, () -> pipeline.invoke(new DefaultPipelineData()));
+        }
+
+        ValveStatistics[] stats = pipeline.getValveStatistics();
+        assertEquals(2, stats.length);
+        assertEquals("SimpleValve", stats[0].getName());
+        assertEquals(3, stats[0].getCount());
+        assertEquals(0, stats[0].getErrorCount(), "Error must be counted for the failing valve only");
+        assertEquals(3, stats[1].getCount());
+        assertEquals(3, stats[1].getErrorCount());
+        assertTrue(stats[1].getPercentile(99) <= stats[1].getMaxTime());
+
+        pipeline.setStatisticsEnabled(false);
+        assertEquals(0, pipeline.getValveStatistics().length);
+    }
+
     /**
      * Tests the Pipeline throughput.
      */
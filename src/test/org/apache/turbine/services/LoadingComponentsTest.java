@@ -21,6 +21,7 @@ package org.apache.turbine.services;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.fail;
 
 import java.util.Locale;
@@ -175,4 +176,27 @@ public class LoadingComponentsTest extends BaseTestCase
         assertEquals("ISO-8859-1", s);
     }
 
+    /**
+     * Resolve a service provided by the AvalonComponentService through
+     * a handle. The handle must return the cached instance and resolve
+     * again after the provider has been shut down.
+     */
+    @Test public void testServiceHandle() throws Exception
+    {
+        ServiceManager serviceManager = TurbineServices.getInstance();
+        ServiceHandle<MimeTypeService> handle =
+                ServiceHandle.of(MimeTypeService.class, MimeTypeService.ROLE);
+
+        MimeTypeService mimeTypeService = handle.get();
+        assertNotNull(mimeTypeService);
+        assertSame(mimeTypeService, handle.get());
+        assertSame(mimeTypeService, serviceManager.getService(MimeTypeService.ROLE));
+
+        serviceManager.shutdownService(AvalonComponentService.SERVICE_NAME);
+
+        mimeTypeService = handle.get();
+        assertNotNull(mimeTypeService);
+        assertSame(mimeTypeService, serviceManager.getService(MimeTypeService.ROLE));
+    }
+
 }
@@ -0,0 +1,99 @@
+package org.apache.turbine.services;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.apache.commons.configuration2.BaseConfiguration;
+import org.apache.turbine.annotation.TurbineService;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit testing for the parallel startup of services.
+ */
+public class ServiceStartupTest
+{
+    /** The order in which the services were initialized */
+    static final Queue<String> started = new ConcurrentLinkedQueue<>();
+
+    public static class ServiceA extends TurbineBaseService
+    {
+        @Override
+        public void init() throws InitializationException
+        {
+            started.add(getName());
+            setInit(true);
+        }
+    }
+
+    public static class ServiceB extends ServiceA
+    {
+        // depends on ServiceA by configuration
+    }
+
+    public static class ServiceC extends ServiceA
+    {
+        @TurbineService("B")
+        ServiceB serviceB;
+    }
+
+    /**
+     * Tests that services are started after their dependencies
+     */
+    @Test
+    public void testParallelStartup() throws Exception
+    {
+        BaseConfiguration conf = new BaseConfiguration();
+        conf.setProperty(BaseServiceBroker.STARTUP_PARALLEL_KEY, "true");
+        conf.setProperty(BaseServiceBroker.STARTUP_THREADS_KEY, "4");
+        conf.setProperty("services.C.classname", ServiceC.class.getName());
+        conf.setProperty("services.C.earlyInit", "true");
+        conf.setProperty("services.B.classname", ServiceB.class.getName());
+        conf.setProperty("services.B.earlyInit", "true");
+        conf.setProperty("services.B.dependencies", "A");
+        conf.setProperty("services.A.classname", ServiceA.class.getName());
+        conf.setProperty("services.A.earlyInit", "true");
+        conf.setProperty("services.D.classname", ServiceA.class.getName());
+        conf.setProperty("services.D.earlyInit", "true");
+
+        BaseServiceBroker broker = new BaseServiceBroker()
+        {
+            // nothing to add
+        };
+        broker.setConfiguration(conf);
+
+        started.clear();
+        broker.init();
+
+        List<String> order = new ArrayList<>(started);
+        assertEquals(4, order.size());
+        assertTrue(order.indexOf("A") < order.indexOf("B"));
+        assertTrue(order.indexOf("B") < order.indexOf("C"));
+        assertEquals(4, broker.getStartupTimes().size());
+        assertTrue(broker.isRegistered("D"));
+    }
+}
@@ -0,0 +1,140 @@
+package org.apache.turbine.services.assemblerbroker;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.turbine.modules.Assembler;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit testing for the per-type assembler cache.
+ */
+public class AssemblerCacheTest
+{
+    /**
+     * Tests lookups and statistics of an unbounded cache
+     */
+    @Test
+    public void testUnbounded()
+    {
+        AssemblerCache cache = new AssemblerCache(16, 0);
+        Assembler first = mock(Assembler.class);
+        Assembler second = mock(Assembler.class);
+
+        assertNull(cache.get("Index"));
+        cache.recordLoad(2_000_000);
+        assertSame(first, cache.putIfAbsent("Index", first));
+        assertSame(first, cache.putIfAbsent("Index", second));
+        assertSame(first, cache.get("Index"));
+        assertTrue(cache.contains("Index"));
+
+        assertEquals(1, cache.getSize());
+        assertEquals(0, cache.getMaxSize());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(0.5, cache.getHitRatio(), 0.001);
+        assertEquals(1, cache.getLoadCount());
+        assertEquals(2, cache.getTotalLoadTime());
+    }
+
+    /**
+     * Tests that a bounded cache evicts assemblers
+     */
+    @Test
+    public void testBounded()
+    {
+        AssemblerCache cache = new AssemblerCache(16, 2);
+
+        for (int i = 0; i < 100; i++)
+        {
+            cache.putIfAbsent("Screen" + i, mock(Assembler.class));
+        }
+
+        assertEquals(2, cache.getSize());
+        assertEquals(2, cache.getMaxSize());
+        assertEquals(98, cache.getEvictionCount());
+        assertTrue(cache.contains("Screen99"));
+
+        cache.clear();
+        assertFalse(cache.contains("Screen99"));
+        assertEquals(0, cache.getSize());
+    }
+
+    /**
+     * Tests that racing loads into a bounded cache all get the same
+     * assembler
+     */
+    @Test
+    public void testBoundedPutIfAbsentRace() throws Exception
+    {
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        try
+        {
+            for (int round = 0; round < 50; round++)
+            {
+                AssemblerCache cache = new AssemblerCache(16, 10);
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<Assembler>> results = new ArrayList<>();
+
+                for (int i = 0; i < threads; i++)
+                {
+                    Assembler assembler = mock(Assembler.class);
+                    results.add(executor.submit(() ->
+                    {
+                        start.await();
+                        return cache.putIfAbsent("Index", assembler);
+                    }));
+                }
+
+                start.countDown();
+
+                for (Future<Assembler> result : results)
+                {
+                    Assembler assembler = result.get();
+                    assertNotNull(assembler);
+                    assertSame(assembler, results.get(0).get());
+                }
+                assertSame(results.get(0).get(), cache.get("Index"));
+                assertEquals(1, cache.getSize());
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package org.apache.turbine.services.assemblerbroker.util.java;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the ModuleClassIndex.
+ */
+public class ModuleClassIndexTest
+{
+    private static final String MODULES = "org.apache.turbine.services.template.modules";
+    private static final String JUNIT = "org.junit.jupiter.api";
+    private static final String MISSING = "org.apache.turbine.nonexistent";
+
+    @Test public void testIndex()
+    {
+        ModuleClassIndex index = ModuleClassIndex.build(Arrays.asList(MODULES, JUNIT, MISSING),
+                getClass().getClassLoader());
+
+        // Classes in a directory
+        assertTrue(index.isIndexed(MODULES));
+        assertTrue(index.contains(MODULES, MODULES + ".screens.existing.PageWithClass"));
+        assertTrue(index.contains(MODULES, MODULES + ".layouts.existing.dflt.Default"));
+        assertFalse(index.contains(MODULES, MODULES + ".screens.existing.NoSuchClass"));
+
+        // Classes in a jar file
+        assertTrue(index.isIndexed(JUNIT));
+        assertTrue(index.contains(JUNIT, JUNIT + ".Test"));
+
+        // Unknown packages are not indexed
+        assertFalse(index.isIndexed(MISSING));
+        assertFalse(index.contains(MISSING, MISSING + ".Foo"));
+    }
+}
@@ -0,0 +1,150 @@
+package org.apache.turbine.services.assemblerbroker.util.python;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.python.core.PyStringMap;
+
+/**
+ * Tests the compiled script cache of the python assembler factories.
+ */
+public class PythonScriptCacheTest
+{
+    @TempDir
+    Path dir;
+
+    private File config;
+
+    private PythonScriptCache cache;
+
+    @BeforeEach
+    public void setUp() throws IOException
+    {
+        config = write("conf.py", "shared = 1\n");
+        cache = new PythonScriptCache(2, 0, getClass().getClassLoader());
+    }
+
+    @AfterEach
+    public void tearDown()
+    {
+        cache.close();
+    }
+
+    private File write(String name, String script) throws IOException
+    {
+        Path file = dir.resolve(name);
+        Files.write(file, script.getBytes(StandardCharsets.UTF_8));
+        return file.toFile();
+    }
+
+    private static int getInt(PyStringMap globals, String name)
+    {
+        return globals.__finditem__(name).asInt();
+    }
+
+    /**
+     * Tests that a script is recompiled when its length or modification
+     * time changes
+     */
+    @Test
+    public void testRecompile() throws Exception
+    {
+        File script = write("script.py", "value = 1\n");
+        assertEquals(1, getInt(cache.execute(config, script), "value"));
+
+        // different length
+        write("script.py", "value = 22\n");
+        assertEquals(22, getInt(cache.execute(config, script), "value"));
+
+        // same length, different modification time
+        long lastModified = script.lastModified();
+        write("script.py", "value = 33\n");
+        script.setLastModified(lastModified + 10000);
+        assertEquals(33, getInt(cache.execute(config, script), "value"));
+
+        // same length and modification time, the compiled code is kept
+        write("script.py", "value = 44\n");
+        script.setLastModified(lastModified + 10000);
+        assertEquals(33, getInt(cache.execute(config, script), "value"));
+
+        // changes of the config script are picked up, too
+        write("conf.py", "shared = 12\n");
+        File shared = write("shared.py", "value = shared\n");
+        assertEquals(12, getInt(cache.execute(config, shared), "value"));
+    }
+
+    /**
+     * Tests that the check interval keeps the compiled code
+     */
+    @Test
+    public void testCheckInterval() throws Exception
+    {
+        PythonScriptCache lazy = new PythonScriptCache(1, 60000, getClass().getClassLoader());
+        try
+        {
+            File script = write("script.py", "value = 1\n");
+            assertEquals(1, getInt(lazy.execute(config, script), "value"));
+
+            write("script.py", "value = 22\n");
+            assertEquals(1, getInt(lazy.execute(config, script), "value"));
+        }
+        finally
+        {
+            lazy.close();
+        }
+    }
+
+    /**
+     * Tests that the globals of one script are not visible in another
+     * script and do not change the config namespace
+     */
+    @Test
+    public void testNoLeakingGlobals() throws Exception
+    {
+        File first = write("first.py", "before = shared\nleak = 'first'\nshared = 2\n");
+        File second = write("second.py", "value = shared\n");
+
+        PyStringMap firstGlobals = cache.execute(config, first);
+        assertEquals(1, getInt(firstGlobals, "before"));
+        assertEquals(2, getInt(firstGlobals, "shared"));
+
+        PyStringMap secondGlobals = cache.execute(config, second);
+        assertEquals(1, getInt(secondGlobals, "value"));
+        assertEquals(1, getInt(secondGlobals, "shared"));
+        assertNull(secondGlobals.__finditem__("leak"));
+        assertNull(secondGlobals.__finditem__("before"));
+
+        // running the first script again starts from the config namespace
+        assertEquals(1, getInt(cache.execute(config, first), "before"));
+    }
+}
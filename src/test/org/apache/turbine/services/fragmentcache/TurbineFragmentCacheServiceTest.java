@@ -0,0 +1,175 @@
+package org.apache.turbine.services.fragmentcache;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.configuration2.BaseConfiguration;
+import org.apache.commons.configuration2.Configuration;
+import org.apache.fulcrum.parser.ParameterParser;
+import org.apache.turbine.annotation.TurbineFragmentCache;
+import org.apache.turbine.modules.Navigation;
+import org.apache.turbine.modules.Screen;
+import org.apache.turbine.util.RunData;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit testing for the fragment cache service and its policies.
+ */
+public class TurbineFragmentCacheServiceTest
+{
+    private TurbineFragmentCacheService service;
+
+    private AtomicInteger builds;
+
+    @TurbineFragmentCache(locale = true, parameters = { "id" })
+    private static class CachedNavigation
+    {
+        // empty
+    }
+
+    @BeforeEach
+    public void setUp()
+    {
+        service = new TurbineFragmentCacheService()
+        {
+            @Override
+            public Configuration getConfiguration()
+            {
+                Configuration conf = new BaseConfiguration();
+                conf.setProperty(CACHE_SIZE_KEY, Integer.valueOf(100));
+                return conf;
+            }
+        };
+        service.init();
+        builds = new AtomicInteger();
+    }
+
+    @AfterEach
+    public void tearDown()
+    {
+        service.shutdown();
+    }
+
+    private RunData request(Locale locale, String... ids)
+    {
+        RunData data = mock(RunData.class);
+        ParameterParser pp = mock(ParameterParser.class);
+        when(data.getRunData()).thenReturn(data);
+        when(data.getLocale()).thenReturn(locale);
+        when(data.getParameters()).thenReturn(pp);
+        when(pp.getStrings("id")).thenReturn(ids.length == 0 ? null : ids);
+        return data;
+    }
+
+    private String render(String name, FragmentPolicy policy, RunData data)
+        throws Exception
+    {
+        return service.getFragment(Navigation.class, name, policy, data,
+                () -> "fragment " + builds.incrementAndGet());
+    }
+
+    /**
+     * Tests reading the policy of annotated classes
+     */
+    @Test
+    public void testPolicyOf()
+    {
+        assertNull(FragmentPolicy.of(Object.class));
+        FragmentPolicy policy = FragmentPolicy.of(CachedNavigation.class);
+        assertNotNull(policy);
+        assertEquals(0, policy.getTtl());
+        assertSame(policy, FragmentPolicy.of(CachedNavigation.class));
+    }
+
+    /**
+     * Tests that fragments are shared only between matching requests
+     */
+    @Test
+    public void testVariations() throws Exception
+    {
+        FragmentPolicy policy = FragmentPolicy.of(CachedNavigation.class);
+
+        assertEquals("fragment 1", render("Menu.vm", policy, request(Locale.GERMAN, "1")));
+        assertEquals("fragment 1", render("Menu.vm", policy, request(Locale.GERMAN, "1")));
+        assertEquals("fragment 2", render("Menu.vm", policy, request(Locale.ENGLISH, "1")));
+        assertEquals("fragment 3", render("Menu.vm", policy, request(Locale.GERMAN, "2")));
+        assertEquals("fragment 4", render("Menu.vm", policy, request(Locale.GERMAN)));
+        assertEquals("fragment 5", render("Top.vm", policy, request(Locale.GERMAN, "1")));
+
+        // the locale does not matter without variation
+        assertEquals("fragment 6", render("Menu.vm", FragmentPolicy.DEFAULT, request(Locale.GERMAN)));
+        assertEquals("fragment 6", render("Menu.vm", FragmentPolicy.DEFAULT, request(Locale.ENGLISH)));
+
+        // the type is part of the key
+        assertEquals("fragment 7", service.getFragment(Screen.class, "Menu.vm",
+                FragmentPolicy.DEFAULT, request(Locale.GERMAN),
+                () -> "fragment " + builds.incrementAndGet()));
+
+        assertEquals(7, service.getSize());
+        assertEquals(3, service.getHitCount());
+    }
+
+    /**
+     * Tests invalidation by name and of all fragments
+     */
+    @Test
+    public void testInvalidate() throws Exception
+    {
+        FragmentPolicy policy = FragmentPolicy.DEFAULT.varyByLocale();
+
+        render("Menu.vm", policy, request(Locale.GERMAN));
+        render("Menu.vm", policy, request(Locale.ENGLISH));
+        render("Top.vm", policy, request(Locale.GERMAN));
+
+        service.invalidate("Menu.vm");
+        assertEquals("fragment 4", render("Menu.vm", policy, request(Locale.GERMAN)));
+        assertEquals("fragment 5", render("Menu.vm", policy, request(Locale.ENGLISH)));
+        assertEquals("fragment 3", render("Top.vm", policy, request(Locale.GERMAN)));
+
+        service.invalidateAll();
+        assertEquals(0, service.getSize());
+        assertEquals("fragment 6", render("Top.vm", policy, request(Locale.GERMAN)));
+    }
+
+    /**
+     * Tests that fragments without output are not cached
+     */
+    @Test
+    public void testNullNotCached() throws Exception
+    {
+        RunData data = request(Locale.GERMAN);
+
+        assertNull(service.getFragment(Screen.class, "Direct.vm",
+                FragmentPolicy.DEFAULT, data, () -> null));
+        assertEquals(0, service.getSize());
+    }
+}
@@ -0,0 +1,143 @@
+package org.apache.turbine.services.jsonrpc;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.jabsorb.JSONRPCBridge;
+import org.jabsorb.JSONRPCResult;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the streaming processing of JSON RPC calls and batches.
+ */
+public class JSONProcessorTest
+{
+    /**
+     * The object called by the tests
+     */
+    public static class Calculator
+    {
+        public int add(int a, int b)
+        {
+            return a + b;
+        }
+    }
+
+    private JSONRPCBridge bridge;
+
+    private HttpServletRequest request;
+
+    @BeforeEach
+    public void setUp()
+    {
+        bridge = new JSONRPCBridge();
+        bridge.registerObject("calc", new Calculator());
+        request = mock(HttpServletRequest.class);
+    }
+
+    private String process(String body) throws IOException
+    {
+        StringWriter out = new StringWriter();
+        JSONProcessor.processCall(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)),
+                out, bridge, request);
+        return out.toString();
+    }
+
+    /**
+     * Tests a single call
+     */
+    @Test
+    public void testSingleCall() throws Exception
+    {
+        JSONObject result = new JSONObject(process("{\"id\": 1, \"method\": \"calc.add\", \"params\": [1, 2]}"));
+
+        assertEquals(1, result.getInt("id"));
+        assertEquals(3, result.getInt("result"));
+    }
+
+    /**
+     * Tests a batch of calls, including an entry which is not a call
+     */
+    @Test
+    public void testBatch() throws Exception
+    {
+        JSONArray results = new JSONArray(process("["
+                + "{\"id\": 1, \"method\": \"calc.add\", \"params\": [1, 2]},"
+                + "{\"id\": 2, \"method\": \"calc.add\", \"params\": [3, 4]}"
+                + "]"));
+
+        assertEquals(2, results.length());
+        assertEquals(1, results.getJSONObject(0).getInt("id"));
+        assertEquals(3, results.getJSONObject(0).getInt("result"));
+        assertEquals(2, results.getJSONObject(1).getInt("id"));
+        assertEquals(7, results.getJSONObject(1).getInt("result"));
+
+        String mixed = process("[{\"id\": 1, \"method\": \"calc.add\", \"params\": [1, 2]}, 42]");
+        assertTrue(mixed.startsWith("[{"));
+        assertTrue(mixed.endsWith("}," + JSONRPCResult.MSG_ERR_PARSE + "]"));
+    }
+
+    /**
+     * Tests that an empty batch is rejected
+     */
+    @Test
+    public void testEmptyBatch() throws Exception
+    {
+        assertEquals(JSONRPCResult.MSG_ERR_PARSE, process("[]"));
+    }
+
+    /**
+     * Tests that malformed requests are rejected
+     */
+    @Test
+    public void testMalformed() throws Exception
+    {
+        assertEquals(JSONRPCResult.MSG_ERR_PARSE, process(""));
+        assertEquals(JSONRPCResult.MSG_ERR_PARSE, process("{\"id\": 1, \"method\": "));
+        assertEquals(JSONRPCResult.MSG_ERR_PARSE, process("{\"id\": 1,, }"));
+        assertEquals(JSONRPCResult.MSG_ERR_PARSE, process("\"calc.add\""));
+    }
+
+    /**
+     * Tests that content after the request is rejected
+     */
+    @Test
+    public void testTrailingContent() throws Exception
+    {
+        assertEquals(JSONRPCResult.MSG_ERR_PARSE,
+                process("{\"id\": 1, \"method\": \"calc.add\", \"params\": [1, 2]} {\"id\": 2}"));
+        assertEquals(JSONRPCResult.MSG_ERR_PARSE,
+                process("[{\"id\": 1, \"method\": \"calc.add\", \"params\": [1, 2]}]]"));
+    }
+}
@@ -0,0 +1,97 @@
+package org.apache.turbine.services.pull;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.velocity.VelocityContext;
+import org.apache.velocity.context.Context;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit testing for the lazy request tool context.
+ */
+public class ToolboxContextTest
+{
+    private ToolboxContext context;
+
+    private AtomicInteger created;
+
+    @BeforeEach
+    public void setUp()
+    {
+        Context global = new VelocityContext();
+        global.put("ui", "global");
+
+        context = new ToolboxContext(global);
+        created = new AtomicInteger();
+        context.putLazy("link", () -> "link" + created.incrementAndGet());
+    }
+
+    /**
+     * Tests that a tool is created once on first lookup
+     */
+    @Test
+    public void testCreatedOnFirstLookup()
+    {
+        assertTrue(context.containsKey("link"));
+        assertTrue(context.isPending("link"));
+        assertEquals(0, created.get());
+
+        assertEquals("link1", context.get("link"));
+        assertEquals("link1", context.get("link"));
+        assertEquals(1, created.get());
+        assertFalse(context.isPending("link"));
+        assertEquals("global", context.get("ui"));
+    }
+
+    /**
+     * Tests that removing a tool which was never looked up does not create it
+     */
+    @Test
+    public void testRemoveUnused()
+    {
+        assertNull(context.remove("link"));
+        assertEquals(0, created.get());
+        assertFalse(context.containsKey("link"));
+        assertNull(context.get("link"));
+    }
+
+    /**
+     * Tests that an explicit value replaces a pending tool
+     */
+    @Test
+    public void testPutReplacesPending()
+    {
+        Object value = new Object();
+        context.put("link", value);
+
+        assertSame(value, context.get("link"));
+        assertEquals(0, created.get());
+    }
+}
@@ -0,0 +1,87 @@
+package org.apache.turbine.services.rundata;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpSession;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit testing for the session of stateless requests.
+ */
+public class LazySessionTest
+{
+    private HttpServletRequest request;
+
+    private HttpSession session;
+
+    private LazySession lazySession;
+
+    @BeforeEach
+    public void setUp()
+    {
+        request = mock(HttpServletRequest.class);
+        session = mock(HttpSession.class);
+        when(request.getSession(true)).thenReturn(session);
+        lazySession = new LazySession(request);
+    }
+
+    /**
+     * Tests that reading does not create a session
+     */
+    @Test
+    public void testReadWithoutSession()
+    {
+        assertNull(lazySession.getAttribute("user"));
+        assertTrue(lazySession.isNew());
+        lazySession.removeAttribute("user");
+        lazySession.setAttribute("user", null);
+        lazySession.setMaxInactiveInterval(60);
+        assertEquals(60, lazySession.getMaxInactiveInterval());
+
+        verify(request, never()).getSession(true);
+        verify(request, never()).getSession();
+    }
+
+    /**
+     * Tests that writing creates the session and applies the timeout
+     */
+    @Test
+    public void testWriteCreatesSession()
+    {
+        lazySession.setMaxInactiveInterval(60);
+        lazySession.setAttribute("user", "anonymous");
+
+        verify(request).getSession(true);
+        verify(session).setMaxInactiveInterval(60);
+        verify(session).setAttribute("user", "anonymous");
+    }
+}
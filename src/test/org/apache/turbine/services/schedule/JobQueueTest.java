@@ -0,0 +1,113 @@
+package org.apache.turbine.services.schedule;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit testing for the job queue of the scheduler.
+ */
+public class JobQueueTest
+{
+    private JobQueue<JobEntry> queue;
+
+    private JobEntry everySecond;
+
+    private JobEntry daily;
+
+    @BeforeEach
+    public void setUp() throws Exception
+    {
+        queue = new JobQueue<>();
+
+        daily = new JobEntryNonPersistent(0, 0, 0, -1, -1, "DailyJob");
+        daily.setJobId(1);
+
+        everySecond = new JobEntryNonPersistent(1, -1, -1, -1, -1, "SimpleJob");
+        everySecond.setJobId(2);
+
+        queue.batchLoad(Arrays.asList(daily, everySecond));
+    }
+
+    /**
+     * Tests that jobs are ordered by their next runtime
+     */
+    @Test
+    public void testOrder()
+    {
+        List<JobEntry> jobs = queue.list();
+        assertEquals(2, jobs.size());
+        assertSame(everySecond, jobs.get(0));
+        assertSame(daily, jobs.get(1));
+
+        assertSame(everySecond, queue.getNext());
+        assertEquals(everySecond.getNextRuntime(), queue.getNextRuntime());
+    }
+
+    /**
+     * Tests that a job is queued only once
+     */
+    @Test
+    public void testAddRemove() throws Exception
+    {
+        queue.add(everySecond);
+        queue.modify(daily);
+        assertEquals(2, queue.size());
+
+        JobEntry probe = new JobEntryNonPersistent();
+        probe.setJobId(1);
+        assertSame(daily, queue.getJob(probe));
+
+        queue.remove(probe);
+        assertEquals(1, queue.size());
+        assertNull(queue.getJob(probe));
+        assertSame(everySecond, queue.getNext());
+
+        queue.remove(everySecond);
+        assertNull(queue.getNext());
+        assertNull(queue.list());
+        assertEquals(Long.MAX_VALUE, queue.getNextRuntime());
+    }
+
+    /**
+     * Tests that a due job is rescheduled when it is taken
+     */
+    @Test
+    public void testPollDue() throws Exception
+    {
+        long runtime = everySecond.getNextRuntime();
+
+        assertNull(queue.pollDue(runtime - 1));
+        assertSame(everySecond, queue.pollDue(runtime));
+        assertTrue(everySecond.getNextRuntime() >= runtime);
+        assertEquals(everySecond.getNextRuntime(), queue.getNextRuntime());
+        assertEquals(2, queue.size());
+    }
+}
@@ -0,0 +1,129 @@
+package org.apache.turbine.services.schedule;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit testing for the timing wheel of the scheduler.
+ */
+public class TimingWheelTest
+{
+    /**
+     * A job with a fixed runtime
+     */
+    private static class TestJob extends JobEntryNonPersistent
+    {
+        private long runtime;
+
+        TestJob(int id, long runtime)
+        {
+            setJobId(id);
+            this.runtime = runtime;
+        }
+
+        @Override
+        public long getNextRuntime()
+        {
+            return runtime;
+        }
+    }
+
+    /**
+     * Tests that jobs fire in the tick after their runtime, across levels
+     */
+    @Test
+    public void testAdvance()
+    {
+        // 4 buckets of 10ms, so the jobs are spread over three levels
+        TimingWheel<JobEntry> wheel = new TimingWheel<>(10, 4, 1000);
+        TestJob near = new TestJob(1, 1015);
+        TestJob middle = new TestJob(2, 1100);
+        TestJob far = new TestJob(3, 1777);
+
+        wheel.schedule(far);
+        wheel.schedule(near);
+        wheel.schedule(middle);
+        assertEquals(3, wheel.size());
+        assertSame(near, wheel.list().get(0));
+
+        List<JobEntry> fired = new ArrayList<>();
+        for (long now = 1000; now <= 2000; now++)
+        {
+            for (JobEntry je : wheel.advance(now))
+            {
+                assertTrue(now >= je.getNextRuntime());
+                assertTrue(now <= je.getNextRuntime() + 10);
+                fired.add(je);
+                wheel.cancel(je);
+            }
+        }
+
+        assertEquals(3, fired.size());
+        assertSame(near, fired.get(0));
+        assertSame(middle, fired.get(1));
+        assertSame(far, fired.get(2));
+        assertEquals(0, wheel.size());
+    }
+
+    /**
+     * Tests cancelling and rescheduling jobs
+     */
+    @Test
+    public void testCancelReschedule()
+    {
+        TimingWheel<JobEntry> wheel = new TimingWheel<>(10, 8, 0);
+        TestJob je = new TestJob(1, 25);
+
+        wheel.schedule(je);
+        assertSame(je, wheel.getJob(new TestJob(1, 0)));
+        assertTrue(wheel.cancel(je));
+        assertFalse(wheel.cancel(je));
+        assertNull(wheel.list());
+        assertTrue(wheel.advance(100).isEmpty());
+
+        // overdue jobs fire with the next tick
+        wheel.schedule(je);
+        je.runtime = 50;
+        wheel.schedule(je);
+        assertEquals(1, wheel.size());
+        assertTrue(wheel.advance(109).isEmpty());
+
+        List<JobEntry> due = wheel.advance(110);
+        assertEquals(1, due.size());
+        assertEquals(1, wheel.size());
+
+        je.runtime = 300;
+        assertTrue(wheel.reschedule(je));
+        assertFalse(wheel.reschedule(je));
+        assertTrue(wheel.advance(309).isEmpty());
+        assertEquals(1, wheel.advance(310).size());
+    }
+}
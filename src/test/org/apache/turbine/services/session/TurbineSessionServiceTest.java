@@ -0,0 +1,117 @@
+package org.apache.turbine.services.session;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import javax.servlet.http.HttpSession;
+
+import org.apache.turbine.om.security.User;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit testing for the user index of the session service.
+ */
+public class TurbineSessionServiceTest
+{
+    private TurbineSessionService service;
+
+    @BeforeEach
+    public void setUp()
+    {
+        service = new TurbineSessionService();
+        service.init();
+    }
+
+    @AfterEach
+    public void tearDown()
+    {
+        service.shutdown();
+    }
+
+    private HttpSession session(String id)
+    {
+        HttpSession session = mock(HttpSession.class);
+        when(session.getId()).thenReturn(id);
+        service.addSession(session);
+        return session;
+    }
+
+    private User user(boolean loggedIn)
+    {
+        User user = mock(User.class);
+        when(user.hasLoggedIn()).thenReturn(loggedIn);
+        return user;
+    }
+
+    /**
+     * Tests that logged in users are indexed with all their sessions
+     */
+    @Test
+    public void testUserIndex()
+    {
+        HttpSession s1 = session("s1");
+        HttpSession s2 = session("s2");
+        HttpSession s3 = session("s3");
+        User user = user(true);
+        User anonymous = user(false);
+
+        service.setSessionUser(s1, user);
+        service.setSessionUser(s2, user);
+        service.setSessionUser(s3, anonymous);
+
+        assertTrue(service.isUserLoggedIn(user));
+        assertFalse(service.isUserLoggedIn(anonymous));
+        assertEquals(1, service.getActiveUserCount());
+        assertEquals(1, service.getActiveUsers().size());
+        assertEquals(2, service.getSessionsForUser(user).size());
+        assertTrue(service.getSessionsForUser(anonymous).isEmpty());
+    }
+
+    /**
+     * Tests that logout and session destruction remove the index entries
+     */
+    @Test
+    public void testUnbind()
+    {
+        HttpSession s1 = session("s1");
+        HttpSession s2 = session("s2");
+        User user = user(true);
+
+        service.setSessionUser(s1, user);
+        service.setSessionUser(s2, user);
+
+        // logout replaces the user with the anonymous user
+        service.setSessionUser(s1, user(false));
+        assertEquals(1, service.getSessionsForUser(user).size());
+
+        service.removeSession(s2);
+        assertFalse(service.isUserLoggedIn(user));
+        assertEquals(0, service.getActiveUserCount());
+        assertTrue(service.getSessionsForUser(user).isEmpty());
+    }
+}
@@ -183,6 +183,18 @@ public class ClassTest
         assertEquals("Navigation translation failed",     "existing.dflt.Default", ts.getNavigationName(templateName));
     }
 
+    @Test public void testSkipNonAssemblerClass()
+        throws Exception
+    {
+        //
+        // The package of this template contains a class with the name of the template
+        // which is not a screen and an abstract Default screen. Neither can be
+        // instantiated, so the mapper must continue with the Default class of the
+        // upper package.
+        String templateName = "existing,dflt,abstracted,PageWithClass.vm";
+        assertEquals("Screen translation failed",         "existing.dflt.Default", ts.getScreenName(templateName));
+    }
+
     @Test public void testIgnoreExistingClass()
         throws Exception
     {
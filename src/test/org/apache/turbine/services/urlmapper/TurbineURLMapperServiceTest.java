@@ -20,10 +20,16 @@ package org.apache.turbine.services.urlmapper;
  */
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Spliterator;
@@ -36,6 +42,7 @@ import java.util.stream.IntStream;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.apache.commons.configuration2.Configuration;
 import org.apache.fulcrum.parser.ParameterParser;
 import org.apache.turbine.Turbine;
 import org.apache.turbine.pipeline.PipelineData;
@@ -162,6 +169,107 @@ public class TurbineURLMapperServiceTest extends BaseTestCase
         assertEquals("/wow/book/123/4", uri.getRelativeLink());
     }
 
+    /**
+     * Tests that reloading the configuration replaces the mappings
+     * and keeps them working
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testReload() throws Exception
+    {
+        assertTrue(urlMapper instanceof TurbineURLMapperService);
+        assertTrue(((TurbineURLMapperService) urlMapper).reload());
+
+        HttpServletRequest request = getMockRequest();
+        HttpServletResponse response = Mockito.mock(HttpServletResponse.class);
+
+        PipelineData pipelineData = getPipelineData(request, response, tc.getTurbine().getServletConfig());
+        ParameterParser pp = pipelineData.get(Turbine.class, ParameterParser.class);
+
+        urlMapper.mapFromURL("/app/book/123/4", pp);
+
+        assertEquals(123, pp.getInt("bookId"));
+        assertEquals(4, pp.getInt("detail"));
+    }
+
+    /**
+     * Tests that the watcher thread reloads a modified configuration
+     * file and stops on shutdown
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testWatchConfigurationFile() throws Exception
+    {
+        Path dir = Files.createTempDirectory(Paths.get("target"), "urlmapper");
+        Path file = dir.resolve("turbine-url-mapping.xml");
+        Files.copy(Paths.get("conf", "turbine-url-mapping.xml"), file);
+
+        Configuration conf = Turbine.getConfiguration();
+        String prefix = "services." + URLMapperService.SERVICE_NAME + ".";
+        String configFile = conf.getString(prefix + "configFile");
+
+        try
+        {
+            // relative to the application root of the TurbineConfig
+            conf.setProperty(prefix + "configFile", "/target/" + dir.getFileName() + "/" + file.getFileName());
+            conf.setProperty(prefix + "reload", Boolean.TRUE);
+            TurbineServices.getInstance().shutdownService(URLMapperService.SERVICE_NAME);
+            TurbineServices.getInstance().initService(URLMapperService.SERVICE_NAME);
+
+            TurbineURLMapperService service = (TurbineURLMapperService) urlMapper;
+            Thread watcher = service.getWatcher();
+            assertNotNull(watcher);
+            assertTrue(watcher.isAlive());
+            assertEquals("Registerone.vm", mapTemplate("/app/register"));
+
+            String mapping = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+            Files.write(file, mapping.replace("Registerone.vm", "Registertwo.vm")
+                    .getBytes(StandardCharsets.UTF_8));
+
+            long deadline = System.currentTimeMillis() + 30000;
+            while (!"Registertwo.vm".equals(mapTemplate("/app/register")))
+            {
+                if (System.currentTimeMillis() > deadline)
+                {
+                    fail("Modified configuration file has not been reloaded");
+                }
+                Thread.sleep(100);
+            }
+
+            TurbineServices.getInstance().shutdownService(URLMapperService.SERVICE_NAME);
+            watcher.join(5000);
+            assertFalse(watcher.isAlive());
+            assertNull(service.getWatcher());
+        }
+        finally
+        {
+            conf.setProperty(prefix + "configFile", configFile);
+            conf.clearProperty(prefix + "reload");
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(dir);
+        }
+    }
+
+    /**
+     * Map a URL and return the resulting template parameter
+     *
+     * @param url the URL
+     * @return the template
+     * @throws Exception
+     */
+    private String mapTemplate(String url) throws Exception
+    {
+        HttpServletRequest request = getMockRequest();
+        HttpServletResponse response = Mockito.mock(HttpServletResponse.class);
+
+        PipelineData pipelineData = getPipelineData(request, response, tc.getTurbine().getServletConfig());
+        ParameterParser pp = pipelineData.get(Turbine.class, ParameterParser.class);
+
+        urlMapper.mapFromURL(url, pp);
+        return pp.getString("template");
+    }
 
     @Tag("performance")
     @Test
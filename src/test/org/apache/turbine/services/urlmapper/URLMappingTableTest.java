@@ -0,0 +1,242 @@
+package org.apache.turbine.services.urlmapper;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.apache.turbine.services.urlmapper.model.URLMapEntry;
+import org.apache.turbine.util.LRUCache;
+import org.apache.turbine.util.uri.TurbineURI;
+import org.apache.turbine.util.uri.URIParam;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+
+/**
+ * Tests the compiled URL mapping table without a running Turbine.
+ */
+public class URLMappingTableTest
+{
+    /**
+     * A URL map entry built in code
+     */
+    private static class Entry extends URLMapEntry
+    {
+        Entry(String pattern)
+        {
+            setUrlPattern(Pattern.compile(pattern));
+        }
+
+        Entry implicit(String key, String value)
+        {
+            getImplicitParameters().put(key, value);
+            return this;
+        }
+
+        Entry ignore(String key)
+        {
+            getIgnoreParameters().put(key, "");
+            return this;
+        }
+    }
+
+    private static BitSet bits(int... indices)
+    {
+        BitSet bits = new BitSet();
+        for (int i : indices)
+        {
+            bits.set(i);
+        }
+        return bits;
+    }
+
+    private static List<URIParam> params(String... keyValues)
+    {
+        List<URIParam> params = new ArrayList<>();
+        for (int i = 0; i < keyValues.length; i += 2)
+        {
+            params.add(new URIParam(keyValues[i], keyValues[i + 1]));
+        }
+        return params;
+    }
+
+    private static TurbineURI uri(List<URIParam> pathInfo, List<URIParam> queryData)
+    {
+        TurbineURI uri = mock(TurbineURI.class);
+        when(uri.getPathInfo()).thenReturn(pathInfo);
+        when(uri.getQueryData()).thenReturn(queryData);
+        when(uri.getScriptName()).thenReturn("/app");
+        return uri;
+    }
+
+    /**
+     * Tests the literal prefixes of patterns
+     */
+    @Test
+    public void testLiteralPrefix()
+    {
+        assertEquals("/app/book/", URLMapTemplate.literalPrefix(Pattern.compile("/app/book/(?<bookId>\\d+)")));
+        assertEquals("/app/book", URLMapTemplate.literalPrefix(Pattern.compile("/app/books?")));
+        assertEquals("", URLMapTemplate.literalPrefix(Pattern.compile("(?<contextPath>/[^/]+)/book")));
+        assertEquals("", URLMapTemplate.literalPrefix(Pattern.compile("/app/a|/app/b")));
+        assertEquals("", URLMapTemplate.literalPrefix(Pattern.compile("/app", Pattern.CASE_INSENSITIVE)));
+    }
+
+    /**
+     * Tests hits and misses of the prefix trie, including the empty
+     * prefix and entries sharing a prefix
+     */
+    @Test
+    public void testPrefixTrie()
+    {
+        URLMappingTable table = new URLMappingTable(Arrays.asList(
+                new Entry("/app/book/(?<bookId>\\d+)"),
+                new Entry("/app/books"),
+                new Entry("/app/(?<page>[a-z]+)"),
+                new Entry("(?<contextPath>/[^/]+)/other")), 0);
+
+        assertEquals(bits(0, 2, 3), table.getPrefixCandidates("/app/book/12"));
+        assertEquals(bits(1, 2, 3), table.getPrefixCandidates("/app/books"));
+        assertEquals(bits(2, 3), table.getPrefixCandidates("/app/magazine"));
+        assertEquals(bits(3), table.getPrefixCandidates("/ap"));
+        assertEquals(bits(3), table.getPrefixCandidates(""));
+
+        URLMappingTable.Match match = table.mapFromURL("/app/book/12");
+        assertNotNull(match);
+        assertArrayEquals(new String[] { "bookId" }, match.getSlots());
+        assertArrayEquals(new String[] { "12" }, match.getValues());
+
+        assertEquals("/app/books", table.mapFromURL("/app/books").getEntry().getUrlPattern().pattern());
+        assertArrayEquals(new String[] { "magazine" }, table.mapFromURL("/app/magazine").getValues());
+        assertArrayEquals(new String[] { "/ctx" }, table.mapFromURL("/ctx/other").getValues());
+        assertNull(table.mapFromURL("/app/book/abc/def"));
+        assertNull(table.mapFromURL("/zzz"));
+    }
+
+    /**
+     * Tests that candidates are tried in configuration order, not in
+     * order of the length of their prefix
+     */
+    @Test
+    public void testConfigurationOrder()
+    {
+        URLMapEntry general = new Entry("/app/(?<page>[a-z]+)");
+        URLMapEntry specific = new Entry("/app/book(?<bookId>\\d*)");
+
+        URLMappingTable table = new URLMappingTable(Arrays.asList(general, specific), 0);
+        assertSame(general, table.mapFromURL("/app/book").getEntry());
+        assertSame(specific, table.mapFromURL("/app/book7").getEntry());
+
+        table = new URLMappingTable(Arrays.asList(specific, general), 0);
+        assertSame(specific, table.mapFromURL("/app/book").getEntry());
+
+        List<URLMapEntry> entries = Arrays.asList(
+                new Entry("/book/(?<bookId>\\d+)").implicit("template", "Book.vm"),
+                new Entry("/item/(?<bookId>\\d+)"));
+
+        TurbineURI uri = uri(params("bookId", "1"), params());
+        assertTrue(new URLMappingTable(entries, 0).mapToURL(uri));
+        verify(uri).setScriptName("/book/1");
+
+        List<URLMapEntry> reversed = new ArrayList<>(entries);
+        Collections.reverse(reversed);
+
+        uri = uri(params("bookId", "1"), params());
+        assertTrue(new URLMappingTable(reversed, 0).mapToURL(uri));
+        verify(uri).setScriptName("/item/1");
+    }
+
+    /**
+     * Tests the candidate entries of a key signature
+     */
+    @Test
+    public void testKeySignature()
+    {
+        URLMappingTable table = new URLMappingTable(Arrays.asList(
+                new Entry("/book/(?<bookId>\\d+)").implicit("template", "Book.vm").ignore("view"),
+                new Entry("/item/(?<bookId>\\d+)"),
+                new Entry("/list").implicit("template", "List.vm")), 0);
+
+        assertArrayEquals(new int[] { 0, 1 }, table.getCandidates(params("bookId", "1"), params()));
+        assertArrayEquals(new int[] { 0 }, table.getCandidates(params("bookId", "1"), params("template", "Book.vm")));
+        assertArrayEquals(new int[] { 0 }, table.getCandidates(params(), params("view", "all")));
+        assertArrayEquals(new int[] { 0, 2 }, table.getCandidates(params(), params("template", "List.vm")));
+        assertArrayEquals(new int[] { 0, 1, 2 }, table.getCandidates(params(), params()));
+
+        // a parameter no entry knows about
+        assertArrayEquals(new int[0], table.getCandidates(params("bookId", "1"), params("unknown", "x")));
+
+        TurbineURI uri = uri(params("bookId", "1"), params("unknown", "x"));
+        assertFalse(table.mapToURL(uri));
+        verify(uri, never()).setScriptName(ArgumentMatchers.anyString());
+
+        // a known parameter with a different implicit value
+        uri = uri(params(), params("template", "Other.vm"));
+        assertFalse(table.mapToURL(uri));
+
+        uri = uri(params(), params("template", "List.vm"));
+        assertTrue(table.mapToURL(uri));
+        verify(uri).setScriptName("/list");
+    }
+
+    /**
+     * Tests that failed matches are cached, too
+     */
+    @Test
+    public void testNegativeMatchCache()
+    {
+        List<URLMapEntry> entries = Collections.singletonList(new Entry("/book/(?<bookId>\\d+)"));
+
+        assertNull(new URLMappingTable(entries, 0).getMatchCache());
+
+        URLMappingTable table = new URLMappingTable(entries, 10);
+        LRUCache<String, ?> cache = table.getMatchCache();
+
+        assertNull(table.mapFromURL("/zzz"));
+        assertEquals(1, cache.size());
+        assertEquals(0, cache.getHitCount());
+
+        assertNull(table.mapFromURL("/zzz"));
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.getHitCount());
+
+        assertNotNull(table.mapFromURL("/book/1"));
+        assertNotNull(table.mapFromURL("/book/1"));
+        assertEquals(2, cache.size());
+        assertEquals(2, cache.getHitCount());
+    }
+}
@@ -0,0 +1,95 @@
+package org.apache.turbine.services.velocity;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit testing for the thread pool rendering parallel fragments.
+ */
+public class FragmentPoolTest
+{
+    /**
+     * Tests that a saturated pool rejects fragments instead of queuing them
+     */
+    @Test
+    public void testSaturation() throws Exception
+    {
+        ExecutorService pool = TurbineVelocityService.createFragmentPool(2);
+        CountDownLatch started = new CountDownLatch(2);
+        CountDownLatch release = new CountDownLatch(1);
+
+        try
+        {
+            for (int i = 0; i < 2; i++)
+            {
+                pool.submit(() -> {
+                    started.countDown();
+                    release.await();
+                    return null;
+                });
+            }
+
+            started.await(5, TimeUnit.SECONDS);
+            assertThrows(RejectedExecutionException.class, () -> pool.submit(() -> "queued"));
+
+            release.countDown();
+            assertEquals("done", submitWhenIdle(pool));
+        }
+        finally
+        {
+            release.countDown();
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Submit a task once a thread of the pool is idle again
+     *
+     * @param pool the pool
+     * @return the result of the task
+     * @throws Exception if the pool stays busy
+     */
+    private String submitWhenIdle(ExecutorService pool) throws Exception
+    {
+        for (int i = 0; i < 500; i++)
+        {
+            try
+            {
+                return pool.submit(() -> "done").get(5, TimeUnit.SECONDS);
+            }
+            catch (RejectedExecutionException e)
+            {
+                Thread.sleep(10);
+            }
+        }
+
+        throw new AssertionError("The pool stays busy");
+    }
+}
@@ -0,0 +1,104 @@
+package org.apache.turbine.util;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the LRUCache.
+ */
+public class LRUCacheTest
+{
+    @Test public void testEviction()
+    {
+        LRUCache<String, String> cache = new LRUCache<>(2);
+
+        cache.put("a", "A");
+        cache.put("b", "B");
+        assertEquals("A", cache.get("a"));
+
+        // "b" is the least recently used entry now
+        cache.put("c", "C");
+        assertEquals(2, cache.size());
+        assertNull(cache.get("b"));
+        assertEquals("A", cache.get("a"));
+        assertEquals("C", cache.get("c"));
+
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals(3, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test public void testBound()
+    {
+        LRUCache<Integer, Integer> cache = new LRUCache<>(100);
+
+        for (int i = 0; i < 10000; i++)
+        {
+            cache.put(Integer.valueOf(i), Integer.valueOf(i));
+        }
+
+        assertTrue(cache.size() <= 100 + 16, "Cache exceeds bound: " + cache.size());
+    }
+
+    @Test public void testExpiry() throws Exception
+    {
+        LRUCache<String, String> cache = new LRUCache<>(10, 20);
+
+        cache.put("a", "A");
+        cache.put("b", "B", 0);
+        assertEquals("A", cache.get("a"));
+
+        Thread.sleep(50);
+        assertNull(cache.get("a"));
+        assertEquals("B", cache.get("b"));
+    }
+
+    @Test public void testComputeIfAbsent()
+    {
+        LRUCache<String, String> cache = new LRUCache<>(10);
+
+        assertEquals("A", cache.computeIfAbsent("a", k -> "A"));
+        assertEquals("A", cache.computeIfAbsent("a", k -> "X"));
+        assertNull(cache.computeIfAbsent("b", k -> null));
+        assertNull(cache.get("b"));
+
+        assertThrows(NullPointerException.class, () -> cache.put("c", null));
+        assertThrows(IllegalArgumentException.class, () -> new LRUCache<String, String>(0));
+    }
+
+    @Test public void testPutIfAbsent()
+    {
+        LRUCache<String, String> cache = new LRUCache<>(10);
+
+        assertNull(cache.putIfAbsent("a", "A"));
+        assertEquals("A", cache.putIfAbsent("a", "X"));
+        assertEquals("A", cache.get("a"));
+        assertEquals(1, cache.size());
+
+        assertThrows(NullPointerException.class, () -> cache.putIfAbsent("b", null));
+    }
+}
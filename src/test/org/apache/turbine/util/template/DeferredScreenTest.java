@@ -0,0 +1,199 @@
+package org.apache.turbine.util.template;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+
+import org.apache.turbine.TurbineConstants;
+import org.apache.turbine.services.velocity.VelocityService;
+import org.apache.turbine.util.RunData;
+import org.apache.turbine.util.TurbineException;
+import org.apache.velocity.context.Context;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit testing for the deferred rendering of screen templates.
+ */
+public class DeferredScreenTest
+{
+    private VelocityService velocity;
+
+    private Context context;
+
+    @BeforeEach
+    public void setUp() throws Exception
+    {
+        velocity = mock(VelocityService.class);
+        context = mock(Context.class);
+
+        doAnswer(invocation -> {
+            Writer writer = invocation.getArgument(2);
+            writer.write("<" + invocation.getArgument(1) + ">");
+            return null;
+        }).when(velocity).handleRequest(any(Context.class), any(String.class), any(Writer.class));
+    }
+
+    /**
+     * Tests that the template is rendered into the given writer
+     */
+    @Test
+    public void testRender() throws Exception
+    {
+        DeferredScreen screen = new DeferredScreen(velocity, context,
+                "screens/Report.vm", "screens/Error.vm");
+        StringWriter writer = new StringWriter();
+        writer.write("head");
+
+        assertTrue(screen.render(null, writer));
+        assertEquals("head<screens/Report.vm>", writer.toString());
+
+        // A second use fails instead of running the template again
+        assertThrows(IOException.class, () -> screen.render(null, writer));
+        assertThrows(IllegalStateException.class, screen::toString);
+        verify(velocity, times(1)).handleRequest(any(Context.class), eq("screens/Report.vm"), any(Writer.class));
+    }
+
+    /**
+     * Tests that the output of the screen is kept after it has been
+     * rendered into a String
+     */
+    @Test
+    public void testRenderOnce() throws Exception
+    {
+        DeferredScreen screen = new DeferredScreen(velocity, context,
+                "screens/Report.vm", "screens/Error.vm");
+        StringWriter writer = new StringWriter();
+
+        assertEquals("<screens/Report.vm>", screen.toString());
+        assertEquals("<screens/Report.vm>", screen.toString());
+        assertTrue(screen.render(null, writer));
+        assertEquals("<screens/Report.vm>", writer.toString());
+        verify(velocity, times(1)).handleRequest(any(Context.class), eq("screens/Report.vm"), any(Writer.class));
+    }
+
+    /**
+     * Tests that the error template replaces a failing screen template
+     */
+    @Test
+    public void testRenderError() throws Exception
+    {
+        doThrow(new TurbineException("broken")).when(velocity)
+            .handleRequest(any(Context.class), eq("screens/Report.vm"), any(Writer.class));
+
+        DeferredScreen screen = new DeferredScreen(velocity, context,
+                "screens/Report.vm", "screens/Error.vm");
+
+        assertEquals("<screens/Error.vm>", screen.toString());
+        verify(context).put(eq(TurbineConstants.PROCESSING_EXCEPTION_PLACEHOLDER), any(String.class));
+    }
+
+    /**
+     * Tests that the error template replaces a screen template failing
+     * before it has written output into the layout
+     */
+    @Test
+    public void testRenderErrorDirect() throws Exception
+    {
+        doThrow(new TurbineException("broken")).when(velocity)
+            .handleRequest(any(Context.class), eq("screens/Report.vm"), any(Writer.class));
+
+        DeferredScreen screen = new DeferredScreen(velocity, context,
+                "screens/Report.vm", "screens/Error.vm");
+        StringWriter writer = new StringWriter();
+        writer.write("head");
+
+        assertTrue(screen.render(null, writer));
+        assertEquals("head<screens/Error.vm>", writer.toString());
+    }
+
+    /**
+     * Tests that a screen template failing after it has written output
+     * into the layout aborts instead of appending the error template
+     */
+    @Test
+    public void testRenderPartialError() throws Exception
+    {
+        doAnswer(invocation -> {
+            Writer writer = invocation.getArgument(2);
+            writer.write("partial");
+            throw new TurbineException("broken");
+        }).when(velocity).handleRequest(any(Context.class), eq("screens/Report.vm"), any(Writer.class));
+
+        DeferredScreen screen = new DeferredScreen(velocity, context,
+                "screens/Report.vm", "screens/Error.vm");
+        StringWriter writer = new StringWriter();
+
+        assertThrows(IOException.class, () -> screen.render(null, writer));
+        assertEquals("partial", writer.toString());
+        verify(velocity, never()).handleRequest(any(Context.class), eq("screens/Error.vm"), any(Writer.class));
+    }
+
+    /**
+     * Tests that the partial output of a failing screen template is
+     * discarded when it is rendered into a String
+     */
+    @Test
+    public void testToStringPartialError() throws Exception
+    {
+        doAnswer(invocation -> {
+            Writer writer = invocation.getArgument(2);
+            writer.write("partial");
+            throw new TurbineException("broken");
+        }).when(velocity).handleRequest(any(Context.class), eq("screens/Report.vm"), any(Writer.class));
+
+        DeferredScreen screen = new DeferredScreen(velocity, context,
+                "screens/Report.vm", "screens/Error.vm");
+
+        assertEquals("<screens/Error.vm>", screen.toString());
+    }
+
+    /**
+     * Tests the request for buffered rendering
+     */
+    @Test
+    public void testBuffered()
+    {
+        RunData data = mock(RunData.class);
+        TemplateInfo templateInfo = new TemplateInfo(data);
+        when(data.getTemplateInfo()).thenReturn(templateInfo);
+
+        assertFalse(DeferredScreen.isBuffered(data));
+        DeferredScreen.setBuffered(data);
+        assertTrue(DeferredScreen.isBuffered(data));
+    }
+}
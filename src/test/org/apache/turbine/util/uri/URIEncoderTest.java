@@ -0,0 +1,76 @@
+package org.apache.turbine.util.uri;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.net.URLEncoder;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Verifies that the link encoder produces the same output as the
+ * URLEncoder.
+ */
+public class URIEncoderTest
+{
+    private static final String[] STRINGS = {
+        "", "template", "Index.vm", "admin,Users.vm", "a b+c", "100%", "a/b?c=d&e",
+        "~tilde*star_-.", "Gr\u00fc\u00dfe", "\u20ac 5", "\ud83d\ude00x", "\u0001\u007f"
+    };
+
+    private static void assertEncoding(Charset charset) throws Exception
+    {
+        for (String string : STRINGS)
+        {
+            String expected = URLEncoder.encode(string, charset.name());
+
+            StringBuilder output = new StringBuilder("x");
+            URIEncoder.encode(output, string, charset);
+            assertEquals("x" + expected, output.toString(), string);
+
+            output.setLength(0);
+            URIEncoder.encodeName(output, string, charset);
+            URIEncoder.encodeName(output, string, charset);
+            assertEquals(expected + expected, output.toString(), string);
+        }
+    }
+
+    @Test
+    public void testUTF8() throws Exception
+    {
+        assertEncoding(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testISO88591() throws Exception
+    {
+        assertEncoding(StandardCharsets.ISO_8859_1);
+    }
+
+    @Test
+    public void testUTF16() throws Exception
+    {
+        assertEncoding(StandardCharsets.UTF_16);
+    }
+}